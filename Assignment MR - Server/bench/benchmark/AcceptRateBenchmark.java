@@ -0,0 +1,111 @@
+package benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import server.Server;
+import server.ServerConfig;
+import server.ServerConfig.Transport;
+
+/**
+ * This benchmark measures how many new connections per second the thread transport accepts
+ * with a single acceptor and with several acceptors sharing the port through SO_REUSEPORT.
+ * Every client thread connects, waits for the greeting of the server and disconnects in a loop, like clients reconnecting
+ * after the restart of the server. Both servers run inside the benchmark JVM on two consecutive ports.
+ * The greeting is sent after the session opened the database connection, so the MySQL database should be reachable,
+ * otherwise the refused sessions are measured.
+ *
+ * Usage: AcceptRateBenchmark [acceptors] [clients] [seconds] [port]
+ *
+ * @author Martin Holecek
+ *
+ */
+public class AcceptRateBenchmark {
+
+	private static final String HOST = "localhost";
+	private static final int DEFAULT_ACCEPTORS = Runtime.getRuntime().availableProcessors();
+	private static final int DEFAULT_CLIENTS = 64;
+	private static final int DEFAULT_SECONDS = 10;
+	private static final int DEFAULT_PORT = 5200;
+	private static final long STARTUP_DELAY = 2000;
+
+	/**
+	 * Start point of the benchmark
+	 *
+	 * @param args the number of acceptors, the number of client threads, the duration of each run and the port
+	 * @throws InterruptedException if the benchmark has been interrupted
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		int acceptors = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ACCEPTORS;
+		int clients = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_CLIENTS;
+		int seconds = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_SECONDS;
+		int port = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_PORT;
+
+		System.out.println("acceptors,clients,connections,connectionsPerSecond,averageConnectMicros,failures");
+		run(1, clients, seconds, port);
+		run(acceptors, clients, seconds, port + 1);
+		System.exit(0);
+	}
+
+	/**
+	 * Start the server with the given number of acceptors and reconnect the clients to it until the time runs out
+	 *
+	 * @param acceptors the number of acceptors of the server
+	 * @param clients the number of client threads
+	 * @param seconds the duration of the run
+	 * @param port the port number of the server
+	 * @throws InterruptedException if the benchmark has been interrupted
+	 */
+	private static void run(int acceptors, int clients, int seconds, int port) throws InterruptedException {
+		startServer(acceptors, port);
+
+		AtomicLong connections = new AtomicLong();
+		AtomicLong connectTime = new AtomicLong();
+		AtomicLong failures = new AtomicLong();
+		long deadline = System.nanoTime() + seconds * 1000000000L;
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < clients; i++) {
+			Thread thread = new Thread(() -> {
+				while (System.nanoTime() < deadline) {
+					long start = System.nanoTime();
+					try (BenchmarkClient client = new BenchmarkClient(HOST, port)) {
+						client.read();
+						connectTime.addAndGet(System.nanoTime() - start);
+						connections.incrementAndGet();
+					} catch (IOException e) {
+						failures.incrementAndGet();
+					}
+				}
+			}, "benchmark-client-" + i);
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		long count = connections.get();
+		long average = count > 0 ? connectTime.get() / count / 1000 : 0;
+		System.out.println(acceptors + "," + clients + "," + count + "," + count / seconds + "," + average + "," + failures.get());
+	}
+
+	/**
+	 * Start the thread server in the daemon thread and wait until it listens on the port
+	 *
+	 * @param acceptors the number of acceptors of the server
+	 * @param port the port number
+	 * @throws InterruptedException if the benchmark has been interrupted
+	 */
+	private static void startServer(int acceptors, int port) throws InterruptedException {
+		ServerConfig config = ServerConfig.fromSystemProperties();
+		config.setTransport(Transport.THREAD);
+		config.setAcceptors(acceptors);
+		Server server = new Server(port, false, config);
+		Thread serverThread = new Thread(server::startServer, "benchmark-server-" + port);
+		serverThread.setDaemon(true);
+		serverThread.start();
+		Thread.sleep(STARTUP_DELAY);
+	}
+}
@@ -0,0 +1,160 @@
+package benchmark;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+import algorithms.ChaCha20Algorithm;
+import server.FrameTransport;
+import server.ServerConfig;
+import server.Session;
+import server.Session.Encryption;
+import server.SocketTransport;
+
+/**
+ * This benchmark measures the bytes allocated on the server thread per encrypted command, which is reading one command
+ * and writing one response. The array path repeats what the session did before the buffer path existed: the string
+ * is converted by getBytes, encrypted by doFinal into the new array and copied into the transport, and the received frame
+ * is decrypted by doFinal into the new array. The buffer path is the session itself, which encodes into its own
+ * buffer and encrypts directly into the outbound buffer of the transport.
+ * Both ends run inside the benchmark JVM on the loopback interface, the database is not involved.
+ * The allocated bytes are read from the HotSpot thread MXBean.
+ *
+ * Usage: AllocationBenchmark [messageSize] [commands]
+ *
+ * @author Martin Holecek
+ *
+ */
+public class AllocationBenchmark {
+
+	private static final String HOST = "localhost";
+	private static final String COMMAND = "FETCH 1";
+	private static final int DEFAULT_MESSAGE_SIZE = 256;
+	private static final int DEFAULT_COMMANDS = 20000;
+	private static final int WARMUP_DIVISOR = 2;
+	private static final Encryption[] MODES = { Encryption.AES_CBC, Encryption.AES_ECB, Encryption.AES_GCM, Encryption.CHACHA20, Encryption.PLAIN };
+
+	private static final Logger LOGGER = Logger.getLogger(AllocationBenchmark.class.getName());
+
+	private static volatile int sink;
+
+	/**
+	 * Start point of the benchmark
+	 *
+	 * @param args the number of characters of the response and the number of measured commands
+	 * @throws Exception if the benchmark failed
+	 */
+	public static void main(String[] args) throws Exception {
+		int messageSize = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_MESSAGE_SIZE;
+		int commands = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_COMMANDS;
+		char[] text = new char[messageSize];
+		Arrays.fill(text, 'x');
+		String response = new String(text);
+
+		System.out.println("mode,messageSize,arrayBytesPerCommand,bufferBytesPerCommand");
+		for (Encryption mode : MODES) {
+			if (mode == Encryption.CHACHA20 && !ChaCha20Algorithm.isSupported()) {
+				System.out.println("# " + mode + " is not supported by this JVM");
+				continue;
+			}
+			measure(mode, response, commands);
+		}
+	}
+
+	/**
+	 * Connect the client and server session and measure the array path and the buffer path of the encryption mode
+	 *
+	 * @param mode the encryption mode
+	 * @param response the response written for every command
+	 * @param commands the number of measured commands
+	 * @throws Exception if the benchmark failed
+	 */
+	private static void measure(Encryption mode, String response, int commands) throws Exception {
+		ServerConfig config = new ServerConfig();
+		int total = commands + commands / WARMUP_DIVISOR;
+		try (ServerSocket listener = new ServerSocket(0)) {
+			FrameTransport clientTransport = new SocketTransport(new Socket(HOST, listener.getLocalPort()), config);
+			FrameTransport serverTransport = new SocketTransport(listener.accept(), config);
+			Session client = new Session(clientTransport, LOGGER);
+			Session server = new Session(serverTransport, LOGGER);
+			try {
+				Peer clientPeer = new Peer(client, clientTransport, mode, false);
+				Thread clientThread = startClient(clientPeer, total);
+				Peer serverPeer = new Peer(server, serverTransport, mode, true);
+				serverPeer.agreeKey();
+				serve(serverPeer, null, response, commands / WARMUP_DIVISOR);
+				long arrayBytes = serve(serverPeer, null, response, commands) / commands;
+				clientThread.join();
+
+				clientPeer = new Peer(client, clientTransport, mode, false);
+				clientThread = startClient(clientPeer, total);
+				server.selectEncryptionMode(mode);
+				serve(null, server, response, commands / WARMUP_DIVISOR);
+				long bufferBytes = serve(null, server, response, commands) / commands;
+				clientThread.join();
+
+				System.out.println(mode + "," + response.length() + "," + arrayBytes + "," + bufferBytes);
+			} finally {
+				client.close();
+				server.close();
+			}
+		}
+	}
+
+	/**
+	 * Start the client thread which agrees the key and then sends the commands and reads the responses
+	 *
+	 * @param peer the client side of the connection
+	 * @param commands the number of commands
+	 * @return the started thread
+	 */
+	private static Thread startClient(Peer peer, int commands) {
+		Thread thread = new Thread(() -> {
+			try {
+				peer.agreeKey();
+				for (int i = 0; i < commands; i++) {
+					peer.write(COMMAND);
+					peer.flush();
+					sink += peer.read().length();
+				}
+			} catch (IOException | GeneralSecurityException e) {
+				e.printStackTrace();
+			}
+		}, "benchmark-client");
+		thread.start();
+		return thread;
+	}
+
+	/**
+	 * Read the commands and write the responses on the current thread
+	 *
+	 * @param peer the server side which runs the array path, or null to run the buffer path
+	 * @param session the session which runs the buffer path, or null to run the array path
+	 * @param response the response written for every command
+	 * @param commands the number of commands
+	 * @return the number of bytes allocated by the current thread
+	 * @throws IOException if the stream has been closed or another I/O error
+	 * @throws GeneralSecurityException if the cipher failed
+	 */
+	private static long serve(Peer peer, Session session, String response, int commands) throws IOException, GeneralSecurityException {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+		long start = threads.getThreadAllocatedBytes(threadId);
+		for (int i = 0; i < commands; i++) {
+			if (peer != null) {
+				sink += peer.read().length();
+				peer.write(response);
+				peer.flush();
+			} else {
+				sink += session.read().length();
+				session.write(response);
+				session.flush();
+			}
+		}
+		return threads.getThreadAllocatedBytes(threadId) - start;
+	}
+}
@@ -0,0 +1,84 @@
+package benchmark;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+
+/**
+ * This class is minimal MRP client used by the benchmarks, it speaks only the plain text frames
+ * 
+ * @author Martin Holecek
+ *
+ */
+public class BenchmarkClient implements Closeable {
+
+	private Socket socket;
+	private DataInputStream input;
+	private DataOutputStream output;
+
+	/**
+	 * Connect to the server
+	 * 
+	 * @param host the host name of the server
+	 * @param port the port number of the server
+	 * @throws IOException if the connection failed
+	 */
+	public BenchmarkClient(String host, int port) throws IOException {
+		socket = new Socket(host, port);
+		socket.setTcpNoDelay(true);
+		input = new DataInputStream(socket.getInputStream());
+		output = new DataOutputStream(socket.getOutputStream());
+	}
+
+	/**
+	 * Send the command to the server
+	 * 
+	 * @param command the command line
+	 * @throws IOException if the stream has been closed or another I/O error
+	 */
+	public void send(String command) throws IOException {
+		byte[] data = command.getBytes();
+		output.writeInt(data.length);
+		output.write(data);
+		output.flush();
+	}
+
+	/**
+	 * Read single frame sent by the server
+	 * 
+	 * @return the text of the frame
+	 * @throws IOException if the stream has been closed or another I/O error
+	 */
+	public String read() throws IOException {
+		byte[] data = new byte[input.readInt()];
+		input.readFully(data);
+		return new String(data);
+	}
+
+	/**
+	 * Send the command and read lines until the tagged completion line OK or BAD
+	 * 
+	 * @param command the command line
+	 * @return the completion line
+	 * @throws IOException if the stream has been closed or another I/O error
+	 */
+	public String execute(String command) throws IOException {
+		send(command);
+		String line;
+		do {
+			line = read();
+		} while (!line.startsWith("OK") && !line.startsWith("BAD"));
+		return line;
+	}
+
+	/**
+	 * Close the connection
+	 * 
+	 * {@inheritDoc}
+	 */
+	public void close() throws IOException {
+		socket.close();
+	}
+}
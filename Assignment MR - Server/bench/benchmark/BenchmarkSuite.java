@@ -0,0 +1,487 @@
+package benchmark;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import algorithms.AESAlgorithm;
+import algorithms.ChaCha20Algorithm;
+import algorithms.CipherContext;
+import algorithms.DESedeAlgorithm;
+import algorithms.SHA256Algorithm;
+import diffie_hellman.KeyAgreementAlgorithm;
+import diffie_hellman.KeyExchange;
+import server.MemoryTransport;
+import server.ParallelSender;
+import server.ServerConfig;
+import server.Session;
+import server.Session.Encryption;
+
+/**
+ * This JMH benchmark suite measures the hot path of the cryptography and the framing: the ciphers created by AESAlgorithm
+ * and DESedeAlgorithm, the key exchange of every key agreement, SHA256Algorithm and the round trip of one command
+ * through the session in every encryption mode, and the FETCH response of many messages encrypted by the thread of the session
+ * and by the parallel sender with the growing number of workers. The client and the server are connected by the in-memory transport pair,
+ * so the network is not involved and the round trip runs on one thread.
+ * Every benchmark reports the average time of one operation, measured by JMH in the forked JVMs.
+ * TLS is not measured, it needs the key store of the server and the client with the matching trust store.
+ *
+ * Usage: BenchmarkSuite [JMH options], for example -f 1 -wi 3 -i 5 -rff results.json
+ *
+ * @author Martin Holecek
+ *
+ */
+public class BenchmarkSuite {
+
+	private static final int KEY_SIZE = 32;
+	private static final String COMMAND = "FETCH 1";
+	private static final int FETCH_MESSAGES = 64;
+	private static final int FETCH_MESSAGE_SIZE = 4096;
+	private static final int FETCH_WINDOW = 32;
+
+	private static final Logger LOGGER = Logger.getLogger(BenchmarkSuite.class.getName());
+
+	/**
+	 * Start point of the benchmark suite, runs all benchmarks of the suite unless the options select some of them
+	 * and writes the results in the JSON format unless the options select another one
+	 *
+	 * @param args the command line options of JMH
+	 * @throws CommandLineOptionException if the options are not valid
+	 * @throws RunnerException if the benchmark failed
+	 */
+	public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+		ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+		if (commandLine.getIncludes().isEmpty()) {
+			options.include(BenchmarkSuite.class.getName() + "\\.");
+		}
+		if (!commandLine.getResultFormat().hasValue()) {
+			options.resultFormat(ResultFormatType.JSON);
+		}
+		new Runner(options.build()).run();
+	}
+
+	/**
+	 * Returns the new array with the random bytes
+	 *
+	 * @param size the number of bytes
+	 * @return the array
+	 */
+	private static byte[] randomBytes(int size) {
+		byte[] bytes = new byte[size];
+		new SecureRandom().nextBytes(bytes);
+		return bytes;
+	}
+
+	/**
+	 * Returns the message of the given length
+	 *
+	 * @param size the number of characters
+	 * @return the message
+	 */
+	private static String message(int size) {
+		char[] text = new char[size];
+		Arrays.fill(text, 'x');
+		return new String(text);
+	}
+
+	/**
+	 * Check that the JVM provides the cipher of the encryption mode
+	 *
+	 * @param mode the encryption mode
+	 */
+	private static void checkSupported(Encryption mode) {
+		if (mode == Encryption.CHACHA20 && !ChaCha20Algorithm.isSupported()) {
+			throw new IllegalStateException(mode + " is not supported by this JVM");
+		}
+	}
+
+	/**
+	 * This benchmark measures the encryption and the decryption of the cipher contexts the session uses in every block cipher mode
+	 */
+	@State(Scope.Thread)
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	@Warmup(iterations = 3, time = 1)
+	@Measurement(iterations = 5, time = 1)
+	@Fork(2)
+	public static class Ciphers {
+
+		@Param({ "AES/CBC", "AES/ECB", "DES/CBC", "DES/ECB" })
+		private String cipher;
+
+		@Param({ "64", "1024", "16384" })
+		private int size;
+
+		private CipherContext context;
+		private ByteBuffer input;
+		private ByteBuffer output;
+		private ByteBuffer initVector;
+		private ByteBuffer encrypted;
+		private ByteBuffer decrypted;
+		private byte[] vector;
+
+		/**
+		 * Create the cipher context and encrypt the input once for the decryption
+		 *
+		 * @throws GeneralSecurityException if the cipher is not available
+		 */
+		@Setup
+		public void setup() throws GeneralSecurityException {
+			byte[] key = randomBytes(KEY_SIZE);
+			switch (cipher) {
+			case "AES/CBC":
+				context = AESAlgorithm.createCBCContext(key);
+				break;
+			case "AES/ECB":
+				context = AESAlgorithm.createECBContext(key);
+				break;
+			case "DES/CBC":
+				context = DESedeAlgorithm.createCBCContext(key);
+				break;
+			default:
+				context = DESedeAlgorithm.createECBContext(key);
+				break;
+			}
+			input = ByteBuffer.wrap(randomBytes(size));
+			vector = context.usesInitVector() ? context.nextInitVector() : null;
+			encrypted = ByteBuffer.wrap(context.encrypt(input.array(), vector));
+			output = ByteBuffer.allocate(encrypted.capacity());
+			decrypted = ByteBuffer.allocate(encrypted.capacity());
+			initVector = ByteBuffer.allocate(context.getInitVectorSize());
+		}
+
+		/**
+		 * Encrypt the input with the new initialization vector, as the session writes one frame
+		 *
+		 * @return the length of the encrypted data
+		 * @throws GeneralSecurityException if the cipher failed
+		 */
+		@Benchmark
+		public int encrypt() throws GeneralSecurityException {
+			input.rewind();
+			output.clear();
+			if (context.usesInitVector()) {
+				initVector.clear();
+				context.writeInitVector(initVector);
+			}
+			return context.encrypt(input, output);
+		}
+
+		/**
+		 * Decrypt the encrypted input, as the session reads one frame
+		 *
+		 * @return the length of the decrypted data
+		 * @throws GeneralSecurityException if the cipher failed
+		 */
+		@Benchmark
+		public int decrypt() throws GeneralSecurityException {
+			encrypted.rewind();
+			decrypted.clear();
+			return context.decrypt(encrypted, decrypted, vector);
+		}
+	}
+
+	/**
+	 * This benchmark measures SHA256Algorithm, which hashes the passwords
+	 */
+	@State(Scope.Thread)
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	@Warmup(iterations = 3, time = 1)
+	@Measurement(iterations = 5, time = 1)
+	@Fork(2)
+	public static class Hash {
+
+		@Param({ "64", "1024", "16384" })
+		private int size;
+
+		private byte[] input;
+
+		/**
+		 * Create the random input
+		 */
+		@Setup
+		public void setup() {
+			input = randomBytes(size);
+		}
+
+		/**
+		 * Hash the input
+		 *
+		 * @return the hash
+		 */
+		@Benchmark
+		public String sha256() {
+			return SHA256Algorithm.hash(input);
+		}
+	}
+
+	/**
+	 * This benchmark measures the complete key exchange of every key agreement, the client side runs on its own thread
+	 */
+	@State(Scope.Thread)
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	@Warmup(iterations = 3, time = 1)
+	@Measurement(iterations = 5, time = 1)
+	@Fork(2)
+	public static class KeyExchanges {
+
+		@Param({ "DH", "X25519", "ECDH" })
+		private KeyAgreementAlgorithm algorithm;
+
+		private Session client;
+		private Session server;
+		private Thread clientThread;
+		private KeyExchange keyExchange;
+
+		/**
+		 * Connect the sessions and start the client side, which answers the key exchanges until the server side closes the transport
+		 */
+		@Setup
+		public void setup() {
+			if (!algorithm.isSupported()) {
+				throw new IllegalStateException(algorithm + " is not supported by this JVM");
+			}
+			MemoryTransport[] pair = MemoryTransport.createPair(new ServerConfig());
+			client = new Session(pair[0], LOGGER);
+			server = new Session(pair[1], LOGGER);
+			clientThread = new Thread(() -> {
+				try {
+					KeyExchange clientExchange = new KeyExchange();
+					while (true) {
+						clientExchange.initClient(client, algorithm);
+					}
+				} catch (IOException | GeneralSecurityException e) {
+					// The server side has closed the transport
+				}
+			}, "benchmark-client");
+			clientThread.start();
+			keyExchange = new KeyExchange();
+		}
+
+		/**
+		 * Close the sessions and wait for the client side
+		 *
+		 * @throws InterruptedException if the thread has been interrupted
+		 */
+		@TearDown
+		public void tearDown() throws InterruptedException {
+			server.close();
+			clientThread.join();
+			client.close();
+		}
+
+		/**
+		 * Run the server side of one key exchange
+		 *
+		 * @return the agreed key
+		 * @throws IOException if the stream has been closed or another I/O error
+		 * @throws GeneralSecurityException if the key exchange failed
+		 */
+		@Benchmark
+		public byte[] keyExchange() throws IOException, GeneralSecurityException {
+			return keyExchange.initServer(server, algorithm);
+		}
+	}
+
+	/**
+	 * This class is the pair of the sessions connected by the in-memory transport, which agreed the key of the encryption mode
+	 */
+	abstract static class Connection {
+
+		protected MemoryTransport[] pair;
+		protected Session client;
+		protected Session server;
+		protected Peer peer;
+
+		/**
+		 * Connect the sessions and select the encryption mode on both sides
+		 *
+		 * @param mode the encryption mode
+		 * @throws Exception if the key exchange failed
+		 */
+		protected void connect(Encryption mode) throws Exception {
+			checkSupported(mode);
+			pair = MemoryTransport.createPair(new ServerConfig());
+			client = new Session(pair[0], LOGGER);
+			server = new Session(pair[1], LOGGER);
+			peer = new Peer(client, pair[0], mode, false);
+			Thread clientThread = new Thread(() -> {
+				try {
+					peer.agreeKey();
+				} catch (IOException | GeneralSecurityException e) {
+					e.printStackTrace();
+				}
+			}, "benchmark-client");
+			clientThread.start();
+			server.selectEncryptionMode(mode);
+			clientThread.join();
+		}
+
+		/**
+		 * Close both sessions
+		 */
+		protected void disconnect() {
+			server.close();
+			client.close();
+		}
+	}
+
+	/**
+	 * This benchmark measures the round trip of one command through the session in every encryption mode, the client writes the command,
+	 * the session reads it and writes the response and the client reads the response
+	 */
+	@State(Scope.Thread)
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	@Warmup(iterations = 3, time = 1)
+	@Measurement(iterations = 5, time = 1)
+	@Fork(2)
+	public static class Sessions extends Connection {
+
+		@Param({ "PLAIN", "AES_CBC", "AES_ECB", "AES_GCM", "CHACHA20", "DES_CBC", "DES_ECB" })
+		private Encryption mode;
+
+		@Param({ "256", "4096" })
+		private int size;
+
+		private String response;
+
+		/**
+		 * Connect the sessions and create the response
+		 *
+		 * @throws Exception if the key exchange failed
+		 */
+		@Setup
+		public void setup() throws Exception {
+			connect(mode);
+			response = message(size);
+		}
+
+		/**
+		 * Close the sessions
+		 */
+		@TearDown
+		public void tearDown() {
+			disconnect();
+		}
+
+		/**
+		 * Send the command and its response through the sessions
+		 *
+		 * @param blackhole the consumer of the command and the response
+		 * @throws IOException if the stream has been closed or another I/O error
+		 * @throws GeneralSecurityException if the cipher failed
+		 */
+		@Benchmark
+		public void sessionRoundTrip(Blackhole blackhole) throws IOException, GeneralSecurityException {
+			peer.write(COMMAND);
+			blackhole.consume(server.read());
+			server.write(response);
+			server.flush();
+			blackhole.consume(peer.read());
+		}
+	}
+
+	/**
+	 * This benchmark measures the FETCH response of many messages, which the session encrypts on its own thread or by the parallel sender
+	 * with the given number of workers. The client side only drains the frames, so the time is spent by the server side
+	 */
+	@State(Scope.Thread)
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	@Warmup(iterations = 3, time = 1)
+	@Measurement(iterations = 5, time = 1)
+	@Fork(2)
+	public static class Fetch extends Connection {
+
+		@Param({ "AES_CBC", "AES_GCM", "CHACHA20" })
+		private Encryption mode;
+
+		@Param({ "0", "1", "2", "4" })
+		private int threads;
+
+		private String[] responses;
+		private ExecutorService workers;
+
+		/**
+		 * Connect the sessions and start the workers of the parallel sender
+		 *
+		 * @throws Exception if the key exchange failed
+		 */
+		@Setup
+		public void setup() throws Exception {
+			connect(mode);
+			String message = message(FETCH_MESSAGE_SIZE);
+			responses = new String[] { "* FETCH ID 1 SIZE " + message.length(), message };
+			workers = threads > 0 ? Executors.newFixedThreadPool(threads) : null;
+			server.setSendWorkers(workers, FETCH_WINDOW);
+		}
+
+		/**
+		 * Stop the workers and close the sessions
+		 */
+		@TearDown
+		public void tearDown() {
+			if (workers != null) {
+				workers.shutdown();
+			}
+			disconnect();
+		}
+
+		/**
+		 * Send the response of all messages and drain its frames on the client side
+		 *
+		 * @throws IOException if the stream has been closed or another I/O error
+		 */
+		@Benchmark
+		public void fetch() throws IOException {
+			if (workers == null) {
+				for (int i = 0; i < FETCH_MESSAGES; i++) {
+					server.write(responses[0]);
+					server.write(responses[1]);
+				}
+			} else {
+				try (ParallelSender sender = server.createParallelSender()) {
+					for (int i = 0; i < FETCH_MESSAGES; i++) {
+						sender.send(() -> responses, responses.length);
+					}
+					sender.finish();
+				}
+			}
+			server.flush();
+			while (pair[0].hasPendingFrame()) {
+				pair[0].readFrame().release();
+			}
+		}
+	}
+}
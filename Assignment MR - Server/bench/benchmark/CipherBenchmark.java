@@ -0,0 +1,204 @@
+package benchmark;
+
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+
+import algorithms.AESAlgorithm;
+import algorithms.AeadCipherContext;
+import algorithms.ChaCha20Algorithm;
+import algorithms.CipherContext;
+import algorithms.DESedeAlgorithm;
+
+/**
+ * This benchmark measures the cost of encrypting and decrypting one frame in every encryption mode of AUTH Command.
+ * The static methods of the algorithm classes derive the key, create the cipher and the Secure Random for every frame,
+ * the cipher context of the session creates them once and only initializes the cipher with the IV of the frame.
+ * The authenticated modes exist only with the cipher context, they are compared with the plain copy of the frame.
+ *
+ * Usage: CipherBenchmark [frameSize] [frames]
+ *
+ * @author Martin Holecek
+ *
+ */
+public class CipherBenchmark {
+
+	private static final int DEFAULT_FRAME_SIZE = 256;
+	private static final int DEFAULT_FRAMES = 200000;
+	private static final int KEY_SIZE = 32;
+	private static final int AES_IV_SIZE = 16;
+	private static final int DES_IV_SIZE = 8;
+	private static final String[] MODES = { "AES/CBC", "AES/ECB", "DES/CBC", "DES/ECB" };
+	private static final String[] AEAD_MODES = { "AES/GCM", "CHACHA20" };
+
+	private static volatile int sink;
+
+	/**
+	 * Start point of the benchmark
+	 *
+	 * @param args the size of the frame in bytes and the number of measured frames
+	 * @throws GeneralSecurityException if the cipher is not available
+	 */
+	public static void main(String[] args) throws GeneralSecurityException {
+		int frameSize = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_FRAME_SIZE;
+		int frames = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_FRAMES;
+		SecureRandom random = new SecureRandom();
+		byte[] key = new byte[KEY_SIZE];
+		random.nextBytes(key);
+		byte[] frame = new byte[frameSize];
+		random.nextBytes(frame);
+
+		System.out.println("mode,frameSize,perFrameNanos,perSessionNanos");
+		for (String mode : MODES) {
+			CipherContext context = createContext(mode, key);
+			measurePerFrame(mode, frame, key, frames / 10);
+			measurePerSession(context, frame, frames / 10);
+			long perFrame = measurePerFrame(mode, frame, key, frames);
+			long perSession = measurePerSession(context, frame, frames);
+			System.out.println(mode + "," + frameSize + "," + perFrame + "," + perSession);
+		}
+
+		System.out.println("mode,frameSize,plainNanos,perSessionNanos,frameOverheadBytes");
+		for (String mode : AEAD_MODES) {
+			if (mode.equals("CHACHA20") && !ChaCha20Algorithm.isSupported()) {
+				System.out.println("# " + mode + " is not supported by this JVM");
+				continue;
+			}
+			AeadCipherContext server = mode.equals("AES/GCM") ? AESAlgorithm.createGCMContext(key, true) : ChaCha20Algorithm.createContext(key, true);
+			AeadCipherContext client = mode.equals("AES/GCM") ? AESAlgorithm.createGCMContext(key, false) : ChaCha20Algorithm.createContext(key, false);
+			measurePlain(frame, frames / 10);
+			measureAead(server, client, frame, frames / 10);
+			long plain = measurePlain(frame, frames);
+			long perSession = measureAead(server, client, frame, frames);
+			System.out.println(mode + "," + frameSize + "," + plain + "," + perSession + "," + (server.encrypt(frame).length - frameSize));
+		}
+	}
+
+	/**
+	 * Measure the copy of the frame, which is what the session does with the frame in the plain mode
+	 *
+	 * @param frame the frame
+	 * @param frames the number of frames
+	 * @return the average time of one frame in nanoseconds
+	 */
+	private static long measurePlain(byte[] frame, int frames) {
+		long start = System.nanoTime();
+		for (int i = 0; i < frames; i++) {
+			byte[] copy = frame.clone();
+			sink += copy.length;
+		}
+		return (System.nanoTime() - start) / frames;
+	}
+
+	/**
+	 * Measure the authenticated cipher, the frame is encrypted on one side and decrypted on the other
+	 *
+	 * @param sender the cipher context of the sending side
+	 * @param receiver the cipher context of the receiving side
+	 * @param frame the frame to be encrypted
+	 * @param frames the number of frames
+	 * @return the average time of the encryption and decryption of one frame in nanoseconds
+	 * @throws GeneralSecurityException if the cipher failed
+	 */
+	private static long measureAead(AeadCipherContext sender, AeadCipherContext receiver, byte[] frame, int frames) throws GeneralSecurityException {
+		long start = System.nanoTime();
+		for (int i = 0; i < frames; i++) {
+			byte[] data = sender.encrypt(frame);
+			byte[] text = receiver.decrypt(data, data.length);
+			sink += text.length;
+		}
+		return (System.nanoTime() - start) / frames;
+	}
+
+	/**
+	 * Measure the static methods which set up the key and the cipher for every frame
+	 *
+	 * @param mode the encryption mode
+	 * @param frame the frame to be encrypted
+	 * @param key the encryption key
+	 * @param frames the number of frames
+	 * @return the average time of the encryption and decryption of one frame in nanoseconds
+	 * @throws GeneralSecurityException if the cipher failed
+	 */
+	private static long measurePerFrame(String mode, byte[] frame, byte[] key, int frames) throws GeneralSecurityException {
+		long start = System.nanoTime();
+		for (int i = 0; i < frames; i++) {
+			byte[] data;
+			byte[] text;
+			switch (mode) {
+			case "AES/CBC":
+				byte[] aesIv = randomInitVector(AES_IV_SIZE);
+				data = AESAlgorithm.encryptCBC(frame, key, aesIv);
+				text = AESAlgorithm.decryptCBC(data, data.length, key, aesIv);
+				break;
+			case "AES/ECB":
+				data = AESAlgorithm.encryptECB(frame, key);
+				text = AESAlgorithm.decryptECB(data, data.length, key);
+				break;
+			case "DES/CBC":
+				byte[] desIv = randomInitVector(DES_IV_SIZE);
+				data = DESedeAlgorithm.encryptCBC(frame, key, desIv);
+				text = DESedeAlgorithm.decryptCBC(data, data.length, key, desIv);
+				break;
+			default:
+				data = DESedeAlgorithm.encryptECB(frame, key);
+				text = DESedeAlgorithm.decryptECB(data, data.length, key);
+				break;
+			}
+			sink += text.length;
+		}
+		return (System.nanoTime() - start) / frames;
+	}
+
+	/**
+	 * Measure the cipher context created once for the session
+	 *
+	 * @param context the cipher context
+	 * @param frame the frame to be encrypted
+	 * @param frames the number of frames
+	 * @return the average time of the encryption and decryption of one frame in nanoseconds
+	 * @throws GeneralSecurityException if the cipher failed
+	 */
+	private static long measurePerSession(CipherContext context, byte[] frame, int frames) throws GeneralSecurityException {
+		long start = System.nanoTime();
+		for (int i = 0; i < frames; i++) {
+			byte[] iv = context.usesInitVector() ? context.nextInitVector() : null;
+			byte[] data = context.encrypt(frame, iv);
+			byte[] text = context.decrypt(data, data.length, iv);
+			sink += text.length;
+		}
+		return (System.nanoTime() - start) / frames;
+	}
+
+	/**
+	 * Create the cipher context of the encryption mode
+	 *
+	 * @param mode the encryption mode
+	 * @param key the encryption key
+	 * @return the cipher context
+	 * @throws GeneralSecurityException if the cipher is not available
+	 */
+	private static CipherContext createContext(String mode, byte[] key) throws GeneralSecurityException {
+		switch (mode) {
+		case "AES/CBC":
+			return AESAlgorithm.createCBCContext(key);
+		case "AES/ECB":
+			return AESAlgorithm.createECBContext(key);
+		case "DES/CBC":
+			return DESedeAlgorithm.createCBCContext(key);
+		default:
+			return DESedeAlgorithm.createECBContext(key);
+		}
+	}
+
+	/**
+	 * Return initialization vector generated by new Secure Random, as the session did for every frame before
+	 *
+	 * @param size the size of the initialization vector
+	 * @return the buffer with the initialization vector
+	 */
+	private static byte[] randomInitVector(int size) {
+		byte[] iv = new byte[size];
+		new SecureRandom().nextBytes(iv);
+		return iv;
+	}
+}
@@ -0,0 +1,71 @@
+package benchmark;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.PublicKey;
+
+import diffie_hellman.KeyAgreementAlgorithm;
+
+/**
+ * This benchmark measures how many key exchanges one core completes per second with every key agreement algorithm of AUTH Command.
+ * One key exchange consists of the key pair generation on both sides, the decoding of both public keys
+ * and the key agreement on both sides, the network is not involved.
+ *
+ * Usage: KeyExchangeBenchmark [seconds]
+ *
+ * @author Martin Holecek
+ *
+ */
+public class KeyExchangeBenchmark {
+
+	private static final int DEFAULT_SECONDS = 5;
+	private static final int WARMUP_DIVISOR = 5;
+
+	private static volatile int sink;
+
+	/**
+	 * Start point of the benchmark
+	 *
+	 * @param args the duration of the measurement of each algorithm in seconds
+	 * @throws GeneralSecurityException if the key exchange failed
+	 */
+	public static void main(String[] args) throws GeneralSecurityException {
+		int seconds = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SECONDS;
+
+		System.out.println("algorithm,publicKeyBytes,handshakesPerSecond,averageMicros");
+		for (KeyAgreementAlgorithm algorithm : KeyAgreementAlgorithm.values()) {
+			if (!algorithm.isSupported()) {
+				System.out.println("# " + algorithm + " is not supported by this JVM");
+				continue;
+			}
+			measure(algorithm, seconds * 1000L / WARMUP_DIVISOR);
+			long handshakes = measure(algorithm, seconds * 1000L);
+			int publicKeyBytes = algorithm.generateKeyPair().getPublic().getEncoded().length;
+			System.out.println(algorithm + "," + publicKeyBytes + "," + handshakes / seconds + "," + seconds * 1000000L / Math.max(handshakes, 1));
+		}
+	}
+
+	/**
+	 * Run key exchanges on the current thread until the time runs out
+	 *
+	 * @param algorithm the key agreement algorithm
+	 * @param millis the duration in milliseconds
+	 * @return the number of completed key exchanges
+	 * @throws GeneralSecurityException if the key exchange failed
+	 */
+	private static long measure(KeyAgreementAlgorithm algorithm, long millis) throws GeneralSecurityException {
+		long deadline = System.currentTimeMillis() + millis;
+		long handshakes = 0;
+		while (System.currentTimeMillis() < deadline) {
+			KeyPair client = algorithm.generateKeyPair();
+			KeyPair server = algorithm.generateKeyPair();
+			PublicKey clientPublic = algorithm.decodePublicKey(client.getPublic().getEncoded());
+			PublicKey serverPublic = algorithm.decodePublicKey(server.getPublic().getEncoded());
+			byte[] serverSecret = algorithm.generateSecret(server, clientPublic);
+			byte[] clientSecret = algorithm.generateSecret(client, serverPublic);
+			sink += serverSecret[0] ^ clientSecret[0];
+			handshakes++;
+		}
+		return handshakes;
+	}
+}
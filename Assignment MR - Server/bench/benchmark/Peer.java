@@ -0,0 +1,136 @@
+package benchmark;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+
+import algorithms.AESAlgorithm;
+import algorithms.AeadCipherContext;
+import algorithms.ChaCha20Algorithm;
+import algorithms.CipherContext;
+import algorithms.DESedeAlgorithm;
+import diffie_hellman.KeyExchange;
+import server.Frame;
+import server.FrameTransport;
+import server.Session;
+import server.Session.Encryption;
+
+/**
+ * This class is one side of the benchmark connection which encrypts the messages with the array methods of the cipher contexts,
+ * in the same frames as the session. On the client side it talks to the server session, which always acts as the server.
+ *
+ * @author Martin Holecek
+ *
+ */
+class Peer {
+
+	private Session session;
+	private FrameTransport transport;
+	private Encryption mode;
+	private boolean server;
+	private CipherContext context;
+	private AeadCipherContext aeadContext;
+
+	/**
+	 * Initialize one side of the connection
+	 *
+	 * @param session the session which runs the key exchange, its own encryption is not used
+	 * @param transport the transport of the session which carries the frames
+	 * @param mode the encryption mode
+	 * @param server true on the server side, false on the client side
+	 */
+	Peer(Session session, FrameTransport transport, Encryption mode, boolean server) {
+		this.session = session;
+		this.transport = transport;
+		this.mode = mode;
+		this.server = server;
+	}
+
+	/**
+	 * Agree the key with the other side and create the cipher context of the encryption mode
+	 *
+	 * @throws IOException if the stream has been closed or another I/O error
+	 * @throws GeneralSecurityException if the key exchange failed or the cipher is not available
+	 */
+	void agreeKey() throws IOException, GeneralSecurityException {
+		if (mode == Encryption.PLAIN) {
+			return;
+		}
+		KeyExchange keyExchange = new KeyExchange();
+		byte[] key = server ? keyExchange.initServer(session) : keyExchange.initClient(session);
+		switch (mode) {
+		case AES_CBC:
+			context = AESAlgorithm.createCBCContext(key);
+			break;
+		case AES_ECB:
+			context = AESAlgorithm.createECBContext(key);
+			break;
+		case DES_CBC:
+			context = DESedeAlgorithm.createCBCContext(key);
+			break;
+		case DES_ECB:
+			context = DESedeAlgorithm.createECBContext(key);
+			break;
+		case AES_GCM:
+			aeadContext = AESAlgorithm.createGCMContext(key, server);
+			break;
+		default:
+			aeadContext = ChaCha20Algorithm.createContext(key, server);
+			break;
+		}
+	}
+
+	/**
+	 * Encrypt the message with the array methods and send it
+	 *
+	 * @param message the message
+	 * @throws IOException if the stream has been closed or another I/O error
+	 * @throws GeneralSecurityException if the cipher failed
+	 */
+	void write(String message) throws IOException, GeneralSecurityException {
+		byte[] bytes = message.getBytes();
+		if (aeadContext != null) {
+			transport.writeFrame(aeadContext.encrypt(bytes));
+		} else if (context != null) {
+			byte[] initVector = context.usesInitVector() ? context.nextInitVector() : null;
+			byte[] data = context.encrypt(bytes, initVector);
+			if (initVector != null) {
+				transport.writeFrame(initVector);
+			}
+			transport.writeFrame(data);
+		} else {
+			transport.writeFrame(bytes);
+		}
+	}
+
+	/**
+	 * Send the frames written since the last flush
+	 *
+	 * @throws IOException if the stream has been closed or another I/O error
+	 */
+	void flush() throws IOException {
+		transport.flush();
+	}
+
+	/**
+	 * Read the message and decrypt it with the array methods
+	 *
+	 * @return the message
+	 * @throws IOException if the stream has been closed or another I/O error
+	 * @throws GeneralSecurityException if the cipher failed
+	 */
+	String read() throws IOException, GeneralSecurityException {
+		byte[] initVector = context != null && context.usesInitVector() ? session.readBytes() : null;
+		Frame data = transport.readFrame();
+		try {
+			if (aeadContext != null) {
+				return new String(aeadContext.decrypt(data.getData(), data.getLength()));
+			}
+			if (context != null) {
+				return new String(context.decrypt(data.getData(), data.getLength(), initVector));
+			}
+			return new String(data.getData(), 0, data.getLength());
+		} finally {
+			data.release();
+		}
+	}
+}
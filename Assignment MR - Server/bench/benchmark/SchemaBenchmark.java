@@ -0,0 +1,290 @@
+package benchmark;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.logging.Logger;
+
+import database.DBConnect;
+import database.MYSQL;
+import database.Migration;
+import database.MigrationRunner;
+import database.Migrations;
+
+/**
+ * This benchmark measures the queries of the commands on a synthetic mailbox database before the schema migrations
+ * and after each of them, including the optional clustered layout. The tables are created in the scratch database
+ * with the schema of SQL.sql and filled with the messages of all mailboxes interleaved, the way they arrive.
+ * The scratch database is dropped at the end, the database of the server is not changed.
+ *
+ * Usage: SchemaBenchmark [mailboxes] [messagesPerMailbox] [iterations]
+ *
+ * @author Martin Holecek
+ *
+ */
+public class SchemaBenchmark {
+
+	private static final int DEFAULT_MAILBOXES = 1000;
+	private static final int DEFAULT_MESSAGES = 200;
+	private static final int DEFAULT_ITERATIONS = 2000;
+	private static final int ROWS_PER_INSERT = 500;
+	private static final int UID_RANGE = 20;
+	private static final int BODY_LENGTH = 2000;
+	private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+	private static final long FIRST_DATE = 946684800000L;
+	private static final String[] FLAGS = {"SEEN", "UNSEEN", "DELETED", "RECENT"};
+	private static final String DATABASE = "mrp_benchmark";
+	private static final String CREATE_MAILBOXES =
+			"CREATE TABLE mailboxes (MailboxID int(11) NOT NULL AUTO_INCREMENT, " +
+			"Mailbox varchar(64) CHARACTER SET latin1 COLLATE latin1_bin NOT NULL, " +
+			"Domain varchar(64) CHARACTER SET latin1 COLLATE latin1_bin NOT NULL, Mailgroup varchar(256) DEFAULT NULL, " +
+			"Password varchar(64) NOT NULL, Token varchar(64) DEFAULT NULL, PRIMARY KEY (MailboxID)) " +
+			"ENGINE=InnoDB DEFAULT CHARSET=latin1";
+	private static final String CREATE_MESSAGES =
+			"CREATE TABLE messages (MessageID int(11) NOT NULL AUTO_INCREMENT, MailboxID int(11) NOT NULL, " +
+			"UID int(11) NOT NULL, Subject varchar(256) DEFAULT NULL, Sender varchar(256) NOT NULL, " +
+			"Recipient varchar(25600) NOT NULL, Date date NOT NULL, Mime longtext, Body text NOT NULL, " +
+			"Flag varchar(20) NOT NULL, PRIMARY KEY (MessageID), KEY FK_MAILBOX (MailboxID)) " +
+			"ENGINE=InnoDB DEFAULT CHARSET=latin1";
+	private static final String INSERT_MAILBOX =
+			"INSERT INTO mailboxes (Mailbox, Domain, Password) VALUES (?, 'benchmark.local', ?)";
+	private static final String INSERT_MESSAGES =
+			"INSERT INTO messages (MailboxID, UID, Subject, Sender, Recipient, Date, Body, Flag) VALUES ";
+	private static final String MESSAGE_VALUES = "(?, ?, ?, 'sender@benchmark.local', 'recipient@benchmark.local', ?, ?, ?)";
+
+	private static volatile long sink;
+
+	/**
+	 * Start point of the benchmark
+	 *
+	 * @param args the number of mailboxes, the number of messages in each mailbox and the number of executions of each query
+	 * @throws SQLException if the database connection failed
+	 */
+	public static void main(String[] args) throws SQLException {
+		int mailboxes = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_MAILBOXES;
+		int messages = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_MESSAGES;
+		int iterations = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_ITERATIONS;
+		Logger logger = Logger.getLogger(SchemaBenchmark.class.getName());
+
+		try (Connection connection = DBConnect.openConnection()) {
+			try (Statement statement = connection.createStatement()) {
+				statement.execute("DROP DATABASE IF EXISTS " + DATABASE);
+				statement.execute("CREATE DATABASE " + DATABASE);
+			}
+			connection.setCatalog(DATABASE);
+			try {
+				long start = System.currentTimeMillis();
+				populate(connection, mailboxes, messages);
+				System.out.println("# " + mailboxes + " mailboxes with " + messages + " messages populated in "
+						+ (System.currentTimeMillis() - start) + " ms");
+				System.out.println("schema,migrationMillis,countByFlagMicros,uidRangeMicros,dateSinceMicros,mailboxByNameMicros");
+				measure(connection, "baseline", 0, mailboxes, messages, iterations);
+				MigrationRunner runner = new MigrationRunner(connection, logger);
+				for (Migration migration : Migrations.ALL) {
+					start = System.currentTimeMillis();
+					runner.migrate(Collections.singletonList(migration), Collections.singleton(migration.getVersion()));
+					long migrationMillis = System.currentTimeMillis() - start;
+					measure(connection, "+" + migration.getDescription(), migrationMillis, mailboxes, messages, iterations);
+				}
+			} finally {
+				try (Statement statement = connection.createStatement()) {
+					statement.execute("DROP DATABASE " + DATABASE);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Create the tables with the schema of SQL.sql and insert the mailboxes and their messages, the messages
+	 * of all mailboxes are interleaved
+	 *
+	 * @param connection the connection to the scratch database
+	 * @param mailboxes the number of mailboxes
+	 * @param messages the number of messages in each mailbox
+	 * @throws SQLException if the database connection failed
+	 */
+	private static void populate(Connection connection, int mailboxes, int messages) throws SQLException {
+		try (Statement statement = connection.createStatement()) {
+			statement.execute(CREATE_MAILBOXES);
+			statement.execute(CREATE_MESSAGES);
+		}
+		connection.setAutoCommit(false);
+		try (PreparedStatement statement = connection.prepareStatement(INSERT_MAILBOX)) {
+			for (int i = 1; i <= mailboxes; i++) {
+				statement.setString(1, mailboxName(i));
+				statement.setString(2, String.format("%064X", i));
+				statement.addBatch();
+			}
+			statement.executeBatch();
+		}
+		StringBuilder sql = new StringBuilder(INSERT_MESSAGES);
+		for (int i = 0; i < ROWS_PER_INSERT; i++) {
+			sql.append(i == 0 ? "" : ", ").append(MESSAGE_VALUES);
+		}
+		Random random = new Random(1);
+		char[] body = new char[BODY_LENGTH];
+		Arrays.fill(body, 'x');
+		String text = new String(body);
+		long total = (long) mailboxes * messages;
+		int row = 0;
+		try (PreparedStatement statement = connection.prepareStatement(sql.toString())) {
+			for (long i = 0; i < total; i++) {
+				int index = row * 6;
+				statement.setInt(index + 1, (int) (i % mailboxes) + 1);
+				statement.setInt(index + 2, (int) (i / mailboxes) + 1);
+				statement.setString(index + 3, "Message " + i);
+				statement.setDate(index + 4, new Date(FIRST_DATE + (i / mailboxes) * DAY_MILLIS));
+				statement.setString(index + 5, text);
+				statement.setString(index + 6, FLAGS[random.nextInt(FLAGS.length)]);
+				if (++row == ROWS_PER_INSERT) {
+					statement.executeUpdate();
+					row = 0;
+				}
+			}
+		}
+		if (row > 0) {
+			insertRemaining(connection, total - row, row, mailboxes, text, random);
+		}
+		connection.commit();
+		connection.setAutoCommit(true);
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("ANALYZE TABLE mailboxes, messages");
+		}
+	}
+
+	/**
+	 * Insert the messages which do not fill the whole multi-row statement
+	 *
+	 * @param connection the connection to the scratch database
+	 * @param first the number of the first message
+	 * @param count the number of messages
+	 * @param mailboxes the number of mailboxes
+	 * @param text the body of the messages
+	 * @param random the random generator of the flags
+	 * @throws SQLException if the database connection failed
+	 */
+	private static void insertRemaining(Connection connection, long first, int count, int mailboxes, String text,
+			Random random) throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement(INSERT_MESSAGES + MESSAGE_VALUES)) {
+			for (long i = first; i < first + count; i++) {
+				statement.setInt(1, (int) (i % mailboxes) + 1);
+				statement.setInt(2, (int) (i / mailboxes) + 1);
+				statement.setString(3, "Message " + i);
+				statement.setDate(4, new Date(FIRST_DATE + (i / mailboxes) * DAY_MILLIS));
+				statement.setString(5, text);
+				statement.setString(6, FLAGS[random.nextInt(FLAGS.length)]);
+				statement.executeUpdate();
+			}
+		}
+	}
+
+	/**
+	 * Measure the average time of the queries used by SELECT, FETCH, SEARCH and LOGIN Command and print one CSV line
+	 *
+	 * @param connection the connection to the scratch database
+	 * @param schema the name of the schema state
+	 * @param migrationMillis the duration of the last migration
+	 * @param mailboxes the number of mailboxes
+	 * @param messages the number of messages in each mailbox
+	 * @param iterations the number of executions of each query
+	 * @throws SQLException if the database connection failed
+	 */
+	private static void measure(Connection connection, String schema, long migrationMillis, int mailboxes, int messages,
+			int iterations) throws SQLException {
+		Random random = new Random(2);
+		long countByFlag;
+		long uidRange;
+		long dateSince;
+		long mailboxByName;
+		try (PreparedStatement statement = connection.prepareStatement(MYSQL.QUERY_COUNT_MESSAGES)) {
+			countByFlag = run(statement, iterations, () -> {
+				statement.setInt(1, random.nextInt(mailboxes) + 1);
+				statement.setString(2, "UNSEEN");
+			});
+		}
+		try (PreparedStatement statement = connection.prepareStatement(MYSQL.QUERY_MESSAGES_UID_SEQUENCE)) {
+			uidRange = run(statement, iterations, () -> {
+				int first = random.nextInt(Math.max(messages - UID_RANGE, 1)) + 1;
+				statement.setInt(1, random.nextInt(mailboxes) + 1);
+				statement.setInt(2, first);
+				statement.setInt(3, first + UID_RANGE - 1);
+			});
+		}
+		try (PreparedStatement statement = connection.prepareStatement(MYSQL.QUERY_DATE_SINCE)) {
+			dateSince = run(statement, iterations, () -> {
+				statement.setInt(1, random.nextInt(mailboxes) + 1);
+				statement.setDate(2, new Date(FIRST_DATE + (messages - UID_RANGE) * DAY_MILLIS));
+			});
+		}
+		try (PreparedStatement statement = connection.prepareStatement(MYSQL.QUERY_MAILBOX_PASSWORD)) {
+			mailboxByName = run(statement, iterations, () -> statement.setString(1, mailboxName(random.nextInt(mailboxes) + 1)));
+		}
+		System.out.println("\"" + schema + "\"," + migrationMillis + "," + countByFlag + "," + uidRange + "," + dateSince
+				+ "," + mailboxByName);
+	}
+
+	/**
+	 * Execute the query with new parameters and read the whole result, after the warmup of one tenth of the iterations
+	 *
+	 * @param statement the prepared query
+	 * @param iterations the number of measured executions
+	 * @param parameters sets the parameters before each execution
+	 * @return the average time of one execution in microseconds
+	 * @throws SQLException if the database connection failed
+	 */
+	private static long run(PreparedStatement statement, int iterations, Parameters parameters) throws SQLException {
+		for (int i = 0; i < iterations / 10; i++) {
+			execute(statement, parameters);
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			execute(statement, parameters);
+		}
+		return (System.nanoTime() - start) / 1000 / Math.max(iterations, 1);
+	}
+
+	/**
+	 * Execute the query once and read all rows
+	 *
+	 * @param statement the prepared query
+	 * @param parameters sets the parameters of the query
+	 * @throws SQLException if the database connection failed
+	 */
+	private static void execute(PreparedStatement statement, Parameters parameters) throws SQLException {
+		parameters.set();
+		try (ResultSet resultSet = statement.executeQuery()) {
+			while (resultSet.next()) {
+				sink += resultSet.getInt(1);
+			}
+		}
+	}
+
+	/**
+	 * Returns the name of the synthetic mailbox
+	 *
+	 * @param mailboxID the ID of the mailbox
+	 * @return the name
+	 */
+	private static String mailboxName(int mailboxID) {
+		return "user" + mailboxID;
+	}
+
+	/**
+	 * This interface sets the parameters of the query before it is executed
+	 */
+	private interface Parameters {
+
+		/**
+		 * Set the parameters of the statement
+		 *
+		 * @throws SQLException if the parameter could not be set
+		 */
+		void set() throws SQLException;
+	}
+}
@@ -0,0 +1,124 @@
+package benchmark;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+import server.Server;
+import server.ServerConfig;
+import server.ServerConfig.Transport;
+
+/**
+ * This benchmark measures how many concurrent idle sessions one JVM sustains in the selected transport.
+ * The server is started inside the benchmark JVM, so its threads and heap can be measured, and the MySQL
+ * database must be reachable because every session opens the database connection.
+ *
+ * Usage: SessionCapacityBenchmark [thread|virtual|nio] [sessions] [step] [port]
+ *
+ * The operating system limit of open files must be at least twice the number of sessions.
+ *
+ * @author Martin Holecek
+ *
+ */
+public class SessionCapacityBenchmark {
+
+	private static final String HOST = "localhost";
+	private static final int DEFAULT_SESSIONS = 10000;
+	private static final int DEFAULT_STEP = 1000;
+	private static final int DEFAULT_PORT = 5100;
+	private static final int LATENCY_SAMPLES = 100;
+	private static final long STARTUP_DELAY = 2000;
+
+	/**
+	 * Start point of the benchmark
+	 *
+	 * @param args the transport, the number of sessions, the step and the port
+	 * @throws InterruptedException if the benchmark has been interrupted
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		Transport transport = args.length > 0 ? Transport.valueOf(args[0].toUpperCase()) : Transport.THREAD;
+		int sessions = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SESSIONS;
+		int step = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_STEP;
+		int port = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_PORT;
+
+		startServer(transport, port);
+
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		List<BenchmarkClient> clients = new ArrayList<>();
+
+		System.out.println("transport,sessions,platformThreads,heapUsedMB,noopLatencyMicros");
+		try {
+			while (clients.size() < sessions) {
+				int target = Math.min(sessions, clients.size() + step);
+				while (clients.size() < target) {
+					clients.add(openSession(port));
+				}
+				System.gc();
+				long heapUsed = memory.getHeapMemoryUsage().getUsed() / (1024 * 1024);
+				System.out.println(transport + "," + clients.size() + "," + threads.getThreadCount() + ","
+						+ heapUsed + "," + measureLatency(clients));
+			}
+		} catch (IOException e) {
+			System.out.println("# session " + (clients.size() + 1) + " failed: " + e.getMessage());
+		}
+		System.out.println("# " + transport + " sustained " + clients.size() + " sessions");
+		System.exit(0);
+	}
+
+	/**
+	 * Start the server in the daemon thread and wait until it listens on the port
+	 *
+	 * @param transport the transport of the server
+	 * @param port the port number
+	 * @throws InterruptedException if the benchmark has been interrupted
+	 */
+	private static void startServer(Transport transport, int port) throws InterruptedException {
+		ServerConfig config = ServerConfig.fromSystemProperties();
+		config.setTransport(transport);
+		Server server = new Server(port, false, config);
+		Thread serverThread = new Thread(server::startServer, "benchmark-server");
+		serverThread.setDaemon(true);
+		serverThread.start();
+		Thread.sleep(STARTUP_DELAY);
+	}
+
+	/**
+	 * Connect new client and wait for the greeting of the server
+	 *
+	 * @param port the port number
+	 * @return the connected client
+	 * @throws IOException if the connection failed or the server refused the session
+	 */
+	private static BenchmarkClient openSession(int port) throws IOException {
+		BenchmarkClient client = new BenchmarkClient(HOST, port);
+		String greeting = client.read();
+		if (!greeting.startsWith("OK")) {
+			client.close();
+			throw new IOException(greeting);
+		}
+		return client;
+	}
+
+	/**
+	 * Measure the average round trip of NOOP Command on the sample of the open sessions
+	 *
+	 * @param clients the open sessions
+	 * @return the average latency in microseconds
+	 * @throws IOException if the stream has been closed or another I/O error
+	 */
+	private static long measureLatency(List<BenchmarkClient> clients) throws IOException {
+		int samples = Math.min(LATENCY_SAMPLES, clients.size());
+		int stride = clients.size() / samples;
+		long total = 0;
+		for (int i = 0; i < samples; i++) {
+			long start = System.nanoTime();
+			clients.get(i * stride).execute("NOOP");
+			total += System.nanoTime() - start;
+		}
+		return total / samples / 1000;
+	}
+}
@@ -0,0 +1,134 @@
+package server;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * This class is the frame transport connected to the other transport of the same JVM, it is one end of the in-memory socket pair
+ * used by the benchmarks. Every committed frame is copied to the unbounded queue of the other end, so one thread can write
+ * the request on one end and read it on the other end without blocking. It lives in the server package of the bench
+ * source folder, because the frames are created by the package private constructor.
+ *
+ * @author Martin Holecek
+ *
+ */
+public class MemoryTransport implements FrameTransport {
+
+	private static final byte[] END_OF_STREAM = new byte[0];
+
+	private BlockingQueue<byte[]> input;
+	private BlockingQueue<byte[]> output;
+	private ByteBuffer staging;
+	private int maxFrameSize;
+
+	/**
+	 * Initialize one end of the pair
+	 *
+	 * @param input the queue of the frames received from the other end
+	 * @param output the queue of the frames sent to the other end
+	 * @param maxFrameSize the maximum size of the frame
+	 */
+	private MemoryTransport(BlockingQueue<byte[]> input, BlockingQueue<byte[]> output, int maxFrameSize) {
+		this.input = input;
+		this.output = output;
+		this.maxFrameSize = maxFrameSize;
+		staging = ByteBuffer.allocate(maxFrameSize);
+	}
+
+	/**
+	 * Create the pair of the connected transports
+	 *
+	 * @param config the configuration of the maximum frame size
+	 * @return the array with the client end and the server end
+	 */
+	public static MemoryTransport[] createPair(ServerConfig config) {
+		BlockingQueue<byte[]> clientToServer = new LinkedBlockingQueue<>();
+		BlockingQueue<byte[]> serverToClient = new LinkedBlockingQueue<>();
+		return new MemoryTransport[] {
+				new MemoryTransport(serverToClient, clientToServer, config.getMaxFrameSize()),
+				new MemoryTransport(clientToServer, serverToClient, config.getMaxFrameSize()) };
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void writeFrame(byte[] frame) throws IOException {
+		output.add(frame.clone());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public ByteBuffer reserveFrame(int maxLength) throws IOException {
+		if (staging.capacity() < maxLength) {
+			staging = ByteBuffer.allocate(maxLength);
+		}
+		staging.clear();
+		return staging;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void commitFrame(ByteBuffer buffer) throws IOException {
+		output.add(Arrays.copyOf(buffer.array(), buffer.position()));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void abortFrame(ByteBuffer buffer) {
+		// Frames are delivered on commit, the reserved buffer is simply reused
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void flush() throws IOException {
+		// Frames are delivered on commit
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Frame readFrame() throws IOException {
+		byte[] data;
+		try {
+			data = input.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the frame");
+		}
+		if (data == END_OF_STREAM) {
+			input.add(END_OF_STREAM);
+			throw new EOFException("Transport has been closed");
+		}
+		return new Frame(data, data.length, null);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean hasPendingFrame() throws IOException {
+		return !input.isEmpty();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getMaxFrameSize() {
+		return maxFrameSize;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void close() throws IOException {
+		output.add(END_OF_STREAM);
+	}
+}
@@ -18,6 +18,47 @@ import javax.crypto.spec.SecretKeySpec;
  */
 public class AESAlgorithm {
 
+	private static final int INITIAL_VECTOR_SIZE = 16;
+
+	/**
+	 * Returns the cipher context of the session encrypted with Cipher Block Chaining mode
+	 * 
+	 * @param key the encryption key, the first 16 bytes are used
+	 * @return the cipher context
+	 * @throws NoSuchPaddingException if transformation contains a padding scheme that is not available. 
+	 * @throws NoSuchAlgorithmException if transformation is null, empty, in an invalid format, or if a CipherSpi implementation for the specified algorithm is not available from the specified Provider object. 
+	 * @throws InvalidKeyException if the given key is inappropriate for initializing this cipher
+	 */
+	public static CipherContext createCBCContext(byte[] key) throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException {
+		return new CipherContext("AES/CBC/PKCS5Padding", new SecretKeySpec(key, 0, 16, "AES"), INITIAL_VECTOR_SIZE);
+	}
+
+	/**
+	 * Returns the cipher context of the session encrypted with Electronic CodeBook mode
+	 * 
+	 * @param key the encryption key, the first 16 bytes are used
+	 * @return the cipher context
+	 * @throws NoSuchPaddingException if transformation contains a padding scheme that is not available. 
+	 * @throws NoSuchAlgorithmException if transformation is null, empty, in an invalid format, or if a CipherSpi implementation for the specified algorithm is not available from the specified Provider object. 
+	 * @throws InvalidKeyException if the given key is inappropriate for initializing this cipher
+	 */
+	public static CipherContext createECBContext(byte[] key) throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException {
+		return new CipherContext("AES/ECB/PKCS5Padding", new SecretKeySpec(key, 0, 16, "AES"), 0);
+	}
+
+	/**
+	 * Returns the authenticated cipher context of the session encrypted with Galois/Counter mode
+	 * 
+	 * @param key the encryption key, the first 16 bytes are used
+	 * @param server true on the server side of the session, false on the client side
+	 * @return the cipher context
+	 * @throws NoSuchPaddingException if transformation contains a padding scheme that is not available. 
+	 * @throws NoSuchAlgorithmException if transformation is null, empty, in an invalid format, or if a CipherSpi implementation for the specified algorithm is not available from the specified Provider object. 
+	 */
+	public static AeadCipherContext createGCMContext(byte[] key, boolean server) throws NoSuchAlgorithmException, NoSuchPaddingException {
+		return new AeadCipherContext("AES/GCM/NoPadding", new SecretKeySpec(key, 0, 16, "AES"), server);
+	}
+
 	/**
 	 * Returns the cipher text encrypted with Cipher Block Chaining mode
 	 * 
@@ -32,12 +73,12 @@ public class AESAlgorithm {
 	 * @throws BadPaddingException if this cipher is in decryption mode, and (un)padding has been requested, but the decrypted data is not bounded by the appropriate padding bytes
 	 * @throws IllegalBlockSizeException if this cipher is a block cipher, no padding has been requested (only in encryption mode), and the total input length of the data processed by this cipher is not a multiple of block size; or if this encryption algorithm is unable to process the input data provided. 
 	 */
-	public static byte[] encryptCBC(String input, byte[] key, byte[] initVector) throws IllegalBlockSizeException, BadPaddingException, NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException, InvalidAlgorithmParameterException {		
+	public static byte[] encryptCBC(byte[] input, byte[] key, byte[] initVector) throws IllegalBlockSizeException, BadPaddingException, NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException, InvalidAlgorithmParameterException {		
 		SecretKeySpec skey = new SecretKeySpec(key, 0, 16, "AES");	
 		IvParameterSpec iv = new IvParameterSpec(initVector);
 		Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
 		cipher.init(Cipher.ENCRYPT_MODE, skey, iv);
-		byte[] cipherText = cipher.doFinal(input.getBytes());		
+		byte[] cipherText = cipher.doFinal(input);		
 		return cipherText;
 	}
 
@@ -45,9 +86,10 @@ public class AESAlgorithm {
 	 * Returns the decrypted text, Cipher Block Chaining mode
 	 * 
 	 * @param input the input buffer
+	 * @param length the number of bytes of the input buffer to be decrypted
 	 * @param key the encryption key, must be 16, 24 or 32 bit long
 	 * @param initVector the buffer with the initialization vector, must be 16 bytes long
-	 * @return decrypted cipher text
+	 * @return decrypted plain text
 	 * @throws NoSuchPaddingException if transformation contains a padding scheme that is not available. 
 	 * @throws NoSuchAlgorithmException if transformation is null, empty, in an invalid format, or if a CipherSpi implementation for the specified algorithm is not available from the specified Provider object. 
 	 * @throws InvalidAlgorithmParameterException if the given algorithm parameters are inappropriate for this cipher, or this cipher requires algorithm parameters and params is null, or the given algorithm parameters imply a cryptographic strength that would exceed the legal limits (as determined from the configured jurisdiction policy files). 
@@ -55,13 +97,13 @@ public class AESAlgorithm {
 	 * @throws BadPaddingException if this cipher is in decryption mode, and (un)padding has been requested, but the decrypted data is not bounded by the appropriate padding bytes 
 	 * @throws IllegalBlockSizeException if this cipher is a block cipher, no padding has been requested (only in encryption mode), and the total input length of the data processed by this cipher is not a multiple of block size; or if this encryption algorithm is unable to process the input data provided. 
 	 */
-	public static String decryptCBC(byte[] input, byte[] key, byte[] initVector) throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException, InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException {
+	public static byte[] decryptCBC(byte[] input, int length, byte[] key, byte[] initVector) throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException, InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException {
 		SecretKeySpec skey = new SecretKeySpec(key, 0, 16, "AES");	
 		IvParameterSpec iv = new IvParameterSpec(initVector);
 		Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
 		cipher.init(Cipher.DECRYPT_MODE, skey, iv);
-		byte[] plaintext = cipher.doFinal(input);		
-		return new String(plaintext);
+		byte[] plaintext = cipher.doFinal(input, 0, length);		
+		return plaintext;
 	}
 
 	/**
@@ -76,11 +118,11 @@ public class AESAlgorithm {
 	 * @throws BadPaddingException if this cipher is in decryption mode, and (un)padding has been requested, but the decrypted data is not bounded by the appropriate padding bytes
 	 * @throws IllegalBlockSizeException if this cipher is a block cipher, no padding has been requested (only in encryption mode), and the total input length of the data processed by this cipher is not a multiple of block size; or if this encryption algorithm is unable to process the input data provided. 
 	 */
-	public static byte[] encryptECB(String input, byte[] key) throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException, IllegalBlockSizeException, BadPaddingException {
+	public static byte[] encryptECB(byte[] input, byte[] key) throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException, IllegalBlockSizeException, BadPaddingException {
 		SecretKeySpec skey = new SecretKeySpec(key, 0, 16, "AES");	
 		Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
 		cipher.init(Cipher.ENCRYPT_MODE, skey);
-		byte[] cipherText = cipher.doFinal(input.getBytes());		
+		byte[] cipherText = cipher.doFinal(input);		
 		return cipherText;
 	}
 
@@ -88,20 +130,21 @@ public class AESAlgorithm {
 	 * Returns the decrypted text, Electronic CodeBook mode
 	 * 
 	 * @param input the input buffer
+	 * @param length the number of bytes of the input buffer to be decrypted
 	 * @param key the decryption key, must be 16, 24 or 32 bit long
-	 * @return decrypted cipher text
+	 * @return decrypted plain text
 	 * @throws InvalidKeyException if the given key is inappropriate for initializing this cipher, or requires algorithm parameters that cannot be determined from the given key, or if the given key has a keysize that exceeds the maximum allowable keysize (as determined from the configured jurisdiction policy files). 
 	 * @throws NoSuchPaddingException if transformation contains a padding scheme that is not available. 
 	 * @throws NoSuchAlgorithmException if transformation is null, empty, in an invalid format, or if a CipherSpi implementation for the specified algorithm is not available from the specified Provider object. 
 	 * @throws BadPaddingException if this cipher is in decryption mode, and (un)padding has been requested, but the decrypted data is not bounded by the appropriate padding bytes
 	 * @throws IllegalBlockSizeException if this cipher is a block cipher, no padding has been requested (only in encryption mode), and the total input length of the data processed by this cipher is not a multiple of block size; or if this encryption algorithm is unable to process the input data provided. 
 	 */
-	public static String decryptECB(byte[] input, byte[] key) throws InvalidKeyException, NoSuchAlgorithmException, NoSuchPaddingException, IllegalBlockSizeException, BadPaddingException {	
+	public static byte[] decryptECB(byte[] input, int length, byte[] key) throws InvalidKeyException, NoSuchAlgorithmException, NoSuchPaddingException, IllegalBlockSizeException, BadPaddingException {	
 		SecretKeySpec skey = new SecretKeySpec(key, 0, 16, "AES");			
 		Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
 		cipher.init(Cipher.DECRYPT_MODE, skey);
-		byte[] plaintext = cipher.doFinal(input);
-		return new String(plaintext);
+		byte[] plaintext = cipher.doFinal(input, 0, length);
+		return plaintext;
 	}
 
 	/**
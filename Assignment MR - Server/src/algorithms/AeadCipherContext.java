@@ -0,0 +1,337 @@
+package algorithms;
+
+import java.nio.ByteBuffer;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.AlgorithmParameterSpec;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+
+/**
+ * This class holds the authenticated cipher of one session. Every message is sent as one frame which starts
+ * with the 12 byte nonce followed by the cipher text and the authentication tag.
+ * The nonce is the 4 byte identifier of the sender followed by the 8 byte counter of the sent messages,
+ * so the nonce is never reused with the same key and no random numbers are needed.
+ * The receiver accepts only the nonces of the other side with the growing counter, which rejects replayed messages.
+ * A streamed message sends the nonce as its header frame and the cipher text in chunks, the tag is verified at the end.
+ * The buffer methods encrypt directly into the outbound buffer of the transport and reuse the nonce buffers, so they allocate no arrays.
+ * The instance is not thread safe. To encrypt in parallel, the counters are reserved in the order of sending and every thread
+ * encrypts with the given counter on its own copy of the context.
+ *
+ * @author Martin Holecek
+ *
+ */
+public class AeadCipherContext implements StreamingCipher {
+
+	/**
+	 * The size of the nonce at the beginning of every frame
+	 */
+	public static final int NONCE_SIZE = 12;
+
+	private static final int TAG_BITS = 128;
+	private static final int TAG_SIZE = TAG_BITS / 8;
+	private static final int SERVER_ID = 1;
+	private static final int CLIENT_ID = 2;
+
+	private String transformation;
+	private Key key;
+	private boolean gcm;
+	private Cipher encryptCipher;
+	private Cipher decryptCipher;
+	private int sendId;
+	private int receiveId;
+	private long sendCounter;
+	private long receiveCounter;
+	private long streamCounter;
+	private byte[] sendNonce;
+	private byte[] receiveNonce;
+
+	/**
+	 * Initialize authenticated cipher context
+	 *
+	 * @param transformation the name of the transformation, AES/GCM/NoPadding or ChaCha20-Poly1305
+	 * @param key the initialized secret key
+	 * @param server true on the server side of the session, false on the client side
+	 * @throws NoSuchAlgorithmException if the transformation is not available
+	 * @throws NoSuchPaddingException if transformation contains a padding scheme that is not available.
+	 */
+	public AeadCipherContext(String transformation, Key key, boolean server) throws NoSuchAlgorithmException, NoSuchPaddingException {
+		this.transformation = transformation;
+		this.key = key;
+		gcm = transformation.startsWith("AES/GCM");
+		encryptCipher = Cipher.getInstance(transformation);
+		decryptCipher = Cipher.getInstance(transformation);
+		sendId = server ? SERVER_ID : CLIENT_ID;
+		receiveId = server ? CLIENT_ID : SERVER_ID;
+		receiveCounter = -1;
+		sendNonce = new byte[NONCE_SIZE];
+		receiveNonce = new byte[NONCE_SIZE];
+	}
+
+	/**
+	 * Create the new context of the same side with the same transformation and key and its own ciphers, so another thread can use it
+	 *
+	 * @return the new authenticated cipher context
+	 * @throws NoSuchAlgorithmException if the transformation is not available
+	 * @throws NoSuchPaddingException if the padding scheme is not available
+	 */
+	public AeadCipherContext copy() throws NoSuchAlgorithmException, NoSuchPaddingException {
+		return new AeadCipherContext(transformation, key, sendId == SERVER_ID);
+	}
+
+	/**
+	 * Reserve the counters of the following sent messages, which are encrypted by {@link #encrypt(byte[], long)}
+	 *
+	 * @param count the number of the messages
+	 * @return the counter of the first message
+	 */
+	public long reserveCounters(int count) {
+		long first = sendCounter;
+		sendCounter += count;
+		return first;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public String getTransformation() {
+		return transformation;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean hasHeader() {
+		return true;
+	}
+
+	/**
+	 * Returns the frame with the next nonce and the encrypted and authenticated message
+	 *
+	 * @param input the buffer with the message
+	 * @return the new buffer with the frame
+	 * @throws InvalidKeyException if the given key is inappropriate for initializing this cipher
+	 * @throws InvalidAlgorithmParameterException if the nonce is not valid
+	 * @throws IllegalBlockSizeException if this encryption algorithm is unable to process the input data provided.
+	 * @throws BadPaddingException if the cipher failed to finish the encryption
+	 */
+	public byte[] encrypt(byte[] input) throws InvalidKeyException, InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException {
+		return encrypt(input, sendCounter++);
+	}
+
+	/**
+	 * Returns the frame with the nonce of the reserved counter and the encrypted and authenticated message
+	 *
+	 * @param input the buffer with the message
+	 * @param counter the counter reserved by {@link #reserveCounters(int)}
+	 * @return the new buffer with the frame
+	 * @throws InvalidKeyException if the given key is inappropriate for initializing this cipher
+	 * @throws InvalidAlgorithmParameterException if the nonce is not valid
+	 * @throws IllegalBlockSizeException if this encryption algorithm is unable to process the input data provided.
+	 * @throws BadPaddingException if the cipher failed to finish the encryption
+	 */
+	public byte[] encrypt(byte[] input, long counter) throws InvalidKeyException, InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException {
+		initEncryption(counter);
+		byte[] frame = new byte[NONCE_SIZE + encryptCipher.getOutputSize(input.length)];
+		System.arraycopy(sendNonce, 0, frame, 0, NONCE_SIZE);
+		try {
+			encryptCipher.doFinal(input, 0, input.length, frame, NONCE_SIZE);
+		} catch (ShortBufferException e) {
+			throw new IllegalBlockSizeException("Output buffer is too short: " + e.getMessage());
+		}
+		return frame;
+	}
+
+	/**
+	 * Returns the message of the frame after its nonce and authentication tag have been verified
+	 *
+	 * @param frame the buffer with the frame
+	 * @param length the number of bytes of the frame
+	 * @return decrypted plain text
+	 * @throws InvalidKeyException if the given key is inappropriate for initializing this cipher
+	 * @throws InvalidAlgorithmParameterException if the nonce is not valid
+	 * @throws IllegalBlockSizeException if the frame is shorter than the nonce and the authentication tag
+	 * @throws BadPaddingException if the nonce has not been sent by the other side, has been used before, or the authentication tag does not match
+	 */
+	public byte[] decrypt(byte[] frame, int length) throws InvalidKeyException, InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException {
+		if (length < NONCE_SIZE) {
+			throw new IllegalBlockSizeException("Frame is shorter than the nonce");
+		}
+		long counter = checkNonce(frame);
+		decryptCipher.init(Cipher.DECRYPT_MODE, key, parameters(frame));
+		byte[] plaintext = decryptCipher.doFinal(frame, NONCE_SIZE, length - NONCE_SIZE);
+		receiveCounter = counter;
+		return plaintext;
+	}
+
+	/**
+	 * Returns the maximum size of the frame
+	 *
+	 * @param inputLength the number of bytes of the plain text
+	 * @return the number of bytes of the nonce, the cipher text and the authentication tag
+	 */
+	public int getOutputSize(int inputLength) {
+		return NONCE_SIZE + inputLength + TAG_SIZE;
+	}
+
+	/**
+	 * Encrypt the remaining bytes of the input buffer into the output buffer, the next nonce is put to the output buffer first
+	 *
+	 * @param input the buffer with the message
+	 * @param output the buffer which receives the frame, at least {@link #getOutputSize(int)} bytes must remain
+	 * @return the number of bytes of the frame
+	 * @throws InvalidKeyException if the given key is inappropriate for initializing this cipher
+	 * @throws InvalidAlgorithmParameterException if the nonce is not valid
+	 * @throws IllegalBlockSizeException if this encryption algorithm is unable to process the input data provided or the output buffer is too short
+	 * @throws BadPaddingException if the cipher failed to finish the encryption
+	 */
+	public int encrypt(ByteBuffer input, ByteBuffer output) throws InvalidKeyException, InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException {
+		initEncryption(sendCounter++);
+		output.put(sendNonce);
+		try {
+			return NONCE_SIZE + encryptCipher.doFinal(input, output);
+		} catch (ShortBufferException e) {
+			throw new IllegalBlockSizeException("Output buffer is too short: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Decrypt the frame in the remaining bytes of the input buffer into the output buffer after its nonce and authentication tag have been verified
+	 *
+	 * @param frame the buffer with the frame
+	 * @param output the buffer which receives the message, at least as many bytes as the frame must remain
+	 * @return the number of bytes of the message
+	 * @throws InvalidKeyException if the given key is inappropriate for initializing this cipher
+	 * @throws InvalidAlgorithmParameterException if the nonce is not valid
+	 * @throws IllegalBlockSizeException if the frame is shorter than the nonce and the authentication tag or the output buffer is too short
+	 * @throws BadPaddingException if the nonce has not been sent by the other side, has been used before, or the authentication tag does not match
+	 */
+	public int decrypt(ByteBuffer frame, ByteBuffer output) throws InvalidKeyException, InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException {
+		if (frame.remaining() < NONCE_SIZE) {
+			throw new IllegalBlockSizeException("Frame is shorter than the nonce");
+		}
+		frame.get(receiveNonce);
+		long counter = checkNonce(receiveNonce);
+		decryptCipher.init(Cipher.DECRYPT_MODE, key, parameters(receiveNonce));
+		int length;
+		try {
+			length = decryptCipher.doFinal(frame, output);
+		} catch (ShortBufferException e) {
+			throw new IllegalBlockSizeException("Output buffer is too short: " + e.getMessage());
+		}
+		receiveCounter = counter;
+		return length;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public byte[] beginEncryption() throws InvalidKeyException, InvalidAlgorithmParameterException {
+		initEncryption(sendCounter++);
+		return sendNonce.clone();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public byte[] encryptChunk(byte[] input, int offset, int length) {
+		return nonNull(encryptCipher.update(input, offset, length));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public byte[] endEncryption() throws IllegalBlockSizeException, BadPaddingException {
+		return encryptCipher.doFinal();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void beginDecryption(byte[] header) throws InvalidKeyException, InvalidAlgorithmParameterException, BadPaddingException {
+		if (header == null || header.length != NONCE_SIZE) {
+			throw new AEADBadTagException("Header is not the nonce");
+		}
+		streamCounter = checkNonce(header);
+		decryptCipher.init(Cipher.DECRYPT_MODE, key, parameters(header));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public byte[] decryptChunk(byte[] input, int offset, int length) {
+		return nonNull(decryptCipher.update(input, offset, length));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public byte[] endDecryption() throws IllegalBlockSizeException, BadPaddingException {
+		byte[] plaintext = decryptCipher.doFinal();
+		receiveCounter = streamCounter;
+		return plaintext;
+	}
+
+	/**
+	 * Put the nonce of the counter to the send buffer and initialize the encryption cipher with it
+	 *
+	 * @param counter the counter of the sent message
+	 * @throws InvalidKeyException if the given key is inappropriate for initializing this cipher
+	 * @throws InvalidAlgorithmParameterException if the nonce is not valid
+	 */
+	private void initEncryption(long counter) throws InvalidKeyException, InvalidAlgorithmParameterException {
+		ByteBuffer.wrap(sendNonce).putInt(sendId).putLong(counter);
+		encryptCipher.init(Cipher.ENCRYPT_MODE, key, parameters(sendNonce));
+	}
+
+	/**
+	 * Check that the nonce has been sent by the other side and its counter is greater than the counter of the last message
+	 *
+	 * @param nonce the buffer which starts with the nonce
+	 * @return the counter of the nonce
+	 * @throws AEADBadTagException if the nonce has not been sent by the other side or has been used before
+	 */
+	private long checkNonce(byte[] nonce) throws AEADBadTagException {
+		ByteBuffer header = ByteBuffer.wrap(nonce, 0, NONCE_SIZE);
+		if (header.getInt() != receiveId) {
+			throw new AEADBadTagException("Nonce has not been sent by the other side");
+		}
+		long counter = header.getLong();
+		if (counter <= receiveCounter) {
+			throw new AEADBadTagException("Nonce has been used before");
+		}
+		return counter;
+	}
+
+	/**
+	 * Returns the given buffer, or the empty buffer if the cipher has not produced any output
+	 *
+	 * @param output the output of the cipher
+	 * @return the buffer, never null
+	 */
+	static byte[] nonNull(byte[] output) {
+		return output != null ? output : new byte[0];
+	}
+
+	/**
+	 * Returns the cipher parameters of the nonce
+	 *
+	 * @param nonce the buffer which starts with the nonce
+	 * @return the parameters of the cipher
+	 */
+	private AlgorithmParameterSpec parameters(byte[] nonce) {
+		if (gcm) {
+			return new GCMParameterSpec(TAG_BITS, nonce, 0, NONCE_SIZE);
+		}
+		return new IvParameterSpec(nonce, 0, NONCE_SIZE);
+	}
+}
@@ -0,0 +1,47 @@
+package algorithms;
+
+import java.security.NoSuchAlgorithmException;
+
+import javax.crypto.Cipher;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * This class provides the ChaCha20-Poly1305 authenticated cipher, which is fast on the processors without AES instructions.
+ * The cipher is looked up by its name, so it is available only when the JVM supports it (Java 11 or newer).
+ *
+ * @author Martin Holecek
+ *
+ */
+public class ChaCha20Algorithm {
+
+	private static final String TRANSFORMATION = "ChaCha20-Poly1305";
+	private static final int KEY_SIZE = 32;
+
+	/**
+	 * Check if the running JVM supports ChaCha20-Poly1305
+	 *
+	 * @return true if the cipher is available, false otherwise
+	 */
+	public static boolean isSupported() {
+		try {
+			Cipher.getInstance(TRANSFORMATION);
+			return true;
+		} catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Returns the authenticated cipher context of the session
+	 *
+	 * @param key the encryption key, the first 32 bytes are used
+	 * @param server true on the server side of the session, false on the client side
+	 * @return the cipher context
+	 * @throws NoSuchPaddingException if transformation contains a padding scheme that is not available.
+	 * @throws NoSuchAlgorithmException if the running JVM does not support ChaCha20-Poly1305
+	 */
+	public static AeadCipherContext createContext(byte[] key, boolean server) throws NoSuchAlgorithmException, NoSuchPaddingException {
+		return new AeadCipherContext(TRANSFORMATION, new SecretKeySpec(key, 0, KEY_SIZE, "ChaCha20"), server);
+	}
+}
@@ -0,0 +1,280 @@
+package algorithms;
+
+import java.nio.ByteBuffer;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.IvParameterSpec;
+
+/**
+ * This class holds the cipher objects of one session, so the key is derived and the ciphers are created only once
+ * when the encryption is established. In the Electronic CodeBook mode the ciphers are initialized once and reused
+ * for every frame, in the Cipher Block Chaining mode each frame only initializes the cipher with its own IV.
+ * A streamed message in the Cipher Block Chaining mode sends the IV as its header frame.
+ * The buffer methods encrypt directly into the outbound buffer of the transport and reuse the IV buffer, so they allocate no arrays.
+ * The instance is not thread safe.
+ *
+ * @author Martin Holecek
+ *
+ */
+public class CipherContext implements StreamingCipher {
+
+	private String transformation;
+	private Key key;
+	private int ivSize;
+	private Cipher encryptCipher;
+	private Cipher decryptCipher;
+	private SecureRandom random;
+	private byte[] initVector;
+
+	/**
+	 * Initialize cipher context
+	 *
+	 * @param transformation the name of the transformation, for example AES/CBC/PKCS5Padding
+	 * @param key the initialized secret key
+	 * @param ivSize the size of the initialization vector in bytes, zero for the modes without IV
+	 * @throws NoSuchAlgorithmException if transformation is null, empty, in an invalid format, or if a CipherSpi implementation for the specified algorithm is not available from the specified Provider object.
+	 * @throws NoSuchPaddingException if transformation contains a padding scheme that is not available.
+	 * @throws InvalidKeyException if the given key is inappropriate for initializing this cipher
+	 */
+	public CipherContext(String transformation, Key key, int ivSize) throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException {
+		this.transformation = transformation;
+		this.key = key;
+		this.ivSize = ivSize;
+		encryptCipher = Cipher.getInstance(transformation);
+		decryptCipher = Cipher.getInstance(transformation);
+		if (ivSize == 0) {
+			encryptCipher.init(Cipher.ENCRYPT_MODE, key);
+			decryptCipher.init(Cipher.DECRYPT_MODE, key);
+		} else {
+			random = new SecureRandom();
+			initVector = new byte[ivSize];
+		}
+	}
+
+	/**
+	 * Create the new context with the same transformation and key and its own ciphers, so another thread can use it
+	 *
+	 * @return the new cipher context
+	 * @throws NoSuchAlgorithmException if the transformation is not available
+	 * @throws NoSuchPaddingException if the padding scheme is not available
+	 * @throws InvalidKeyException if the key is inappropriate for initializing the cipher
+	 */
+	public CipherContext copy() throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException {
+		return new CipherContext(transformation, key, ivSize);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public String getTransformation() {
+		return transformation;
+	}
+
+	/**
+	 * Check if every frame is encrypted with its own initialization vector
+	 *
+	 * @return true for the Cipher Block Chaining mode, false otherwise
+	 */
+	public boolean usesInitVector() {
+		return ivSize > 0;
+	}
+
+	/**
+	 * Return randomly generated initialization vector (IV) by using the Secure Random of the session
+	 *
+	 * @return the buffer with the initialization vector
+	 */
+	public byte[] nextInitVector() {
+		byte[] iv = new byte[ivSize];
+		random.nextBytes(iv);
+		return iv;
+	}
+
+	/**
+	 * Returns the size of the initialization vector
+	 *
+	 * @return the size in bytes, zero for the modes without IV
+	 */
+	public int getInitVectorSize() {
+		return ivSize;
+	}
+
+	/**
+	 * Generate the initialization vector of the next frame, initialize the encryption cipher with it and put it to the buffer
+	 *
+	 * @param output the buffer which receives the initialization vector
+	 * @throws InvalidKeyException if the given key is inappropriate for initializing this cipher
+	 * @throws InvalidAlgorithmParameterException if the initialization vector is not valid
+	 */
+	public void writeInitVector(ByteBuffer output) throws InvalidKeyException, InvalidAlgorithmParameterException {
+		random.nextBytes(initVector);
+		encryptCipher.init(Cipher.ENCRYPT_MODE, key, new IvParameterSpec(initVector));
+		output.put(initVector);
+	}
+
+	/**
+	 * Returns the maximum size of the cipher text, in the Cipher Block Chaining mode the initialization vector must be written first
+	 *
+	 * @param inputLength the number of bytes of the plain text
+	 * @return the maximum number of bytes of the cipher text
+	 */
+	public int getOutputSize(int inputLength) {
+		return encryptCipher.getOutputSize(inputLength);
+	}
+
+	/**
+	 * Encrypt the remaining bytes of the input buffer into the output buffer, in the Cipher Block Chaining mode
+	 * the initialization vector must be written first
+	 *
+	 * @param input the buffer with the plain text
+	 * @param output the buffer which receives the cipher text, at least {@link #getOutputSize(int)} bytes must remain
+	 * @return the number of bytes of the cipher text
+	 * @throws IllegalBlockSizeException if this encryption algorithm is unable to process the input data provided or the output buffer is too short
+	 * @throws BadPaddingException if the data is not bounded by the appropriate padding bytes
+	 */
+	public int encrypt(ByteBuffer input, ByteBuffer output) throws IllegalBlockSizeException, BadPaddingException {
+		try {
+			// Only the last partial block goes to doFinal, which copies its input to append the padding
+			int limit = input.limit();
+			input.limit(limit - input.remaining() % encryptCipher.getBlockSize());
+			int length = encryptCipher.update(input, output);
+			input.limit(limit);
+			return length + encryptCipher.doFinal(input, output);
+		} catch (ShortBufferException e) {
+			throw new IllegalBlockSizeException("Output buffer is too short: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Decrypt the remaining bytes of the input buffer into the output buffer
+	 *
+	 * @param input the buffer with the cipher text
+	 * @param output the buffer which receives the plain text, at least as many bytes as the cipher text must remain
+	 * @param initVector the buffer which starts with the initialization vector, null for the modes without IV
+	 * @return the number of bytes of the plain text
+	 * @throws InvalidKeyException if the given key is inappropriate for initializing this cipher
+	 * @throws InvalidAlgorithmParameterException if the initialization vector is not valid
+	 * @throws IllegalBlockSizeException if the total input length is not a multiple of block size or the output buffer is too short
+	 * @throws BadPaddingException if the decrypted data is not bounded by the appropriate padding bytes
+	 */
+	public int decrypt(ByteBuffer input, ByteBuffer output, byte[] initVector) throws InvalidKeyException, InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException {
+		if (initVector != null) {
+			decryptCipher.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(initVector, 0, ivSize));
+		}
+		try {
+			// Only the last block goes to doFinal, which decrypts into the new array to remove the padding
+			int limit = input.limit();
+			input.limit(Math.max(input.position(), limit - decryptCipher.getBlockSize()));
+			int length = decryptCipher.update(input, output);
+			input.limit(limit);
+			return length + decryptCipher.doFinal(input, output);
+		} catch (ShortBufferException e) {
+			throw new IllegalBlockSizeException("Output buffer is too short: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Returns the cipher text
+	 *
+	 * @param input the input buffer
+	 * @param initVector the buffer with the initialization vector, null for the modes without IV
+	 * @return encrypted cipher text
+	 * @throws InvalidKeyException if the given key is inappropriate for initializing this cipher
+	 * @throws InvalidAlgorithmParameterException if the initialization vector is not valid
+	 * @throws IllegalBlockSizeException if this encryption algorithm is unable to process the input data provided.
+	 * @throws BadPaddingException if the data is not bounded by the appropriate padding bytes
+	 */
+	public byte[] encrypt(byte[] input, byte[] initVector) throws InvalidKeyException, InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException {
+		if (initVector != null) {
+			encryptCipher.init(Cipher.ENCRYPT_MODE, key, new IvParameterSpec(initVector));
+		}
+		return encryptCipher.doFinal(input);
+	}
+
+	/**
+	 * Returns the decrypted text
+	 *
+	 * @param input the input buffer
+	 * @param length the number of bytes of the input buffer to be decrypted
+	 * @param initVector the buffer with the initialization vector, null for the modes without IV
+	 * @return decrypted plain text
+	 * @throws InvalidKeyException if the given key is inappropriate for initializing this cipher
+	 * @throws InvalidAlgorithmParameterException if the initialization vector is not valid
+	 * @throws IllegalBlockSizeException if the total input length is not a multiple of block size
+	 * @throws BadPaddingException if the decrypted data is not bounded by the appropriate padding bytes
+	 */
+	public byte[] decrypt(byte[] input, int length, byte[] initVector) throws InvalidKeyException, InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException {
+		if (initVector != null) {
+			decryptCipher.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(initVector));
+		}
+		return decryptCipher.doFinal(input, 0, length);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean hasHeader() {
+		return usesInitVector();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public byte[] beginEncryption() throws InvalidKeyException, InvalidAlgorithmParameterException {
+		if (!usesInitVector()) {
+			return null;
+		}
+		byte[] initVector = nextInitVector();
+		encryptCipher.init(Cipher.ENCRYPT_MODE, key, new IvParameterSpec(initVector));
+		return initVector;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public byte[] encryptChunk(byte[] input, int offset, int length) {
+		return AeadCipherContext.nonNull(encryptCipher.update(input, offset, length));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public byte[] endEncryption() throws IllegalBlockSizeException, BadPaddingException {
+		return encryptCipher.doFinal();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void beginDecryption(byte[] header) throws InvalidKeyException, InvalidAlgorithmParameterException {
+		if (usesInitVector()) {
+			if (header == null || header.length != ivSize) {
+				throw new InvalidAlgorithmParameterException("Header is not the initialization vector");
+			}
+			decryptCipher.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(header));
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public byte[] decryptChunk(byte[] input, int offset, int length) {
+		return AeadCipherContext.nonNull(decryptCipher.update(input, offset, length));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public byte[] endDecryption() throws IllegalBlockSizeException, BadPaddingException {
+		return decryptCipher.doFinal();
+	}
+}
@@ -20,7 +20,37 @@ import javax.crypto.spec.IvParameterSpec;
  *
  */
 public class DESedeAlgorithm {
+
+	private static final int INITIAL_VECTOR_SIZE = 8;
 	
+	/**
+	 * Returns the cipher context of the session encrypted with Cipher Block Chaining mode
+	 * 
+	 * @param key the encryption key, the first 24 bytes are used
+	 * @return the cipher context
+	 * @throws NoSuchPaddingException if transformation contains a padding scheme that is not available. 
+	 * @throws NoSuchAlgorithmException if transformation is null, empty, in an invalid format, or if a CipherSpi implementation for the specified algorithm is not available from the specified Provider object. 
+	 * @throws InvalidKeyException if the given key is inappropriate for initializing this cipher
+	 * @throws InvalidKeySpecException if the given key specification is inappropriate for this secret-key factory to produce a secret key.
+	 */
+	public static CipherContext createCBCContext(byte[] key) throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException, InvalidKeySpecException {
+		return new CipherContext("DESede/CBC/PKCS5Padding", generateKey(key), INITIAL_VECTOR_SIZE);
+	}
+
+	/**
+	 * Returns the cipher context of the session encrypted with Electronic CodeBook mode
+	 * 
+	 * @param key the encryption key, the first 24 bytes are used
+	 * @return the cipher context
+	 * @throws NoSuchPaddingException if transformation contains a padding scheme that is not available. 
+	 * @throws NoSuchAlgorithmException if transformation is null, empty, in an invalid format, or if a CipherSpi implementation for the specified algorithm is not available from the specified Provider object. 
+	 * @throws InvalidKeyException if the given key is inappropriate for initializing this cipher
+	 * @throws InvalidKeySpecException if the given key specification is inappropriate for this secret-key factory to produce a secret key.
+	 */
+	public static CipherContext createECBContext(byte[] key) throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException, InvalidKeySpecException {
+		return new CipherContext("DESede/ECB/PKCS5Padding", generateKey(key), 0);
+	}
+
 	/**
 	 * Returns the cipher text encrypted with Cipher Block Chaining mode
 	 * 
@@ -37,14 +67,14 @@ public class DESedeAlgorithm {
 	 * @throws IllegalBlockSizeException if this cipher is a block cipher, no padding has been requested (only in encryption mode), and the total input length of the data processed by this cipher is not a multiple of block size; or if this encryption algorithm is unable to process the input data provided. 
 	 
 	 */
-	public static byte[] encryptCBC(String input, byte[] key, byte[] initVector) throws InvalidKeyException, NoSuchAlgorithmException, InvalidKeySpecException, NoSuchPaddingException, InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException {
+	public static byte[] encryptCBC(byte[] input, byte[] key, byte[] initVector) throws InvalidKeyException, NoSuchAlgorithmException, InvalidKeySpecException, NoSuchPaddingException, InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException {
 		DESedeKeySpec spec = new DESedeKeySpec(key);
 		SecretKeyFactory keyFactory = SecretKeyFactory.getInstance("desede");
 		Key deskey = keyFactory.generateSecret(spec);
 		IvParameterSpec iv = new IvParameterSpec(initVector);
 		Cipher cipher = Cipher.getInstance("DESede/CBC/PKCS5Padding");
 		cipher.init(Cipher.ENCRYPT_MODE, deskey, iv);
-		byte[] cipherText = cipher.doFinal(input.getBytes());
+		byte[] cipherText = cipher.doFinal(input);
 		return cipherText;
 	}
 
@@ -52,9 +82,10 @@ public class DESedeAlgorithm {
 	 * Returns the decrypted text, Cipher Block Chaining mode
 	 * 
 	 * @param input the input buffer
+	 * @param length the number of bytes of the input buffer to be decrypted
 	 * @param key the decryption key
 	 * @param initVector the buffer with the initialization vector
-	 * @return decrypted cipher text
+	 * @return decrypted plain text
 	 * @throws InvalidKeySpecException if the given key specification is inappropriate for this secret-key factory to produce a secret key.
 	 * @throws NoSuchPaddingException if transformation contains a padding scheme that is not available. 
 	 * @throws NoSuchAlgorithmException if transformation is null, empty, in an invalid format, or if a CipherSpi implementation for the specified algorithm is not available from the specified Provider object. 
@@ -64,15 +95,15 @@ public class DESedeAlgorithm {
 	 * @throws IllegalBlockSizeException if this cipher is a block cipher, no padding has been requested (only in encryption mode), and the total input length of the data processed by this cipher is not a multiple of block size; or if this encryption algorithm is unable to process the input data provided. 
 	 
 	 */
-	public static String decryptCBC(byte[] input, byte[] key, byte[] initVector) throws InvalidKeyException, NoSuchAlgorithmException, InvalidKeySpecException, NoSuchPaddingException, InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException {
+	public static byte[] decryptCBC(byte[] input, int length, byte[] key, byte[] initVector) throws InvalidKeyException, NoSuchAlgorithmException, InvalidKeySpecException, NoSuchPaddingException, InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException {
 		DESedeKeySpec spec = new DESedeKeySpec(key);
 		SecretKeyFactory keyFactory = SecretKeyFactory.getInstance("desede");
 		Key deskey = keyFactory.generateSecret(spec);
 		IvParameterSpec iv = new IvParameterSpec(initVector);
 		Cipher cipher = Cipher.getInstance("DESede/CBC/PKCS5Padding");
 		cipher.init(Cipher.DECRYPT_MODE, deskey, iv);
-		byte[] plaintext = cipher.doFinal(input);		
-		return new String(plaintext);
+		byte[] plaintext = cipher.doFinal(input, 0, length);		
+		return plaintext;
 	}
 
 	/**
@@ -89,13 +120,13 @@ public class DESedeAlgorithm {
 	 * @throws IllegalBlockSizeException if this cipher is a block cipher, no padding has been requested (only in encryption mode), and the total input length of the data processed by this cipher is not a multiple of block size; or if this encryption algorithm is unable to process the input data provided. 
 	 
 	 */
-	public static byte[] encryptECB(String input, byte[] key) throws InvalidKeyException, NoSuchAlgorithmException, InvalidKeySpecException, NoSuchPaddingException, IllegalBlockSizeException, BadPaddingException {
+	public static byte[] encryptECB(byte[] input, byte[] key) throws InvalidKeyException, NoSuchAlgorithmException, InvalidKeySpecException, NoSuchPaddingException, IllegalBlockSizeException, BadPaddingException {
 		DESedeKeySpec spec = new DESedeKeySpec(key);
 		SecretKeyFactory keyFactory = SecretKeyFactory.getInstance("desede");
 		Key deskey = keyFactory.generateSecret(spec);
 		Cipher cipher = Cipher.getInstance("DESede/ECB/PKCS5Padding");
 		cipher.init(Cipher.ENCRYPT_MODE, deskey);
-		byte[] cipherText = cipher.doFinal(input.getBytes());
+		byte[] cipherText = cipher.doFinal(input);
 
 		return cipherText;
 	}
@@ -104,8 +135,9 @@ public class DESedeAlgorithm {
 	 * Returns the decrypted text, Electronic CodeBook mode
 	 * 
 	 * @param input the input buffer
+	 * @param length the number of bytes of the input buffer to be decrypted
 	 * @param key the decryption key
-	 * @return decrypted cipher text
+	 * @return decrypted plain text
 	 * @throws InvalidKeySpecException if the given key specification is inappropriate for this secret-key factory to produce a secret key.
 	 * @throws InvalidKeyException if the given key is inappropriate for initializing this cipher, or requires algorithm parameters that cannot be determined from the given key, or if the given key has a keysize that exceeds the maximum allowable keysize (as determined from the configured jurisdiction policy files). 
 	 * @throws NoSuchPaddingException if transformation contains a padding scheme that is not available. 
@@ -113,14 +145,29 @@ public class DESedeAlgorithm {
 	 * @throws BadPaddingException if this cipher is in decryption mode, and (un)padding has been requested, but the decrypted data is not bounded by the appropriate padding bytes
 	 * @throws IllegalBlockSizeException if this cipher is a block cipher, no padding has been requested (only in encryption mode), and the total input length of the data processed by this cipher is not a multiple of block size; or if this encryption algorithm is unable to process the input data provided. 
 	*/
-	public static String decryptECB(byte[] input, byte[] key) throws InvalidKeyException, NoSuchAlgorithmException,  NoSuchPaddingException, IllegalBlockSizeException, BadPaddingException, InvalidKeySpecException {
+	public static byte[] decryptECB(byte[] input, int length, byte[] key) throws InvalidKeyException, NoSuchAlgorithmException,  NoSuchPaddingException, IllegalBlockSizeException, BadPaddingException, InvalidKeySpecException {
 		DESedeKeySpec spec = new DESedeKeySpec(key);
 		SecretKeyFactory keyFactory = SecretKeyFactory.getInstance("desede");
 		Key deskey = keyFactory.generateSecret(spec);
 		Cipher cipher = Cipher.getInstance("DESede/ECB/PKCS5Padding");
 		cipher.init(Cipher.DECRYPT_MODE, deskey);
-		byte[] plaintext = cipher.doFinal(input);	
-		return new String(plaintext);
+		byte[] plaintext = cipher.doFinal(input, 0, length);	
+		return plaintext;
+	}
+
+	/**
+	 * Returns the Triple DES secret key generated from the raw key
+	 * 
+	 * @param key the raw key, the first 24 bytes are used
+	 * @return the secret key
+	 * @throws InvalidKeyException if the given key is shorter than 24 bytes
+	 * @throws NoSuchAlgorithmException if no Provider supports a SecretKeyFactorySpi implementation for Triple DES
+	 * @throws InvalidKeySpecException if the given key specification is inappropriate for this secret-key factory to produce a secret key.
+	 */
+	private static Key generateKey(byte[] key) throws InvalidKeyException, NoSuchAlgorithmException, InvalidKeySpecException {
+		DESedeKeySpec spec = new DESedeKeySpec(key);
+		SecretKeyFactory keyFactory = SecretKeyFactory.getInstance("desede");
+		return keyFactory.generateSecret(spec);
 	}
 
 	/**
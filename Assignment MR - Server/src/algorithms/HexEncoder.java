@@ -0,0 +1,44 @@
+package algorithms;
+
+/**
+ * This class converts the bytes to the string of upper case hexadecimal digits by looking up each half of the byte in the table
+ *
+ * @author Martin Holecek
+ *
+ */
+public class HexEncoder {
+
+	private static final char[] DIGITS = "0123456789ABCDEF".toCharArray();
+
+	/**
+	 * Convert all bytes to two hexadecimal digits each
+	 *
+	 * @param input the array of bytes
+	 * @return the string object with twice as many digits as the bytes
+	 */
+	public static String encode(byte[] input) {
+		return encode(input, input.length * 2);
+	}
+
+	/**
+	 * Convert the bytes as one unsigned number, the leading zeros are left out up to the minimum number of digits,
+	 * so the result is the same as of String.format with the %0<minDigits>X pattern and the positive BigInteger
+	 *
+	 * @param input the array of bytes, the most significant byte first
+	 * @param minDigits the minimum number of digits of the result
+	 * @return the string object of the hexadecimal digits
+	 */
+	public static String encode(byte[] input, int minDigits) {
+		char[] digits = new char[input.length * 2];
+		for (int i = 0; i < input.length; i++) {
+			digits[i * 2] = DIGITS[(input[i] >> 4) & 0x0F];
+			digits[i * 2 + 1] = DIGITS[input[i] & 0x0F];
+		}
+		int start = 0;
+		int maxStart = Math.max(digits.length - minDigits, 0);
+		while (start < maxStart && digits[start] == '0') {
+			start++;
+		}
+		return new String(digits, start, digits.length - start);
+	}
+}
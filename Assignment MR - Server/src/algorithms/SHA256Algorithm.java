@@ -1,6 +1,5 @@
 package algorithms;
 
-import java.math.BigInteger;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
@@ -11,6 +10,14 @@ import java.security.NoSuchAlgorithmException;
  *
  */
 public class SHA256Algorithm {
+
+	/**
+	 * The minimum number of digits of the hash, the hashes stored in the database were formatted without the leading zeros above it
+	 */
+	private static final int MIN_HEX_DIGITS = 32;
+
+	private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(SHA256Algorithm::createDigest);
+
 	/**
 	 * Completes the hash computation and converts hash of bytes to the HEX string object
 	 * 
@@ -18,15 +25,24 @@ public class SHA256Algorithm {
 	 * @return the string object of the resulting hash value.
 	 */
 	public static String hash(byte[] input){
-		String output = null;
+		MessageDigest sha = DIGEST.get();
+		if (sha == null) {
+			return null;
+		}
+		return HexEncoder.encode(sha.digest(input), MIN_HEX_DIGITS);
+	}
+
+	/**
+	 * Create the digest reused by every hash of the current thread, the digest is reset after each hash
+	 * 
+	 * @return the digest, or null if SHA-256 is not available
+	 */
+	private static MessageDigest createDigest() {
 		try {
-			MessageDigest sha = MessageDigest.getInstance("SHA-256");
-			sha.update(input);
-			byte[] hash = sha.digest();
-			output = String.format("%032X", new BigInteger(1, hash));
+			return MessageDigest.getInstance("SHA-256");
 		} catch (NoSuchAlgorithmException e) {
 			e.printStackTrace();
+			return null;
 		}
-		return output;
 	}
 }
@@ -0,0 +1,89 @@
+package algorithms;
+
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.IllegalBlockSizeException;
+
+/**
+ * This interface is implemented by the cipher contexts which can encrypt and decrypt one message in chunks,
+ * so a large message is never held in memory twice and its first chunks can be sent before the last ones are encrypted.
+ * The message starts with the optional header (the initialization vector or the nonce) sent as a separate frame.
+ *
+ * @author Martin Holecek
+ *
+ */
+public interface StreamingCipher {
+
+	/**
+	 * Returns the name of the transformation
+	 *
+	 * @return the transformation, for example AES/CBC/PKCS5Padding
+	 */
+	String getTransformation();
+
+	/**
+	 * Check if every message starts with the header frame
+	 *
+	 * @return true if the message starts with the initialization vector or the nonce, false otherwise
+	 */
+	boolean hasHeader();
+
+	/**
+	 * Start the encryption of the new message
+	 *
+	 * @return the header to be sent before the first chunk, or null if the cipher has no header
+	 * @throws InvalidKeyException if the key is inappropriate for initializing the cipher
+	 * @throws InvalidAlgorithmParameterException if the initialization vector or the nonce is not valid
+	 */
+	byte[] beginEncryption() throws InvalidKeyException, InvalidAlgorithmParameterException;
+
+	/**
+	 * Encrypt the next chunk of the message
+	 *
+	 * @param input the buffer with the chunk
+	 * @param offset the position of the chunk in the buffer
+	 * @param length the number of bytes of the chunk
+	 * @return the encrypted bytes which are ready, may be empty
+	 */
+	byte[] encryptChunk(byte[] input, int offset, int length);
+
+	/**
+	 * Finish the encryption of the message
+	 *
+	 * @return the last encrypted bytes of the message, may be empty
+	 * @throws IllegalBlockSizeException if the cipher is unable to process the data provided
+	 * @throws BadPaddingException if the cipher failed to finish the encryption
+	 */
+	byte[] endEncryption() throws IllegalBlockSizeException, BadPaddingException;
+
+	/**
+	 * Start the decryption of the new message
+	 *
+	 * @param header the header received before the first chunk, or null if the cipher has no header
+	 * @throws InvalidKeyException if the key is inappropriate for initializing the cipher
+	 * @throws InvalidAlgorithmParameterException if the initialization vector or the nonce is not valid
+	 * @throws BadPaddingException if the nonce has not been sent by the other side or has been used before
+	 */
+	void beginDecryption(byte[] header) throws InvalidKeyException, InvalidAlgorithmParameterException, BadPaddingException;
+
+	/**
+	 * Decrypt the next chunk of the message
+	 *
+	 * @param input the buffer with the chunk
+	 * @param offset the position of the chunk in the buffer
+	 * @param length the number of bytes of the chunk
+	 * @return the decrypted bytes which are ready, may be empty
+	 */
+	byte[] decryptChunk(byte[] input, int offset, int length);
+
+	/**
+	 * Finish the decryption of the message
+	 *
+	 * @return the last decrypted bytes of the message, may be empty
+	 * @throws IllegalBlockSizeException if the total length of the message is not valid
+	 * @throws BadPaddingException if the padding or the authentication tag of the message is not valid
+	 */
+	byte[] endDecryption() throws IllegalBlockSizeException, BadPaddingException;
+}
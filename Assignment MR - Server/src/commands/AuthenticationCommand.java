@@ -5,6 +5,9 @@ import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.spec.InvalidKeySpecException;
 
+import algorithms.ChaCha20Algorithm;
+import diffie_hellman.KeyAgreementAlgorithm;
+import diffie_hellman.KeyAgreementBusyException;
 import server.Session;
 import server.Session.Encryption;
 
@@ -16,18 +19,24 @@ import server.Session.Encryption;
  */
 public class AuthenticationCommand {
 	private String algorithmName;
+	private String keyAgreementName;
 	private Session session;
 	
 	private static final String AES_ECB = "AES/ECB";
 	private static final String AES_CBC = "AES/CBC";
+	private static final String AES_GCM = "AES/GCM";
+	private static final String CHACHA20 = "CHACHA20";
 	private static final String DES_ECB = "DES/ECB";
 	private static final String DES_CBC = "DES/CBC";
+	private static final String TLS = "TLS";
 	private static final String PLAIN = "PLAIN";
 	
 	private static final String SPACE_SYMBOL = " ";
 	private static final String EMPTY_STRING = "";
 	private static final int ARRAY_SECOND_ELEMENT = 1;
+	private static final int ARRAY_THIRD_ELEMENT = 2;
 	private static final int TWO_ARGUMENTS = 2;
+	private static final int THREE_ARGUMENTS = 3;
 	
 	/**
 	 * Initiate Authentication Command
@@ -37,6 +46,7 @@ public class AuthenticationCommand {
 	public AuthenticationCommand(Session session) {
 		this.session = session;
 		algorithmName = EMPTY_STRING;
+		keyAgreementName = null;
 	}
 	
 	/**
@@ -54,28 +64,92 @@ public class AuthenticationCommand {
 			session.write("BAD Authentication Failed, Parsing Arguments Error!");
 			return false;
 		}
-		
+		KeyAgreementAlgorithm keyAgreement = KeyAgreementAlgorithm.DH;
+		if (keyAgreementName != null) {
+			if (algorithmName.equals(TLS) || algorithmName.equals(PLAIN)) {
+				session.write("BAD Syntax Error, " + algorithmName + " does not use the key exchange!");
+				return false;
+			}
+			keyAgreement = parseKeyAgreement(keyAgreementName);
+			if (keyAgreement == null) {
+				session.write("BAD Syntax Error, Key exchange name is not valid!");
+				return false;
+			}
+			if (!keyAgreement.isSupported()) {
+				session.write("BAD " + keyAgreement + " is not supported");
+				return false;
+			}
+		}
+		try {
+			return establish(keyAgreement);
+		} catch (KeyAgreementBusyException e) {
+			session.write("BAD " + e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Select the encryption mode of the parsed algorithm name and send the reply, the session keeps its previous mode
+	 * if the key exchange has been rejected
+	 * 
+	 * @param keyAgreement the algorithm of the key exchange
+	 * @return false if the algorithm is not valid or not available, true otherwise
+	 * @throws KeyAgreementBusyException if the key agreement queue is full, the client has not received the public key of the server
+	 * @throws IOException if the stream has been closed or another I/O error
+	 * @throws InvalidKeyException if the given key is inappropriate for initializing this cipher
+	 * @throws NoSuchAlgorithmException if the cipher or the key agreement is not available
+	 * @throws InvalidKeySpecException if the given key specification is inappropriate for this secret-key factory to produce a secret key.
+	 */
+	private boolean establish(KeyAgreementAlgorithm keyAgreement) throws IOException, InvalidKeyException, NoSuchAlgorithmException, InvalidKeySpecException {
 		switch (algorithmName) {
 		case AES_ECB:
-			session.selectEncryptionMode(Encryption.AES_ECB);
+			session.selectEncryptionMode(Encryption.AES_ECB, keyAgreement);
 			session.write("* AES/ECB Encryption is established");
 			session.write("OK AUTH Completed");	
 			break;
 		case AES_CBC:
-			session.selectEncryptionMode(Encryption.AES_CBC);
+			session.selectEncryptionMode(Encryption.AES_CBC, keyAgreement);
 			session.write("* AES/CBC Encryption is established");
 			session.write("OK AUTH Completed");	
 			break;
+		case AES_GCM:
+			session.selectEncryptionMode(Encryption.AES_GCM, keyAgreement);
+			session.write("* AES/GCM Encryption is established");
+			session.write("OK AUTH Completed");	
+			break;
+		case CHACHA20:
+			if (!ChaCha20Algorithm.isSupported()) {
+				session.write("BAD CHACHA20 is not supported");
+				return false;
+			}
+			session.selectEncryptionMode(Encryption.CHACHA20, keyAgreement);
+			session.write("* ChaCha20-Poly1305 Encryption is established");
+			session.write("OK AUTH Completed");	
+			break;
 		case DES_ECB:			
-			session.selectEncryptionMode(Encryption.DES_ECB);
+			session.selectEncryptionMode(Encryption.DES_ECB, keyAgreement);
 			session.write("* DESede/ECB Encryption is established");
 			session.write("OK AUTH Completed");	
 			break;
 		case DES_CBC:
-			session.selectEncryptionMode(Encryption.DES_CBC);
+			session.selectEncryptionMode(Encryption.DES_CBC, keyAgreement);
 			session.write("* DESede/CBC Encryption is established");			
 			session.write("OK AUTH Completed");	
 			break;
+		case TLS:
+			if (!session.isTlsAvailable()) {
+				session.write("BAD TLS is not available");
+				return false;
+			}
+			if (session.isTlsActive()) {
+				session.write("BAD TLS is already active");
+				return false;
+			}
+			session.write("* Begin TLS negotiation now");
+			session.selectEncryptionMode(Encryption.TLS);
+			session.write("* TLS Encryption is established");
+			session.write("OK AUTH Completed");	
+			break;
 		case PLAIN:
 			session.selectEncryptionMode(Encryption.PLAIN);
 			session.write("* WARNING, SENDING MESSAGES WITHOUT ENCRYPTION IS NOT SECURE!");	
@@ -96,10 +170,29 @@ public class AuthenticationCommand {
 	 */
 	private boolean parseArguments(String input) {
 		String arguments[] = input.split(SPACE_SYMBOL);
-		if (arguments.length == TWO_ARGUMENTS) {
+		keyAgreementName = null;
+		if (arguments.length == TWO_ARGUMENTS || arguments.length == THREE_ARGUMENTS) {
 			algorithmName = arguments[ARRAY_SECOND_ELEMENT].trim().toUpperCase();
+			if (arguments.length == THREE_ARGUMENTS) {
+				keyAgreementName = arguments[ARRAY_THIRD_ELEMENT].trim().toUpperCase();
+			}
 			return true;
 		}
 		return false;		
 	}
+
+	/**
+	 * Returns the key agreement algorithm of the given name
+	 * 
+	 * @param name the name of the key agreement sent by the client
+	 * @return the key agreement algorithm, or null if the name is not valid
+	 */
+	private KeyAgreementAlgorithm parseKeyAgreement(String name) {
+		for (KeyAgreementAlgorithm algorithm : KeyAgreementAlgorithm.values()) {
+			if (algorithm.name().equals(name)) {
+				return algorithm;
+			}
+		}
+		return null;
+	}
 }
@@ -41,13 +41,13 @@ public class ChangeCommand {
 	/**
 	 * Execute CHANGE Command
 	 * 
-	 * @param mailbox name of the mailbox
+	 * @param mailboxID the ID of the mailbox
 	 * @param input message sent by the client
 	 * @return return false if there was any error during executing of this command
 	 * @throws IOException if the stream has been closed or another I/O error
 	 * @throws SQLException if the database connection failed
 	 */
-	public boolean execute(String mailbox, String input) throws IOException, SQLException {
+	public boolean execute(int mailboxID, String input) throws IOException, SQLException {
 		
 		if (!parseArguments(input)) {
 			session.write("BAD Parsing Arguments Error!");
@@ -64,7 +64,7 @@ public class ChangeCommand {
 			return false;
 		}
 		
-		if (!messageDAO.updateMessageFlag(mailbox, messageID, flag)) {
+		if (!messageDAO.updateMessageFlag(mailboxID, messageID, flag)) {
 			session.write("BAD Message ID is not valid!");
 			return false;
 		}
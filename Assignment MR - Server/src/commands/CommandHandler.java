@@ -5,6 +5,7 @@ import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.spec.InvalidKeySpecException;
 import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
 import database.DBConnect;
 import server.Session;
 
@@ -21,16 +22,19 @@ public class CommandHandler {
 	}
 
 	private Session session;
+	private DBConnect database;
 	private Stage stage;
 	private boolean running;
 	private boolean verbose;
+	private boolean pipelining;
 	private String clientMessage;
 	private String command;
-	private String mailbox;
+	private int mailboxID;
 	
 	private AuthenticationCommand authenticate;
 	private LoginCommand login;
 	private TokenCommand token;
+	private ResumeCommand resume;
 	private LogoutCommand logout;
 	private QuitCommand quit;
 	private NoopCommand noop;
@@ -41,10 +45,13 @@ public class CommandHandler {
 	private ChangeCommand change;
 	private SearchCommand search;
 	private HelpCommand help;
+	private EnableCommand enable;
+	private CompressCommand compress;
+	private boolean compressed;
 	
 	private static final int ARRAY_FIRST_ELEMENT = 0;
 	private static final String SPLIT_SYMBOL_SPACE = " ";
-	private static final String EMPTY_STRING = "";
+	private static final int MAX_TAG_LENGTH = 32;
 
 	/**
 	 * Creates CommandHandler object which handles all available commands
@@ -54,7 +61,9 @@ public class CommandHandler {
 	 */
 	public CommandHandler(Session session, DBConnect database, boolean verbose) {
 		this.session = session;
+		this.database = database;
 		token = new TokenCommand(session, database);
+		resume = new ResumeCommand(session, database);
 		login = new LoginCommand(session, database);
 		logout = new LogoutCommand(session);
 		quit = new QuitCommand(session);
@@ -67,8 +76,9 @@ public class CommandHandler {
 		authenticate = new AuthenticationCommand(session);
 		search = new SearchCommand(session, database);
 		help = new HelpCommand(session);
+		enable = new EnableCommand(session);
+		compress = new CompressCommand(session);
 		stage = Stage.AUTHENTICATE;
-		mailbox = EMPTY_STRING;
 		running = true;
 		this.verbose = verbose;
 	}
@@ -84,10 +94,119 @@ public class CommandHandler {
 	 */
 	public void executeClientCommand() throws IOException, SQLException, InvalidKeyException, NoSuchAlgorithmException, InvalidKeySpecException {
 		while (running) {
-			clientMessage = session.read();
-			displayVerboseMessage();
-			if(!isMessageLengthValid()) continue;		
-			if(!parseCommand(clientMessage)) continue;
+			executeNextCommand();
+		}
+	}
+
+	/**
+	 * Execute only commands which have already been sent by the client, so that the caller is never blocked
+	 * waiting for the client
+	 * 
+	 * @throws IOException if the stream has been closed or another I/O error
+	 * @throws SQLException if the database connection failed
+	 * @throws InvalidKeySpecException if the given key specification is inappropriate for this secret-key factory to produce a secret key.
+	 * @throws NoSuchAlgorithmException if transformation is null, empty, in an invalid format, or if a CipherSpi implementation for the specified algorithm is not available from the specified Provider object. 
+	 * @throws InvalidKeyException if the given key is inappropriate for initializing this cipher, or requires algorithm parameters that cannot be determined from the given key, or if the given key has a keysize that exceeds the maximum allowable keysize (as determined from the configured jurisdiction policy files). 
+	 */
+	public void executePendingCommands() throws IOException, SQLException, InvalidKeyException, NoSuchAlgorithmException, InvalidKeySpecException {
+		while (running && session.hasPendingInput()) {
+			executeNextCommand();
+		}
+	}
+
+	/**
+	 * Returns false once the client has finished the connection with QUIT Command
+	 * 
+	 * @return true if the client is still connected, false otherwise
+	 */
+	public boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * Read single command sent by the client and execute it. The response is sent once there are no more commands
+	 * sent ahead by the client, so the responses to pipelined commands leave in as few packets as possible
+	 * 
+	 * @throws IOException if the stream has been closed or another I/O error
+	 * @throws SQLException if the database connection failed
+	 * @throws InvalidKeySpecException if the given key specification is inappropriate for this secret-key factory to produce a secret key.
+	 * @throws NoSuchAlgorithmException if transformation is null, empty, in an invalid format, or if a CipherSpi implementation for the specified algorithm is not available from the specified Provider object. 
+	 * @throws InvalidKeyException if the given key is inappropriate for initializing this cipher, or requires algorithm parameters that cannot be determined from the given key, or if the given key has a keysize that exceeds the maximum allowable keysize (as determined from the configured jurisdiction policy files). 
+	 */
+	private void executeNextCommand() throws IOException, SQLException, InvalidKeyException, NoSuchAlgorithmException, InvalidKeySpecException {
+		clientMessage = session.read();
+		displayVerboseMessage();
+		try {
+			if (!pipelining || parseTag()) {
+				executeCommand();
+			}
+		} finally {
+			session.setTag(null);
+		}
+		if (!running || !session.hasPendingInput()) {
+			session.flush();
+		}
+	}
+
+	/**
+	 * Split the tag from the beginning of the message sent by the client and use it to tag the response
+	 * 
+	 * @return true if the message starts with the valid tag, false otherwise
+	 * @throws IOException if the stream has been closed or another I/O error
+	 */
+	private boolean parseTag() throws IOException {
+		String input = clientMessage.trim();
+		int end = input.indexOf(SPLIT_SYMBOL_SPACE);
+		if (end < 0) {
+			end = input.length();
+		}
+		String tag = input.substring(0, end);
+		if (!isTagValid(tag)) {
+			session.write("* BAD Missing or invalid tag!");
+			return false;
+		}
+		session.setTag(tag);
+		clientMessage = input.substring(end).trim();
+		if (clientMessage.isEmpty()) {
+			session.write("BAD Invalid command!");
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Check if the tag contains only letters and digits and is not longer than 32 characters
+	 * 
+	 * @param tag the string object to be tested
+	 * @return true if the tag is valid, false otherwise
+	 */
+	private boolean isTagValid(String tag) {
+		if (tag.isEmpty() || tag.length() > MAX_TAG_LENGTH) {
+			return false;
+		}
+		for (int i = 0; i < tag.length(); i++) {
+			if (!Character.isLetterOrDigit(tag.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Check the command sent by the client and execute it in the current state of the mailbox. The database connection
+	 * borrowed by the command is returned to the pool when the command completes, the command which does not get the
+	 * connection in time is answered with BAD and the client may send it again
+	 * 
+	 * @throws IOException if the stream has been closed or another I/O error
+	 * @throws SQLException if the database connection failed
+	 * @throws InvalidKeySpecException if the given key specification is inappropriate for this secret-key factory to produce a secret key.
+	 * @throws NoSuchAlgorithmException if transformation is null, empty, in an invalid format, or if a CipherSpi implementation for the specified algorithm is not available from the specified Provider object. 
+	 * @throws InvalidKeyException if the given key is inappropriate for initializing this cipher, or requires algorithm parameters that cannot be determined from the given key, or if the given key has a keysize that exceeds the maximum allowable keysize (as determined from the configured jurisdiction policy files). 
+	 */
+	private void executeCommand() throws IOException, SQLException, InvalidKeyException, NoSuchAlgorithmException, InvalidKeySpecException {
+		if(!isMessageLengthValid()) return;		
+		if(!parseCommand(clientMessage)) return;
+		try {
 			switch (stage) {			
 			case AUTHENTICATE:
 				authenticate();				
@@ -99,9 +218,13 @@ public class CommandHandler {
 				processCommand();				
 				break;
 			}
+		} catch (SQLTransientConnectionException e) {
+			session.write("BAD Database is busy, try again later");
+		} finally {
+			database.release();
 		}
 	}
-	
+
 	/**
 	 * Process Commands which are permitted in any STATE
 	 * 
@@ -117,7 +240,19 @@ public class CommandHandler {
 			break;
 		case "HELP":
 			help.execute(clientMessage);
-			break;		
+			break;
+		case "ENABLE":
+			if (enable.execute(clientMessage, pipelining)) {
+				pipelining = true;
+			}
+			break;
+		case "COMPRESS":
+			if (compressed) {
+				session.write("BAD Compression is already active!");
+			} else {
+				compressed = compress.execute(clientMessage);
+			}
+			break;
 		default:
 			sendSyntaxError();
 			break;
@@ -141,21 +276,27 @@ public class CommandHandler {
 		case "LOGIN":
 			if(login.authenticateMailbox(clientMessage)) {
 				stage = Stage.SELECT;				
-				mailbox = login.getMailbox();
+				mailboxID = login.getMailboxID();
 			}
 			break;
 		case "CREATE":
 			if(create.execute(clientMessage)) {
 				stage = Stage.SELECT;				
-				mailbox = create.getMailbox();
+				mailboxID = create.getMailboxID();
 			}
 			break;
 		case "TOKEN":
 			if(token.isTokenValid(clientMessage)) {
 				stage = Stage.SELECT;				
-				mailbox = token.getMailbox();
+				mailboxID = token.getMailboxID();
 			}
-			break;		
+			break;
+		case "RESUME":
+			if(resume.execute(clientMessage)) {
+				stage = Stage.SELECT;
+				mailboxID = resume.getMailboxID();
+			}
+			break;
 		default:
 			standardCommands();
 			break;
@@ -171,7 +312,7 @@ public class CommandHandler {
 	private void selectMailbox() throws SQLException, IOException {
 		switch (command) {
 		case "SELECT":
-			if(select.execute(mailbox, clientMessage)) {
+			if(select.execute(mailboxID, clientMessage)) {
 				stage = Stage.CONTROL;
 			}
 			break;
@@ -190,16 +331,16 @@ public class CommandHandler {
 	private void processCommand() throws IOException, SQLException {
 		switch (command) {		
 		case "FETCH":
-			fetch.execute(mailbox, clientMessage);
+			fetch.execute(mailboxID, clientMessage);
 			break;
 		case "SEARCH":
-			search.execute(mailbox, clientMessage);
+			search.execute(mailboxID, clientMessage);
 			break;
 		case "CHANGE":
-			change.execute(mailbox, clientMessage);
+			change.execute(mailboxID, clientMessage);
 			break;
 		case "EXPUNGE":
-			expunge.execute(mailbox, clientMessage);
+			expunge.execute(mailboxID, clientMessage);
 			break;
 		case "LOGOUT":
 			if(logout.execute(clientMessage)) {
@@ -0,0 +1,49 @@
+package commands;
+
+import java.io.IOException;
+import server.Session;
+
+/**
+ * This class handles COMPRESS Command which turns on DEFLATE compression of all following frames in both directions
+ *
+ * @author Martin Holecek
+ *
+ */
+public class CompressCommand {
+	private Session session;
+
+	private static final String DEFLATE = "DEFLATE";
+	private static final String SPACE_SYMBOL = " ";
+	private static final int ARGUMENT_LENGTH = 2;
+	private static final int ARRAY_SECOND_ELEMENT = 1;
+
+	/**
+	 * Initiate COMPRESS Command
+	 *
+	 * @param session the object that handles connection between server and client
+	 */
+	public CompressCommand(Session session) {
+		this.session = session;
+	}
+
+	/**
+	 * Execute COMPRESS DEFLATE Command, the response is the last frame sent without compression
+	 *
+	 * @param input message sent by the client
+	 * @return true if the compression has been enabled, false otherwise
+	 * @throws IOException if the stream has been closed or another I/O error
+	 */
+	public boolean execute(String input) throws IOException {
+		String arguments[] = input.trim().split(SPACE_SYMBOL);
+		if (arguments.length != ARGUMENT_LENGTH) {
+			session.write("BAD Syntax Error");
+			return false;
+		}
+		if (!arguments[ARRAY_SECOND_ELEMENT].equalsIgnoreCase(DEFLATE)) {
+			session.write("BAD Compression algorithm is not supported!");
+			return false;
+		}
+		session.write("OK DEFLATE active");
+		return session.enableCompression();
+	}
+}
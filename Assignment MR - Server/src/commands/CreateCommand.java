@@ -18,6 +18,7 @@ public class CreateCommand {
 	private Session session;
 	private MailboxDAO mailboxDAO;
 	private String mailbox;
+	private int mailboxID;
 	private String password;
 	private String token;	
 
@@ -52,6 +53,15 @@ public class CreateCommand {
 	public String getMailbox() {
 		return mailbox;
 	}
+
+	/**
+	 * Returns the ID of the mailbox resolved by the command, used by the queries of the messages
+	 * 
+	 * @return the ID of the mailbox
+	 */
+	public int getMailboxID() {
+		return mailboxID;
+	}
 		
 	/**
 	 * Execute Creating of the new mailbox
@@ -99,7 +109,9 @@ public class CreateCommand {
 		
 		token = UUID.randomUUID().toString();		
 		mailboxDAO.createMailbox(mailbox, password, token);
+		mailboxID = mailboxDAO.getMailboxID(mailbox);
 		session.write("* TOKEN " + token);
+		ResumeCommand.sendTicket(session, mailbox, token);
 		session.write("OK CREATE Completed");
 		return true;
 	}
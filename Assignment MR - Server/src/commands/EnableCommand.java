@@ -0,0 +1,67 @@
+package commands;
+
+import java.io.IOException;
+import server.Session;
+
+/**
+ * This class handles ENABLE Command which turns on optional extensions of the protocol for the rest of the session
+ *
+ * @author Martin Holecek
+ *
+ */
+public class EnableCommand {
+	private Session session;
+
+	private static final String PIPELINING = "PIPELINING";
+	private static final String STREAMING = "STREAMING";
+	private static final String SPACE_SYMBOL = " ";
+	private static final int ARGUMENT_LENGTH = 2;
+	private static final int ARRAY_SECOND_ELEMENT = 1;
+
+	/**
+	 * Initiate ENABLE Command
+	 *
+	 * @param session the object that handles connection between server and client
+	 */
+	public EnableCommand(Session session) {
+		this.session = session;
+	}
+
+	/**
+	 * Execute ENABLE Command. Once PIPELINING is enabled every following command must start with the tag
+	 * chosen by the client and every line of the response starts with the same tag. Once STREAMING is enabled
+	 * every following message in both directions is sent as the stream of chunks ended by the empty frame.
+	 *
+	 * @param input message sent by the client
+	 * @param pipelining true if the pipelining has already been enabled
+	 * @return true if the pipelining has been enabled by this command, false otherwise
+	 * @throws IOException if the stream has been closed or another I/O error
+	 */
+	public boolean execute(String input, boolean pipelining) throws IOException {
+		String arguments[] = input.trim().split(SPACE_SYMBOL);
+		if (arguments.length != ARGUMENT_LENGTH) {
+			session.write("BAD Syntax Error");
+			return false;
+		}
+		String extension = arguments[ARRAY_SECOND_ELEMENT];
+		if (extension.equalsIgnoreCase(PIPELINING)) {
+			if (pipelining) {
+				session.write("BAD PIPELINING is already enabled!");
+				return false;
+			}
+			session.write("OK PIPELINING Enabled");
+			return true;
+		}
+		if (extension.equalsIgnoreCase(STREAMING)) {
+			if (session.isStreaming()) {
+				session.write("BAD STREAMING is already enabled!");
+			} else {
+				session.write("OK STREAMING Enabled");
+				session.enableStreaming();
+			}
+			return false;
+		}
+		session.write("BAD Extension is not supported!");
+		return false;
+	}
+}
@@ -3,7 +3,6 @@ package commands;
 import java.io.IOException;
 import java.sql.SQLException;
 import database.DBConnect;
-import database.MailboxDAO;
 import database.MessageDAO;
 import server.Session;
 
@@ -15,7 +14,6 @@ import server.Session;
  */
 public class ExpungeCommand {
 	private Session session;
-	private MailboxDAO mailboxDAO;
 	private MessageDAO messageDAO;
 	
 	private static final int NO_ARGUMENTS = 1;
@@ -29,27 +27,25 @@ public class ExpungeCommand {
 	 */
 	public ExpungeCommand(Session session, DBConnect database) {
 		this.session = session;
-		mailboxDAO = database.getMailboxDAO();
 		messageDAO = database.getMessageDAO();
 	}
 	
 	/**
 	 * Execute EXPUNGE Command
 	 * 
-	 * @param mailbox name of the mailbox
+	 * @param mailboxID the ID of the mailbox
 	 * @param input message sent by the client
 	 * @return false if there was any error during executing of this command
 	 * @throws IOException if the stream has been closed or another I/O error
 	 * @throws SQLException if the database connection failed
 	 */
-	public boolean execute(String mailbox, String input) throws IOException, SQLException {
+	public boolean execute(int mailboxID, String input) throws IOException, SQLException {
 		if (!parseArguments(input)) {
 			session.write("BAD EXPUNGE command does not accept arguments!");
 			return false;
 		}	
 		
-		messageDAO.deleteMessages(mailbox);
-		mailboxDAO.resetAllUID(mailbox);		
+		messageDAO.deleteMessages(mailboxID);
 		session.write("OK EXPUNGE Completed");
 		return true;
 	}
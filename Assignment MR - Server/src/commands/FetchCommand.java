@@ -4,7 +4,9 @@ import java.io.IOException;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import database.DBConnect;
+import database.MessageCursor;
 import server.Message;
+import server.ParallelSender;
 import server.Session;
 
 /**
@@ -17,7 +19,6 @@ public class FetchCommand {
 	private Session session;
 	private DBConnect database;
 	private ArrayList<String> arguments;
-	private ArrayList<Message> messages;
 	private ArrayList<String> flags;
 	private int firstUID; 
 	private int lastUID; 
@@ -42,6 +43,7 @@ public class FetchCommand {
 	private static final int FIRST_ELEMENT = 0;
 	private static final int SEQUENCE_LENGTH = 2;
 	private static final int ARRAY_SECOND_ELEMENT = 1;
+	private static final int RESPONSES_PER_MESSAGE = 2;
 
 	/**
 	 * Initiate Fetch Command
@@ -53,20 +55,19 @@ public class FetchCommand {
 		this.session = session;
 		this.database = database;
 		arguments = new ArrayList<>();
-		messages = new ArrayList<>();
 		flags = new ArrayList<>();
 	}
 
 	/**
 	 * Execute FETCH Command
 	 * 
-	 * @param mailbox name of the mailbox
+	 * @param mailboxID the ID of the mailbox
 	 * @param input message sent by the client
 	 * @return false if there was any error during executing of this command
 	 * @throws IOException if the stream has been closed or another I/O error
 	 * @throws SQLException if the database connection failed
 	 */
-	public boolean execute(String mailbox ,String input) throws IOException, SQLException {
+	public boolean execute(int mailboxID ,String input) throws IOException, SQLException {
 		initiateFetch();
 		parseArguments(input);
 
@@ -79,28 +80,25 @@ public class FetchCommand {
 			arguments.remove(FIRST_ELEMENT);
 		}
 
-		if (!areFlagsValidSyntax(mailbox, arguments)) {
+		if (!areFlagsValidSyntax(mailboxID, arguments)) {
 			session.write("BAD FETCH syntax error");
 			return false;
 		}
 
-		retrieveMessagesFromDB(mailbox);
-		consolidateMessages();
-
-		if (messages.isEmpty()) {
-			session.write("BAD No messages found!");			
-		} else {
-			sendMessages();
-			session.write("OK FETCH Completed");
+		try (MessageCursor cursor = retrieveMessagesFromDB(mailboxID)) {
+			if (sendMessages(cursor)) {
+				session.write("OK FETCH Completed");
+			} else {
+				session.write("BAD No messages found!");
+			}
 		}
 		return true;
 	}
 
 	/**
-	 * Clear messages and flags ArrayList and reset internal flags
+	 * Clear flags ArrayList and reset internal flags
 	 */
 	private void initiateFetch() {
-		messages.clear();
 		flags.clear();
 		isSingleMessage = false;
 		isSequence = false;
@@ -110,32 +108,33 @@ public class FetchCommand {
 	/**
 	 * Retrieve Messages from the database
 	 * 
-	 * @param mailbox name of the mailbox
+	 * @param mailboxID the ID of the mailbox
+	 * @return the cursor over the matching messages
 	 * @throws SQLException if the database connection failed
 	 */
-	private void retrieveMessagesFromDB(String mailbox) throws SQLException {
+	private MessageCursor retrieveMessagesFromDB(int mailboxID) throws SQLException {
 		if (isSingleMessage) {
-			messages.addAll(database.getMessageDAO().getMessages(mailbox, firstUID));
+			return database.getMessageDAO().getMessages(mailboxID, firstUID);
 		} else if (!allFlag && isSequence) {
-			messages.addAll(database.getMessageDAO().getMessages(mailbox, flags, firstUID, lastUID));
+			return database.getMessageDAO().getMessages(mailboxID, flags, firstUID, lastUID);
 		} else if (isSequence) {
-			messages.addAll(database.getMessageDAO().getMessages(mailbox, firstUID, lastUID));
+			return database.getMessageDAO().getMessages(mailboxID, firstUID, lastUID);
 		} else if (!allFlag) {
-			messages.addAll(database.getMessageDAO().getMessages(mailbox, flags));
-		}  else if (allFlag) {
-			messages.addAll(database.getMessageDAO().getMessages(mailbox));
+			return database.getMessageDAO().getMessages(mailboxID, flags);
+		} else {
+			return database.getMessageDAO().getMessages(mailboxID);
 		}
 	}
 
 	/**
 	 * Check if the flags sent by the client valid
 	 * 
-	 * @param mailbox name of the mailbox
+	 * @param mailboxID the ID of the mailbox
 	 * @param arguments list of arguments sent by the client
 	 * @return true if the flags are valid, false if any of the flag is not a valid syntax
 	 * @throws SQLException if the database connection failed
 	 */
-	private boolean areFlagsValidSyntax(String mailbox, ArrayList<String> arguments) throws SQLException {		
+	private boolean areFlagsValidSyntax(int mailboxID, ArrayList<String> arguments) throws SQLException {		
 		for (String string : arguments) {
 			if (string.equalsIgnoreCase(ALL_FLAG)) {
 				allFlag = true;
@@ -225,29 +224,60 @@ public class FetchCommand {
 	}
 
 	/**
-	 * Remove duplicates of the messages fetched from the database
+	 * Send messages to the client as they are read from the database, so only one message is held in memory
+	 * 
+	 * @param cursor the cursor over the messages
+	 * @return true if at least one message has been sent, false if there were no messages
+	 * @throws IOException if the stream has been closed or another I/O error
+	 * @throws SQLException if the database connection failed
 	 */
-	private void consolidateMessages() {
-		ArrayList <Message> uniqueArrayList = new ArrayList<Message>();
-		for (int i = 0; i < messages.size(); i++){
-			if (!uniqueArrayList.contains(messages.get(i))){
-				uniqueArrayList.add(messages.get(i));
+	private boolean sendMessages(MessageCursor cursor) throws IOException, SQLException {
+		if (session.isParallelSendAvailable()) {
+			return sendMessagesInParallel(cursor);
+		}
+		boolean found = false;
+		Message message;
+		while ((message = cursor.next()) != null) {
+			for (String response : renderMessage(message)) {
+				session.write(response);
 			}
+			found = true;
 		}
-		messages.clear();
-		messages.addAll(uniqueArrayList);
+		return found;
 	}
 
 	/**
-	 * Send messages to the client
+	 * Send messages to the client as they are read from the database, the messages are rendered and encrypted
+	 * by the workers of the server and written in the order of the database
 	 * 
+	 * @param cursor the cursor over the messages
+	 * @return true if at least one message has been sent, false if there were no messages
 	 * @throws IOException if the stream has been closed or another I/O error
+	 * @throws SQLException if the database connection failed
 	 */
-	private void sendMessages() throws IOException {
-		for (Message message : messages) {
-			session.write("* FETCH ID " + message.getMessageID() + SPACE_SYMBOL + "SIZE " + message.toString().length() + CRLF);
-			session.write(message + CRLF);
+	private boolean sendMessagesInParallel(MessageCursor cursor) throws IOException, SQLException {
+		boolean found = false;
+		try (ParallelSender sender = session.createParallelSender()) {
+			Message message;
+			while ((message = cursor.next()) != null) {
+				Message current = message;
+				sender.send(() -> renderMessage(current), RESPONSES_PER_MESSAGE);
+				found = true;
+			}
+			sender.finish();
 		}
+		return found;
+	}
+
+	/**
+	 * Returns the responses of one message, the header with its size followed by its content
+	 * 
+	 * @param message the message read from the database
+	 * @return the responses in the order of sending
+	 */
+	private String[] renderMessage(Message message) {
+		String text = message.toString();
+		return new String[] { "* FETCH ID " + message.getMessageID() + SPACE_SYMBOL + "SIZE " + text.length() + CRLF, text + CRLF };
 	}
 
 	/**
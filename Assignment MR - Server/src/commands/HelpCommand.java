@@ -19,6 +19,7 @@ public class HelpCommand {
 	private static final String AUTH = "AUTH";
 	private static final String LOGIN = "LOGIN";
 	private static final String TOKEN = "TOKEN";
+	private static final String RESUME = "RESUME";
 	private static final String CREATE = "CREATE";
 	private static final String SELECT = "SELECT";
 	private static final String FETCH = "FETCH";
@@ -28,6 +29,8 @@ public class HelpCommand {
 	private static final String LOGOUT = "LOGOUT";
 	private static final String NOOP = "NOOP";
 	private static final String QUIT = "QUIT";
+	private static final String ENABLE = "ENABLE";
+	private static final String COMPRESS = "COMPRESS";
 
 	private static final String EMPTY_STRING = "";
 	private static final String SPACE_SYMBOL = " ";
@@ -75,10 +78,10 @@ public class HelpCommand {
 	 */
 	private void sendHelpResponse() throws IOException {
 		session.write("* MOST COMMANDS ARE ONLY VALID IN CERTAIN STATE!");
-		session.write("* AUTHENTICATED STATE COMMANDS: AUTH, LOGIN, TOKEN, CREATE");
+		session.write("* AUTHENTICATED STATE COMMANDS: AUTH, LOGIN, TOKEN, CREATE, RESUME");
 		session.write("* SELECT STAGE COMMANDS: SELECT");
 		session.write("* CONTROL STAGE COMMANDS : FETCH, EXPUNGE, CHANGE, SEARCH, LOGOUT");
-		session.write("* COMMANDS PERMITTED IN ANY STATE: NOOP, HELP, QUIT");
+		session.write("* COMMANDS PERMITTED IN ANY STATE: NOOP, HELP, QUIT, ENABLE, COMPRESS");
 		session.write("* For more info use HELP<SP><COMMAND>");
 		session.write("OK HELP Completed");
 	}
@@ -91,12 +94,19 @@ public class HelpCommand {
 	private void sendSpecificResponse() throws IOException {
 		switch (command) {
 		case AUTH:
-			session.write("* Syntax: AUTH<SP><ARGUMENT>");
+			session.write("* Syntax: AUTH<SP><ARGUMENT>[<SP><KEY EXCHANGE>]");
 			session.write("* ARGUMENTS:");
 			session.write("* AES/CBC - AES Encryption with Cipher Block Chaining mode");
 			session.write("* AES/ECB - AES Encryption with Electronic CodeBook mode");
+			session.write("* AES/GCM - AES Authenticated Encryption with Galois/Counter mode, one frame per message");
+			session.write("* CHACHA20 - ChaCha20-Poly1305 Authenticated Encryption, one frame per message");
 			session.write("* DES/CBC - DESede Encryption with Cipher Block Chaining mode");
 			session.write("* DES/ECB - DESede Encryption with Electronic CodeBook mode");
+			session.write("* TLS - TLS 1.3 with AES-GCM or ChaCha20-Poly1305, the TLS records are carried in the frames");
+			session.write("* KEY EXCHANGES:");
+			session.write("* DH - Diffie-Hellman with 2048 bit modulus, used if the key exchange is not specified");
+			session.write("* X25519 - Elliptic curve Diffie-Hellman on Curve25519");
+			session.write("* ECDH - Elliptic curve Diffie-Hellman on NIST P-256 curve");
 			session.write("OK HELP Completed");
 			break;
 		case LOGIN:			
@@ -107,6 +117,13 @@ public class HelpCommand {
 			session.write("* Syntax: TOKEN<SP><MAILBOX><SP><TOKEN>");
 			session.write("OK HELP Completed");
 			break;
+		case RESUME:
+			session.write("* Syntax: RESUME<SP><TICKET><SP><CLIENT RANDOM>");
+			session.write("* TICKET: the ticket sent after LOGIN, CREATE, TOKEN or RESUME in the session encrypted with the key exchange");
+			session.write("* CLIENT RANDOM: 32 random bytes in URL-safe Base64 without padding");
+			session.write("* RESUME Command must be sent before AUTH, it restores the encryption mode and selects the mailbox of the ticket");
+			session.write("OK HELP Completed");
+			break;
 		case CREATE:			
 			session.write("* Syntax: CREATE<SP><MAILBOX><SP><PASSWORD>");
 			session.write("* CREATE Command will create new Mailbox");
@@ -115,7 +132,7 @@ public class HelpCommand {
 		case SELECT:			
 			session.write("* Syntax: SELECT");
 			session.write("* SELECT Command does not accept arguments");
-			session.write("* Function: Command sets all messages UID number sorted by date which message has been recieved");
+			session.write("* Function: Command sends the number of messages of each flag, UIDVALIDITY and UIDNEXT of the mailbox");
 			session.write("* WARNING: SELECT Command must be called after login and before using Mailbox CONTROL Commands");
 			session.write("* CONTROL COMMANDS: FETCH, SEARCH, CHANGE, EXPUNGE AND LOGOUT");		
 			session.write("OK HELP Completed");
@@ -162,6 +179,21 @@ public class HelpCommand {
 			session.write("* Function: Terminate connection and close the transmission channel");
 			session.write("OK QUIT Completed");
 			break;
+		case ENABLE:
+			session.write("* Syntax: ENABLE<SP><EXTENSION>");
+			session.write("* PIPELINING: Client may send many commands without waiting for the responses");
+			session.write("* Once enabled every command starts with the tag: <TAG><SP><COMMAND>");
+			session.write("* TAG: up to 32 letters or digits, every line of the response starts with the tag of its command");
+			session.write("* STREAMING: Every following message in both directions is sent in chunks");
+			session.write("* Message: [<HEADER FRAME>] <CHUNK FRAME>... <EMPTY FRAME>, HEADER is the IV or the nonce of the cipher");
+			session.write("OK HELP Completed");
+			break;
+		case COMPRESS:
+			session.write("* Syntax: COMPRESS<SP>DEFLATE");
+			session.write("* Function: All following frames in both directions are compressed by raw DEFLATE (RFC 1951)");
+			session.write("* Each frame is compressed before encryption and ends with the DEFLATE sync flush");
+			session.write("OK HELP Completed");
+			break;
 		default:
 			session.write("BAD Argument is not valid Command!");
 			break;
@@ -19,6 +19,7 @@ public class LoginCommand {
 	private Session session;
 	private MailboxDAO mailboxDAO;
 	private String mailbox;
+	private int mailboxID;
 	private String password;
 	private String token;	
 	
@@ -50,6 +51,15 @@ public class LoginCommand {
 	public String getMailbox() {
 		return mailbox;
 	}
+
+	/**
+	 * Returns the ID of the mailbox resolved by the command, used by the queries of the messages
+	 * 
+	 * @return the ID of the mailbox
+	 */
+	public int getMailboxID() {
+		return mailboxID;
+	}
 	
 	/**
 	 * Execute authentication of the client
@@ -70,15 +80,16 @@ public class LoginCommand {
 			return false;
 		}
 		
+		mailboxID = mailboxDAO.getMailboxID(mailbox);
 		token = UUID.randomUUID().toString();
 		mailboxDAO.storeToken(mailbox, token);
-		mailboxDAO.resetAllUID(mailbox);
 		
 		if (session.getMode() == Encryption.PLAIN) {
 			session.write("* WARNING - ACCESS WITHOUT ENCRYPTION IS NOT SECURE!");			
 		}
 		
 		session.write("* TOKEN " + token);
+		ResumeCommand.sendTicket(session, mailbox, token);
 		session.write("OK LOGIN Completed");
 		return true;
 	}
@@ -0,0 +1,146 @@
+package commands;
+
+import java.io.IOException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.InvalidKeySpecException;
+import java.sql.SQLException;
+import java.util.Base64;
+
+import database.DBConnect;
+import database.MailboxDAO;
+import server.Session;
+import server.Session.Encryption;
+import server.TicketContext;
+
+/**
+ * This class handles RESUME Command which restores the encryption mode and the mailbox of the previous session
+ * from its resumption ticket in one round trip, instead of AUTH Command followed by TOKEN Command
+ *
+ * @author Martin Holecek
+ *
+ */
+public class ResumeCommand {
+	private Session session;
+	private MailboxDAO mailboxDAO;
+	private String mailbox;
+	private int mailboxID;
+	private String ticket;
+	private byte[] clientRandom;
+
+	private static final String SPACE_SYMBOL = " ";
+	private static final String EMPTY_STRING = "";
+	private static final int ARRAY_SECOND_ELEMENT = 1;
+	private static final int ARRAY_THIRD_ELEMENT = 2;
+	private static final int THREE_ARGUMENTS = 3;
+
+	/**
+	 * Initiate RESUME Command
+	 *
+	 * @param session the object that handles connection between server and client
+	 * @param database the object that handles connection to the database
+	 */
+	public ResumeCommand(Session session, DBConnect database) {
+		this.session = session;
+		mailboxDAO = database.getMailboxDAO();
+		mailbox = EMPTY_STRING;
+		ticket = EMPTY_STRING;
+	}
+
+	/**
+	 * Returns the mailbox name
+	 *
+	 * @return the mailbox name
+	 */
+	public String getMailbox() {
+		return mailbox;
+	}
+
+	/**
+	 * Returns the ID of the mailbox resolved by the command, used by the queries of the messages
+	 * 
+	 * @return the ID of the mailbox
+	 */
+	public int getMailboxID() {
+		return mailboxID;
+	}
+
+	/**
+	 * Execute RESUME Command, the random value of the server is sent in plain and every following message is encrypted
+	 *
+	 * @param input message sent by the client
+	 * @return false if there was any error during executing of this command
+	 * @throws IOException if the stream has been closed or another I/O error
+	 * @throws SQLException if the database connection failed
+	 * @throws InvalidKeyException if the derived key is inappropriate for initializing the cipher
+	 * @throws NoSuchAlgorithmException if the cipher of the resumed mode or HMAC-SHA256 is not available
+	 * @throws InvalidKeySpecException if the derived key cannot be converted to the Triple DES key
+	 */
+	public boolean execute(String input) throws IOException, SQLException, InvalidKeyException, NoSuchAlgorithmException, InvalidKeySpecException {
+		if (!parseArguments(input)) {
+			session.write("BAD Authentication Failed, Parsing Arguments Error!");
+			return false;
+		}
+
+		if (session.getMode() != Encryption.PLAIN || session.isTlsActive()) {
+			session.write("BAD RESUME must be sent before AUTH");
+			return false;
+		}
+
+		TicketContext.Ticket content = session.openTicket(ticket);
+		if (content == null) {
+			session.write("BAD Ticket is not valid or has expired");
+			return false;
+		}
+
+		if (!mailboxDAO.validateToken(content.getMailbox(), content.getToken())) {
+			session.write("BAD Token Validation Failed");
+			return false;
+		}
+
+		mailbox = content.getMailbox();
+		mailboxID = mailboxDAO.getMailboxID(mailbox);
+		byte[] serverRandom = session.nextResumptionRandom();
+		session.write("* RESUME " + Base64.getUrlEncoder().withoutPadding().encodeToString(serverRandom));
+		session.resumeEncryptionMode(content.getMode(), TicketContext.deriveResumedKey(content.getSecret(), clientRandom, serverRandom));
+		session.write("* " + content.getMode() + " Encryption is resumed");
+		sendTicket(session, mailbox, content.getToken());
+		session.write("OK RESUME Completed");
+		return true;
+	}
+
+	/**
+	 * Send the new resumption ticket of the authenticated mailbox to the client, if the session can be resumed
+	 *
+	 * @param session the object that handles connection between server and client
+	 * @param mailbox the authenticated mailbox
+	 * @param token the token of the mailbox
+	 * @throws IOException if the stream has been closed or another I/O error
+	 */
+	static void sendTicket(Session session, String mailbox, String token) throws IOException {
+		String ticket = session.createTicket(mailbox, token);
+		if (ticket != null) {
+			session.write("* TICKET " + ticket);
+		}
+	}
+
+	/**
+	 * Parse the arguments of the message sent from the client
+	 *
+	 * @param input message sent by the client
+	 * @return true if parsing has been successful, false otherwise
+	 */
+	private boolean parseArguments(String input) {
+		String arguments[] = input.split(SPACE_SYMBOL);
+		if (arguments.length != THREE_ARGUMENTS) {
+			return false;
+		}
+		ticket = arguments[ARRAY_SECOND_ELEMENT].trim();
+		try {
+			clientRandom = Base64.getUrlDecoder().decode(arguments[ARRAY_THIRD_ELEMENT].trim());
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+		return clientRandom.length == TicketContext.RANDOM_SIZE;
+	}
+}
@@ -65,13 +65,13 @@ public class SearchCommand {
 	/**
 	 * Execute SEARCH Command
 	 * 
-	 * @param mailbox name of the mailbox
+	 * @param mailboxID the ID of the mailbox
 	 * @param input message sent by the client
 	 * @return return false if there was any error during executing of this command
 	 * @throws IOException if the stream has been closed or another I/O error
 	 * @throws SQLException if the database connection failed
 	 */
-	public boolean execute(String mailbox ,String input) throws IOException, SQLException {
+	public boolean execute(int mailboxID ,String input) throws IOException, SQLException {
 		messagesUID.clear();
 
 		if (!parseArguments(input)) {
@@ -88,25 +88,25 @@ public class SearchCommand {
 			return false;
 		}
 
-		retrieveMessagesUIDFromDB(mailbox);	
+		retrieveMessagesUIDFromDB(mailboxID);	
 		sendSearchResult();
 		return true;
 	}
 
 	/**
 	 * Retrieve messages unique identifiers (UID) from database
-	 * @param mailbox name of the mailbox
+	 * @param mailboxID the ID of the mailbox
 	 * @throws SQLException if the database connection failed
 	 */
-	private void retrieveMessagesUIDFromDB(String mailbox) throws SQLException {
+	private void retrieveMessagesUIDFromDB(int mailboxID) throws SQLException {
 		if (searchKey.equals(ALL)) {
-			messagesUID.addAll(messageDAO.searchMessagesAll(mailbox, searchValue));
+			messagesUID.addAll(messageDAO.searchMessagesAll(mailboxID, searchValue));
 		} else if(searchKey.equals(SINCE)) {			
-			messagesUID.addAll(messageDAO.searchMessagesDateSince(mailbox, date));
+			messagesUID.addAll(messageDAO.searchMessagesDateSince(mailboxID, date));
 		} else if(searchKey.equals(UNTIL)) {			
-			messagesUID.addAll(messageDAO.searchMessagesDateUntil(mailbox, date));
+			messagesUID.addAll(messageDAO.searchMessagesDateUntil(mailboxID, date));
 		} else {			
-			messagesUID.addAll(messageDAO.searchMessages(mailbox, searchKey, searchValue));
+			messagesUID.addAll(messageDAO.searchMessages(mailboxID, searchKey, searchValue));
 		}
 	}
 
@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.sql.SQLException;
 import database.DBConnect;
 import database.MailboxDAO;
+import database.MailboxDAO.UIDState;
 import database.MessageDAO;
 import server.Session;
 
@@ -38,22 +39,24 @@ public class SelectCommand {
 	/**
 	 * Execute SELECT Command
 	 * 
-	 * @param mailbox name of the mailbox
+	 * @param mailboxID the ID of the mailbox
 	 * @param input message sent by the client
 	 * @return return false if there was any error during executing of this command
 	 * @throws IOException if the stream has been closed or another I/O error
 	 * @throws SQLException if the database connection failed
 	 */
-	public boolean execute(String mailbox, String input) throws SQLException, IOException {
+	public boolean execute(int mailboxID, String input) throws SQLException, IOException {
 		if (!parseArguments(input)) {
 			session.write("BAD SELECT command does not accept arguments!");
 			return false;
 		}		
 		
-		mailboxDAO.resetAllUID(mailbox);		
-		final int numberMessages = messageDAO.getNumberMessagesAll(mailbox);
+		final int numberMessages = messageDAO.getNumberMessagesAll(mailboxID);
 		session.write("* "  + numberMessages + " EXISTS");
-		sendEachFlag(mailbox);
+		sendEachFlag(mailboxID);
+		UIDState uidState = mailboxDAO.getUIDState(mailboxID);
+		session.write("* " + uidState.getUIDValidity() + " UIDVALIDITY");
+		session.write("* " + uidState.getUIDNext() + " UIDNEXT");
 		session.write("OK SELECT Completed");
 		return true;
 	}
@@ -61,13 +64,13 @@ public class SelectCommand {
 	/**
 	 * Send number of messages of individual flags
 	 * 
-	 * @param mailbox name of the mailbox
+	 * @param mailboxID the ID of the mailbox
 	 * @throws IOException if the stream has been closed or another I/O error
 	 * @throws SQLException if the database connection failed
 	 */
-	private void sendEachFlag(String mailbox) throws SQLException, IOException {
+	private void sendEachFlag(int mailboxID) throws SQLException, IOException {
 		for (int index = 0; index < FLAGS.length; index++) {
-			int number = messageDAO.getNumberMessages(mailbox, FLAGS[index]);
+			int number = messageDAO.getNumberMessages(mailboxID, FLAGS[index]);
 			session.write("* "  + number + SPACE_SYMBOL + FLAGS[index]);			
 		}		
 	}
@@ -16,6 +16,7 @@ public class TokenCommand {
 	private Session session;
 	private MailboxDAO mailboxDAO;
 	private String mailbox;
+	private int mailboxID;
 	private String token;	
 
 	private static final String SPACE_SYMBOL = " ";
@@ -46,6 +47,15 @@ public class TokenCommand {
 		return mailbox;
 	}
 
+	/**
+	 * Returns the ID of the mailbox resolved by the command, used by the queries of the messages
+	 * 
+	 * @return the ID of the mailbox
+	 */
+	public int getMailboxID() {
+		return mailboxID;
+	}
+
 	/**
 	 * Execute TOKEN Command
 	 * 
@@ -65,7 +75,8 @@ public class TokenCommand {
 			return false;
 		}
 		
-		mailboxDAO.resetAllUID(mailbox);
+		mailboxID = mailboxDAO.getMailboxID(mailbox);
+		ResumeCommand.sendTicket(session, mailbox, token);
 		session.write("OK TOKEN Completed");
 		return true;
 	}
@@ -0,0 +1,325 @@
+package database;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import server.MetricsSource;
+
+/**
+ * This class holds the database connections shared by all sessions of the server. The session borrows the connection
+ * only for the command which reads or changes the database and returns it when the command completes, so the number of
+ * connections depends on the number of commands executed at once instead of the number of connected clients.
+ * At most the maximum number of connections is borrowed at once, the further commands wait for the returned connection
+ * until the acquire timeout expires. The idle connection is validated before it is borrowed, the broken one is replaced.
+ * Each connection keeps the prepared statements of its recently used queries, see {@link PooledConnection}.
+ * The pool may limit the number of JDBC calls executed at once by all sessions. The permit is held for every call
+ * which talks to the database, including opening, validating, rolling back and cleaning up of the connections,
+ * but never while the command waits for a free connection.
+ *
+ * @author Martin Holecek
+ *
+ */
+public class ConnectionPool implements MetricsSource {
+
+	private static final int VALIDATION_TIMEOUT = 2;
+
+	private String url;
+	private String username;
+	private String password;
+	private long acquireTimeout;
+	private int maxStatements;
+	private Semaphore permits;
+	private Semaphore callPermits;
+	private Deque<PooledConnection> idle;
+	private Logger logger;
+	private boolean closed;
+	private AtomicLong active;
+	private AtomicLong borrowed;
+	private AtomicLong created;
+	private AtomicLong invalid;
+	private AtomicLong timeouts;
+	private AtomicLong waitNanos;
+	private AtomicLong openStatements;
+	private AtomicLong preparedStatements;
+	private AtomicLong reusedStatements;
+	private AtomicLong evictedStatements;
+	private AtomicLong leakedResultSets;
+
+	/**
+	 * Initialize connection pool, the connections are opened when they are borrowed for the first time
+	 *
+	 * @param url the JDBC URL of the database
+	 * @param username the user of the database
+	 * @param password the password of the user
+	 * @param maxConnections the maximum number of connections open at once
+	 * @param acquireTimeout the number of milliseconds the command waits for the connection
+	 * @param maxStatements the maximum number of prepared statements cached by each connection
+	 * @param logger the logger object which logs the broken connections
+	 */
+	public ConnectionPool(String url, String username, String password, int maxConnections, long acquireTimeout,
+			int maxStatements, Logger logger) {
+		this.url = url;
+		this.username = username;
+		this.password = password;
+		this.acquireTimeout = acquireTimeout;
+		this.maxStatements = maxStatements;
+		this.logger = logger;
+		permits = new Semaphore(maxConnections, true);
+		idle = new ArrayDeque<>();
+		active = new AtomicLong();
+		borrowed = new AtomicLong();
+		created = new AtomicLong();
+		invalid = new AtomicLong();
+		timeouts = new AtomicLong();
+		waitNanos = new AtomicLong();
+		openStatements = new AtomicLong();
+		preparedStatements = new AtomicLong();
+		reusedStatements = new AtomicLong();
+		evictedStatements = new AtomicLong();
+		leakedResultSets = new AtomicLong();
+	}
+
+	/**
+	 * Limit the number of JDBC calls executed at once by all sessions.
+	 * Used by the virtual thread transport, where the blocking JDBC calls pin the carrier threads.
+	 *
+	 * @param callPermits the permits of the JDBC calls, or null for no limit
+	 */
+	public void setCallPermits(Semaphore callPermits) {
+		this.callPermits = callPermits;
+	}
+
+	/**
+	 * Borrow the connection, the idle connection is reused if it is still valid, otherwise the new connection is opened
+	 *
+	 * @return the connection which must be returned by {@link #release(PooledConnection)}
+	 * @throws SQLTransientConnectionException if no connection has been returned before the acquire timeout
+	 * @throws SQLException if the database connection failed
+	 */
+	public PooledConnection acquire() throws SQLException {
+		long start = System.nanoTime();
+		try {
+			if (!permits.tryAcquire(acquireTimeout, TimeUnit.MILLISECONDS)) {
+				timeouts.incrementAndGet();
+				throw new SQLTransientConnectionException("No database connection available within " + acquireTimeout + " ms");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLTransientConnectionException("Interrupted while waiting for the database connection", e);
+		} finally {
+			waitNanos.addAndGet(System.nanoTime() - start);
+		}
+		try {
+			PooledConnection connection;
+			acquireCallPermit();
+			try {
+				connection = pollValid();
+				if (connection == null) {
+					connection = new PooledConnection(DriverManager.getConnection(url, username, password), this, maxStatements);
+					created.incrementAndGet();
+				}
+			} finally {
+				releaseCallPermit();
+			}
+			active.incrementAndGet();
+			borrowed.incrementAndGet();
+			return connection;
+		} catch (SQLException | RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Return the borrowed connection, the result sets left open by the command are closed, the connection left
+	 * in the transaction is rolled back and the closed connection is dropped from the pool
+	 *
+	 * @param pooled the connection returned by {@link #acquire()}
+	 */
+	public void release(PooledConnection pooled) {
+		if (callPermits != null) {
+			callPermits.acquireUninterruptibly();
+		}
+		try {
+			Connection connection = pooled.getConnection();
+			if (!connection.isClosed()) {
+				pooled.finishCommand();
+				if (!connection.getAutoCommit()) {
+					connection.rollback();
+					connection.setAutoCommit(true);
+				}
+			}
+			if (connection.isClosed() || !offer(pooled)) {
+				pooled.close();
+			}
+		} catch (SQLException e) {
+			logger.log(Level.WARNING, "Database connection could not be returned to the pool", e);
+			closeQuietly(pooled);
+		} finally {
+			releaseCallPermit();
+			active.decrementAndGet();
+			permits.release();
+		}
+	}
+
+	/**
+	 * Wait until the JDBC call can be executed, if the number of concurrent calls is limited
+	 *
+	 * @throws SQLTransientConnectionException if the thread has been interrupted while waiting
+	 */
+	void acquireCallPermit() throws SQLTransientConnectionException {
+		if (callPermits == null) {
+			return;
+		}
+		try {
+			callPermits.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLTransientConnectionException("Interrupted while waiting for the JDBC call permit", e);
+		}
+	}
+
+	/**
+	 * Allow another session to execute its JDBC call
+	 */
+	void releaseCallPermit() {
+		if (callPermits != null) {
+			callPermits.release();
+		}
+	}
+
+	/**
+	 * Close the idle connections, the borrowed connections are closed when they are returned
+	 */
+	public void close() {
+		PooledConnection connection;
+		synchronized (this) {
+			closed = true;
+		}
+		while ((connection = poll()) != null) {
+			closeQuietly(connection);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public String reportMetrics() {
+		long count = borrowed.get();
+		long waits = count + timeouts.get();
+		int idleCount;
+		synchronized (this) {
+			idleCount = idle.size();
+		}
+		return "active=" + active.get() + " idle=" + idleCount + " borrowed=" + count + " created=" + created.get()
+				+ " invalid=" + invalid.get() + " timeouts=" + timeouts.get()
+				+ " averageWaitMicros=" + (waits == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(waitNanos.get()) / waits)
+				+ " statements=" + openStatements.get() + " prepared=" + preparedStatements.get()
+				+ " reused=" + reusedStatements.get() + " evicted=" + evictedStatements.get()
+				+ " leakedResultSets=" + leakedResultSets.get();
+	}
+
+	/**
+	 * Count the statement requested by the command
+	 *
+	 * @param reused true if the cached statement has been reused, false if the new statement has been prepared
+	 */
+	void countStatement(boolean reused) {
+		if (reused) {
+			reusedStatements.incrementAndGet();
+		} else {
+			preparedStatements.incrementAndGet();
+			openStatements.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Count the statement closed after it has been evicted from the cache
+	 */
+	void countEviction() {
+		evictedStatements.incrementAndGet();
+		openStatements.decrementAndGet();
+	}
+
+	/**
+	 * Count the statements closed with their connection
+	 *
+	 * @param count the number of statements
+	 */
+	void countClosedStatements(int count) {
+		openStatements.addAndGet(-count);
+	}
+
+	/**
+	 * Count the result set which the command has not closed
+	 */
+	void countLeak() {
+		leakedResultSets.incrementAndGet();
+	}
+
+	/**
+	 * Take the most recently returned idle connection which is still valid, the invalid ones are closed
+	 *
+	 * @return the valid connection, or null if there is no idle connection
+	 */
+	private PooledConnection pollValid() {
+		PooledConnection connection;
+		while ((connection = poll()) != null) {
+			try {
+				if (connection.getConnection().isValid(VALIDATION_TIMEOUT)) {
+					return connection;
+				}
+			} catch (SQLException e) {
+				logger.log(Level.WARNING, "Database connection validation failed", e);
+			}
+			invalid.incrementAndGet();
+			closeQuietly(connection);
+		}
+		return null;
+	}
+
+	/**
+	 * Take the most recently returned idle connection
+	 *
+	 * @return the connection, or null if there is no idle connection
+	 */
+	private synchronized PooledConnection poll() {
+		return idle.pollFirst();
+	}
+
+	/**
+	 * Keep the returned connection for the next command
+	 *
+	 * @param connection the returned connection
+	 * @return false if the pool has been closed and the connection must be closed
+	 */
+	private synchronized boolean offer(PooledConnection connection) {
+		if (closed) {
+			return false;
+		}
+		idle.offerFirst(connection);
+		return true;
+	}
+
+	/**
+	 * Close the connection and log the failure
+	 *
+	 * @param connection the connection to close
+	 */
+	private void closeQuietly(PooledConnection connection) {
+		try {
+			connection.close();
+		} catch (SQLException e) {
+			logger.log(Level.WARNING, "Closing of the database connection failed", e);
+		}
+	}
+}
@@ -0,0 +1,205 @@
+package database;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import server.MetricsSource;
+
+/**
+ * This class keeps the IDs and the password hashes of the recently checked mailboxes shared by all sessions of the server,
+ * so repeated LOGIN Commands of the same mailbox are checked and resolved to the ID without the database query. A mailbox which does not exist
+ * is kept as well, so the attempts to log into an unknown mailbox do not reach the database either.
+ * The entries expire after the configured lifetime and the least recently used entry is removed when the cache is full.
+ * The entry of the mailbox must be invalidated whenever its row in the mailboxes table is created or its password is changed.
+ * The entry read from the database is stored only if no mailbox has been invalidated since the read started, so the read
+ * which raced with the creation of the mailbox cannot store the stale entry after the invalidation.
+ *
+ * @author Martin Holecek
+ *
+ */
+public class CredentialCache implements MetricsSource {
+
+	private Map<String, Credential> entries;
+	private long lifetime;
+	private long invalidations;
+	private AtomicLong hits;
+	private AtomicLong misses;
+	private AtomicLong unknownHits;
+
+	/**
+	 * Initialize credential cache
+	 *
+	 * @param lifetime the number of seconds the entry is valid
+	 * @param maxEntries the maximum number of cached mailboxes
+	 */
+	public CredentialCache(int lifetime, int maxEntries) {
+		this.lifetime = lifetime * 1000L;
+		entries = new LinkedHashMap<String, Credential>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Credential> eldest) {
+				return size() > maxEntries;
+			}
+		};
+		hits = new AtomicLong();
+		misses = new AtomicLong();
+		unknownHits = new AtomicLong();
+	}
+
+	/**
+	 * Check the password hash sent by the client against the cached password hash of the mailbox
+	 *
+	 * @param mailbox name of the mailbox
+	 * @param password the password hash sent by the client
+	 * @return true if the password is valid, false if it is not valid or the mailbox does not exist, null if the mailbox is not cached
+	 */
+	Boolean validate(String mailbox, String password) {
+		Credential entry = get(mailbox);
+		if (entry == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+		if (entry.password == null) {
+			unknownHits.incrementAndGet();
+			return false;
+		}
+		hits.incrementAndGet();
+		return matches(entry.password, password);
+	}
+
+	/**
+	 * Returns the cached ID of the mailbox, the lookup is not counted by the metrics of the password checks
+	 *
+	 * @param mailbox name of the mailbox
+	 * @return the ID of the mailbox, or null if the mailbox is not cached or does not exist
+	 */
+	Integer getMailboxID(String mailbox) {
+		Credential entry = get(mailbox);
+		if (entry == null || entry.password == null) {
+			return null;
+		}
+		return entry.mailboxID;
+	}
+
+	/**
+	 * Returns the number of invalidations so far, read before the credentials are read from the database
+	 *
+	 * @return the invalidation count passed to {@link #put(String, Credential, long)}
+	 */
+	synchronized long getInvalidations() {
+		return invalidations;
+	}
+
+	/**
+	 * Store the credentials of the mailbox read from the database, unless a mailbox has been invalidated since the read started
+	 *
+	 * @param mailbox name of the mailbox
+	 * @param credential the ID and the password hash of the mailbox
+	 * @param readInvalidations the invalidation count returned by {@link #getInvalidations()} before the read
+	 */
+	synchronized void put(String mailbox, Credential credential, long readInvalidations) {
+		if (readInvalidations != invalidations) {
+			return;
+		}
+		credential.expires = System.currentTimeMillis() + lifetime;
+		entries.put(mailbox, credential);
+	}
+
+	/**
+	 * Returns the entry of the mailbox, the expired entry is removed
+	 *
+	 * @param mailbox name of the mailbox
+	 * @return the entry, or null if the mailbox is not cached
+	 */
+	private synchronized Credential get(String mailbox) {
+		Credential entry = entries.get(mailbox);
+		if (entry != null && entry.expires < System.currentTimeMillis()) {
+			entries.remove(mailbox);
+			return null;
+		}
+		return entry;
+	}
+
+	/**
+	 * Remove the mailbox from the cache, the next check of the mailbox reads the database. The name is compared exactly,
+	 * as the binary collation of the Mailbox column compares it in the database and as the entries are looked up
+	 *
+	 * @param mailbox name of the mailbox
+	 */
+	public synchronized void invalidate(String mailbox) {
+		invalidations++;
+		entries.remove(mailbox);
+	}
+
+	/**
+	 * Compare the password hash sent by the client with the stored one in time which does not depend on the first difference
+	 *
+	 * @param stored the password hash of the mailbox, or null if the mailbox does not exist
+	 * @param password the password hash sent by the client
+	 * @return true if both hashes are equal, false otherwise
+	 */
+	static boolean matches(String stored, String password) {
+		if (stored == null || password == null) {
+			return false;
+		}
+		return MessageDigest.isEqual(stored.getBytes(StandardCharsets.US_ASCII), password.getBytes(StandardCharsets.US_ASCII));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public String reportMetrics() {
+		long found = hits.get();
+		long unknown = unknownHits.get();
+		long missed = misses.get();
+		long lookups = found + unknown + missed;
+		int size;
+		synchronized (this) {
+			size = entries.size();
+		}
+		return "hits=" + found + " unknownHits=" + unknown + " misses=" + missed
+				+ " hitRate=" + (lookups == 0 ? 0 : (found + unknown) * 100 / lookups) + "% size=" + size;
+	}
+
+	/**
+	 * This class is the ID and the password hash of the mailbox with the time the cached entry expires
+	 */
+	static class Credential {
+		private int mailboxID;
+		private String password;
+		private long expires;
+
+		/**
+		 * Initialize credential
+		 *
+		 * @param mailboxID the ID of the mailbox
+		 * @param password the password hash, or null if the mailbox does not exist
+		 */
+		Credential(int mailboxID, String password) {
+			this.mailboxID = mailboxID;
+			this.password = password;
+		}
+
+		/**
+		 * Returns the ID of the mailbox
+		 *
+		 * @return the ID of the mailbox
+		 */
+		int getMailboxID() {
+			return mailboxID;
+		}
+
+		/**
+		 * Returns the password hash of the mailbox
+		 *
+		 * @return the password hash, or null if the mailbox does not exist
+		 */
+		String getPassword() {
+			return password;
+		}
+	}
+}
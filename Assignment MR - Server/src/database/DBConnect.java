@@ -2,10 +2,17 @@
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.logging.Logger;
 
 /**
- * This class connects to the database
+ * This class connects the session to the database. The connection is borrowed from the pool shared by all sessions
+ * when the command uses the database for the first time and it is returned when the command completes.
+ * The JDBC calls of the statements hold the permit of the pool, if the pool limits the number of calls executed at once,
+ * the permit is held only for the call itself and never while the session reads from or writes to the client
  * 
  * @author Martin Holecek
  */
@@ -16,22 +23,164 @@ public class DBConnect {
 	} 
 
 	private static final ServerType SERVER = ServerType.LOCAL_HOST;
-	private final String PASSWORD = "password";
-	private final String USERNAME = "user";
-	private Connection connection;
+	private static final String PASSWORD = "password";
+	private static final String USERNAME = "user";
+	private ConnectionPool connectionPool;
+	private PooledConnection connection;
 	private boolean verbose;
+	private int fetchSize;
+	private CredentialCache credentialCache;
 	
-	public DBConnect(boolean verbose) {
+	/**
+	 * Initiate the database connection of the session
+	 * 
+	 * @param connectionPool the pool of the connections shared by all sessions
+	 * @param verbose if true errors are visible in the console
+	 */
+	public DBConnect(ConnectionPool connectionPool, boolean verbose) {
+		this.connectionPool = connectionPool;
 		this.verbose = verbose;
 	}
 
 	/**
-	 * Returns connection object which connects to the MYSQL database
+	 * Create the pool of the connections to the MYSQL database, the statements are prepared by the server
+	 * 
+	 * @param maxConnections the maximum number of connections open at once
+	 * @param acquireTimeout the number of milliseconds the command waits for the connection
+	 * @param maxStatements the maximum number of prepared statements cached by each connection
+	 * @param logger the logger object which logs the broken connections
+	 * @return the connection pool, the connections are opened when they are needed
+	 */
+	public static ConnectionPool createConnectionPool(int maxConnections, long acquireTimeout, int maxStatements, Logger logger) {
+		return new ConnectionPool(getUrl(), USERNAME, PASSWORD, maxConnections, acquireTimeout, maxStatements, logger);
+	}
+
+	/**
+	 * Open the connection to the MYSQL database outside of the pool, used to migrate the schema before the server starts
+	 * 
+	 * @return the connection which must be closed by the caller
+	 * @throws SQLException if the database connection failed
+	 */
+	public static Connection openConnection() throws SQLException {
+		return DriverManager.getConnection(getUrl(), USERNAME, PASSWORD);
+	}
+
+	/**
+	 * Returns the JDBC URL of the database server
+	 * 
+	 * @return the URL
+	 */
+	private static String getUrl() {
+		String url = null;
+		switch (SERVER) {		
+		case LOCAL_HOST:
+			url = "jdbc:mysql://localhost:3306/smtp?useUnicode=true&useJDBCCompliantTimezoneShift=true&useLegacyDatetimeCode=false&serverTimezone=UTC&useCursorFetch=true&useServerPrepStmts=true";
+			break;		
+		}
+		return url;
+	}
+
+	/**
+	 * Set the number of rows fetched from the database at once when the messages are read by the cursor
+	 * 
+	 * @param fetchSize the number of rows, zero reads the whole result at once
+	 */
+	public void setFetchSize(int fetchSize) {
+		this.fetchSize = fetchSize;
+	}
+
+	/**
+	 * Set the cache of the password hashes shared by all sessions, used by the mailbox database access objects
+	 * 
+	 * @param credentialCache the credential cache, or null to check every password in the database
+	 */
+	public void setCredentialCache(CredentialCache credentialCache) {
+		this.credentialCache = credentialCache;
+	}
+
+	/**
+	 * Returns the prepared statement of the query on the connection to the MYSQL database, the connection is borrowed
+	 * from the pool if the current command has not used the database yet. The statement is cached by the connection,
+	 * the caller closes only its result set and the statement is reused by the next command with the same query
+	 * 
+	 * @param sql the SQL text of the query
+	 * @return the prepared statement which must not be closed
+	 * @throws java.sql.SQLTransientConnectionException if no connection has been available before the acquire timeout
+	 * @throws SQLException if the database connection failed
+	 */
+	public PreparedStatement prepareStatement(String sql) throws SQLException {
+		if (connection == null) {
+			connection = connectionPool.acquire();
+		}
+		acquirePermit();
+		try {
+			return connection.prepareStatement(sql);
+		} finally {
+			releasePermit();
+		}
+	}
+
+	/**
+	 * Execute the query of the prepared statement
+	 * 
+	 * @param statement the statement returned by {@link #prepareStatement(String)} with all parameters set
+	 * @return the result set which must be closed by the caller
+	 * @throws SQLException if the database connection failed
+	 */
+	public ResultSet executeQuery(PreparedStatement statement) throws SQLException {
+		acquirePermit();
+		try {
+			return statement.executeQuery();
+		} finally {
+			releasePermit();
+		}
+	}
+
+	/**
+	 * Execute the update of the prepared statement
+	 * 
+	 * @param statement the statement returned by {@link #prepareStatement(String)} with all parameters set
+	 * @return the number of changed rows
+	 * @throws SQLException if the database connection failed
+	 */
+	public int executeUpdate(PreparedStatement statement) throws SQLException {
+		acquirePermit();
+		try {
+			return statement.executeUpdate();
+		} finally {
+			releasePermit();
+		}
+	}
+
+	/**
+	 * Move the cursor to the next row, which fetches the next rows from the database when the fetched ones have been read
+	 * 
+	 * @param resultSet the result set of the cursor
+	 * @return true if there is the next row, false otherwise
+	 * @throws SQLException if the database connection failed
+	 */
+	boolean next(ResultSet resultSet) throws SQLException {
+		acquirePermit();
+		try {
+			return resultSet.next();
+		} finally {
+			releasePermit();
+		}
+	}
+
+	/**
+	 * Close the result set of the cursor, which closes the cursor opened by the database
 	 * 
-	 * @return connection object
+	 * @param resultSet the result set of the cursor
+	 * @throws SQLException if the database connection failed
 	 */
-	public Connection getConnection() {
-		return connection;
+	void close(ResultSet resultSet) throws SQLException {
+		acquirePermit();
+		try {
+			resultSet.close();
+		} finally {
+			releasePermit();
+		}
 	}
 		
 	/**
@@ -40,7 +189,9 @@ public class DBConnect {
 	 * @return mailbox database access object
 	 */
 	public MailboxDAO getMailboxDAO() {
-		return new MailboxDAO(connection);
+		MailboxDAO mailboxDAO = new MailboxDAO(this);
+		mailboxDAO.setCredentialCache(credentialCache);
+		return mailboxDAO;
 	}
 
 	/**
@@ -49,32 +200,35 @@ public class DBConnect {
 	 * @return message database access object
 	 */
 	public MessageDAO getMessageDAO() {
-		return new MessageDAO(connection, verbose);
+		MessageDAO messageDAO = new MessageDAO(this, verbose);
+		messageDAO.setFetchSize(fetchSize);
+		return messageDAO;
 	}
 
 	/**
-	 * Connect to the database using DriverManager class
-	 * 
-	 * @throws SQLException if the database connection failed
+	 * Return the connection borrowed by the current command to the pool
 	 */
-	public void connect() throws SQLException {
+	public void release() {
 		if (connection != null) {
-			return;
-		}
-		
-		switch (SERVER) {		
-		case LOCAL_HOST:
-			connection = DriverManager.getConnection("jdbc:mysql://localhost:3306/smtp?useUnicode=true&useJDBCCompliantTimezoneShift=true&useLegacyDatetimeCode=false&serverTimezone=UTC", USERNAME, PASSWORD);
-			break;		
+			PooledConnection borrowed = connection;
+			connection = null;
+			connectionPool.release(borrowed);
 		}
 	}
 
 	/**
-	 * Disconnect from current database
+	 * Wait until the JDBC call can be executed, if the pool limits the number of concurrent calls
 	 * 
-	 * @throws SQLException if the database connection failed
+	 * @throws SQLTransientConnectionException if the thread has been interrupted while waiting
+	 */
+	private void acquirePermit() throws SQLTransientConnectionException {
+		connectionPool.acquireCallPermit();
+	}
+
+	/**
+	 * Allow another session to execute its JDBC call
 	 */
-	public void disconnect() throws SQLException{
-		connection.close();
+	private void releasePermit() {
+		connectionPool.releaseCallPermit();
 	}
 }
@@ -7,62 +7,56 @@ package database;
  *
  */
 public final class MYSQL {	
-	public static final String QUERY_SET_INCREMENT = "SET @IncrementValue = 0;";
 	public static final String QUERY_MAILBOX_EXISTS = 
 			"SELECT * FROM mailboxes WHERE Mailbox = ?";
 	public static final String QUERY_CREATE_MAILBOX = 
-			"INSERT INTO mailboxes VALUES (NULL, ?, ?, NULL, ?, ?)";
+			"INSERT INTO mailboxes (Mailbox, Domain, Password, Token, UIDValidity) VALUES (?, ?, ?, ?, UNIX_TIMESTAMP())";
 	public static final String QUERY_VALIDATE_MAILBOX = 
 			"SELECT * FROM mailboxes WHERE Mailbox = ? AND Password = ?";
+	public static final String QUERY_MAILBOX_PASSWORD = 
+			"SELECT MailboxID, Password FROM mailboxes WHERE Mailbox = ?";
 	public static final String QUERY_VALIDATE_TOKEN = 
 			"SELECT * FROM mailboxes WHERE Mailbox = ? AND Token = ?";
 	public static final String QUERY_UPDATE_TOKEN = 
 			"UPDATE mailboxes SET Token = ? WHERE Mailbox = ?";
-	public static final String QUERY_RESET_UID = 
-			"UPDATE messages AS messages " + 
-			"INNER JOIN mailboxes ON messages.MailboxID = mailboxes.MailboxID " + 
-			"SET UID = @IncrementValue:=@IncrementValue+1 " + 
-			"WHERE mailboxes.Mailbox = ?";	
+	public static final String QUERY_MAILBOX_UID = 
+			"SELECT UIDValidity, UIDNext FROM mailboxes WHERE MailboxID = ?";
 	public static final String QUERY_MESSAGES = 
 			"SELECT MessageID, UID, Subject, Sender, Recipient, Date, Mime, Body, Flag " + 
-			"FROM messages INNER JOIN mailboxes ON messages.MailboxID = mailboxes.MailboxID " + 
-			"WHERE mailboxes.Mailbox = ?";
+			"FROM messages WHERE MailboxID = ?";
 	public static final String QUERY_MESSAGES_UID_SEQUENCE = 
 			"SELECT MessageID, UID, Subject, Sender, Recipient, Date, Mime, Body, Flag " + 
-			"FROM messages INNER JOIN mailboxes ON messages.MailboxID = mailboxes.MailboxID " + 
-			"WHERE mailboxes.Mailbox = ? AND UID BETWEEN ? AND ?";
+			"FROM messages WHERE MailboxID = ? AND UID BETWEEN ? AND ?";
 	public static final String QUERY_SINGLE_MESSAGE = 
 			"SELECT MessageID, UID, Subject, Sender, Recipient, Date, Mime, Body, Flag " + 
-			"FROM messages INNER JOIN mailboxes ON messages.MailboxID = mailboxes.MailboxID " + 
-			"WHERE mailboxes.Mailbox = ? AND UID = ?";
+			"FROM messages WHERE MailboxID = ? AND UID = ?";
 	public static final String QUERY_COUNT_MESSAGES = 
-			"SELECT COUNT(*) FROM messages " +
-			"INNER JOIN mailboxes ON messages.MailboxID = mailboxes.MailboxID " +
-			"WHERE mailboxes.Mailbox = ? AND messages.Flag = ?";
+			"SELECT COUNT(*) FROM messages WHERE MailboxID = ? AND Flag = ?";
 	public static final String QUERY_COUNT_ALL_MESSAGES = 
-			"SELECT COUNT(*) FROM messages " +
-			"INNER JOIN mailboxes ON messages.MailboxID = mailboxes.MailboxID " +
-			"WHERE mailboxes.Mailbox = ?";
+			"SELECT COUNT(*) FROM messages WHERE MailboxID = ?";
 	public static final String QUERY_UPDATE_FLAG = 
-			"UPDATE messages AS messages " + 
-			"INNER JOIN mailboxes ON messages.MailboxID = mailboxes.MailboxID " + 
-			"SET messages.Flag = ? " + 
-			"WHERE messages.messageID = ? AND mailboxes.Mailbox = ?";
+			"UPDATE messages SET Flag = ? WHERE MessageID = ? AND MailboxID = ?";
 	public static final String QUERY_DELETE_MESSAGES = 
-			"DELETE messages FROM messages " +
-			"INNER JOIN mailboxes ON messages.MailboxID = mailboxes.MailboxID " +
-			"WHERE mailboxes.Mailbox = ? AND Flag = 'DELETED'";
+			"DELETE FROM messages WHERE MailboxID = ? AND Flag = 'DELETED'";
 	public static final String QUERY_SEARCH_ALL = 
 			"SELECT MessageID, UID, Subject, Sender, Recipient, Date, Mime, Body, Flag " + 
-			"FROM messages INNER JOIN mailboxes ON messages.MailboxID = mailboxes.MailboxID " + 
-			"WHERE mailboxes.Mailbox = ? AND (Subject LIKE ? OR Sender LIKE ? OR Recipient LIKE ? " +
+			"FROM messages WHERE MailboxID = ? AND (Subject LIKE ? OR Sender LIKE ? OR Recipient LIKE ? " +
 			"OR Body LIKE ?)";
 	public static final String QUERY_DATE_SINCE = 
 			"SELECT MessageID, UID, Subject, Sender, Recipient, Date, Mime, Body, Flag " + 
-			"FROM messages INNER JOIN mailboxes ON messages.MailboxID = mailboxes.MailboxID " + 
-			"WHERE mailboxes.Mailbox = ? AND Date >= ? ORDER BY UID ASC";
+			"FROM messages WHERE MailboxID = ? AND Date >= ? ORDER BY UID ASC";
 	public static final String QUERY_DATE_UNTIL = 
 			"SELECT MessageID, UID, Subject, Sender, Recipient, Date, Mime, Body, Flag " + 
-			"FROM messages INNER JOIN mailboxes ON messages.MailboxID = mailboxes.MailboxID " + 
-			"WHERE mailboxes.Mailbox = ? AND Date <= ? ORDER BY UID ASC";
+			"FROM messages WHERE MailboxID = ? AND Date <= ? ORDER BY UID ASC";
+	public static final String QUERY_CREATE_SCHEMA_VERSION = 
+			"CREATE TABLE IF NOT EXISTS schema_version (Version int(11) NOT NULL, Description varchar(255) NOT NULL, " + 
+			"AppliedAt timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP, PRIMARY KEY (Version)) ENGINE=InnoDB";
+	public static final String QUERY_SCHEMA_VERSIONS = 
+			"SELECT Version FROM schema_version";
+	public static final String QUERY_INSERT_SCHEMA_VERSION = 
+			"INSERT INTO schema_version (Version, Description) VALUES (?, ?)";
+	public static final String QUERY_GET_SCHEMA_LOCK = 
+			"SELECT GET_LOCK('mrp_schema_migration', ?)";
+	public static final String QUERY_RELEASE_SCHEMA_LOCK = 
+			"SELECT RELEASE_LOCK('mrp_schema_migration')";
 }
@@ -1,6 +1,5 @@
 package database;
 
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -15,33 +14,67 @@ import algorithms.SHA256Algorithm;
  */
 public class MailboxDAO{
 	
-	private ResultSet resultSet;
+	/**
+	 * The ID returned for the mailbox which does not exist, the IDs of the existing mailboxes start at 1
+	 */
+	public static final int NO_MAILBOX = 0;
+	
 	private String domain = "derby.ac.uk";
-	private Connection connection;
+	private DBConnect database;
+	private CredentialCache credentialCache;
 	
 	/**
 	 * Initiate Mailbox Database Access Object
 	 * 
-	 * @param connection the connection object which connects to the database
+	 * @param database the object that handles connection to the database
+	 */
+	public MailboxDAO(DBConnect database) {
+		this.database = database;
+	}
+	
+	/**
+	 * Set the cache of the password hashes shared by all sessions, which is checked before the database
+	 * 
+	 * @param credentialCache the credential cache, or null to check every password in the database
+	 */
+	public void setCredentialCache(CredentialCache credentialCache) {
+		this.credentialCache = credentialCache;
+	}
+	
+	/**
+	 * Returns the UID validity and the next UID of the mailbox, both read from the same row at once
+	 * 
+	 * @param mailboxID the ID of the mailbox
+	 * @return the UID state, zero values if the mailbox does not exist
+	 * @throws SQLException if the database connection failed
 	 */
-	public MailboxDAO(Connection connection) {
-		this.connection = connection;
+	public UIDState getUIDState(int mailboxID) throws SQLException{
+		PreparedStatement preparedStatement = database.prepareStatement(MYSQL.QUERY_MAILBOX_UID);
+		preparedStatement.setInt(1, mailboxID);
+		try (ResultSet resultSet = database.executeQuery(preparedStatement)) {
+			if (!resultSet.next()) {
+				return new UIDState(0, 0);
+			}
+			return new UIDState(resultSet.getLong(1), resultSet.getLong(2));
+		}
 	}
 	
 	/**
-	 * Reset unique identifiers (UID) of all messages of the current mailbox
+	 * Returns the ID of the mailbox which is used by the queries of the messages, it is taken from the credential cache
+	 * if the mailbox is cached
 	 * 
 	 * @param mailbox name of the mailbox
+	 * @return the ID of the mailbox, or {@link #NO_MAILBOX} if the mailbox does not exist
 	 * @throws SQLException if the database connection failed
 	 */
-	public void resetAllUID(String mailbox) throws SQLException{
-		PreparedStatement preparedStatement = connection.prepareStatement(MYSQL.QUERY_SET_INCREMENT);
-		preparedStatement.executeUpdate();
-		preparedStatement.close();
-		preparedStatement = connection.prepareStatement(MYSQL.QUERY_RESET_UID);
-		preparedStatement.setString(1, mailbox);
-		preparedStatement.executeUpdate();
-		preparedStatement.close();
+	public int getMailboxID(String mailbox) throws SQLException{
+		if (credentialCache != null) {
+			Integer mailboxID = credentialCache.getMailboxID(mailbox);
+			if (mailboxID != null) {
+				return mailboxID;
+			}
+		}
+		return readCredentials(mailbox).getMailboxID();
 	}
 	
 	/**
@@ -52,12 +85,11 @@ public class MailboxDAO{
 	 * @throws SQLException if the database connection failed
 	 */
 	public boolean isMailboxExists(String mailbox) throws SQLException{
-		PreparedStatement preparedStatement = connection.prepareStatement(MYSQL.QUERY_MAILBOX_EXISTS);
+		PreparedStatement preparedStatement = database.prepareStatement(MYSQL.QUERY_MAILBOX_EXISTS);
 		preparedStatement.setString(1, mailbox);
-		resultSet = preparedStatement.executeQuery();
-		boolean isMailboxExists = resultSet.first();
-		preparedStatement.close();
-		return isMailboxExists;
+		try (ResultSet resultSet = database.executeQuery(preparedStatement)) {
+			return resultSet.next();
+		}
 	}
 
 	/**
@@ -68,11 +100,10 @@ public class MailboxDAO{
 	 * @throws SQLException if the database connection failed
 	 */
 	public void storeToken(String mailbox, String token) throws SQLException{
-		PreparedStatement preparedStatement = connection.prepareStatement(MYSQL.QUERY_UPDATE_TOKEN);
+		PreparedStatement preparedStatement = database.prepareStatement(MYSQL.QUERY_UPDATE_TOKEN);
 		preparedStatement.setString(1, token);
 		preparedStatement.setString(2, mailbox);
-		preparedStatement.executeUpdate();
-		preparedStatement.close();
+		database.executeUpdate(preparedStatement);
 	}
 
 	/**
@@ -84,13 +115,12 @@ public class MailboxDAO{
 	 * @throws SQLException if the database connection failed
 	 */
 	public boolean validateToken(String mailbox, String token) throws SQLException{
-		PreparedStatement preparedStatement = connection.prepareStatement(MYSQL.QUERY_VALIDATE_TOKEN);
+		PreparedStatement preparedStatement = database.prepareStatement(MYSQL.QUERY_VALIDATE_TOKEN);
 		preparedStatement.setString(1, mailbox);
 		preparedStatement.setString(2, token);
-		resultSet = preparedStatement.executeQuery();		
-		boolean isTokenValid = resultSet.first();
-		preparedStatement.close();
-		return isTokenValid;
+		try (ResultSet resultSet = database.executeQuery(preparedStatement)) {
+			return resultSet.next();
+		}
 	}
 
 	/**
@@ -102,13 +132,59 @@ public class MailboxDAO{
 	 * @throws SQLException if the database connection failed
 	 */
 	public boolean validateMailbox(String mailbox, String password) throws SQLException{
-		PreparedStatement preparedStatement = connection.prepareStatement(MYSQL.QUERY_VALIDATE_MAILBOX);
+		if (credentialCache != null) {
+			return validateCachedMailbox(mailbox, password);
+		}
+		PreparedStatement preparedStatement = database.prepareStatement(MYSQL.QUERY_VALIDATE_MAILBOX);
 		preparedStatement.setString(1, mailbox);
 		preparedStatement.setString(2, password);
-		resultSet = preparedStatement.executeQuery();
-		boolean isMailboxValid = resultSet.first();
-		preparedStatement.close();
-		return isMailboxValid;
+		try (ResultSet resultSet = database.executeQuery(preparedStatement)) {
+			return resultSet.next();
+		}
+	}
+	
+	/**
+	 * Check the password in the credential cache, the password hash of the mailbox is read from the database and cached
+	 * if the mailbox is not cached yet, the mailbox which does not exist is cached as well
+	 * 
+	 * @param mailbox name of the mailbox
+	 * @param password the password sent by the client
+	 * @return true if the client has permissions to use the mailbox, false otherwise
+	 * @throws SQLException if the database connection failed
+	 */
+	private boolean validateCachedMailbox(String mailbox, String password) throws SQLException{
+		Boolean isMailboxValid = credentialCache.validate(mailbox, password);
+		if (isMailboxValid != null) {
+			return isMailboxValid;
+		}
+		return CredentialCache.matches(readCredentials(mailbox).getPassword(), password);
+	}
+	
+	/**
+	 * Read the ID and the password hash of the mailbox from the database and store them in the credential cache,
+	 * unless the mailbox has been created or changed while it was read
+	 * 
+	 * @param mailbox name of the mailbox
+	 * @return the credentials of the mailbox, the ID is {@link #NO_MAILBOX} if the mailbox does not exist
+	 * @throws SQLException if the database connection failed
+	 */
+	private CredentialCache.Credential readCredentials(String mailbox) throws SQLException{
+		long invalidations = credentialCache != null ? credentialCache.getInvalidations() : 0;
+		PreparedStatement preparedStatement = database.prepareStatement(MYSQL.QUERY_MAILBOX_PASSWORD);
+		preparedStatement.setString(1, mailbox);
+		int mailboxID = NO_MAILBOX;
+		String storedPassword = null;
+		try (ResultSet resultSet = database.executeQuery(preparedStatement)) {
+			if (resultSet.next()) {
+				mailboxID = resultSet.getInt(1);
+				storedPassword = resultSet.getString(2);
+			}
+		}
+		CredentialCache.Credential credential = new CredentialCache.Credential(mailboxID, storedPassword);
+		if (credentialCache != null) {
+			credentialCache.put(mailbox, credential, invalidations);
+		}
+		return credential;
 	}
 	
 	/**
@@ -120,12 +196,51 @@ public class MailboxDAO{
 	 * @throws SQLException if the database connection failed
 	 */
 	public void createMailbox(String mailbox, String password, String token) throws SQLException {
-		PreparedStatement preparedStatement = connection.prepareStatement(MYSQL.QUERY_CREATE_MAILBOX);
+		PreparedStatement preparedStatement = database.prepareStatement(MYSQL.QUERY_CREATE_MAILBOX);
 		preparedStatement.setString(1, mailbox);
 		preparedStatement.setString(2, domain);
 		preparedStatement.setString(3, SHA256Algorithm.hash(password.getBytes()));
 		preparedStatement.setString(4, token);
-		preparedStatement.executeUpdate();
-		preparedStatement.close();
+		database.executeUpdate(preparedStatement);
+		if (credentialCache != null) {
+			credentialCache.invalidate(mailbox);
+		}
+	}
+	
+	/**
+	 * This class holds the UID validity and the next UID of the mailbox reported by SELECT Command
+	 */
+	public static class UIDState {
+		private long uidValidity;
+		private long uidNext;
+		
+		/**
+		 * Initialize UID state
+		 * 
+		 * @param uidValidity the UID validity, the UIDs cached by the client are valid as long as it does not change
+		 * @param uidNext the UID which will be assigned to the next message delivered to the mailbox
+		 */
+		UIDState(long uidValidity, long uidNext) {
+			this.uidValidity = uidValidity;
+			this.uidNext = uidNext;
+		}
+		
+		/**
+		 * Returns the UID validity of the mailbox
+		 * 
+		 * @return the UID validity
+		 */
+		public long getUIDValidity() {
+			return uidValidity;
+		}
+		
+		/**
+		 * Returns the UID which will be assigned to the next message delivered to the mailbox
+		 * 
+		 * @return the next UID
+		 */
+		public long getUIDNext() {
+			return uidNext;
+		}
 	}
 }
@@ -0,0 +1,83 @@
+package database;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import server.Message;
+
+/**
+ * This class reads messages from the database one row at a time, so the caller can send each message
+ * before the next one is fetched and never holds the whole mailbox in memory.
+ * The cursor must be closed once the messages have been read, the statement is cached by the connection and stays open.
+ *
+ * @author Martin Holecek
+ *
+ */
+public class MessageCursor implements AutoCloseable {
+
+	private DBConnect database;
+	private ResultSet resultSet;
+	private boolean verbose;
+
+	/**
+	 * Execute the prepared query and open the cursor over its rows
+	 *
+	 * @param database the database connection of the session which executes the calls of the cursor
+	 * @param preparedStatement the query with all parameters set
+	 * @param fetchSize the number of rows fetched from the database at once, zero for the driver default
+	 * @param verbose if true the messages are printed to the console
+	 * @throws SQLException if the database connection failed
+	 */
+	public MessageCursor(DBConnect database, PreparedStatement preparedStatement, int fetchSize, boolean verbose) throws SQLException {
+		this.database = database;
+		this.verbose = verbose;
+		preparedStatement.setFetchSize(fetchSize);
+		resultSet = database.executeQuery(preparedStatement);
+	}
+
+	/**
+	 * Read the next message
+	 *
+	 * @return the message object, or null if there are no more messages
+	 * @throws SQLException if the database connection failed
+	 */
+	public Message next() throws SQLException {
+		if (!database.next(resultSet)) {
+			return null;
+		}
+		Message message = new Message();
+		message.setMessageID(resultSet.getInt("MessageID"));
+		message.setMessageUID(resultSet.getInt("UID"));
+		message.setSubject(resultSet.getString("Subject"));
+		message.setSender(resultSet.getString("Sender"));
+		message.setRecipients(resultSet.getString("Recipient"));
+		message.setDate(resultSet.getDate("Date"));
+		message.setBody(resultSet.getString("Mime"));
+		message.setBody(resultSet.getString("Body"));
+		displayVerboseMessage(message);
+		return message;
+	}
+
+	/**
+	 * Close the result set of the cursor
+	 *
+	 * @throws SQLException if the database connection failed
+	 */
+	public void close() throws SQLException {
+		database.close(resultSet);
+	}
+
+	/**
+	 * Print message object to the console
+	 *
+	 * @param message the message object
+	 */
+	private void displayVerboseMessage(Message message) {
+		if (verbose) {
+			System.out.println("///////////////// BEGIN MAIL /////////////////");
+			System.out.println(message);
+			System.out.println("////////////////// END MAIL //////////////////");
+		}
+	}
+}
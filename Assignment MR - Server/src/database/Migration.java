@@ -0,0 +1,75 @@
+package database;
+
+/**
+ * This class is one versioned change of the database schema. The migration is applied once and its version
+ * is recorded in the schema_version table, the optional migration is applied only when it is enabled by the configuration
+ *
+ * @author Martin Holecek
+ *
+ */
+public class Migration {
+
+	private int version;
+	private String description;
+	private boolean optional;
+	private String[] statements;
+
+	/**
+	 * Initialize migration
+	 *
+	 * @param version the unique version, the migrations are applied in the order of their versions
+	 * @param description the description recorded with the version
+	 * @param optional true if the migration is applied only when it is enabled
+	 * @param statements the SQL statements executed in the given order
+	 */
+	public Migration(int version, String description, boolean optional, String... statements) {
+		this.version = version;
+		this.description = description;
+		this.optional = optional;
+		this.statements = statements;
+	}
+
+	/**
+	 * Returns the version of the migration
+	 *
+	 * @return the version
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Returns the description of the migration
+	 *
+	 * @return the description
+	 */
+	public String getDescription() {
+		return description;
+	}
+
+	/**
+	 * Returns true if the migration is applied only when it is enabled
+	 *
+	 * @return true if the migration is optional, false otherwise
+	 */
+	public boolean isOptional() {
+		return optional;
+	}
+
+	/**
+	 * Returns the SQL statements of the migration
+	 *
+	 * @return the statements executed in the given order
+	 */
+	public String[] getStatements() {
+		return statements;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return version + " " + description;
+	}
+}
@@ -0,0 +1,157 @@
+package database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class brings the database schema up to date when the server starts. The applied versions are recorded
+ * in the schema_version table, every migration which has not been applied yet is applied in the order of its version.
+ * The servers started at once wait for each other on the named lock of the database, so each migration is applied only once.
+ * MYSQL commits every ALTER TABLE statement implicitly, so the version is recorded after all statements of the migration succeed
+ * and the failed migration stops the run, the later migrations are not applied until it is fixed.
+ *
+ * @author Martin Holecek
+ *
+ */
+public class MigrationRunner {
+
+	private static final int LOCK_TIMEOUT = 60;
+
+	private Connection connection;
+	private Logger logger;
+
+	/**
+	 * Initialize migration runner
+	 *
+	 * @param connection the connection to the database, it is not closed by the runner
+	 * @param logger the logger object which logs the applied migrations
+	 */
+	public MigrationRunner(Connection connection, Logger logger) {
+		this.connection = connection;
+		this.logger = logger;
+	}
+
+	/**
+	 * Apply all migrations which have not been applied yet
+	 *
+	 * @param migrations the migrations in the order of their versions
+	 * @param optional the versions of the optional migrations which are enabled
+	 * @return the number of applied migrations
+	 * @throws SQLException if the lock has not been acquired or the migration failed
+	 */
+	public int migrate(List<Migration> migrations, Set<Integer> optional) throws SQLException {
+		try (Statement statement = connection.createStatement()) {
+			statement.execute(MYSQL.QUERY_CREATE_SCHEMA_VERSION);
+		}
+		lock();
+		try {
+			Set<Integer> applied = getAppliedVersions();
+			int count = 0;
+			for (Migration migration : migrations) {
+				if (applied.contains(migration.getVersion())
+						|| (migration.isOptional() && !optional.contains(migration.getVersion()))) {
+					continue;
+				}
+				apply(migration);
+				count++;
+			}
+			return count;
+		} finally {
+			unlock();
+		}
+	}
+
+	/**
+	 * Returns the versions of the migrations which are not optional and have not been applied yet,
+	 * the server cannot run on the schema until they are applied
+	 *
+	 * @param migrations the migrations in the order of their versions
+	 * @return the pending versions, empty if the schema is up to date
+	 * @throws SQLException if the schema_version table does not exist or the database connection failed
+	 */
+	public List<Integer> getPendingVersions(List<Migration> migrations) throws SQLException {
+		Set<Integer> applied = getAppliedVersions();
+		List<Integer> pending = new ArrayList<>();
+		for (Migration migration : migrations) {
+			if (!migration.isOptional() && !applied.contains(migration.getVersion())) {
+				pending.add(migration.getVersion());
+			}
+		}
+		return pending;
+	}
+
+	/**
+	 * Returns the versions recorded in the schema_version table
+	 *
+	 * @return the applied versions
+	 * @throws SQLException if the database connection failed
+	 */
+	public Set<Integer> getAppliedVersions() throws SQLException {
+		Set<Integer> versions = new HashSet<>();
+		try (Statement statement = connection.createStatement();
+				ResultSet resultSet = statement.executeQuery(MYSQL.QUERY_SCHEMA_VERSIONS)) {
+			while (resultSet.next()) {
+				versions.add(resultSet.getInt(1));
+			}
+		}
+		return versions;
+	}
+
+	/**
+	 * Execute the statements of the migration and record its version
+	 *
+	 * @param migration the migration
+	 * @throws SQLException if the statement failed
+	 */
+	private void apply(Migration migration) throws SQLException {
+		long start = System.currentTimeMillis();
+		try (Statement statement = connection.createStatement()) {
+			for (String sql : migration.getStatements()) {
+				statement.execute(sql);
+			}
+		}
+		try (PreparedStatement statement = connection.prepareStatement(MYSQL.QUERY_INSERT_SCHEMA_VERSION)) {
+			statement.setInt(1, migration.getVersion());
+			statement.setString(2, migration.getDescription());
+			statement.executeUpdate();
+		}
+		logger.log(Level.INFO, "Schema migration " + migration + " applied in " + (System.currentTimeMillis() - start) + " ms");
+	}
+
+	/**
+	 * Wait for the named lock which prevents other servers from migrating the same database at once
+	 *
+	 * @throws SQLException if the lock has not been acquired before the timeout
+	 */
+	private void lock() throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement(MYSQL.QUERY_GET_SCHEMA_LOCK)) {
+			statement.setInt(1, LOCK_TIMEOUT);
+			try (ResultSet resultSet = statement.executeQuery()) {
+				if (!resultSet.next() || resultSet.getInt(1) != 1) {
+					throw new SQLException("Schema migration lock not acquired within " + LOCK_TIMEOUT + " seconds");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Release the named lock of the migration
+	 *
+	 * @throws SQLException if the database connection failed
+	 */
+	private void unlock() throws SQLException {
+		try (Statement statement = connection.createStatement();
+				ResultSet resultSet = statement.executeQuery(MYSQL.QUERY_RELEASE_SCHEMA_LOCK)) {
+			resultSet.next();
+		}
+	}
+}
@@ -0,0 +1,61 @@
+package database;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class holds the migrations of the database schema created by SQL.sql, in the order of their versions.
+ * A released migration is never changed, the further change of the schema is added as the new migration.
+ * MYSQL commits every DDL statement on its own, so the migration holds at most one of them and its other statements
+ * can be executed again, the migration which failed half way is then simply repeated on the next start
+ *
+ * @author Martin Holecek
+ *
+ */
+public final class Migrations {
+
+	/**
+	 * The version of the optional migration which stores the messages of each mailbox next to each other
+	 */
+	public static final int CLUSTERED_MESSAGES = 5;
+
+
+	/**
+	 * All migrations in the order of their versions
+	 */
+	public static final List<Migration> ALL = Collections.unmodifiableList(Arrays.asList(
+			new Migration(1, "Unique index of the mailbox names", false,
+					"ALTER TABLE mailboxes ADD UNIQUE KEY UK_MAILBOX (Mailbox)"),
+			new Migration(2, "Index of the messages by mailbox and UID", false,
+					"ALTER TABLE messages ADD KEY IDX_MAILBOX_UID (MailboxID, UID)"),
+			new Migration(3, "Index of the messages by mailbox and flag", false,
+					"ALTER TABLE messages ADD KEY IDX_MAILBOX_FLAG (MailboxID, Flag)"),
+			new Migration(4, "Index of the messages by mailbox and date", false,
+					"ALTER TABLE messages ADD KEY IDX_MAILBOX_DATE (MailboxID, Date)"),
+			new Migration(CLUSTERED_MESSAGES, "Messages clustered by mailbox", true,
+					"ALTER TABLE messages DROP PRIMARY KEY, ADD PRIMARY KEY (MailboxID, MessageID), "
+							+ "ADD UNIQUE KEY UK_MESSAGE (MessageID)"),
+			new Migration(6, "UID validity and next UID of the mailboxes", false,
+					"ALTER TABLE mailboxes ADD UIDValidity int(10) unsigned NOT NULL DEFAULT 1, "
+							+ "ADD UIDNext int(11) NOT NULL DEFAULT 1"),
+			new Migration(7, "Message UIDs assigned on insert", false,
+					"CREATE TRIGGER TR_MESSAGE_UID BEFORE INSERT ON messages FOR EACH ROW BEGIN "
+							+ "DECLARE nextUID int; "
+							+ "SELECT UIDNext INTO nextUID FROM mailboxes WHERE MailboxID = NEW.MailboxID FOR UPDATE; "
+							+ "SET NEW.UID = nextUID; "
+							+ "UPDATE mailboxes SET UIDNext = nextUID + 1 WHERE MailboxID = NEW.MailboxID; "
+							+ "END"),
+			new Migration(8, "Messages numbered once by mailbox", false,
+					"LOCK TABLES messages WRITE, messages AS numbered READ, mailboxes WRITE",
+					"UPDATE messages JOIN (SELECT MessageID, ROW_NUMBER() OVER (PARTITION BY MailboxID ORDER BY MessageID) AS NewUID "
+							+ "FROM messages AS numbered) AS numbers USING (MessageID) SET messages.UID = numbers.NewUID",
+					"UPDATE mailboxes SET UIDValidity = UNIX_TIMESTAMP(), "
+							+ "UIDNext = 1 + (SELECT COALESCE(MAX(UID), 0) FROM messages WHERE messages.MailboxID = mailboxes.MailboxID)",
+					"UNLOCK TABLES"),
+			new Migration(9, "Unique UIDs of the messages in each mailbox", false,
+					"ALTER TABLE messages DROP KEY IDX_MAILBOX_UID, ADD UNIQUE KEY UK_MAILBOX_UID (MailboxID, UID)")));
+
+	private Migrations() {
+	}
+}
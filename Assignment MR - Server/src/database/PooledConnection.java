@@ -0,0 +1,131 @@
+package database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class is the database connection of the pool with the prepared statements of its recently used queries.
+ * The statement is prepared by the database once and reused by every later command with the same SQL text, the commands
+ * only set its parameters. The statements belong to the connection and the commands never close them, every result set
+ * left open by the command is closed when the connection is returned to the pool.
+ * The least recently used statement is closed when there are more statements than the cache size.
+ *
+ * @author Martin Holecek
+ *
+ */
+public class PooledConnection {
+
+	private Connection connection;
+	private ConnectionPool pool;
+	private Map<String, PreparedStatement> statements;
+	private List<PreparedStatement> used;
+	private List<PreparedStatement> evicted;
+
+	/**
+	 * Initialize pooled connection
+	 *
+	 * @param connection the connection to the database
+	 * @param pool the pool which counts the statements
+	 * @param maxStatements the maximum number of cached statements, 0 closes every statement after the command
+	 */
+	PooledConnection(Connection connection, ConnectionPool pool, int maxStatements) {
+		this.connection = connection;
+		this.pool = pool;
+		used = new ArrayList<>();
+		evicted = new ArrayList<>();
+		statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+				if (size() <= maxStatements) {
+					return false;
+				}
+				evicted.add(eldest.getValue());
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Returns the prepared statement of the query, the cached statement is reused with its parameters cleared
+	 *
+	 * @param sql the SQL text of the query
+	 * @return the prepared statement which must not be closed by the caller
+	 * @throws SQLException if the database connection failed
+	 */
+	PreparedStatement prepareStatement(String sql) throws SQLException {
+		PreparedStatement statement = statements.get(sql);
+		if (statement != null) {
+			statement.clearParameters();
+			pool.countStatement(true);
+		} else {
+			statement = connection.prepareStatement(sql);
+			statements.put(sql, statement);
+			pool.countStatement(false);
+		}
+		used.add(statement);
+		return statement;
+	}
+
+	/**
+	 * Close the result sets the last command left open and the statements which have been evicted from the cache
+	 *
+	 * @throws SQLException if the database connection failed
+	 */
+	void finishCommand() throws SQLException {
+		try {
+			for (PreparedStatement statement : used) {
+				ResultSet resultSet = statement.getResultSet();
+				if (resultSet != null && !resultSet.isClosed()) {
+					resultSet.close();
+					pool.countLeak();
+				}
+			}
+			for (PreparedStatement statement : evicted) {
+				statement.close();
+				pool.countEviction();
+			}
+		} finally {
+			used.clear();
+			evicted.clear();
+		}
+	}
+
+	/**
+	 * Returns the connection to the database
+	 *
+	 * @return the connection object
+	 */
+	Connection getConnection() {
+		return connection;
+	}
+
+	/**
+	 * Returns the number of cached statements
+	 *
+	 * @return the number of statements
+	 */
+	int getStatementCount() {
+		return statements.size();
+	}
+
+	/**
+	 * Close the connection with all its statements
+	 *
+	 * @throws SQLException if the database connection failed
+	 */
+	void close() throws SQLException {
+		pool.countClosedStatements(statements.size() + evicted.size());
+		statements.clear();
+		evicted.clear();
+		used.clear();
+		connection.close();
+	}
+}
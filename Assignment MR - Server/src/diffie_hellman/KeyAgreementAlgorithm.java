@@ -0,0 +1,128 @@
+package diffie_hellman;
+
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.X509EncodedKeySpec;
+
+import javax.crypto.KeyAgreement;
+
+/**
+ * This enumeration lists the key agreement algorithms the client can choose in AUTH Command.
+ * The public keys are exchanged as X.509 encoded frames in the same way for every algorithm,
+ * and the shared secret is used as the key of the session cipher.
+ * X25519 is looked up by its name, so it is available only when the JVM supports it (Java 11 or newer).
+ *
+ * @author Martin Holecek
+ *
+ */
+public enum KeyAgreementAlgorithm {
+
+	/**
+	 * Finite field Diffie-Hellman with 2048 bit modulus
+	 */
+	DH("DH", "DH", "DH", null),
+
+	/**
+	 * Elliptic curve Diffie-Hellman on Curve25519
+	 */
+	X25519("X25519", "X25519", "X25519", null),
+
+	/**
+	 * Elliptic curve Diffie-Hellman on NIST P-256 curve
+	 */
+	ECDH("EC", "EC", "ECDH", "secp256r1");
+
+	private static final int DH_KEY_SIZE = 2048;
+
+	private String keyPairAlgorithm;
+	private String keyFactoryAlgorithm;
+	private String agreementAlgorithm;
+	private String curve;
+
+	/**
+	 * Initialize key agreement algorithm
+	 *
+	 * @param keyPairAlgorithm the name of the key pair generator algorithm
+	 * @param keyFactoryAlgorithm the name of the key factory algorithm
+	 * @param agreementAlgorithm the name of the key agreement algorithm
+	 * @param curve the name of the elliptic curve, or null if the algorithm defines its own parameters
+	 */
+	KeyAgreementAlgorithm(String keyPairAlgorithm, String keyFactoryAlgorithm, String agreementAlgorithm, String curve) {
+		this.keyPairAlgorithm = keyPairAlgorithm;
+		this.keyFactoryAlgorithm = keyFactoryAlgorithm;
+		this.agreementAlgorithm = agreementAlgorithm;
+		this.curve = curve;
+	}
+
+	/**
+	 * Check if the running JVM supports the algorithm
+	 *
+	 * @return true if the key pair can be generated and the key agreement can be created, false otherwise
+	 */
+	public boolean isSupported() {
+		try {
+			KeyPairGenerator.getInstance(keyPairAlgorithm);
+			KeyFactory.getInstance(keyFactoryAlgorithm);
+			KeyAgreement.getInstance(agreementAlgorithm);
+			return true;
+		} catch (NoSuchAlgorithmException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Generate private and public key
+	 *
+	 * @return the generated key pair
+	 * @throws NoSuchAlgorithmException if no Provider supports the algorithm or its curve
+	 */
+	public KeyPair generateKeyPair() throws NoSuchAlgorithmException {
+		KeyPairGenerator generator = KeyPairGenerator.getInstance(keyPairAlgorithm);
+		if (curve != null) {
+			try {
+				generator.initialize(new ECGenParameterSpec(curve));
+			} catch (InvalidAlgorithmParameterException e) {
+				throw new NoSuchAlgorithmException("Curve " + curve + " is not supported", e);
+			}
+		} else if (this == DH) {
+			generator.initialize(DH_KEY_SIZE);
+		}
+		return generator.generateKeyPair();
+	}
+
+	/**
+	 * Decode the X.509 encoded public key received from the other side
+	 *
+	 * @param keyBytes the buffer with the encoded public key
+	 * @return a reference to the public key
+	 * @throws NoSuchAlgorithmException if no Provider supports the algorithm
+	 * @throws InvalidKeySpecException if the given key specification is inappropriate for this key factory to produce a public key.
+	 */
+	public PublicKey decodePublicKey(byte[] keyBytes) throws NoSuchAlgorithmException, InvalidKeySpecException {
+		KeyFactory keyFactory = KeyFactory.getInstance(keyFactoryAlgorithm);
+		return keyFactory.generatePublic(new X509EncodedKeySpec(keyBytes));
+	}
+
+	/**
+	 * Generate shared secret from keyPair object and public key
+	 *
+	 * @param keyPair the keyPair object contains the public and private key
+	 * @param publicKey the public key of the other side
+	 * @return the new buffer with the shared secret
+	 * @throws NoSuchAlgorithmException if no Provider supports a KeyAgreementSpi implementation for the algorithm
+	 * @throws InvalidKeyException if the given key is inappropriate for this phase
+	 */
+	public byte[] generateSecret(KeyPair keyPair, PublicKey publicKey) throws NoSuchAlgorithmException, InvalidKeyException {
+		KeyAgreement keyAgreement = KeyAgreement.getInstance(agreementAlgorithm);
+		keyAgreement.init(keyPair.getPrivate());
+		keyAgreement.doPhase(publicKey, true);
+		return keyAgreement.generateSecret();
+	}
+}
@@ -0,0 +1,23 @@
+package diffie_hellman;
+
+import java.io.IOException;
+
+/**
+ * Signals that the key agreement queue is full, AUTH Command answers BAD and the session keeps its previous encryption mode
+ *
+ * @author Martin Holecek
+ *
+ */
+public class KeyAgreementBusyException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Initialize the exception with the message sent to the client
+	 *
+	 * @param message the detail message
+	 */
+	public KeyAgreementBusyException(String message) {
+		super(message);
+	}
+}
@@ -2,15 +2,12 @@ package diffie_hellman;
 
 import java.io.IOException;
 import java.security.InvalidKeyException;
-import java.security.Key;
-import java.security.KeyFactory;
 import java.security.KeyPair;
-import java.security.KeyPairGenerator;
 import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
 import java.security.spec.InvalidKeySpecException;
-import java.security.spec.X509EncodedKeySpec;
-import javax.crypto.KeyAgreement;
+import java.util.concurrent.Future;
+
 import server.Session;
 
 /**
@@ -20,8 +17,22 @@ import server.Session;
  *
  */
 public class KeyExchange {
-	private static final int KEY_SIZE = 2048;
-	private static final String DIFFIE_HELLMAN_ALGORITHM = "DH";
+	private KeyPairPool keyPairPool;
+
+	/**
+	 * Initialize key exchange which generates the key pair for every exchange
+	 */
+	public KeyExchange() {
+	}
+
+	/**
+	 * Initialize key exchange which takes the key pairs of the server from the pool
+	 * 
+	 * @param keyPairPool the pool of the key pairs generated in advance, or null to generate the key pair for every exchange
+	 */
+	public KeyExchange(KeyPairPool keyPairPool) {
+		this.keyPairPool = keyPairPool;
+	}
 
 	/**
 	 * Initialize key exchange between server and client. This method MUST be used by the client to initialize key exchange.
@@ -34,10 +45,25 @@ public class KeyExchange {
 	 * @throws InvalidKeyException if the given key is inappropriate for initializing this cipher, or requires algorithm parameters that cannot be determined from the given key, or if the given key has a keysize that exceeds the maximum allowable keysize (as determined from the configured jurisdiction policy files). 
 	 */
 	public byte[] initClient(Session session) throws IOException, NoSuchAlgorithmException, InvalidKeySpecException, InvalidKeyException {
-		KeyPair keyPair = generateKeyPair();
+		return initClient(session, KeyAgreementAlgorithm.DH);
+	}
+
+	/**
+	 * Initialize key exchange with the given key agreement algorithm. This method MUST be used by the client to initialize key exchange.
+	 * 
+	 * @param session the object that handles connection between server and client
+	 * @param algorithm the key agreement algorithm chosen in AUTH Command
+	 * @return the secret key object used for encryption
+	 * @throws IOException if the stream has been closed or another I/O error
+	 * @throws InvalidKeySpecException if the given key specification is inappropriate for this secret-key factory to produce a secret key.
+	 * @throws NoSuchAlgorithmException if transformation is null, empty, in an invalid format, or if a CipherSpi implementation for the specified algorithm is not available from the specified Provider object. 
+	 * @throws InvalidKeyException if the given key is inappropriate for initializing this cipher, or requires algorithm parameters that cannot be determined from the given key, or if the given key has a keysize that exceeds the maximum allowable keysize (as determined from the configured jurisdiction policy files). 
+	 */
+	public byte[] initClient(Session session, KeyAgreementAlgorithm algorithm) throws IOException, NoSuchAlgorithmException, InvalidKeySpecException, InvalidKeyException {
+		KeyPair keyPair = algorithm.generateKeyPair();
 		sendPublicKey(session, keyPair);
-		PublicKey publicKey = readPublicKey(session);
-		return generateSecret(keyPair, publicKey);
+		PublicKey publicKey = readPublicKey(session, algorithm);
+		return algorithm.generateSecret(keyPair, publicKey);
 	}
 
 	/**
@@ -51,23 +77,36 @@ public class KeyExchange {
 	 * @throws InvalidKeyException if the given key is inappropriate for initializing this cipher, or requires algorithm parameters that cannot be determined from the given key, or if the given key has a keysize that exceeds the maximum allowable keysize (as determined from the configured jurisdiction policy files). 
 	 */
 	public byte[] initServer(Session session) throws IOException, NoSuchAlgorithmException, InvalidKeySpecException, InvalidKeyException {
-		KeyPair keyPair = generateKeyPair();
-		PublicKey publicKey = readPublicKey(session);
-		sendPublicKey(session, keyPair);
-		return generateSecret(keyPair, publicKey);
+		return initServer(session, KeyAgreementAlgorithm.DH);
 	}
 
 	/**
-	 * Generate private and public key
+	 * Initialize key exchange with the given key agreement algorithm. This method MUST be used by the server to initialize key exchange.
+	 * The key pairs of the pool are used only for the finite field Diffie-Hellman, the elliptic curve key pairs are cheap to generate.
 	 * 
-	 * @return the generated key pair
-	 * @throws NoSuchAlgorithmException if no Provider supports a KeyPairGeneratorSpi implementation for the specified algorithm.
+	 * @param session the object that handles connection between server and client
+	 * @param algorithm the key agreement algorithm chosen in AUTH Command
+	 * @return the secret key object used for encryption
+	 * @throws IOException if the stream has been closed or another I/O error
+	 * @throws InvalidKeySpecException if the given key specification is inappropriate for this secret-key factory to produce a secret key.
+	 * @throws NoSuchAlgorithmException if transformation is null, empty, in an invalid format, or if a CipherSpi implementation for the specified algorithm is not available from the specified Provider object. 
+	 * @throws InvalidKeyException if the given key is inappropriate for initializing this cipher, or requires algorithm parameters that cannot be determined from the given key, or if the given key has a keysize that exceeds the maximum allowable keysize (as determined from the configured jurisdiction policy files). 
 	 */
-	private KeyPair generateKeyPair() throws NoSuchAlgorithmException {
-		KeyPairGenerator kpg = KeyPairGenerator.getInstance(DIFFIE_HELLMAN_ALGORITHM);
-		kpg.initialize(KEY_SIZE);
-		KeyPair keyPair = kpg.genKeyPair();
-		return keyPair;		
+	public byte[] initServer(Session session, KeyAgreementAlgorithm algorithm) throws IOException, NoSuchAlgorithmException, InvalidKeySpecException, InvalidKeyException {
+		if (keyPairPool == null || algorithm != KeyAgreementAlgorithm.DH) {
+			KeyPair keyPair = algorithm.generateKeyPair();
+			PublicKey publicKey = readPublicKey(session, algorithm);
+			sendPublicKey(session, keyPair);
+			return algorithm.generateSecret(keyPair, publicKey);
+		}
+		long start = System.nanoTime();
+		KeyPair keyPair = keyPairPool.take();
+		PublicKey publicKey = readPublicKey(session, algorithm);
+		Future<byte[]> agreement = keyPairPool.submitAgreement(keyPair.getPrivate(), publicKey);
+		sendPublicKey(session, keyPair);
+		byte[] secret = keyPairPool.awaitAgreement(agreement);
+		keyPairPool.recordHandshake(System.nanoTime() - start);
+		return secret;
 	}
 
 	/**
@@ -86,32 +125,14 @@ public class KeyExchange {
 	 * Read public key sent by the server or client over the network
 	 * 
 	 * @param session the object that handles connection between server and client
+	 * @param algorithm the key agreement algorithm of the key
 	 * @return a reference to the public key
 	 * @throws IOException if the stream has been closed or another I/O error
 	 * @throws NoSuchAlgorithmException if transformation is null, empty, in an invalid format, or if a CipherSpi implementation for the specified algorithm is not available from the specified Provider object. 
 	 * @throws InvalidKeySpecException if the given key specification is inappropriate for this secret-key factory to produce a secret key.
 	 */
-	private PublicKey readPublicKey(Session session) throws IOException, NoSuchAlgorithmException, InvalidKeySpecException {		
+	private PublicKey readPublicKey(Session session, KeyAgreementAlgorithm algorithm) throws IOException, NoSuchAlgorithmException, InvalidKeySpecException {		
 		byte[] keyBytes = session.readBytes();
-		KeyFactory keyFactory = KeyFactory.getInstance(DIFFIE_HELLMAN_ALGORITHM);
-		X509EncodedKeySpec x509EncodedKeySpec = new X509EncodedKeySpec(keyBytes);
-		PublicKey publicKey = keyFactory.generatePublic(x509EncodedKeySpec);		
-		return publicKey;
-	}
-
-	/**
-	 * Generate shared secret from keyPair object and public key
-	 * 
-	 * @param keyPair the keyPair object contains the public and private key
-	 * @param publicKey the public key object
-	 * @return the new buffer with the shared secret 
-	 * @throws NoSuchAlgorithmException if no Provider supports a KeyAgreementSpi implementation for the specified algorithm
-	 * @throws InvalidKeyException if the given key is inappropriate for this phase
-	 */
-	private byte[] generateSecret(KeyPair keyPair, Key publicKey) throws NoSuchAlgorithmException, InvalidKeyException {
-		KeyAgreement keyAgreement = KeyAgreement.getInstance(DIFFIE_HELLMAN_ALGORITHM);
-		keyAgreement.init(keyPair.getPrivate());
-		keyAgreement.doPhase(publicKey, true);
-		return keyAgreement.generateSecret();
+		return algorithm.decodePublicKey(keyBytes);
 	}
 }
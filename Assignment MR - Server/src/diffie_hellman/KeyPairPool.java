@@ -0,0 +1,239 @@
+package diffie_hellman;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.crypto.KeyAgreement;
+import javax.crypto.interfaces.DHPublicKey;
+import javax.crypto.spec.DHParameterSpec;
+
+import server.MetricsSource;
+
+/**
+ * This class keeps Diffie-Hellman key pairs of the server generated in advance by the background thread,
+ * so AUTH Command does not wait for the key pair generation. All key pairs share the same domain parameters,
+ * which are generated only once. The failed generation is logged and the background thread tries again after a short delay,
+ * the key pairs are generated during AUTH Command in the meantime. The key agreement runs on the bounded pool of threads, so many clients
+ * authenticating at once do not use more CPU cores than configured.
+ *
+ * @author Martin Holecek
+ *
+ */
+public class KeyPairPool implements MetricsSource {
+
+	private static final int KEY_SIZE = 2048;
+	private static final String DIFFIE_HELLMAN_ALGORITHM = "DH";
+	private static final long NANOS_PER_MILLI = 1000000;
+	private static final long RETRY_DELAY = 1000;
+
+	private DHParameterSpec parameters;
+	private BlockingQueue<KeyPair> keyPairs;
+	private ThreadPoolExecutor agreementExecutor;
+	private Thread generatorThread;
+	private Logger logger;
+	private AtomicLong hits;
+	private AtomicLong misses;
+	private AtomicLong failures;
+	private AtomicLong rejections;
+	private AtomicLong handshakes;
+	private AtomicLong handshakeNanos;
+	private AtomicLong maxHandshakeNanos;
+
+	/**
+	 * Initialize key pair pool and start the background thread which fills it
+	 *
+	 * @param size the number of key pairs generated in advance
+	 * @param agreementThreads the number of threads running the key agreement
+	 * @param agreementQueue the maximum number of key agreements waiting for the thread
+	 * @param logger the logger object which logs the failures of the background thread
+	 * @throws NoSuchAlgorithmException if no Provider supports Diffie-Hellman
+	 */
+	public KeyPairPool(int size, int agreementThreads, int agreementQueue, Logger logger) throws NoSuchAlgorithmException {
+		this.logger = logger;
+		KeyPairGenerator generator = KeyPairGenerator.getInstance(DIFFIE_HELLMAN_ALGORITHM);
+		generator.initialize(KEY_SIZE);
+		KeyPair keyPair = generator.generateKeyPair();
+		parameters = ((DHPublicKey) keyPair.getPublic()).getParams();
+
+		keyPairs = new ArrayBlockingQueue<>(size);
+		keyPairs.offer(keyPair);
+		AtomicInteger threadNumber = new AtomicInteger();
+		agreementExecutor = new ThreadPoolExecutor(agreementThreads, agreementThreads, 0, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<>(agreementQueue), runnable -> {
+					Thread thread = new Thread(runnable, "mrp-dh-agreement-" + threadNumber.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		hits = new AtomicLong();
+		misses = new AtomicLong();
+		failures = new AtomicLong();
+		rejections = new AtomicLong();
+		handshakes = new AtomicLong();
+		handshakeNanos = new AtomicLong();
+		maxHandshakeNanos = new AtomicLong();
+
+		generatorThread = new Thread(this::fill, "mrp-dh-keygen");
+		generatorThread.setDaemon(true);
+		generatorThread.setPriority(Thread.MIN_PRIORITY);
+		generatorThread.start();
+	}
+
+	/**
+	 * Returns the key pair generated in advance, or generates the new one if the pool is empty
+	 *
+	 * @return the key pair of the server
+	 * @throws NoSuchAlgorithmException if no Provider supports Diffie-Hellman
+	 */
+	public KeyPair take() throws NoSuchAlgorithmException {
+		KeyPair keyPair = keyPairs.poll();
+		if (keyPair != null) {
+			hits.incrementAndGet();
+			return keyPair;
+		}
+		misses.incrementAndGet();
+		return createGenerator().generateKeyPair();
+	}
+
+	/**
+	 * Queue the generation of the shared secret on the key agreement thread, it is called before the server sends its public key,
+	 * so the rejected client has not finished the key exchange yet
+	 *
+	 * @param privateKey the private key of the server
+	 * @param publicKey the public key of the client
+	 * @return the future shared secret
+	 * @throws KeyAgreementBusyException if the key agreement queue is full
+	 */
+	public Future<byte[]> submitAgreement(PrivateKey privateKey, Key publicKey) throws KeyAgreementBusyException {
+		try {
+			return agreementExecutor.submit(() -> {
+				KeyAgreement keyAgreement = KeyAgreement.getInstance(DIFFIE_HELLMAN_ALGORITHM);
+				keyAgreement.init(privateKey);
+				keyAgreement.doPhase(publicKey, true);
+				return keyAgreement.generateSecret();
+			});
+		} catch (RejectedExecutionException e) {
+			rejections.incrementAndGet();
+			throw new KeyAgreementBusyException("Key agreement queue is full, try again later");
+		}
+	}
+
+	/**
+	 * Wait for the shared secret queued by {@link #submitAgreement(PrivateKey, Key)}
+	 *
+	 * @param secret the future shared secret
+	 * @return the new buffer with the shared secret
+	 * @throws IOException if the key agreement failed or the waiting thread has been interrupted
+	 * @throws NoSuchAlgorithmException if no Provider supports a KeyAgreementSpi implementation for the specified algorithm
+	 * @throws InvalidKeyException if the given key is inappropriate for this phase
+	 */
+	public byte[] awaitAgreement(Future<byte[]> secret) throws IOException, NoSuchAlgorithmException, InvalidKeyException {
+		try {
+			return secret.get();
+		} catch (InterruptedException e) {
+			secret.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the key agreement");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof NoSuchAlgorithmException) {
+				throw (NoSuchAlgorithmException) cause;
+			}
+			if (cause instanceof InvalidKeyException) {
+				throw (InvalidKeyException) cause;
+			}
+			throw new IOException("Key agreement failed", cause);
+		}
+	}
+
+	/**
+	 * Record the duration of the whole key exchange with the client
+	 *
+	 * @param nanos the duration in nanoseconds
+	 */
+	public void recordHandshake(long nanos) {
+		handshakes.incrementAndGet();
+		handshakeNanos.addAndGet(nanos);
+		long max;
+		do {
+			max = maxHandshakeNanos.get();
+		} while (nanos > max && !maxHandshakeNanos.compareAndSet(max, nanos));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public String reportMetrics() {
+		long hitCount = hits.get();
+		long total = hitCount + misses.get();
+		long handshakeCount = handshakes.get();
+		long averageMillis = handshakeCount > 0 ? handshakeNanos.get() / handshakeCount / NANOS_PER_MILLI : 0;
+		return "ready=" + keyPairs.size() + " hits=" + hitCount + " misses=" + misses.get()
+				+ " hitRate=" + (total > 0 ? hitCount * 100 / total : 100) + "% generatorFailures=" + failures.get()
+				+ " agreementsQueued=" + agreementExecutor.getQueue().size() + " agreementsRejected=" + rejections.get()
+				+ " handshakes=" + handshakeCount + " averageMillis=" + averageMillis
+				+ " maxMillis=" + maxHandshakeNanos.get() / NANOS_PER_MILLI;
+	}
+
+	/**
+	 * Generate key pairs until the pool is full and wait until a key pair is taken, runs on the background thread.
+	 * The failed generation is logged and repeated with the new generator after the delay, so the thread never ends
+	 * until it is interrupted
+	 */
+	private void fill() {
+		KeyPairGenerator generator = null;
+		while (!Thread.currentThread().isInterrupted()) {
+			try {
+				if (generator == null) {
+					generator = createGenerator();
+				}
+				keyPairs.put(generator.generateKeyPair());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (NoSuchAlgorithmException | RuntimeException e) {
+				failures.incrementAndGet();
+				generator = null;
+				logger.log(Level.SEVERE, "Diffie-Hellman key pair generation failed, retrying in " + RETRY_DELAY + " ms", e);
+				try {
+					Thread.sleep(RETRY_DELAY);
+				} catch (InterruptedException interrupted) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Create key pair generator initialized with the shared domain parameters
+	 *
+	 * @return the key pair generator
+	 * @throws NoSuchAlgorithmException if no Provider supports Diffie-Hellman
+	 */
+	private KeyPairGenerator createGenerator() throws NoSuchAlgorithmException {
+		KeyPairGenerator generator = KeyPairGenerator.getInstance(DIFFIE_HELLMAN_ALGORITHM);
+		try {
+			generator.initialize(parameters);
+		} catch (InvalidAlgorithmParameterException e) {
+			throw new NoSuchAlgorithmException("Diffie-Hellman parameters are not supported", e);
+		}
+		return generator;
+	}
+}
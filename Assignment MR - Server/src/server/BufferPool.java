@@ -0,0 +1,148 @@
+package server;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class shares receive buffers between the sessions, so the frames of common sizes are read
+ * into reused buffers instead of new arrays. The length prefix of every frame is checked against
+ * the maximum frame size before any memory is allocated.
+ *
+ * @author Martin Holecek
+ *
+ */
+public class BufferPool implements MetricsSource {
+
+	private static final int[] SIZE_CLASSES = { 64, 256, 1024, 4096, 16384 };
+	private static final int MAX_BUFFERS_PER_CLASS = 256;
+	private static final long NANOS_PER_SECOND = 1000000000L;
+
+	private int maxFrameSize;
+	private ConcurrentLinkedQueue<byte[]>[] freeBuffers;
+	private AtomicInteger[] freeCounts;
+	private AtomicLong frames;
+	private AtomicLong reused;
+	private AtomicLong allocated;
+	private AtomicLong allocatedBytes;
+	private AtomicLong rejected;
+	private long lastReportTime;
+	private long lastAllocatedBytes;
+
+	/**
+	 * Initialize buffer pool
+	 *
+	 * @param maxFrameSize the maximum number of bytes of a single frame accepted from the client
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public BufferPool(int maxFrameSize) {
+		this.maxFrameSize = maxFrameSize;
+		freeBuffers = new ConcurrentLinkedQueue[SIZE_CLASSES.length];
+		freeCounts = new AtomicInteger[SIZE_CLASSES.length];
+		for (int i = 0; i < SIZE_CLASSES.length; i++) {
+			freeBuffers[i] = new ConcurrentLinkedQueue<>();
+			freeCounts[i] = new AtomicInteger();
+		}
+		frames = new AtomicLong();
+		reused = new AtomicLong();
+		allocated = new AtomicLong();
+		allocatedBytes = new AtomicLong();
+		rejected = new AtomicLong();
+		lastReportTime = System.nanoTime();
+	}
+
+	/**
+	 * Returns the maximum number of bytes of a single frame accepted from the client
+	 *
+	 * @return the maximum frame size
+	 */
+	public int getMaxFrameSize() {
+		return maxFrameSize;
+	}
+
+	/**
+	 * Borrow the buffer for the frame of the given length
+	 *
+	 * @param length the length prefix of the frame sent by the client
+	 * @return the frame with the buffer of at least the given length
+	 * @throws IOException if the length is negative or exceeds the maximum frame size
+	 */
+	public Frame acquire(int length) throws IOException {
+		if (length < 0 || length > maxFrameSize) {
+			rejected.incrementAndGet();
+			throw new IOException("Frame of " + length + " bytes exceeds the maximum frame size of " + maxFrameSize + " bytes");
+		}
+		frames.incrementAndGet();
+		int sizeClass = sizeClassOf(length);
+		if (sizeClass < 0) {
+			return new Frame(allocate(length), length, null);
+		}
+		byte[] buffer = freeBuffers[sizeClass].poll();
+		if (buffer == null) {
+			buffer = allocate(SIZE_CLASSES[sizeClass]);
+		} else {
+			freeCounts[sizeClass].decrementAndGet();
+			reused.incrementAndGet();
+		}
+		return new Frame(buffer, length, this);
+	}
+
+	/**
+	 * Return the buffer to the pool, the buffers above the limit of the size class are left to the garbage collector
+	 *
+	 * @param buffer the buffer borrowed by {@link #acquire(int)}
+	 */
+	void release(byte[] buffer) {
+		int sizeClass = sizeClassOf(buffer.length);
+		if (sizeClass < 0 || SIZE_CLASSES[sizeClass] != buffer.length) {
+			return;
+		}
+		if (freeCounts[sizeClass].incrementAndGet() > MAX_BUFFERS_PER_CLASS) {
+			freeCounts[sizeClass].decrementAndGet();
+			return;
+		}
+		freeBuffers[sizeClass].offer(buffer);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized String reportMetrics() {
+		long now = System.nanoTime();
+		long bytes = allocatedBytes.get();
+		long elapsed = Math.max(1, now - lastReportTime);
+		long rate = (bytes - lastAllocatedBytes) * NANOS_PER_SECOND / elapsed;
+		lastReportTime = now;
+		lastAllocatedBytes = bytes;
+		return "frames=" + frames.get() + " reused=" + reused.get() + " allocated=" + allocated.get()
+				+ " allocatedBytes=" + bytes + " allocationRate=" + rate + "B/s rejected=" + rejected.get();
+	}
+
+	/**
+	 * Returns the index of the smallest size class which holds the given number of bytes
+	 *
+	 * @param length the number of bytes
+	 * @return the index of the size class, or -1 if the length is above the largest size class
+	 */
+	private static int sizeClassOf(int length) {
+		for (int i = 0; i < SIZE_CLASSES.length; i++) {
+			if (length <= SIZE_CLASSES[i]) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Allocate new buffer and count it in the metrics
+	 *
+	 * @param size the size of the buffer
+	 * @return the new buffer
+	 */
+	private byte[] allocate(int size) {
+		allocated.incrementAndGet();
+		allocatedBytes.addAndGet(size);
+		return new byte[size];
+	}
+}
@@ -0,0 +1,68 @@
+package server;
+
+import java.util.Arrays;
+
+/**
+ * This class holds a frame received from the client in the buffer borrowed from the {@link BufferPool}.
+ * The buffer may be longer than the frame, only the first length bytes belong to the frame.
+ * The frame must be released once its content has been processed.
+ *
+ * @author Martin Holecek
+ *
+ */
+public final class Frame {
+
+	private byte[] data;
+	private int length;
+	private BufferPool pool;
+
+	/**
+	 * Initialize frame
+	 *
+	 * @param data the buffer with the content of the frame
+	 * @param length the number of bytes of the frame
+	 * @param pool the pool which receives the buffer on release, or null if the buffer is not pooled
+	 */
+	Frame(byte[] data, int length, BufferPool pool) {
+		this.data = data;
+		this.length = length;
+		this.pool = pool;
+	}
+
+	/**
+	 * Returns the buffer with the content of the frame, the buffer may be longer than the frame
+	 *
+	 * @return the buffer
+	 */
+	public byte[] getData() {
+		return data;
+	}
+
+	/**
+	 * Returns the number of bytes of the frame
+	 *
+	 * @return the length of the frame
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * Returns the copy of the frame content which stays valid after the frame has been released
+	 *
+	 * @return the new buffer with the frame content
+	 */
+	public byte[] toByteArray() {
+		return Arrays.copyOf(data, length);
+	}
+
+	/**
+	 * Return the buffer to the pool, the frame must not be used afterwards
+	 */
+	public void release() {
+		if (pool != null) {
+			pool.release(data);
+			pool = null;
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package server;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * This class compresses frames of the session with raw DEFLATE as described in RFC 4978.
+ * The compression context is kept for the whole session, so every frame is compressed against
+ * the frames sent before it, and each frame ends with the sync flush so the client can decompress
+ * it as soon as it arrives.
+ *
+ * @author Martin Holecek
+ *
+ */
+public class FrameCompressor {
+
+	private static final int INITIAL_BUFFER_SIZE = 1024;
+
+	private Deflater deflater;
+	private Inflater inflater;
+	private byte[] buffer;
+	private int maxFrameSize;
+
+	/**
+	 * Initialize frame compressor
+	 *
+	 * @param maxFrameSize the maximum number of bytes of a decompressed frame sent by the client
+	 */
+	public FrameCompressor(int maxFrameSize) {
+		this.maxFrameSize = maxFrameSize;
+		deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		inflater = new Inflater(true);
+		buffer = new byte[INITIAL_BUFFER_SIZE];
+	}
+
+	/**
+	 * Compress the frame sent to the client
+	 *
+	 * @param input the buffer with the frame
+	 * @return the new buffer with the compressed frame
+	 */
+	public byte[] compress(byte[] input) {
+		deflater.setInput(input);
+		int length = 0;
+		while (true) {
+			length += deflater.deflate(buffer, length, buffer.length - length, Deflater.SYNC_FLUSH);
+			if (length < buffer.length) {
+				break;
+			}
+			buffer = Arrays.copyOf(buffer, buffer.length * 2);
+		}
+		return Arrays.copyOf(buffer, length);
+	}
+
+	/**
+	 * Decompress the frame sent by the client
+	 *
+	 * @param input the buffer with the compressed frame
+	 * @param offset the position of the frame in the buffer
+	 * @param length the number of bytes of the compressed frame
+	 * @return the new buffer with the decompressed frame
+	 * @throws IOException if the frame is not valid DEFLATE data or exceeds the maximum frame size
+	 */
+	public byte[] decompress(byte[] input, int offset, int length) throws IOException {
+		inflater.setInput(input, offset, length);
+		int total = 0;
+		try {
+			while (true) {
+				int count = inflater.inflate(buffer, total, buffer.length - total);
+				total += count;
+				if (total > maxFrameSize) {
+					throw new IOException("Decompressed frame exceeds the maximum frame size of " + maxFrameSize + " bytes");
+				}
+				if (total == buffer.length) {
+					buffer = Arrays.copyOf(buffer, buffer.length * 2);
+				} else if (inflater.needsInput()) {
+					break;
+				} else if (count == 0) {
+					throw new IOException("Invalid compressed frame");
+				}
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("Invalid compressed frame", e);
+		}
+		return Arrays.copyOf(buffer, total);
+	}
+
+	/**
+	 * Release the native memory held by the compression context
+	 */
+	public void end() {
+		deflater.end();
+		inflater.end();
+	}
+}
@@ -0,0 +1,86 @@
+package server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * This interface describes the transport which carries MRP frames between the server and client.
+ * Every frame is sent over the network as a 4-byte big-endian length followed by the payload.
+ *
+ * @author Martin Holecek
+ *
+ */
+public interface FrameTransport {
+
+	/**
+	 * Queue single frame to be sent to the client, the frame is sent at the latest by the next {@link #flush()}
+	 *
+	 * @param frame the buffer with the payload of the frame
+	 * @throws IOException if the stream has been closed or another I/O error
+	 */
+	void writeFrame(byte[] frame) throws IOException;
+
+	/**
+	 * Reserve space for single frame in the outbound buffer of the transport, so the payload can be encrypted or copied
+	 * directly into the buffer. No other frame may be written until the frame is queued by {@link #commitFrame(ByteBuffer)}.
+	 *
+	 * @param maxLength the maximum number of bytes of the payload
+	 * @return the buffer positioned at the start of the payload with at least maxLength bytes remaining
+	 * @throws IOException if the stream has been closed or another I/O error
+	 */
+	ByteBuffer reserveFrame(int maxLength) throws IOException;
+
+	/**
+	 * Queue the frame reserved by {@link #reserveFrame(int)}, the payload ends at the position of the buffer
+	 *
+	 * @param buffer the buffer returned by {@link #reserveFrame(int)}
+	 * @throws IOException if the stream has been closed or another I/O error
+	 */
+	void commitFrame(ByteBuffer buffer) throws IOException;
+
+	/**
+	 * Discard the frame reserved by {@link #reserveFrame(int)} whose payload could not be completed, nothing of the frame is sent
+	 * and the outbound buffer is returned to the state before the reservation
+	 *
+	 * @param buffer the buffer returned by {@link #reserveFrame(int)}
+	 */
+	void abortFrame(ByteBuffer buffer);
+
+	/**
+	 * Send all queued frames to the client, called once the response to the command is complete
+	 *
+	 * @throws IOException if the stream has been closed or another I/O error
+	 */
+	void flush() throws IOException;
+
+	/**
+	 * Read single frame sent by the client, blocks until the whole frame is available.
+	 * Queued frames are sent before blocking, so the client is never waiting for the response.
+	 *
+	 * @return the frame with the payload, the caller releases it once the payload has been processed
+	 * @throws IOException if the stream has been closed, the frame exceeds the maximum frame size or another I/O error
+	 */
+	Frame readFrame() throws IOException;
+
+	/**
+	 * Check if there is a frame which can be read without blocking
+	 *
+	 * @return true if a frame is waiting to be read, false otherwise
+	 * @throws IOException if the stream has been closed or another I/O error
+	 */
+	boolean hasPendingFrame() throws IOException;
+
+	/**
+	 * Returns the maximum number of bytes of a single frame accepted from the client
+	 *
+	 * @return the maximum frame size
+	 */
+	int getMaxFrameSize();
+
+	/**
+	 * Send queued frames and close the transport and the underlying connection
+	 *
+	 * @throws IOException if closing of the connection failed
+	 */
+	void close() throws IOException;
+}
@@ -22,6 +22,7 @@ public class Message {
 	private static final String EMPTY_SUBJECT = "Empty subject";
 	private static final int DEFAULT_ID = 0;
 	private static final String CRLF = "\r\n";
+	private static final int MESSAGE_HEADER_LENGTH = 256;
 
 	/**
 	 * Initialize message object
@@ -197,16 +198,17 @@ public class Message {
 	 * {@inheritDoc} toString in class Object
 	 */
 	public String toString() {
-		String fullMessage = EMPTY_STRING;
-		fullMessage += "ID: " + messageID + CRLF;
-		fullMessage += "UID: " + messageUID + CRLF;
-		fullMessage += "Sender: " + sender + CRLF;
-		fullMessage += "Recipients: " + recipients + CRLF;
-		fullMessage += "Subject: " + subject + CRLF;
-		fullMessage += "Date: " + date.toString() + CRLF;
-		fullMessage += "Mime: " + mime + CRLF;
-		fullMessage += body;
-		return fullMessage;
+		int bodyLength = body == null ? 0 : body.length();
+		StringBuilder fullMessage = new StringBuilder(bodyLength + MESSAGE_HEADER_LENGTH);
+		fullMessage.append("ID: ").append(messageID).append(CRLF);
+		fullMessage.append("UID: ").append(messageUID).append(CRLF);
+		fullMessage.append("Sender: ").append(sender).append(CRLF);
+		fullMessage.append("Recipients: ").append(recipients).append(CRLF);
+		fullMessage.append("Subject: ").append(subject).append(CRLF);
+		fullMessage.append("Date: ").append(date.toString()).append(CRLF);
+		fullMessage.append("Mime: ").append(mime).append(CRLF);
+		fullMessage.append(body);
+		return fullMessage.toString();
 	}
 	
 	/**
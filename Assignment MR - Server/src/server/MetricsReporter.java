@@ -0,0 +1,73 @@
+package server;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class periodically writes counters of the registered components to the logger
+ *
+ * @author Martin Holecek
+ *
+ */
+public class MetricsReporter {
+
+	private static final Map<String, MetricsSource> SOURCES = new ConcurrentHashMap<>();
+
+	private Logger logger;
+	private ScheduledExecutorService scheduler;
+
+	/**
+	 * Initialize metrics reporter
+	 *
+	 * @param logger the logger which receives the metrics
+	 */
+	public MetricsReporter(Logger logger) {
+		this.logger = logger;
+	}
+
+	/**
+	 * Register the component whose counters will be reported, the component registered later with the same name replaces the previous one
+	 *
+	 * @param name the name of the component
+	 * @param source the component with the counters
+	 */
+	public static void register(String name, MetricsSource source) {
+		SOURCES.put(name, source);
+	}
+
+	/**
+	 * Returns the counters of all registered components, one component per line
+	 *
+	 * @return the string object with the counters
+	 */
+	public static String report() {
+		StringBuilder report = new StringBuilder();
+		for (Map.Entry<String, MetricsSource> entry : SOURCES.entrySet()) {
+			report.append(entry.getKey()).append(": ").append(entry.getValue().reportMetrics()).append(System.lineSeparator());
+		}
+		return report.toString();
+	}
+
+	/**
+	 * Start writing the metrics to the logger
+	 *
+	 * @param intervalSeconds the interval between two reports in seconds, zero disables the reports
+	 */
+	public void start(int intervalSeconds) {
+		if (intervalSeconds <= 0) {
+			return;
+		}
+		scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "mrp-metrics");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.scheduleAtFixedRate(() -> logger.log(Level.INFO, "Server metrics" + System.lineSeparator() + report()),
+				intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+	}
+}
@@ -0,0 +1,17 @@
+package server;
+
+/**
+ * This interface is implemented by the components which collect counters reported by the {@link MetricsReporter}
+ *
+ * @author Martin Holecek
+ *
+ */
+public interface MetricsSource {
+
+	/**
+	 * Returns the current values of the counters in the form name=value separated by spaces
+	 *
+	 * @return the string object with the counters
+	 */
+	String reportMetrics();
+}
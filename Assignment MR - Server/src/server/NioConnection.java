@@ -0,0 +1,521 @@
+package server;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class is non-blocking frame transport of a single client connection.
+ * The selector thread decodes incoming bytes into frames and the worker threads execute commands of the client.
+ * Only one worker executes commands of the same client at a time, so the commands are processed in the order they were sent.
+ * A command which needs a frame the client has not sent yet, such as the second frame of AUTH or of a CBC message,
+ * or a response the client does not read, keeps its worker waiting. The workers waiting at once are limited by the permits
+ * shared by all connections and each of them waits only for the frame timeout, so the stalled clients cannot occupy every worker.
+ *
+ * @author Martin Holecek
+ *
+ */
+public class NioConnection implements FrameTransport {
+
+	private static final Frame END_OF_STREAM = new Frame(new byte[0], 0, null);
+	private static final int HEADER_SIZE = 4;
+	private static final int MAX_QUEUED_FRAMES = 64;
+	private static final int MAX_PENDING_OUTPUT = 1024 * 1024;
+
+	private NioServer server;
+	private SocketChannel channel;
+	private SelectionKey key;
+	private Executor workers;
+	private Logger logger;
+	private BufferPool bufferPool;
+	private volatile ServerHandler handler;
+	private Semaphore waitingWorkers;
+	private int timeout;
+	private int frameTimeout;
+
+	private BlockingQueue<Frame> inbound;
+	private ArrayDeque<ByteBuffer> outbound;
+	private ByteBuffer staging;
+	private int frameStart;
+	private int pendingOutput;
+	private ByteBuffer header;
+	private ByteBuffer payload;
+	private Frame frame;
+	private AtomicBoolean scheduled;
+	private volatile boolean readSuspended;
+	private volatile boolean closing;
+	private volatile boolean closed;
+	private volatile long lastActivity;
+
+	/**
+	 * Initialize connection of the accepted client
+	 *
+	 * @param server the server which owns the selector of this connection
+	 * @param channel the non-blocking channel of the client
+	 * @param workers the executor which runs commands of the client
+	 * @param waitingWorkers the permits of the workers waiting for a client, shared by all connections
+	 * @param config the configuration of the session timeout and buffers
+	 * @param bufferPool the pool of receive buffers shared by the connections
+	 * @param logger the logger object which logs any inappropriate behaviour of the client
+	 */
+	public NioConnection(NioServer server, SocketChannel channel, Executor workers, Semaphore waitingWorkers, ServerConfig config, BufferPool bufferPool,
+			Logger logger) {
+		this.server = server;
+		this.channel = channel;
+		this.workers = workers;
+		this.waitingWorkers = waitingWorkers;
+		this.bufferPool = bufferPool;
+		this.logger = logger;
+		timeout = config.getSessionTimeout();
+		frameTimeout = Math.min(config.getFrameTimeout(), timeout);
+		inbound = new LinkedBlockingQueue<>();
+		outbound = new ArrayDeque<>();
+		staging = config.isDirectBuffers() ? ByteBuffer.allocateDirect(config.getOutputBufferSize()) : ByteBuffer.allocate(config.getOutputBufferSize());
+		header = ByteBuffer.allocate(HEADER_SIZE);
+		scheduled = new AtomicBoolean(false);
+		lastActivity = System.currentTimeMillis();
+	}
+
+	/**
+	 * Set the selection key of the channel registered with the selector
+	 *
+	 * @param key the selection key
+	 */
+	void setKey(SelectionKey key) {
+		this.key = key;
+	}
+
+	/**
+	 * Start the session of the client, the greeting is sent by the worker thread
+	 *
+	 * @param handler the object which handles commands of the client
+	 */
+	void start(ServerHandler handler) {
+		this.handler = handler;
+		scheduled.set(true);
+		workers.execute(() -> {
+			try {
+				if (handler.open()) {
+					processCommands();
+				} else {
+					handler.closeConnection();
+				}
+			} catch (RuntimeException e) {
+				logger.log(Level.SEVERE, "Processing of the client commands failed!", e);
+				handler.closeConnection();
+			}
+		});
+	}
+
+	/**
+	 * Read bytes available on the channel and decode them into frames. Called by the selector thread only.
+	 *
+	 * @param buffer the buffer shared by all connections of the selector
+	 * @throws IOException if the channel has been closed or another I/O error
+	 */
+	void readInput(ByteBuffer buffer) throws IOException {
+		buffer.clear();
+		int count = channel.read(buffer);
+		if (count < 0) {
+			endOfStream();
+			return;
+		}
+		buffer.flip();
+		int received = inbound.size();
+		while (buffer.hasRemaining() || payload != null && !payload.hasRemaining()) {
+			if (payload == null) {
+				transfer(buffer, header);
+				if (header.hasRemaining()) {
+					break;
+				}
+				header.flip();
+				int length = header.getInt();
+				header.clear();
+				frame = bufferPool.acquire(length);
+				payload = ByteBuffer.wrap(frame.getData(), 0, length);
+			}
+			transfer(buffer, payload);
+			if (!payload.hasRemaining()) {
+				inbound.add(frame);
+				frame = null;
+				payload = null;
+			}
+		}
+		if (inbound.size() >= MAX_QUEUED_FRAMES) {
+			readSuspended = true;
+			key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+		}
+		if (inbound.size() > received) {
+			lastActivity = System.currentTimeMillis();
+			schedule();
+		}
+	}
+
+	/**
+	 * Write queued frames to the channel. Called by the selector thread only.
+	 *
+	 * @throws IOException if the channel has been closed or another I/O error
+	 */
+	synchronized void flushOutput() throws IOException {
+		while (!outbound.isEmpty()) {
+			ByteBuffer buffer = outbound.peek();
+			pendingOutput -= channel.write(buffer);
+			if (buffer.hasRemaining()) {
+				break;
+			}
+			outbound.poll();
+		}
+		notifyAll();
+		if (outbound.isEmpty()) {
+			if (key.isValid()) {
+				key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+			}
+			if (closing) {
+				closeChannel();
+			}
+		}
+	}
+
+	/**
+	 * Close the connection of the client which has been idle for longer than the session timeout.
+	 * Called by the selector thread only.
+	 *
+	 * @param now the current time in milliseconds
+	 */
+	void closeIfIdle(long now) {
+		if (handler != null && now - lastActivity > timeout && scheduled.compareAndSet(false, true)) {
+			workers.execute(() -> handler.closeIdleSession());
+		}
+	}
+
+	/**
+	 * Handle the end of the stream, the worker will find out that the client has terminated the connection
+	 */
+	void endOfStream() {
+		if (key.isValid()) {
+			key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+		}
+		inbound.add(END_OF_STREAM);
+		schedule();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized void writeFrame(byte[] frame) throws IOException {
+		if (closed || closing) {
+			throw new IOException("Connection has been closed");
+		}
+		if (staging.remaining() < HEADER_SIZE + frame.length) {
+			flushStaging();
+			if (staging.remaining() < HEADER_SIZE + frame.length) {
+				// Frame larger than the session buffer is sent on its own
+				ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + frame.length);
+				buffer.putInt(frame.length);
+				buffer.put(frame);
+				buffer.flip();
+				send(buffer, true);
+				return;
+			}
+		}
+		staging.putInt(frame.length);
+		staging.put(frame);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized ByteBuffer reserveFrame(int maxLength) throws IOException {
+		if (closed || closing) {
+			throw new IOException("Connection has been closed");
+		}
+		if (staging.remaining() < HEADER_SIZE + maxLength) {
+			flushStaging();
+			if (staging.remaining() < HEADER_SIZE + maxLength) {
+				// Frame larger than the session buffer gets its own buffer
+				ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + maxLength);
+				buffer.position(HEADER_SIZE);
+				return buffer;
+			}
+		}
+		frameStart = staging.position();
+		staging.position(frameStart + HEADER_SIZE);
+		return staging;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized void commitFrame(ByteBuffer buffer) throws IOException {
+		if (buffer != staging) {
+			buffer.putInt(0, buffer.position() - HEADER_SIZE);
+			buffer.flip();
+			send(buffer, true);
+			return;
+		}
+		staging.putInt(frameStart, staging.position() - frameStart - HEADER_SIZE);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized void abortFrame(ByteBuffer buffer) {
+		if (buffer == staging) {
+			staging.position(frameStart);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized void flush() throws IOException {
+		flushStaging();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Frame readFrame() throws IOException {
+		flush();
+		Frame frame = inbound.poll();
+		if (frame == null) {
+			frame = awaitFrame();
+		}
+		if (frame == END_OF_STREAM) {
+			inbound.add(END_OF_STREAM);
+			throw new EOFException("Client closed the connection");
+		}
+		if (readSuspended && inbound.size() < MAX_QUEUED_FRAMES / 2) {
+			readSuspended = false;
+			server.execute(() -> {
+				if (key.isValid()) {
+					key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+				}
+			});
+		}
+		return frame;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getMaxFrameSize() {
+		return bufferPool.getMaxFrameSize();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean hasPendingFrame() {
+		return !inbound.isEmpty();
+	}
+
+	/**
+	 * Close the connection once all queued frames have been sent to the client
+	 *
+	 * {@inheritDoc}
+	 */
+	public synchronized void close() throws IOException {
+		if (closing) {
+			return;
+		}
+		try {
+			flushStaging();
+		} finally {
+			closing = true;
+			if (outbound.isEmpty()) {
+				closeChannel();
+			}
+		}
+	}
+
+	/**
+	 * Close the connection immediately without sending queued frames
+	 */
+	synchronized void abort() {
+		outbound.clear();
+		try {
+			closeChannel();
+		} catch (IOException e) {
+			logger.log(Level.SEVERE, "Closing of the channel failed!", e);
+		}
+	}
+
+	/**
+	 * Send the frames collected in the session buffer, the caller must hold the lock of this connection
+	 *
+	 * @throws IOException if the channel has been closed or another I/O error
+	 */
+	private void flushStaging() throws IOException {
+		if (staging.position() == 0) {
+			return;
+		}
+		staging.flip();
+		try {
+			send(staging, false);
+		} finally {
+			staging.clear();
+		}
+	}
+
+	/**
+	 * Write the buffer to the channel, the part which cannot be written now is queued for the selector thread.
+	 * The caller must hold the lock of this connection.
+	 *
+	 * @param buffer the buffer with the frames
+	 * @param owned true if the buffer can be queued as it is, false if it is reused and must be copied
+	 * @throws IOException if the channel has been closed or another I/O error
+	 */
+	private void send(ByteBuffer buffer, boolean owned) throws IOException {
+		if (pendingOutput > MAX_PENDING_OUTPUT && !closed) {
+			awaitOutput();
+		}
+		if (closed) {
+			throw new IOException("Connection has been closed");
+		}
+		if (outbound.isEmpty()) {
+			channel.write(buffer);
+			if (!buffer.hasRemaining()) {
+				return;
+			}
+		}
+		ByteBuffer queued = buffer;
+		if (!owned) {
+			queued = ByteBuffer.allocate(buffer.remaining());
+			queued.put(buffer);
+			queued.flip();
+		}
+		outbound.add(queued);
+		pendingOutput += queued.remaining();
+		server.execute(() -> {
+			if (key.isValid()) {
+				key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+			}
+		});
+	}
+
+	/**
+	 * Wait for the frame the client has not sent yet, the worker waits only if there is a free permit and at most for the frame timeout
+	 *
+	 * @return the frame
+	 * @throws IOException if all permits are taken, the frame timeout has expired or the thread has been interrupted
+	 */
+	private Frame awaitFrame() throws IOException {
+		if (!waitingWorkers.tryAcquire()) {
+			throw new IOException("Too many workers are waiting for their clients");
+		}
+		Frame frame;
+		try {
+			frame = inbound.poll(frameTimeout, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the client");
+		} finally {
+			waitingWorkers.release();
+		}
+		if (frame == null) {
+			throw new SocketTimeoutException("Read timed out");
+		}
+		return frame;
+	}
+
+	/**
+	 * Wait until the client reads the queued frames, the worker waits only if there is a free permit and at most for the frame timeout.
+	 * The caller must hold the lock of this connection.
+	 *
+	 * @throws IOException if all permits are taken, the frame timeout has expired or the thread has been interrupted
+	 */
+	private void awaitOutput() throws IOException {
+		if (!waitingWorkers.tryAcquire()) {
+			throw new IOException("Too many workers are waiting for their clients");
+		}
+		try {
+			long deadline = System.currentTimeMillis() + frameTimeout;
+			while (pendingOutput > MAX_PENDING_OUTPUT && !closed) {
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0) {
+					throw new SocketTimeoutException("Write timed out");
+				}
+				wait(remaining);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the client to read data");
+		} finally {
+			waitingWorkers.release();
+		}
+	}
+
+	/**
+	 * Execute commands of the client on the worker thread unless the commands are already being executed
+	 */
+	private void schedule() {
+		if (handler != null && scheduled.compareAndSet(false, true)) {
+			workers.execute(this::processCommands);
+		}
+	}
+
+	/**
+	 * Execute all commands received from the client, called by the worker thread only
+	 */
+	private void processCommands() {
+		try {
+			while (true) {
+				if (!handler.processPendingCommands()) {
+					handler.closeConnection();
+					return;
+				}
+				lastActivity = System.currentTimeMillis();
+				scheduled.set(false);
+				if (inbound.isEmpty() || !scheduled.compareAndSet(false, true)) {
+					return;
+				}
+			}
+		} catch (RuntimeException e) {
+			logger.log(Level.SEVERE, "Processing of the client commands failed!", e);
+			handler.closeConnection();
+		}
+	}
+
+	/**
+	 * Close the channel and wake up the worker waiting to send data
+	 *
+	 * @throws IOException if closing of the channel failed
+	 */
+	private void closeChannel() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		notifyAll();
+		server.connectionClosed(this);
+		channel.close();
+	}
+
+	/**
+	 * Copy as many bytes as possible from the source to the destination buffer
+	 *
+	 * @param source the buffer to read from
+	 * @param destination the buffer to write to
+	 */
+	private static void transfer(ByteBuffer source, ByteBuffer destination) {
+		int count = Math.min(source.remaining(), destination.remaining());
+		int limit = source.limit();
+		source.limit(source.position() + count);
+		destination.put(source);
+		source.limit(limit);
+	}
+}
@@ -0,0 +1,340 @@
+package server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import database.ConnectionPool;
+import database.CredentialCache;
+import diffie_hellman.KeyPairPool;
+
+/**
+ * This class accepts clients on a single selector thread and executes their commands on a pool of worker threads.
+ * The wire format is the same as in the thread per connection mode, so the existing clients keep working.
+ * Only some of the workers may wait for the clients in the middle of a command, the others keep executing the commands
+ * which have been received completely.
+ *
+ * @author Martin Holecek
+ *
+ */
+public class NioServer implements MetricsSource {
+
+	private static final int READ_BUFFER_SIZE = 64 * 1024;
+	private static final long SELECT_TIMEOUT = 1000;
+	private static final long IDLE_CHECK_INTERVAL = 1000;
+
+	private int port;
+	private ServerConfig config;
+	private BufferPool bufferPool;
+	private TlsContext tlsContext;
+	private TicketContext ticketContext;
+	private ExecutorService sendWorkers;
+	private CredentialCache credentialCache;
+	private ConnectionPool connectionPool;
+	private KeyPairPool keyPairPool;
+	private List<Session> clients;
+	private Logger logger;
+	private boolean verbose;
+	private volatile boolean running;
+
+	private Selector selector;
+	private ServerSocketChannel serverChannel;
+	private ExecutorService workers;
+	private Semaphore waitingWorkers;
+	private int maxWaitingWorkers;
+	private Queue<Runnable> selectorTasks;
+	private Set<NioConnection> connections;
+	private AtomicLong accepted;
+	private AtomicLong rejected;
+	private long lastIdleCheck;
+
+	/**
+	 * Initialize non-blocking server
+	 *
+	 * @param port the port number the server listens on
+	 * @param config the configuration of the server
+	 * @param bufferPool the pool of receive buffers shared by the connections
+	 * @param clients list of the clients connected to the server
+	 * @param logger the logger object which logs any inappropriate behaviour of the client
+	 * @param verbose if true error are visible in the console otherwise errors are saved only to the logger file
+	 */
+	public NioServer(int port, ServerConfig config, BufferPool bufferPool, List<Session> clients, Logger logger, boolean verbose) {
+		this.port = port;
+		this.config = config;
+		this.bufferPool = bufferPool;
+		this.clients = clients;
+		this.logger = logger;
+		this.verbose = verbose;
+		selectorTasks = new ConcurrentLinkedQueue<>();
+		connections = ConcurrentHashMap.newKeySet();
+		accepted = new AtomicLong();
+		rejected = new AtomicLong();
+		running = true;
+	}
+
+	/**
+	 * Set the TLS context of the server, the clients can switch their sessions to TLS only if the context is set
+	 *
+	 * @param tlsContext the TLS context shared by all sessions, or null if TLS is disabled
+	 */
+	public void setTlsContext(TlsContext tlsContext) {
+		this.tlsContext = tlsContext;
+	}
+
+	/**
+	 * Set the pool of the Diffie-Hellman key pairs generated in advance, shared by the sessions of all clients
+	 *
+	 * @param keyPairPool the key pair pool, or null to generate the key pair for every key exchange
+	 */
+	public void setKeyPairPool(KeyPairPool keyPairPool) {
+		this.keyPairPool = keyPairPool;
+	}
+
+	/**
+	 * Set the context of the resumption tickets, shared by the sessions of all clients
+	 *
+	 * @param ticketContext the ticket context, or null if the tickets are disabled
+	 */
+	public void setTicketContext(TicketContext ticketContext) {
+		this.ticketContext = ticketContext;
+	}
+
+	/**
+	 * Set the pool of workers which encrypt the messages of FETCH Command in parallel, shared by the sessions of all clients
+	 *
+	 * @param sendWorkers the pool of workers, or null to encrypt the messages on the worker executing the command
+	 */
+	public void setSendWorkers(ExecutorService sendWorkers) {
+		this.sendWorkers = sendWorkers;
+	}
+
+	/**
+	 * Set the pool of the database connections, shared by the sessions of all clients
+	 *
+	 * @param connectionPool the connection pool
+	 */
+	public void setConnectionPool(ConnectionPool connectionPool) {
+		this.connectionPool = connectionPool;
+	}
+
+	/**
+	 * Set the cache of the password hashes, shared by the sessions of all clients
+	 *
+	 * @param credentialCache the credential cache, or null to check every password in the database
+	 */
+	public void setCredentialCache(CredentialCache credentialCache) {
+		this.credentialCache = credentialCache;
+	}
+
+	/**
+	 * Open the selector and bind the listening channel to the port
+	 *
+	 * @throws IOException if the port cannot be bound or another I/O error
+	 */
+	public void bind() throws IOException {
+		selector = Selector.open();
+		serverChannel = ServerSocketChannel.open();
+		serverChannel.configureBlocking(false);
+		if (config.getReceiveBufferSize() > 0) {
+			serverChannel.socket().setReceiveBufferSize(config.getReceiveBufferSize());
+		}
+		serverChannel.bind(new InetSocketAddress(port), config.getAcceptBacklog());
+		serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+		AtomicInteger threadNumber = new AtomicInteger();
+		workers = Executors.newFixedThreadPool(config.getWorkerThreads(), runnable -> {
+			Thread thread = new Thread(runnable, "mrp-worker-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		maxWaitingWorkers = Math.max(1, Math.min(config.getWaitingWorkers(), config.getWorkerThreads() - 1));
+		waitingWorkers = new Semaphore(maxWaitingWorkers);
+	}
+
+	/**
+	 * Run the event loop until the server is stopped
+	 *
+	 * @throws IOException if the selector failed
+	 */
+	public void run() throws IOException {
+		ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+		while (running) {
+			selector.select(SELECT_TIMEOUT);
+			runSelectorTasks();
+			Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+			while (keys.hasNext()) {
+				SelectionKey key = keys.next();
+				keys.remove();
+				if (!key.isValid()) {
+					continue;
+				}
+				if (key.isAcceptable()) {
+					accept();
+				} else {
+					handleConnection(key, readBuffer);
+				}
+			}
+			long now = System.currentTimeMillis();
+			if (now - lastIdleCheck >= IDLE_CHECK_INTERVAL) {
+				lastIdleCheck = now;
+				closeIdleConnections(now);
+			}
+		}
+		workers.shutdown();
+		serverChannel.close();
+		selector.close();
+	}
+
+	/**
+	 * Stop the event loop
+	 */
+	public void stop() {
+		running = false;
+		selector.wakeup();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public String reportMetrics() {
+		return "active=" + connections.size() + " accepted=" + accepted.get() + " rejected=" + rejected.get()
+				+ " waitingWorkers=" + (maxWaitingWorkers - waitingWorkers.availablePermits());
+	}
+
+	/**
+	 * Run the task on the selector thread, used for changing interest of the selection keys
+	 *
+	 * @param task the task to be executed
+	 */
+	void execute(Runnable task) {
+		selectorTasks.add(task);
+		selector.wakeup();
+	}
+
+	/**
+	 * Forget the connection which has been closed
+	 *
+	 * @param connection the closed connection
+	 */
+	void connectionClosed(NioConnection connection) {
+		connections.remove(connection);
+	}
+
+	/**
+	 * Accept new client and start its session
+	 */
+	private void accept() {
+		SocketChannel channel = null;
+		try {
+			channel = serverChannel.accept();
+			if (channel == null) {
+				return;
+			}
+			channel.configureBlocking(false);
+			SocketTransport.configureSocket(channel.socket(), config);
+			NioConnection connection = new NioConnection(this, channel, workers, waitingWorkers, config, bufferPool, logger);
+			connection.setKey(channel.register(selector, SelectionKey.OP_READ, connection));
+			boolean overloaded = connections.size() >= config.getMaxSessions();
+			connections.add(connection);
+
+			Session session = new Session(connection, logger);
+			session.setTlsContext(tlsContext);
+			session.setKeyPairPool(keyPairPool);
+			session.setTicketContext(ticketContext);
+			session.setSendWorkers(sendWorkers, config.getFetchWindow());
+			session.setStreamChunkSize(config.getStreamChunkSize());
+			clients.add(session);
+			ServerHandler serverHandler = new ServerHandler(clients, session, logger, verbose);
+			serverHandler.setFetchSize(config.getFetchSize());
+			serverHandler.setCredentialCache(credentialCache);
+			serverHandler.setConnectionPool(connectionPool);
+			if (overloaded) {
+				rejected.incrementAndGet();
+				logger.log(Level.WARNING, "Server is overloaded, client refused");
+				serverHandler.reject();
+				return;
+			}
+			accepted.incrementAndGet();
+			connection.start(serverHandler);
+		} catch (IOException e) {
+			logger.log(Level.SEVERE, "Accepting of the client failed!", e);
+			closeQuietly(channel);
+		}
+	}
+
+	/**
+	 * Read and write data of the client connection
+	 *
+	 * @param key the selection key of the client
+	 * @param readBuffer the buffer shared by all connections
+	 */
+	private void handleConnection(SelectionKey key, ByteBuffer readBuffer) {
+		NioConnection connection = (NioConnection) key.attachment();
+		try {
+			if (key.isWritable()) {
+				connection.flushOutput();
+			}
+			if (key.isValid() && key.isReadable()) {
+				connection.readInput(readBuffer);
+			}
+		} catch (IOException e) {
+			logger.log(Level.SEVERE, "Client terminated connection! ", e);
+			connection.endOfStream();
+			connection.abort();
+		}
+	}
+
+	/**
+	 * Execute tasks submitted by the worker threads
+	 */
+	private void runSelectorTasks() {
+		Runnable task;
+		while ((task = selectorTasks.poll()) != null) {
+			task.run();
+		}
+	}
+
+	/**
+	 * Disconnect clients which have been idle for longer than the session timeout. The event loop calls it once per second,
+	 * not after every event, so many connections are not scanned for each command
+	 *
+	 * @param now the current time in milliseconds
+	 */
+	private void closeIdleConnections(long now) {
+		for (NioConnection connection : connections) {
+			connection.closeIfIdle(now);
+		}
+	}
+
+	/**
+	 * Close the channel and ignore any error
+	 *
+	 * @param channel the channel to be closed
+	 */
+	private void closeQuietly(SocketChannel channel) {
+		if (channel == null) {
+			return;
+		}
+		try {
+			channel.close();
+		} catch (IOException e) {
+			logger.log(Level.SEVERE, "Closing of the channel failed!", e);
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * This class sends the messages of one response in three stages: the messages are rendered and encrypted by the shared
+ * pool of workers, and their frames are written to the transport by the thread of the session in the order they were sent.
+ * At most the window of messages is rendered or waits to be written, the thread of the session writes the oldest one
+ * before it sends another, so a slow client holds back the rendering instead of filling the memory.
+ * The nonces of the authenticated modes are reserved in the order of sending, so the client receives growing counters.
+ * The instance is used by the thread of the session only.
+ *
+ * @author Martin Holecek
+ *
+ */
+public class ParallelSender implements Closeable {
+
+	private Session session;
+	private ExecutorService workers;
+	private int window;
+	private Deque<Future<byte[][]>> pending;
+
+	/**
+	 * Initialize parallel sender of the session
+	 *
+	 * @param session the session which encrypts and writes the messages
+	 * @param workers the pool of workers shared by the sessions
+	 * @param window the maximum number of messages in flight
+	 */
+	ParallelSender(Session session, ExecutorService workers, int window) {
+		this.session = session;
+		this.workers = workers;
+		this.window = window;
+		pending = new ArrayDeque<>();
+	}
+
+	/**
+	 * Render and encrypt the messages on the worker, the frames are written after the frames of the messages sent before
+	 *
+	 * @param renderer the function which returns the messages, it is called on the worker
+	 * @param count the number of messages returned by the renderer
+	 * @throws IOException if the stream has been closed or the encryption of the earlier messages failed
+	 */
+	public void send(Supplier<String[]> renderer, int count) throws IOException {
+		while (pending.size() >= window) {
+			writeOldest();
+		}
+		long counter = session.reserveCounters(count);
+		pending.add(workers.submit(() -> {
+			String[] messages = renderer.get();
+			if (messages.length != count) {
+				throw new IOException("Renderer returned " + messages.length + " messages, " + count + " expected");
+			}
+			return session.seal(messages, counter);
+		}));
+	}
+
+	/**
+	 * Wait for the remaining messages and write their frames
+	 *
+	 * @throws IOException if the stream has been closed or the encryption failed
+	 */
+	public void finish() throws IOException {
+		while (!pending.isEmpty()) {
+			writeOldest();
+		}
+	}
+
+	/**
+	 * Cancel the messages which have not been written, after the failure of the response
+	 */
+	public void close() {
+		for (Future<byte[][]> future : pending) {
+			future.cancel(false);
+		}
+		pending.clear();
+	}
+
+	/**
+	 * Wait for the oldest message and write its frames
+	 *
+	 * @throws IOException if the stream has been closed or the encryption failed
+	 */
+	private void writeOldest() throws IOException {
+		Future<byte[][]> future = pending.poll();
+		byte[][] frames;
+		try {
+			frames = future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the encrypted message");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+		session.sendFrames(frames);
+	}
+}
@@ -0,0 +1,76 @@
+package server;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.net.ServerSocket;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.util.Set;
+
+/**
+ * This class enables SO_REUSEPORT on the listening sockets, so several sockets can be bound to the same port
+ * and the kernel spreads the incoming connections among them.
+ * The option exists since Java 9 and only on some operating systems, so it is looked up by reflection.
+ *
+ * @author Martin Holecek
+ *
+ */
+public final class ReusePort {
+
+	private static final String OPTION_NAME = "SO_REUSEPORT";
+
+	private ReusePort() {
+	}
+
+	/**
+	 * Check if the running JVM and the operating system support SO_REUSEPORT
+	 *
+	 * @return true if the option can be set on the listening socket, false otherwise
+	 */
+	public static boolean isSupported() {
+		SocketOption<Boolean> option = getOption();
+		if (option == null) {
+			return false;
+		}
+		try (ServerSocket serverSocket = new ServerSocket()) {
+			Set<?> options = (Set<?>) ServerSocket.class.getMethod("supportedOptions").invoke(serverSocket);
+			return options.contains(option);
+		} catch (IOException | NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Enable SO_REUSEPORT on the listening socket, must be called before the socket is bound
+	 *
+	 * @param serverSocket the listening socket
+	 * @throws IOException if the option is not supported or cannot be set
+	 */
+	public static void enable(ServerSocket serverSocket) throws IOException {
+		SocketOption<Boolean> option = getOption();
+		if (option == null) {
+			throw new IOException(OPTION_NAME + " requires Java 9 or newer");
+		}
+		try {
+			ServerSocket.class.getMethod("setOption", SocketOption.class, Object.class).invoke(serverSocket, option, Boolean.TRUE);
+		} catch (NoSuchMethodException | IllegalAccessException e) {
+			throw new IOException(OPTION_NAME + " cannot be set", e);
+		} catch (InvocationTargetException e) {
+			throw new IOException(OPTION_NAME + " cannot be set", e.getCause());
+		}
+	}
+
+	/**
+	 * Returns the SO_REUSEPORT socket option
+	 *
+	 * @return the socket option, or null if the running JVM does not define it
+	 */
+	@SuppressWarnings("unchecked")
+	private static SocketOption<Boolean> getOption() {
+		try {
+			return (SocketOption<Boolean>) StandardSocketOptions.class.getField(OPTION_NAME).get(null);
+		} catch (NoSuchFieldException | IllegalAccessException e) {
+			return null;
+		}
+	}
+}
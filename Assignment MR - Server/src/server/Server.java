@@ -1,15 +1,36 @@
 package server;
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.security.GeneralSecurityException;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.FileHandler;
 import java.util.logging.Level;
 import java.util.logging.LogManager;
 import java.util.logging.Logger;
 
+import database.ConnectionPool;
+import database.CredentialCache;
+import database.DBConnect;
+import database.MigrationRunner;
+import database.Migrations;
+import diffie_hellman.KeyPairPool;
+
 /**
  * This class will initiate and start Message Retrieval Server
  * 
@@ -18,8 +39,15 @@ import java.util.logging.Logger;
  */
 public class Server {
 
-	private ServerSocket serverSocket = null;
-	private ArrayList<Session> clients = null;
+	private List<Session> clients = null;
+	private ServerConfig config;
+	private BufferPool bufferPool;
+	private TlsContext tlsContext;
+	private TicketContext ticketContext;
+	private ExecutorService sendWorkers;
+	private CredentialCache credentialCache;
+	private ConnectionPool connectionPool;
+	private KeyPairPool keyPairPool;
 	private int port = 5000;
 	private boolean running = true;
 	private boolean verbose = true;
@@ -33,45 +61,327 @@ public class Server {
 	 * @param verbose if true error are visible otherwise errors are saved to the file only
 	 */
 	public Server(int port, boolean verbose) {
+		this(port, verbose, new ServerConfig());
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param port number must be between 2048 and 65535 
+	 * @param verbose if true error are visible otherwise errors are saved to the file only
+	 * @param config the configuration of the server
+	 */
+	public Server(int port, boolean verbose, ServerConfig config) {
 		if (port > 2048 && port < 65535) {
 			this.port = port;
 		}
 		this.verbose = verbose;
+		this.config = config;
 	}
 
 	/**
-	 * This method will initialize logger and then for each client which 
-	 * will try to connect, it will create new session and start a thread
+	 * This method will initialize logger and then start the transport selected in the configuration
 	 */
 	public void startServer() {
 
 		// Initialize logger
 		InitializeLogger();
+		if (!initializeSchema()) {
+			return;
+		}
+		clients = Collections.synchronizedList(new ArrayList<>());
+		bufferPool = new BufferPool(config.getMaxFrameSize());
+		MetricsReporter.register("buffers", bufferPool);
+		initializeTls();
+		initializeKeyPairPool();
+		initializeTickets();
+		initializeSendWorkers();
+		initializeCredentialCache();
+		initializeConnectionPool();
+		new MetricsReporter(lOGGER).start(config.getMetricsInterval());
+
+		switch (config.getTransport()) {
+		case THREAD:
+			startThreadServer(createSessionExecutor(Thread::new));
+			break;
+		case VIRTUAL:
+			startVirtualThreadServer();
+			break;
+		case NIO:
+			startNioServer();
+			break;
+		}
+	}
+
+	/**
+	 * Load the certificate of the server if the key store is configured, the server runs without TLS if it fails
+	 */
+	private void initializeTls() {
+		if (config.getTlsKeyStore() == null) {
+			return;
+		}
+		try {
+			tlsContext = new TlsContext(config);
+			MetricsReporter.register("tls", tlsContext);
+		} catch (IOException | GeneralSecurityException e) {
+			lOGGER.log(Level.SEVERE, "TLS initialization failed, AUTH TLS is not available", e);
+		}
+	}
 
+	/**
+	 * Generate the key of the resumption tickets if they are enabled, the clients cannot resume their sessions if it fails
+	 */
+	private void initializeTickets() {
+		if (config.getTicketTtl() == 0) {
+			return;
+		}
 		try {
-			serverSocket = new ServerSocket(port);
-			clients = new ArrayList<>();
-			
-			// This message has to be there to allow user to see which port is server running on
-			System.out.println("Server is connected to the port: " + port);
+			ticketContext = new TicketContext(config);
+			MetricsReporter.register("tickets", ticketContext);
+		} catch (NoSuchAlgorithmException e) {
+			lOGGER.log(Level.SEVERE, "Resumption ticket initialization failed, RESUME is not available", e);
+		}
+	}
+
+	/**
+	 * Create the cache of the password hashes checked by LOGIN Command, if it is enabled
+	 */
+	private void initializeCredentialCache() {
+		if (config.getCredentialsTtl() == 0) {
+			return;
+		}
+		credentialCache = new CredentialCache(config.getCredentialsTtl(), config.getCredentialsMax());
+		MetricsReporter.register("credentials", credentialCache);
+	}
+
+	/**
+	 * Apply the pending migrations of the database schema if they are enabled and check that the schema is up to date
+	 * 
+	 * @return false if a migration which is not optional failed or has not been applied, the server must not start
+	 */
+	private boolean initializeSchema() {
+		Set<Integer> optional = new HashSet<>();
+		if (config.isDbClustered()) {
+			optional.add(Migrations.CLUSTERED_MESSAGES);
+		}
+		try (Connection connection = DBConnect.openConnection()) {
+			MigrationRunner runner = new MigrationRunner(connection, lOGGER);
+			if (config.isDbMigrate()) {
+				int applied = runner.migrate(Migrations.ALL, optional);
+				lOGGER.log(Level.INFO, applied + " schema migrations applied");
+			}
+			List<Integer> pending = runner.getPendingVersions(Migrations.ALL);
+			if (!pending.isEmpty()) {
+				lOGGER.log(Level.SEVERE, "Schema migrations " + pending + " have not been applied, the server is not started");
+				return false;
+			}
+			return true;
+		} catch (SQLException e) {
+			lOGGER.log(Level.SEVERE, "Schema migration failed, the server is not started", e);
+			return false;
+		}
+	}
+
+	/**
+	 * Create the pool of the database connections shared by all sessions
+	 */
+	private void initializeConnectionPool() {
+		connectionPool = DBConnect.createConnectionPool(config.getDbPoolSize(), config.getDbAcquireTimeout(),
+				config.getDbStatements(), lOGGER);
+		MetricsReporter.register("database", connectionPool);
+	}
+
+	/**
+	 * Start the workers which encrypt the messages of FETCH Command in parallel, if they are enabled
+	 */
+	private void initializeSendWorkers() {
+		if (config.getFetchThreads() == 0) {
+			return;
+		}
+		AtomicInteger threadNumber = new AtomicInteger();
+		sendWorkers = Executors.newFixedThreadPool(config.getFetchThreads(), runnable -> {
+			Thread thread = new Thread(runnable, "mrp-fetch-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
 
+	/**
+	 * Start generating the Diffie-Hellman key pairs in advance, the key pair is generated during AUTH Command if it fails
+	 */
+	private void initializeKeyPairPool() {
+		if (config.getKeyPairPoolSize() == 0) {
+			return;
+		}
+		try {
+			keyPairPool = new KeyPairPool(config.getKeyPairPoolSize(), config.getKeyAgreementThreads(), config.getKeyAgreementQueue(), lOGGER);
+			MetricsReporter.register("keyexchange", keyPairPool);
+		} catch (NoSuchAlgorithmException e) {
+			lOGGER.log(Level.SEVERE, "Diffie-Hellman key pair pool initialization failed", e);
+		}
+	}
+
+	/**
+	 * Every client is served by its own new virtual thread, so the blocking code of the commands
+	 * does not need a platform thread for each idle client. The clients above the maximum number of sessions are refused.
+	 * The JDBC calls pin the carrier threads, so the pool limits the number of calls executed at once
+	 */
+	private void startVirtualThreadServer() {
+		if (!VirtualThreads.isSupported()) {
+			lOGGER.log(Level.SEVERE, "Virtual threads require Java 21 or newer, using platform threads");
+			startThreadServer(createSessionExecutor(Thread::new));
+			return;
+		}
+		connectionPool.setCallPermits(new Semaphore(config.getVirtualCommands()));
+		startThreadServer(new SessionExecutor(config.getMaxSessions(), VirtualThreads.newFactory("mrp-session-")));
+	}
+
+	/**
+	 * Create the executor which runs at most the configured number of sessions on the platform threads
+	 * 
+	 * @param threadFactory the factory which creates the threads of the sessions
+	 * @return the session executor
+	 */
+	private SessionExecutor createSessionExecutor(ThreadFactory threadFactory) {
+		return new SessionExecutor(config.getMaxSessions(), config.getSessionQueue(), threadFactory);
+	}
+
+	/**
+	 * For each client which will try to connect, it will create new session and start a thread.
+	 * With more than one acceptor every acceptor has its own listening socket bound to the same port with SO_REUSEPORT
+	 * and its own accept thread, so the kernel spreads the incoming connections among them
+	 * 
+	 * @param sessionExecutor the executor which runs the sessions of the clients
+	 */
+	private void startThreadServer(SessionExecutor sessionExecutor) {
+		MetricsReporter.register("sessions", sessionExecutor);
+		int acceptors = config.getAcceptors();
+		if (acceptors > 1 && !ReusePort.isSupported()) {
+			lOGGER.log(Level.SEVERE, "SO_REUSEPORT is not supported, using a single acceptor");
+			acceptors = 1;
+		}
+		List<ServerSocket> serverSockets = new ArrayList<>();
+		try {
+			for (int i = 0; i < acceptors; i++) {
+				serverSockets.add(openServerSocket(acceptors > 1));
+			}
+		} catch (IOException e) {
+			lOGGER.log(Level.SEVERE, "Input Error", e);
+			closeServerSockets(serverSockets);
+			return;
+		}
+
+		// This message has to be there to allow user to see which port is server running on
+		System.out.println("Server is connected to the port: " + port);
+
+		for (int i = 1; i < serverSockets.size(); i++) {
+			ServerSocket serverSocket = serverSockets.get(i);
+			new Thread(() -> acceptClients(serverSocket, sessionExecutor), "mrp-acceptor-" + i).start();
+		}
+		acceptClients(serverSockets.get(0), sessionExecutor);
+	}
+
+	/**
+	 * Create the listening socket bound to the port of the server
+	 * 
+	 * @param reusePort if true SO_REUSEPORT is enabled, so other sockets can be bound to the same port
+	 * @return the bound listening socket
+	 * @throws IOException if the port cannot be bound or another I/O error
+	 */
+	private ServerSocket openServerSocket(boolean reusePort) throws IOException {
+		ServerSocket serverSocket = new ServerSocket();
+		try {
+			if (reusePort) {
+				ReusePort.enable(serverSocket);
+			}
+			if (config.getReceiveBufferSize() > 0) {
+				serverSocket.setReceiveBufferSize(config.getReceiveBufferSize());
+			}
+			serverSocket.bind(new InetSocketAddress(port), config.getAcceptBacklog());
+		} catch (IOException e) {
+			serverSocket.close();
+			throw e;
+		}
+		return serverSocket;
+	}
+
+	/**
+	 * Close the listening sockets which have already been bound
+	 * 
+	 * @param serverSockets the listening sockets
+	 */
+	private void closeServerSockets(List<ServerSocket> serverSockets) {
+		for (ServerSocket serverSocket : serverSockets) {
+			try {
+				serverSocket.close();
+			} catch (IOException e) {
+				lOGGER.log(Level.SEVERE, "Closing of Server Socket Failed!", e);
+			}
+		}
+	}
+
+	/**
+	 * Accept clients on the listening socket, create their sessions and hand them over to the session executor
+	 * 
+	 * @param serverSocket the listening socket
+	 * @param sessionExecutor the executor running the sessions
+	 */
+	private void acceptClients(ServerSocket serverSocket, SessionExecutor sessionExecutor) {
+		try {
 			while (running) {
 				// Create socket
 				Socket socket = serverSocket.accept();
 
 				// Create new session (socket and data streams)
-				Session session = new Session(socket, lOGGER);
+				Session session = new Session(new SocketTransport(socket, config, bufferPool), lOGGER);
+				session.setTlsContext(tlsContext);
+				session.setKeyPairPool(keyPairPool);
+				session.setTicketContext(ticketContext);
+				session.setSendWorkers(sendWorkers, config.getFetchWindow());
+				session.setStreamChunkSize(config.getStreamChunkSize());
 				clients.add(session);
 
 				ServerHandler serverHandler = new ServerHandler(clients, session, lOGGER, verbose);
-				Thread serverThread = new Thread(serverHandler);
-				serverThread.start();
+				serverHandler.setFetchSize(config.getFetchSize());
+				serverHandler.setCredentialCache(credentialCache);
+				serverHandler.setConnectionPool(connectionPool);
+				if (!sessionExecutor.execute(serverHandler)) {
+					lOGGER.log(Level.WARNING, "Server is overloaded, client refused");
+					serverHandler.reject();
+				}
 			}
 		} catch (IOException e) {
 			lOGGER.log(Level.SEVERE, "Input Error", e);
 		}
 	}
 
+	/**
+	 * All clients are served by a single selector thread and their commands are executed by the pool of workers
+	 */
+	private void startNioServer() {
+		if (config.getAcceptors() > 1) {
+			lOGGER.log(Level.WARNING, "NIO transport accepts clients on the selector thread, the number of acceptors is ignored");
+		}
+		try {
+			NioServer nioServer = new NioServer(port, config, bufferPool, clients, lOGGER, verbose);
+			MetricsReporter.register("sessions", nioServer);
+			nioServer.setTlsContext(tlsContext);
+			nioServer.setKeyPairPool(keyPairPool);
+			nioServer.setTicketContext(ticketContext);
+			nioServer.setSendWorkers(sendWorkers);
+			nioServer.setCredentialCache(credentialCache);
+			nioServer.setConnectionPool(connectionPool);
+			nioServer.bind();
+
+			// This message has to be there to allow user to see which port is server running on
+			System.out.println("Server is connected to the port: " + port);
+
+			nioServer.run();
+		} catch (IOException e) {
+			lOGGER.log(Level.SEVERE, "Input Error", e);
+		}
+	}
+
 	/**
 	 * This method will initialize logger file and if the verbose is set
 	 * then it will also add console handler to print logs into the console.
@@ -123,7 +433,7 @@ public class Server {
 		// Check if user will see error messages
 		verbose = getVerbose();
 
-		Server server = new Server(port, verbose);
+		Server server = new Server(port, verbose, ServerConfig.fromSystemProperties());
 		server.startServer();
 	}
 
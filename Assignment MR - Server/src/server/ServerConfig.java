@@ -0,0 +1,999 @@
+package server;
+
+import java.security.KeyStore;
+
+/**
+ * This class holds configuration of the Message Retrieval Server.
+ * Every option can be overridden by the system property, for example -Dmrp.transport=nio
+ *
+ * @author Martin Holecek
+ *
+ */
+public class ServerConfig {
+
+	public enum Transport {
+		THREAD, VIRTUAL, NIO
+	}
+
+	private static final int DEFAULT_SESSION_TIMEOUT = 600000;
+	private static final int DEFAULT_FRAME_TIMEOUT = 10000;
+
+	private static final String PROPERTY_TRANSPORT = "mrp.transport";
+	private static final String PROPERTY_WORKER_THREADS = "mrp.workers";
+	private static final String PROPERTY_WAITING_WORKERS = "mrp.workers.waiting";
+	private static final String PROPERTY_SESSION_TIMEOUT = "mrp.session.timeout";
+	private static final String PROPERTY_FRAME_TIMEOUT = "mrp.frame.timeout";
+	private static final String PROPERTY_VIRTUAL_COMMANDS = "mrp.virtual.commands";
+	private static final String PROPERTY_MAX_SESSIONS = "mrp.sessions.max";
+	private static final String PROPERTY_SESSION_QUEUE = "mrp.sessions.queue";
+	private static final String PROPERTY_ACCEPT_BACKLOG = "mrp.accept.backlog";
+	private static final String PROPERTY_METRICS_INTERVAL = "mrp.metrics.interval";
+	private static final String PROPERTY_TCP_NO_DELAY = "mrp.tcp.nodelay";
+	private static final String PROPERTY_SEND_BUFFER = "mrp.socket.sendbuffer";
+	private static final String PROPERTY_RECEIVE_BUFFER = "mrp.socket.receivebuffer";
+	private static final String PROPERTY_OUTPUT_BUFFER = "mrp.output.buffer";
+	private static final String PROPERTY_FETCH_SIZE = "mrp.fetch.size";
+	private static final String PROPERTY_MAX_FRAME_SIZE = "mrp.frame.max";
+	private static final String PROPERTY_TLS_KEYSTORE = "mrp.tls.keystore";
+	private static final String PROPERTY_TLS_KEYSTORE_TYPE = "mrp.tls.keystore.type";
+	private static final String PROPERTY_TLS_PASSWORD = "mrp.tls.password";
+	private static final String PROPERTY_TLS_PROTOCOLS = "mrp.tls.protocols";
+	private static final String PROPERTY_TLS_SESSION_CACHE = "mrp.tls.session.cache";
+	private static final String PROPERTY_TLS_SESSION_TIMEOUT = "mrp.tls.session.timeout";
+	private static final String PROPERTY_ACCEPTORS = "mrp.acceptors";
+	private static final String PROPERTY_DH_POOL_SIZE = "mrp.dh.pool";
+	private static final String PROPERTY_DH_THREADS = "mrp.dh.threads";
+	private static final String PROPERTY_DH_QUEUE = "mrp.dh.queue";
+	private static final String PROPERTY_STREAM_CHUNK_SIZE = "mrp.stream.chunk";
+	private static final String PROPERTY_DIRECT_BUFFERS = "mrp.buffer.direct";
+	private static final String PROPERTY_TICKET_TTL = "mrp.ticket.ttl";
+	private static final String PROPERTY_FETCH_THREADS = "mrp.fetch.threads";
+	private static final String PROPERTY_FETCH_WINDOW = "mrp.fetch.window";
+	private static final String PROPERTY_CREDENTIALS_TTL = "mrp.credentials.ttl";
+	private static final String PROPERTY_CREDENTIALS_MAX = "mrp.credentials.max";
+	private static final String PROPERTY_DB_POOL_SIZE = "mrp.db.pool";
+	private static final String PROPERTY_DB_ACQUIRE_TIMEOUT = "mrp.db.timeout";
+	private static final String PROPERTY_DB_STATEMENTS = "mrp.db.statements";
+	private static final String PROPERTY_DB_MIGRATE = "mrp.db.migrate";
+	private static final String PROPERTY_DB_CLUSTERED = "mrp.db.clustered";
+
+	private static final int DEFAULT_WORKER_THREADS = 32;
+	private static final int DEFAULT_WAITING_WORKERS = 8;
+	private static final int DEFAULT_MAX_SESSIONS = 2000;
+	private static final int DEFAULT_SESSION_QUEUE = 100;
+	private static final int DEFAULT_ACCEPT_BACKLOG = 50;
+	private static final int DEFAULT_METRICS_INTERVAL = 60;
+	private static final int DEFAULT_OUTPUT_BUFFER = 16 * 1024;
+	private static final int DEFAULT_FETCH_SIZE = 100;
+	private static final int DEFAULT_MAX_FRAME_SIZE = 64 * 1024;
+	private static final String DEFAULT_TLS_PROTOCOLS = "TLSv1.3";
+	private static final int DEFAULT_TLS_SESSION_CACHE = 1000;
+	private static final int DEFAULT_TLS_SESSION_TIMEOUT = 86400;
+	private static final int DEFAULT_ACCEPTORS = 1;
+	private static final int DEFAULT_DH_POOL_SIZE = 16;
+	private static final int DEFAULT_DH_QUEUE = 64;
+	private static final int DEFAULT_STREAM_CHUNK_SIZE = 16384;
+	private static final int DEFAULT_TICKET_TTL = 300;
+	private static final int DEFAULT_FETCH_WINDOW = 32;
+	private static final int DEFAULT_CREDENTIALS_TTL = 30;
+	private static final int DEFAULT_CREDENTIALS_MAX = 10000;
+	private static final int DEFAULT_DB_POOL_SIZE = 20;
+	private static final int DEFAULT_DB_ACQUIRE_TIMEOUT = 5000;
+	private static final int DEFAULT_DB_STATEMENTS = 64;
+
+	private Transport transport;
+	private int workerThreads;
+	private int waitingWorkers;
+	private int sessionTimeout;
+	private int frameTimeout;
+	private int virtualCommands;
+	private int maxSessions;
+	private int sessionQueue;
+	private int acceptBacklog;
+	private int metricsInterval;
+	private boolean tcpNoDelay;
+	private int sendBufferSize;
+	private int receiveBufferSize;
+	private int outputBufferSize;
+	private int fetchSize;
+	private int maxFrameSize;
+	private String tlsKeyStore;
+	private String tlsKeyStoreType;
+	private String tlsPassword;
+	private String tlsProtocols;
+	private int tlsSessionCache;
+	private int tlsSessionTimeout;
+	private int acceptors;
+	private int keyPairPoolSize;
+	private int keyAgreementThreads;
+	private int keyAgreementQueue;
+	private int streamChunkSize;
+	private boolean directBuffers;
+	private int ticketTtl;
+	private int fetchThreads;
+	private int fetchWindow;
+	private int credentialsTtl;
+	private int credentialsMax;
+	private int dbPoolSize;
+	private int dbAcquireTimeout;
+	private int dbStatements;
+	private boolean dbMigrate;
+	private boolean dbClustered;
+
+	/**
+	 * Initialize configuration with default values
+	 */
+	public ServerConfig() {
+		transport = Transport.THREAD;
+		workerThreads = DEFAULT_WORKER_THREADS;
+		waitingWorkers = DEFAULT_WAITING_WORKERS;
+		sessionTimeout = DEFAULT_SESSION_TIMEOUT;
+		frameTimeout = DEFAULT_FRAME_TIMEOUT;
+		virtualCommands = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+		maxSessions = DEFAULT_MAX_SESSIONS;
+		sessionQueue = DEFAULT_SESSION_QUEUE;
+		acceptBacklog = DEFAULT_ACCEPT_BACKLOG;
+		metricsInterval = DEFAULT_METRICS_INTERVAL;
+		tcpNoDelay = true;
+		outputBufferSize = DEFAULT_OUTPUT_BUFFER;
+		fetchSize = DEFAULT_FETCH_SIZE;
+		maxFrameSize = DEFAULT_MAX_FRAME_SIZE;
+		tlsKeyStoreType = KeyStore.getDefaultType();
+		tlsPassword = "";
+		tlsProtocols = DEFAULT_TLS_PROTOCOLS;
+		tlsSessionCache = DEFAULT_TLS_SESSION_CACHE;
+		tlsSessionTimeout = DEFAULT_TLS_SESSION_TIMEOUT;
+		acceptors = DEFAULT_ACCEPTORS;
+		keyPairPoolSize = DEFAULT_DH_POOL_SIZE;
+		keyAgreementThreads = Runtime.getRuntime().availableProcessors();
+		keyAgreementQueue = DEFAULT_DH_QUEUE;
+		streamChunkSize = DEFAULT_STREAM_CHUNK_SIZE;
+		ticketTtl = DEFAULT_TICKET_TTL;
+		fetchThreads = Runtime.getRuntime().availableProcessors();
+		fetchWindow = DEFAULT_FETCH_WINDOW;
+		credentialsTtl = DEFAULT_CREDENTIALS_TTL;
+		credentialsMax = DEFAULT_CREDENTIALS_MAX;
+		dbPoolSize = DEFAULT_DB_POOL_SIZE;
+		dbAcquireTimeout = DEFAULT_DB_ACQUIRE_TIMEOUT;
+		dbStatements = DEFAULT_DB_STATEMENTS;
+		dbMigrate = true;
+	}
+
+	/**
+	 * Create configuration from the system properties, missing properties keep their default values
+	 *
+	 * @return the configuration object
+	 * @throws IllegalArgumentException if any of the properties has invalid value
+	 */
+	public static ServerConfig fromSystemProperties() {
+		ServerConfig config = new ServerConfig();
+		String transport = System.getProperty(PROPERTY_TRANSPORT);
+		if (transport != null) {
+			config.setTransport(Transport.valueOf(transport.trim().toUpperCase()));
+		}
+		config.setWorkerThreads(Integer.getInteger(PROPERTY_WORKER_THREADS, config.getWorkerThreads()));
+		config.setWaitingWorkers(Integer.getInteger(PROPERTY_WAITING_WORKERS, config.getWaitingWorkers()));
+		config.setSessionTimeout(Integer.getInteger(PROPERTY_SESSION_TIMEOUT, config.getSessionTimeout()));
+		config.setFrameTimeout(Integer.getInteger(PROPERTY_FRAME_TIMEOUT, config.getFrameTimeout()));
+		config.setVirtualCommands(Integer.getInteger(PROPERTY_VIRTUAL_COMMANDS, config.getVirtualCommands()));
+		config.setMaxSessions(Integer.getInteger(PROPERTY_MAX_SESSIONS, config.getMaxSessions()));
+		config.setSessionQueue(Integer.getInteger(PROPERTY_SESSION_QUEUE, config.getSessionQueue()));
+		config.setAcceptBacklog(Integer.getInteger(PROPERTY_ACCEPT_BACKLOG, config.getAcceptBacklog()));
+		config.setMetricsInterval(Integer.getInteger(PROPERTY_METRICS_INTERVAL, config.getMetricsInterval()));
+		config.setTcpNoDelay(Boolean.parseBoolean(System.getProperty(PROPERTY_TCP_NO_DELAY, String.valueOf(config.isTcpNoDelay()))));
+		config.setSendBufferSize(Integer.getInteger(PROPERTY_SEND_BUFFER, config.getSendBufferSize()));
+		config.setReceiveBufferSize(Integer.getInteger(PROPERTY_RECEIVE_BUFFER, config.getReceiveBufferSize()));
+		config.setOutputBufferSize(Integer.getInteger(PROPERTY_OUTPUT_BUFFER, config.getOutputBufferSize()));
+		config.setFetchSize(Integer.getInteger(PROPERTY_FETCH_SIZE, config.getFetchSize()));
+		config.setMaxFrameSize(Integer.getInteger(PROPERTY_MAX_FRAME_SIZE, config.getMaxFrameSize()));
+		config.setTlsKeyStore(System.getProperty(PROPERTY_TLS_KEYSTORE, config.getTlsKeyStore()));
+		config.setTlsKeyStoreType(System.getProperty(PROPERTY_TLS_KEYSTORE_TYPE, config.getTlsKeyStoreType()));
+		config.setTlsPassword(System.getProperty(PROPERTY_TLS_PASSWORD, config.getTlsPassword()));
+		config.setTlsProtocols(System.getProperty(PROPERTY_TLS_PROTOCOLS, config.getTlsProtocols()));
+		config.setTlsSessionCache(Integer.getInteger(PROPERTY_TLS_SESSION_CACHE, config.getTlsSessionCache()));
+		config.setTlsSessionTimeout(Integer.getInteger(PROPERTY_TLS_SESSION_TIMEOUT, config.getTlsSessionTimeout()));
+		config.setAcceptors(Integer.getInteger(PROPERTY_ACCEPTORS, config.getAcceptors()));
+		config.setKeyPairPoolSize(Integer.getInteger(PROPERTY_DH_POOL_SIZE, config.getKeyPairPoolSize()));
+		config.setKeyAgreementThreads(Integer.getInteger(PROPERTY_DH_THREADS, config.getKeyAgreementThreads()));
+		config.setKeyAgreementQueue(Integer.getInteger(PROPERTY_DH_QUEUE, config.getKeyAgreementQueue()));
+		config.setStreamChunkSize(Integer.getInteger(PROPERTY_STREAM_CHUNK_SIZE, config.getStreamChunkSize()));
+		config.setDirectBuffers(Boolean.parseBoolean(System.getProperty(PROPERTY_DIRECT_BUFFERS, String.valueOf(config.isDirectBuffers()))));
+		config.setTicketTtl(Integer.getInteger(PROPERTY_TICKET_TTL, config.getTicketTtl()));
+		config.setFetchThreads(Integer.getInteger(PROPERTY_FETCH_THREADS, config.getFetchThreads()));
+		config.setFetchWindow(Integer.getInteger(PROPERTY_FETCH_WINDOW, config.getFetchWindow()));
+		config.setCredentialsTtl(Integer.getInteger(PROPERTY_CREDENTIALS_TTL, config.getCredentialsTtl()));
+		config.setCredentialsMax(Integer.getInteger(PROPERTY_CREDENTIALS_MAX, config.getCredentialsMax()));
+		config.setDbPoolSize(Integer.getInteger(PROPERTY_DB_POOL_SIZE, config.getDbPoolSize()));
+		config.setDbAcquireTimeout(Integer.getInteger(PROPERTY_DB_ACQUIRE_TIMEOUT, config.getDbAcquireTimeout()));
+		config.setDbStatements(Integer.getInteger(PROPERTY_DB_STATEMENTS, config.getDbStatements()));
+		config.setDbMigrate(Boolean.parseBoolean(System.getProperty(PROPERTY_DB_MIGRATE, String.valueOf(config.isDbMigrate()))));
+		config.setDbClustered(Boolean.parseBoolean(System.getProperty(PROPERTY_DB_CLUSTERED, String.valueOf(config.isDbClustered()))));
+		return config;
+	}
+
+	/**
+	 * Returns the transport used for client connections
+	 *
+	 * @return the transport
+	 */
+	public Transport getTransport() {
+		return transport;
+	}
+
+	/**
+	 * Set the transport used for client connections
+	 *
+	 * @param transport the transport
+	 */
+	public void setTransport(Transport transport) {
+		this.transport = transport;
+	}
+
+	/**
+	 * Returns number of worker threads which execute commands in the NIO transport
+	 *
+	 * @return number of worker threads
+	 */
+	public int getWorkerThreads() {
+		return workerThreads;
+	}
+
+	/**
+	 * Set number of worker threads which execute commands in the NIO transport
+	 *
+	 * @param workerThreads number of worker threads, must be positive
+	 */
+	public void setWorkerThreads(int workerThreads) {
+		if (workerThreads < 1) {
+			throw new IllegalArgumentException("Number of worker threads must be positive");
+		}
+		this.workerThreads = workerThreads;
+	}
+
+	/**
+	 * Returns the maximum number of workers of the NIO transport which wait for their clients at once, in the middle of a command
+	 * which needs another frame or while the client does not read the response. At least one worker never waits
+	 *
+	 * @return the maximum number of waiting workers
+	 */
+	public int getWaitingWorkers() {
+		return waitingWorkers;
+	}
+
+	/**
+	 * Set the maximum number of workers of the NIO transport which wait for their clients at once
+	 *
+	 * @param waitingWorkers the maximum number of waiting workers, must be positive
+	 */
+	public void setWaitingWorkers(int waitingWorkers) {
+		if (waitingWorkers < 1) {
+			throw new IllegalArgumentException("Number of waiting workers must be positive");
+		}
+		this.waitingWorkers = waitingWorkers;
+	}
+
+	/**
+	 * Returns the time in milliseconds after which idle client is disconnected
+	 *
+	 * @return the session timeout in milliseconds
+	 */
+	public int getSessionTimeout() {
+		return sessionTimeout;
+	}
+
+	/**
+	 * Set the time in milliseconds after which idle client is disconnected
+	 *
+	 * @param sessionTimeout the session timeout in milliseconds, must be positive
+	 */
+	public void setSessionTimeout(int sessionTimeout) {
+		if (sessionTimeout < 1) {
+			throw new IllegalArgumentException("Session timeout must be positive");
+		}
+		this.sessionTimeout = sessionTimeout;
+	}
+
+	/**
+	 * Returns the time in milliseconds the worker of the NIO transport waits for the next frame of the command
+	 * or for the client to read the response, the client which does not send it in time is disconnected
+	 *
+	 * @return the frame timeout in milliseconds
+	 */
+	public int getFrameTimeout() {
+		return frameTimeout;
+	}
+
+	/**
+	 * Set the time in milliseconds the worker of the NIO transport waits for the next frame of the command
+	 *
+	 * @param frameTimeout the frame timeout in milliseconds, must be positive
+	 */
+	public void setFrameTimeout(int frameTimeout) {
+		if (frameTimeout < 1) {
+			throw new IllegalArgumentException("Frame timeout must be positive");
+		}
+		this.frameTimeout = frameTimeout;
+	}
+
+	/**
+	 * Returns the maximum number of JDBC calls executed at once in the virtual thread transport.
+	 * The MySQL driver blocks inside synchronized blocks, which pins the carrier thread of the virtual thread.
+	 * There are as many carrier threads as processors by default, so the default limit of one less than the number
+	 * of processors keeps a carrier thread free for the other sessions on a machine with more than one processor.
+	 * The limit must stay below the number of carrier threads to have this effect. The reads and writes of the client are not limited.
+	 *
+	 * @return the maximum number of JDBC calls executed at once
+	 */
+	public int getVirtualCommands() {
+		return virtualCommands;
+	}
+
+	/**
+	 * Set the maximum number of JDBC calls executed at once in the virtual thread transport
+	 *
+	 * @param virtualCommands the maximum number of JDBC calls, must be positive
+	 */
+	public void setVirtualCommands(int virtualCommands) {
+		if (virtualCommands < 1) {
+			throw new IllegalArgumentException("Number of concurrent commands must be positive");
+		}
+		this.virtualCommands = virtualCommands;
+	}
+
+	/**
+	 * Returns the maximum number of client sessions served at once, the clients above the limit are refused
+	 *
+	 * @return the maximum number of sessions
+	 */
+	public int getMaxSessions() {
+		return maxSessions;
+	}
+
+	/**
+	 * Set the maximum number of client sessions served at once
+	 *
+	 * @param maxSessions the maximum number of sessions, must be positive
+	 */
+	public void setMaxSessions(int maxSessions) {
+		if (maxSessions < 1) {
+			throw new IllegalArgumentException("Maximum number of sessions must be positive");
+		}
+		this.maxSessions = maxSessions;
+	}
+
+	/**
+	 * Returns the number of clients which may wait for a free session before new clients are refused
+	 *
+	 * @return the size of the session queue
+	 */
+	public int getSessionQueue() {
+		return sessionQueue;
+	}
+
+	/**
+	 * Set the number of clients which may wait for a free session before new clients are refused
+	 *
+	 * @param sessionQueue the size of the session queue, zero disables waiting
+	 */
+	public void setSessionQueue(int sessionQueue) {
+		if (sessionQueue < 0) {
+			throw new IllegalArgumentException("Size of the session queue must not be negative");
+		}
+		this.sessionQueue = sessionQueue;
+	}
+
+	/**
+	 * Returns the maximum length of the operating system queue of connections not yet accepted by the server
+	 *
+	 * @return the accept backlog
+	 */
+	public int getAcceptBacklog() {
+		return acceptBacklog;
+	}
+
+	/**
+	 * Set the maximum length of the operating system queue of connections not yet accepted by the server
+	 *
+	 * @param acceptBacklog the accept backlog, must be positive
+	 */
+	public void setAcceptBacklog(int acceptBacklog) {
+		if (acceptBacklog < 1) {
+			throw new IllegalArgumentException("Accept backlog must be positive");
+		}
+		this.acceptBacklog = acceptBacklog;
+	}
+
+	/**
+	 * Returns the interval in seconds between two reports of the server metrics
+	 *
+	 * @return the interval in seconds, zero if the reports are disabled
+	 */
+	public int getMetricsInterval() {
+		return metricsInterval;
+	}
+
+	/**
+	 * Set the interval in seconds between two reports of the server metrics
+	 *
+	 * @param metricsInterval the interval in seconds, zero disables the reports
+	 */
+	public void setMetricsInterval(int metricsInterval) {
+		if (metricsInterval < 0) {
+			throw new IllegalArgumentException("Metrics interval must not be negative");
+		}
+		this.metricsInterval = metricsInterval;
+	}
+
+	/**
+	 * Returns true if Nagle's algorithm is disabled on the client sockets
+	 *
+	 * @return true if TCP_NODELAY is set
+	 */
+	public boolean isTcpNoDelay() {
+		return tcpNoDelay;
+	}
+
+	/**
+	 * Set whether Nagle's algorithm is disabled on the client sockets
+	 *
+	 * @param tcpNoDelay true to set TCP_NODELAY
+	 */
+	public void setTcpNoDelay(boolean tcpNoDelay) {
+		this.tcpNoDelay = tcpNoDelay;
+	}
+
+	/**
+	 * Returns the size of the socket send buffer
+	 *
+	 * @return the size in bytes, zero if the operating system default is used
+	 */
+	public int getSendBufferSize() {
+		return sendBufferSize;
+	}
+
+	/**
+	 * Set the size of the socket send buffer
+	 *
+	 * @param sendBufferSize the size in bytes, zero keeps the operating system default
+	 */
+	public void setSendBufferSize(int sendBufferSize) {
+		if (sendBufferSize < 0) {
+			throw new IllegalArgumentException("Send buffer size must not be negative");
+		}
+		this.sendBufferSize = sendBufferSize;
+	}
+
+	/**
+	 * Returns the size of the socket receive buffer
+	 *
+	 * @return the size in bytes, zero if the operating system default is used
+	 */
+	public int getReceiveBufferSize() {
+		return receiveBufferSize;
+	}
+
+	/**
+	 * Set the size of the socket receive buffer
+	 *
+	 * @param receiveBufferSize the size in bytes, zero keeps the operating system default
+	 */
+	public void setReceiveBufferSize(int receiveBufferSize) {
+		if (receiveBufferSize < 0) {
+			throw new IllegalArgumentException("Receive buffer size must not be negative");
+		}
+		this.receiveBufferSize = receiveBufferSize;
+	}
+
+	/**
+	 * Returns the size of the session buffer collecting the frames of one response
+	 *
+	 * @return the size in bytes
+	 */
+	public int getOutputBufferSize() {
+		return outputBufferSize;
+	}
+
+	/**
+	 * Set the size of the session buffer collecting the frames of one response
+	 *
+	 * @param outputBufferSize the size in bytes, must be positive
+	 */
+	public void setOutputBufferSize(int outputBufferSize) {
+		if (outputBufferSize < 1) {
+			throw new IllegalArgumentException("Output buffer size must be positive");
+		}
+		this.outputBufferSize = outputBufferSize;
+	}
+
+	/**
+	 * Returns the number of rows fetched from the database at once while the messages are sent to the client
+	 *
+	 * @return the number of rows
+	 */
+	public int getFetchSize() {
+		return fetchSize;
+	}
+
+	/**
+	 * Set the number of rows fetched from the database at once while the messages are sent to the client
+	 *
+	 * @param fetchSize the number of rows, zero reads the whole result at once
+	 */
+	public void setFetchSize(int fetchSize) {
+		if (fetchSize < 0) {
+			throw new IllegalArgumentException("Fetch size must not be negative");
+		}
+		this.fetchSize = fetchSize;
+	}
+
+	/**
+	 * Returns the maximum number of bytes of a single frame accepted from the client, larger frames close the connection
+	 *
+	 * @return the maximum frame size in bytes
+	 */
+	public int getMaxFrameSize() {
+		return maxFrameSize;
+	}
+
+	/**
+	 * Set the maximum number of bytes of a single frame accepted from the client, larger frames close the connection
+	 *
+	 * @param maxFrameSize the maximum frame size in bytes, must be positive
+	 */
+	public void setMaxFrameSize(int maxFrameSize) {
+		if (maxFrameSize < 1) {
+			throw new IllegalArgumentException("Maximum frame size must be positive");
+		}
+		this.maxFrameSize = maxFrameSize;
+	}
+
+	/**
+	 * Returns the path of the key store with the certificate of the server
+	 *
+	 * @return the path of the key store, or null if TLS is disabled
+	 */
+	public String getTlsKeyStore() {
+		return tlsKeyStore;
+	}
+
+	/**
+	 * Set the path of the key store with the certificate of the server, TLS is enabled only if the key store is set
+	 *
+	 * @param tlsKeyStore the path of the key store, null disables TLS
+	 */
+	public void setTlsKeyStore(String tlsKeyStore) {
+		this.tlsKeyStore = tlsKeyStore;
+	}
+
+	/**
+	 * Returns the type of the key store
+	 *
+	 * @return the key store type, for example PKCS12 or JKS
+	 */
+	public String getTlsKeyStoreType() {
+		return tlsKeyStoreType;
+	}
+
+	/**
+	 * Set the type of the key store
+	 *
+	 * @param tlsKeyStoreType the key store type, for example PKCS12 or JKS
+	 */
+	public void setTlsKeyStoreType(String tlsKeyStoreType) {
+		if (tlsKeyStoreType == null || tlsKeyStoreType.trim().isEmpty()) {
+			throw new IllegalArgumentException("TLS key store type must not be empty");
+		}
+		this.tlsKeyStoreType = tlsKeyStoreType.trim();
+	}
+
+	/**
+	 * Returns the password of the key store and of the private key
+	 *
+	 * @return the password
+	 */
+	public String getTlsPassword() {
+		return tlsPassword;
+	}
+
+	/**
+	 * Set the password of the key store and of the private key
+	 *
+	 * @param tlsPassword the password
+	 */
+	public void setTlsPassword(String tlsPassword) {
+		if (tlsPassword == null) {
+			throw new IllegalArgumentException("TLS password must not be null");
+		}
+		this.tlsPassword = tlsPassword;
+	}
+
+	/**
+	 * Returns the comma separated TLS protocols the server accepts
+	 *
+	 * @return the protocols, for example TLSv1.3
+	 */
+	public String getTlsProtocols() {
+		return tlsProtocols;
+	}
+
+	/**
+	 * Set the comma separated TLS protocols the server accepts, the protocols not supported by the JVM are ignored
+	 *
+	 * @param tlsProtocols the protocols, for example TLSv1.3,TLSv1.2
+	 */
+	public void setTlsProtocols(String tlsProtocols) {
+		if (tlsProtocols == null || tlsProtocols.trim().isEmpty()) {
+			throw new IllegalArgumentException("TLS protocols must not be empty");
+		}
+		this.tlsProtocols = tlsProtocols;
+	}
+
+	/**
+	 * Returns the number of TLS sessions kept for resumption
+	 *
+	 * @return the number of sessions, zero means no limit
+	 */
+	public int getTlsSessionCache() {
+		return tlsSessionCache;
+	}
+
+	/**
+	 * Set the number of TLS sessions kept for resumption
+	 *
+	 * @param tlsSessionCache the number of sessions, zero means no limit
+	 */
+	public void setTlsSessionCache(int tlsSessionCache) {
+		if (tlsSessionCache < 0) {
+			throw new IllegalArgumentException("TLS session cache size must not be negative");
+		}
+		this.tlsSessionCache = tlsSessionCache;
+	}
+
+	/**
+	 * Returns the number of seconds a cached TLS session can be resumed
+	 *
+	 * @return the timeout in seconds, zero means no limit
+	 */
+	public int getTlsSessionTimeout() {
+		return tlsSessionTimeout;
+	}
+
+	/**
+	 * Set the number of seconds a cached TLS session can be resumed
+	 *
+	 * @param tlsSessionTimeout the timeout in seconds, zero means no limit
+	 */
+	public void setTlsSessionTimeout(int tlsSessionTimeout) {
+		if (tlsSessionTimeout < 0) {
+			throw new IllegalArgumentException("TLS session timeout must not be negative");
+		}
+		this.tlsSessionTimeout = tlsSessionTimeout;
+	}
+
+	/**
+	 * Returns the number of listening sockets bound to the port, each with its own accept thread
+	 *
+	 * @return the number of acceptors, values above one require SO_REUSEPORT
+	 */
+	public int getAcceptors() {
+		return acceptors;
+	}
+
+	/**
+	 * Set the number of listening sockets bound to the port, each with its own accept thread
+	 *
+	 * @param acceptors the number of acceptors, values above one require SO_REUSEPORT
+	 */
+	public void setAcceptors(int acceptors) {
+		if (acceptors < 1) {
+			throw new IllegalArgumentException("Number of acceptors must be positive");
+		}
+		this.acceptors = acceptors;
+	}
+
+	/**
+	 * Returns the number of Diffie-Hellman key pairs generated in advance by the background thread
+	 *
+	 * @return the number of key pairs, zero generates the key pair during every AUTH Command
+	 */
+	public int getKeyPairPoolSize() {
+		return keyPairPoolSize;
+	}
+
+	/**
+	 * Set the number of Diffie-Hellman key pairs generated in advance by the background thread
+	 *
+	 * @param keyPairPoolSize the number of key pairs, zero generates the key pair during every AUTH Command
+	 */
+	public void setKeyPairPoolSize(int keyPairPoolSize) {
+		if (keyPairPoolSize < 0) {
+			throw new IllegalArgumentException("Key pair pool size must not be negative");
+		}
+		this.keyPairPoolSize = keyPairPoolSize;
+	}
+
+	/**
+	 * Returns the number of threads running the Diffie-Hellman key agreement of the pooled key exchanges
+	 *
+	 * @return the number of threads, must be positive
+	 */
+	public int getKeyAgreementThreads() {
+		return keyAgreementThreads;
+	}
+
+	/**
+	 * Set the number of threads running the Diffie-Hellman key agreement of the pooled key exchanges
+	 *
+	 * @param keyAgreementThreads the number of threads, must be positive
+	 */
+	public void setKeyAgreementThreads(int keyAgreementThreads) {
+		if (keyAgreementThreads < 1) {
+			throw new IllegalArgumentException("Number of key agreement threads must be positive");
+		}
+		this.keyAgreementThreads = keyAgreementThreads;
+	}
+
+	/**
+	 * Returns the maximum number of Diffie-Hellman key agreements waiting for the thread, AUTH Command above it is answered BAD
+	 *
+	 * @return the number of key agreements, must be positive
+	 */
+	public int getKeyAgreementQueue() {
+		return keyAgreementQueue;
+	}
+
+	/**
+	 * Set the maximum number of Diffie-Hellman key agreements waiting for the thread, AUTH Command above it is answered BAD
+	 *
+	 * @param keyAgreementQueue the number of key agreements, must be positive
+	 */
+	public void setKeyAgreementQueue(int keyAgreementQueue) {
+		if (keyAgreementQueue < 1) {
+			throw new IllegalArgumentException("Key agreement queue size must be positive");
+		}
+		this.keyAgreementQueue = keyAgreementQueue;
+	}
+
+	/**
+	 * Returns the number of characters encrypted and sent as one chunk of the streamed message
+	 *
+	 * @return the number of characters, must be positive
+	 */
+	public int getStreamChunkSize() {
+		return streamChunkSize;
+	}
+
+	/**
+	 * Set the number of characters encrypted and sent as one chunk of the streamed message
+	 *
+	 * @param streamChunkSize the number of characters, must be positive
+	 */
+	public void setStreamChunkSize(int streamChunkSize) {
+		if (streamChunkSize < 1) {
+			throw new IllegalArgumentException("Stream chunk size must be positive");
+		}
+		this.streamChunkSize = streamChunkSize;
+	}
+
+	/**
+	 * Returns true if the session buffers of the non-blocking transport are allocated outside of the Java heap
+	 *
+	 * @return true for direct buffers, false for heap buffers
+	 */
+	public boolean isDirectBuffers() {
+		return directBuffers;
+	}
+
+	/**
+	 * Set whether the session buffers of the non-blocking transport are allocated outside of the Java heap
+	 *
+	 * @param directBuffers true for direct buffers, false for heap buffers
+	 */
+	public void setDirectBuffers(boolean directBuffers) {
+		this.directBuffers = directBuffers;
+	}
+
+	/**
+	 * Returns the number of seconds the resumption ticket issued after the authentication of the mailbox is valid
+	 *
+	 * @return the number of seconds, 0 means the tickets are not issued
+	 */
+	public int getTicketTtl() {
+		return ticketTtl;
+	}
+
+	/**
+	 * Set the number of seconds the resumption ticket issued after the authentication of the mailbox is valid
+	 *
+	 * @param ticketTtl the number of seconds, 0 means the tickets are not issued
+	 */
+	public void setTicketTtl(int ticketTtl) {
+		if (ticketTtl < 0) {
+			throw new IllegalArgumentException("Ticket lifetime must not be negative");
+		}
+		this.ticketTtl = ticketTtl;
+	}
+
+	/**
+	 * Returns the number of threads encrypting the messages of FETCH Command in parallel
+	 *
+	 * @return the number of threads, 0 encrypts the messages on the thread of the session
+	 */
+	public int getFetchThreads() {
+		return fetchThreads;
+	}
+
+	/**
+	 * Set the number of threads encrypting the messages of FETCH Command in parallel
+	 *
+	 * @param fetchThreads the number of threads, 0 encrypts the messages on the thread of the session
+	 */
+	public void setFetchThreads(int fetchThreads) {
+		if (fetchThreads < 0) {
+			throw new IllegalArgumentException("Number of fetch threads must not be negative");
+		}
+		this.fetchThreads = fetchThreads;
+	}
+
+	/**
+	 * Returns the maximum number of messages of one FETCH Command being encrypted in parallel and not yet written
+	 *
+	 * @return the number of messages, must be positive
+	 */
+	public int getFetchWindow() {
+		return fetchWindow;
+	}
+
+	/**
+	 * Set the maximum number of messages of one FETCH Command being encrypted in parallel and not yet written
+	 *
+	 * @param fetchWindow the number of messages, must be positive
+	 */
+	public void setFetchWindow(int fetchWindow) {
+		if (fetchWindow < 1) {
+			throw new IllegalArgumentException("Fetch window must be positive");
+		}
+		this.fetchWindow = fetchWindow;
+	}
+
+	/**
+	 * Returns the number of seconds the result of the mailbox and password check is cached by the server
+	 *
+	 * @return the number of seconds, 0 means every login is checked by the database
+	 */
+	public int getCredentialsTtl() {
+		return credentialsTtl;
+	}
+
+	/**
+	 * Set the number of seconds the result of the mailbox and password check is cached by the server
+	 *
+	 * @param credentialsTtl the number of seconds, 0 means every login is checked by the database
+	 */
+	public void setCredentialsTtl(int credentialsTtl) {
+		if (credentialsTtl < 0) {
+			throw new IllegalArgumentException("Credential cache lifetime must not be negative");
+		}
+		this.credentialsTtl = credentialsTtl;
+	}
+
+	/**
+	 * Returns the maximum number of mailboxes whose credentials are cached by the server
+	 *
+	 * @return the number of mailboxes, must be positive
+	 */
+	public int getCredentialsMax() {
+		return credentialsMax;
+	}
+
+	/**
+	 * Set the maximum number of mailboxes whose credentials are cached by the server
+	 *
+	 * @param credentialsMax the number of mailboxes, must be positive
+	 */
+	public void setCredentialsMax(int credentialsMax) {
+		if (credentialsMax < 1) {
+			throw new IllegalArgumentException("Credential cache size must be positive");
+		}
+		this.credentialsMax = credentialsMax;
+	}
+
+	/**
+	 * Returns the maximum number of database connections shared by the sessions
+	 *
+	 * @return the number of connections, must be positive
+	 */
+	public int getDbPoolSize() {
+		return dbPoolSize;
+	}
+
+	/**
+	 * Set the maximum number of database connections shared by the sessions
+	 *
+	 * @param dbPoolSize the number of connections, must be positive
+	 */
+	public void setDbPoolSize(int dbPoolSize) {
+		if (dbPoolSize < 1) {
+			throw new IllegalArgumentException("Database pool size must be positive");
+		}
+		this.dbPoolSize = dbPoolSize;
+	}
+
+	/**
+	 * Returns the number of milliseconds the command waits for the database connection
+	 *
+	 * @return the number of milliseconds, 0 fails at once if no connection is idle
+	 */
+	public int getDbAcquireTimeout() {
+		return dbAcquireTimeout;
+	}
+
+	/**
+	 * Set the number of milliseconds the command waits for the database connection
+	 *
+	 * @param dbAcquireTimeout the number of milliseconds, 0 fails at once if no connection is idle
+	 */
+	public void setDbAcquireTimeout(int dbAcquireTimeout) {
+		if (dbAcquireTimeout < 0) {
+			throw new IllegalArgumentException("Database acquire timeout must not be negative");
+		}
+		this.dbAcquireTimeout = dbAcquireTimeout;
+	}
+
+	/**
+	 * Returns the maximum number of prepared statements cached by each database connection
+	 *
+	 * @return the number of statements, 0 closes the statements after every command
+	 */
+	public int getDbStatements() {
+		return dbStatements;
+	}
+
+	/**
+	 * Set the maximum number of prepared statements cached by each database connection
+	 *
+	 * @param dbStatements the number of statements, 0 closes the statements after every command
+	 */
+	public void setDbStatements(int dbStatements) {
+		if (dbStatements < 0) {
+			throw new IllegalArgumentException("Statement cache size must not be negative");
+		}
+		this.dbStatements = dbStatements;
+	}
+
+	/**
+	 * Returns true if the pending schema migrations are applied when the server starts
+	 *
+	 * @return true if the migrations are applied
+	 */
+	public boolean isDbMigrate() {
+		return dbMigrate;
+	}
+
+	/**
+	 * Set whether the pending schema migrations are applied when the server starts
+	 *
+	 * @param dbMigrate true to apply the migrations, false to run on the current schema
+	 */
+	public void setDbMigrate(boolean dbMigrate) {
+		this.dbMigrate = dbMigrate;
+	}
+
+	/**
+	 * Returns true if the optional migration which clusters the messages by mailbox is applied
+	 *
+	 * @return true if the messages are clustered
+	 */
+	public boolean isDbClustered() {
+		return dbClustered;
+	}
+
+	/**
+	 * Set whether the optional migration which clusters the messages by mailbox is applied
+	 *
+	 * @param dbClustered true to cluster the messages by mailbox
+	 */
+	public void setDbClustered(boolean dbClustered) {
+		this.dbClustered = dbClustered;
+	}
+}
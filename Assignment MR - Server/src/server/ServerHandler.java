@@ -5,11 +5,13 @@ import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.spec.InvalidKeySpecException;
 import java.sql.SQLException;
-import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import commands.CommandHandler;
+import database.ConnectionPool;
+import database.CredentialCache;
 import database.DBConnect;
 
 /**
@@ -23,11 +25,14 @@ public class ServerHandler implements Runnable {
 	private Session session;
 	private DBConnect database;
 	private Logger logger;
-	private ArrayList<Session> clientsList;
+	private List<Session> clientsList;
 	private CommandHandler commandHandler;
 	private String domain = "derby.ac.uk";
 	private boolean databaseConnected;
 	private boolean verbose;
+	private int fetchSize;
+	private CredentialCache credentialCache;
+	private ConnectionPool connectionPool;
 
 	/**
 	 * Constructs server handler object that handles connection to the server
@@ -37,7 +42,7 @@ public class ServerHandler implements Runnable {
 	 * @param logger the logger object which logs any inappropriate behaviour of the client
 	 * @param verbose if true error are visible in the console otherwise errors are saved only to the logger file
 	 */
-	public ServerHandler(ArrayList<Session> clientList, Session session, Logger logger, boolean verbose) {
+	public ServerHandler(List<Session> clientList, Session session, Logger logger, boolean verbose) {
 		this.session = session;
 		this.clientsList = clientList;
 		this.verbose = verbose;
@@ -45,32 +50,96 @@ public class ServerHandler implements Runnable {
 		databaseConnected = true;
 	}
 
+	/**
+	 * Set the number of rows fetched from the database at once while the messages are sent to the client
+	 * 
+	 * @param fetchSize the number of rows, zero reads the whole result at once
+	 */
+	public void setFetchSize(int fetchSize) {
+		this.fetchSize = fetchSize;
+	}
+
+	/**
+	 * Set the pool of the database connections shared by all sessions, the session borrows the connection for each command
+	 * 
+	 * @param connectionPool the connection pool
+	 */
+	public void setConnectionPool(ConnectionPool connectionPool) {
+		this.connectionPool = connectionPool;
+	}
+
+	/**
+	 * Set the cache of the password hashes shared by all sessions, so LOGIN Command does not query the database every time
+	 * 
+	 * @param credentialCache the credential cache, or null to check every password in the database
+	 */
+	public void setCredentialCache(CredentialCache credentialCache) {
+		this.credentialCache = credentialCache;
+	}
+
 	/**
 	 * Starting the thread will called this method
 	 * 
 	 * {@inheritDoc} implementation of the runnable interface
 	 */
 	public void run() {
+		if (open()) {
+			processCommands();
+		}
+		closeConnection();
+	}
+
+	/**
+	 * Refuse the client because the server is overloaded, the client receives the same
+	 * greeting as when the database is not available
+	 */
+	public void reject() {
+		databaseConnected = false;
+		serverHandshake();
+		session.close();
+		clientsList.remove(session);
+	}
+
+	/**
+	 * Prepare the database access of the session and send the greeting to the client
+	 * 
+	 * @return true if the client can start sending commands, false if the connection must be closed
+	 */
+	public boolean open() {
 		connectToDatabase();
 		serverHandshake();
 		if (databaseConnected) {
-			processCommands();
+			displayVerboseGreeting();
 		}
+		return databaseConnected;
+	}
+
+	/**
+	 * Execute commands which have already been received from the client without waiting for new ones.
+	 * This method is used by the non-blocking transport.
+	 * 
+	 * @return true if the connection should stay open, false if it must be closed
+	 */
+	public boolean processPendingCommands() {
+		return executeCommands(true);
+	}
+
+	/**
+	 * Inform the client that the connection has been idle for too long and close the connection
+	 */
+	public void closeIdleSession() {
+		sendTimeoutMessage();
 		closeConnection();
 	}
 	
 	/**
-	 * Initiate connection to the MYSQL database
+	 * Initiate the database access of the session, the connection is borrowed from the pool by each command which needs it
 	 */
 	private void connectToDatabase() {
-		try {
-			database = new DBConnect(verbose);
-			database.connect();
-			commandHandler = new CommandHandler(session, database, verbose);
-		} catch (SQLException e) {
-			logger.log(Level.SEVERE, "Error database connection failes", e);
-			databaseConnected = false;
-		}
+		database = new DBConnect(connectionPool, verbose);
+		database.setFetchSize(fetchSize);
+		database.setCredentialCache(credentialCache);
+		commandHandler = new CommandHandler(session, database, verbose);
 	}
 	
 	/**
@@ -83,6 +152,7 @@ public class ServerHandler implements Runnable {
 			} else {
 				session.write("BAD " + domain + " not available, closing connection");
 			}
+			session.flush();
 		} catch (Exception e) {
 			logger.log(Level.SEVERE, "Error establishing connection", e);
 		}
@@ -92,16 +162,26 @@ public class ServerHandler implements Runnable {
 	 * Read and execute commands sent from the client to the server
 	 */
 	private void processCommands() {
+		executeCommands(false);
+	}
+
+	/**
+	 * Execute commands sent by the client
+	 * 
+	 * @param pendingOnly if true only commands which have already been received are executed
+	 * @return true if the connection should stay open, false if it must be closed
+	 */
+	private boolean executeCommands(boolean pendingOnly) {
 		try {
-			displayVerboseGreeting();
-			commandHandler.executeClientCommand();
-		} catch (SocketTimeoutException ex) {
-			try {
-				logger.log(Level.SEVERE, "Error timeout exceeded", ex);
-				session.write("BAD " + domain + " SMTP MTA closing connection time out exceeded");
-			} catch (IOException e) {
-				logger.log(Level.SEVERE, "Error timeout exceeded", ex);
+			if (pendingOnly) {
+				commandHandler.executePendingCommands();
+			} else {
+				commandHandler.executeClientCommand();
 			}
+			return commandHandler.isRunning();
+		} catch (SocketTimeoutException ex) {
+			logger.log(Level.SEVERE, "Error timeout exceeded", ex);
+			sendTimeoutMessage();
 		} catch (IOException ex) {
 			logger.log(Level.SEVERE, "Client terminated connection! ", ex);
 		} catch (SQLException e) {
@@ -113,6 +193,19 @@ public class ServerHandler implements Runnable {
 		} catch (InvalidKeySpecException e) {
 			logger.log(Level.SEVERE, "Invalid Key Specification! ", e);
 		}
+		return false;
+	}
+
+	/**
+	 * Send message to the client that the connection is closed because of the inactivity
+	 */
+	private void sendTimeoutMessage() {
+		try {
+			session.write("BAD " + domain + " SMTP MTA closing connection time out exceeded");
+			session.flush();
+		} catch (IOException e) {
+			logger.log(Level.SEVERE, "Error timeout exceeded", e);
+		}
 	}
 
 	/**
@@ -127,13 +220,11 @@ public class ServerHandler implements Runnable {
 	/**
 	 * Closing the connection between the server and client
 	 */
-	private void closeConnection() {
+	public void closeConnection() {
 		session.close();
 		clientsList.remove(session);
-		try {
-			database.disconnect();
-		} catch (SQLException e) {
-			logger.log(Level.SEVERE, "Disconnect from Database failed! ", e);
+		if (database != null) {
+			database.release();
 		}
 		if (verbose) {
 			System.out.println("Client close connection.");
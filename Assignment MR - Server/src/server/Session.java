@@ -1,14 +1,21 @@
 package server;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.security.InvalidAlgorithmParameterException;
+import java.security.GeneralSecurityException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
 import java.security.spec.InvalidKeySpecException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -17,11 +24,20 @@ import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
 
 import algorithms.AESAlgorithm;
+import algorithms.AeadCipherContext;
+import algorithms.ChaCha20Algorithm;
+import algorithms.CipherContext;
 import algorithms.DESedeAlgorithm;
+import algorithms.StreamingCipher;
+import diffie_hellman.KeyAgreementAlgorithm;
 import diffie_hellman.KeyExchange;
+import diffie_hellman.KeyPairPool;
 
 /**
  * This Class creates Session between the server and client.
+ * The messages are encoded into the buffer of the session and encrypted directly into the outbound buffer of the transport,
+ * and the received frames are decrypted into the buffer of the session, so no arrays are allocated per frame
+ * except the string of the received message. Buffers larger than 64 KiB are not kept between the messages.
  * 
  * @author Martin Holecek
  *
@@ -29,20 +45,34 @@ import diffie_hellman.KeyExchange;
 public class Session {
 
 	public enum Encryption {
-		AES_ECB, AES_CBC, DES_ECB, DES_CBC, PLAIN
+		AES_ECB, AES_CBC, AES_GCM, DES_ECB, DES_CBC, CHACHA20, TLS, PLAIN
 	}
+
+	private static final int DEFAULT_STREAM_CHUNK_SIZE = 16384;
+	private static final byte[] END_OF_STREAM = new byte[0];
+	private static final int INITIAL_BUFFER_SIZE = 256;
+	private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
 	
-	private Socket socket = null;
+	private FrameTransport transport;
 	private Encryption mode;
-	private DataInputStream input = null;
-	private DataOutputStream output = null;
 	private Logger logger;
 	private KeyExchange keyExchange;
-	private byte[] key;
-	
-	private static final int INITIAL_VECTOR_TRIPLE_DES = 8;
-	private static final int INITIAL_VECTOR_AES = 16;
-	private static final int TEN_MINUTES_TIMEOUT = 600000;
+	private CipherContext cipherContext;
+	private AeadCipherContext aeadContext;
+	private String tag;
+	private FrameCompressor compressor;
+	private TlsContext tlsContext;
+	private TicketContext ticketContext;
+	private byte[] resumptionSecret;
+	private boolean streaming;
+	private int streamChunkSize;
+	private CharsetEncoder encoder;
+	private ByteBuffer messageBuffer;
+	private ByteBuffer inputBuffer;
+	private ExecutorService sendWorkers;
+	private int sendWindow;
+	private ConcurrentLinkedQueue<CipherContext> cipherCopies;
+	private ConcurrentLinkedQueue<AeadCipherContext> aeadCopies;
 
 	/**
 	 * Initialize Session object
@@ -52,13 +82,26 @@ public class Session {
 	 * @throws IOException if the stream has been closed or another I/O error
 	 */
 	public Session(Socket socket, Logger logger) throws IOException {
-		this.socket = socket;
+		this(new SocketTransport(socket, new ServerConfig()), logger);
+	}
+
+	/**
+	 * Initialize Session object on top of the given frame transport
+	 * 
+	 * @param transport the transport which carries length prefixed frames between the server and client
+	 * @param logger the logger object which logs any inappropriate behavior of the client
+	 */
+	public Session(FrameTransport transport, Logger logger) {
+		this.transport = transport;
 		this.logger = logger;
-		socket.setSoTimeout(TEN_MINUTES_TIMEOUT);
-		input = new DataInputStream(socket.getInputStream());
-		output = new DataOutputStream(socket.getOutputStream());
 		keyExchange = new KeyExchange();
 		mode = Encryption.PLAIN;
+		streamChunkSize = DEFAULT_STREAM_CHUNK_SIZE;
+		encoder = Charset.defaultCharset().newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		cipherCopies = new ConcurrentLinkedQueue<>();
+		aeadCopies = new ConcurrentLinkedQueue<>();
 	}
 	
 	/**
@@ -80,12 +123,224 @@ public class Session {
 	 * @throws InvalidKeySpecException if the given key specification is inappropriate for this secret-key factory to produce a secret key.
 	 */
 	public void selectEncryptionMode(Encryption encryption) throws IOException, InvalidKeyException, NoSuchAlgorithmException, InvalidKeySpecException {
+		selectEncryptionMode(encryption, KeyAgreementAlgorithm.DH);
+	}
+
+	/**
+	 * Select which encryption algorithm will be used to encrypt communication between the server and client
+	 * 
+	 * @param encryption the enumeration of the name of the algorithm
+	 * @param keyAgreement the algorithm of the key exchange which agrees the key of the cipher
+	 * @throws IOException if the stream has been closed or another I/O error
+	 * @throws InvalidKeyException if the given key is inappropriate for initializing this cipher, or requires algorithm parameters that cannot be determined from the given key, or if the given key has a keysize that exceeds the maximum allowable keysize (as determined from the configured jurisdiction policy files). 
+	 * @throws NoSuchAlgorithmException if transformation is null, empty, in an invalid format, or if a CipherSpi implementation for the specified algorithm is not available from the specified Provider object. 
+	 * @throws InvalidKeySpecException if the given key specification is inappropriate for this secret-key factory to produce a secret key.
+	 */
+	public void selectEncryptionMode(Encryption encryption, KeyAgreementAlgorithm keyAgreement) throws IOException, InvalidKeyException, NoSuchAlgorithmException, InvalidKeySpecException {
+		if (encryption == Encryption.TLS) {
+			startTls();
+		}
+		byte[] key = null;
+		if (encryption != Encryption.PLAIN && encryption != Encryption.TLS) {
+			key = keyExchange.initServer(this, keyAgreement);
+		}
 		mode = encryption;
-		if (mode != Encryption.PLAIN) {
-			key = keyExchange.initServer(this);			
+		resumptionSecret = null;
+		if (key != null) {
+			initializeCipher(key);
 		}
 	}
 
+	/**
+	 * Resume the encryption mode of the previous session with the key derived from its ticket, the key exchange is skipped
+	 * 
+	 * @param encryption the encryption mode of the previous session, it uses the key exchange
+	 * @param key the key derived from the resumption secret of the ticket and the random values of both sides
+	 * @throws IOException if the cipher of the mode is not available
+	 * @throws InvalidKeyException if the key is inappropriate for initializing this cipher
+	 * @throws NoSuchAlgorithmException if the cipher of the mode is not supported by the JVM
+	 * @throws InvalidKeySpecException if the key cannot be converted to the Triple DES key
+	 */
+	public void resumeEncryptionMode(Encryption encryption, byte[] key) throws IOException, InvalidKeyException, NoSuchAlgorithmException, InvalidKeySpecException {
+		if (encryption == Encryption.PLAIN || encryption == Encryption.TLS) {
+			throw new InvalidKeyException(encryption + " cannot be resumed");
+		}
+		mode = encryption;
+		initializeCipher(key);
+	}
+
+	/**
+	 * Set the ticket context of the server, the session issues the resumption tickets only if the context is set
+	 * 
+	 * @param ticketContext the ticket context shared by all sessions, or null if the tickets are disabled
+	 */
+	public void setTicketContext(TicketContext ticketContext) {
+		this.ticketContext = ticketContext;
+	}
+
+	/**
+	 * Returns the resumption ticket of the authenticated mailbox, which restores the encryption mode of this session
+	 * 
+	 * @param mailbox the authenticated mailbox
+	 * @param token the token of the mailbox
+	 * @return the ticket, or null if the tickets are disabled or the encryption mode does not use the key exchange
+	 * @throws IOException if the ticket cannot be sealed
+	 */
+	public String createTicket(String mailbox, String token) throws IOException {
+		if (ticketContext == null || resumptionSecret == null) {
+			return null;
+		}
+		try {
+			return ticketContext.issue(mode, resumptionSecret, mailbox, token);
+		} catch (GeneralSecurityException e) {
+			logger.log(Level.SEVERE, "Resumption ticket cannot be issued!", e);
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * Returns the content of the resumption ticket presented by the client
+	 * 
+	 * @param ticket the ticket sent by the client
+	 * @return the content of the ticket, or null if the tickets are disabled, the ticket is not valid or has expired
+	 */
+	public TicketContext.Ticket openTicket(String ticket) {
+		return ticketContext != null ? ticketContext.open(ticket) : null;
+	}
+
+	/**
+	 * Returns the new random value of the server sent during RESUME Command
+	 * 
+	 * @return the new buffer with the random value
+	 * @throws IOException if the tickets are disabled
+	 */
+	public byte[] nextResumptionRandom() throws IOException {
+		if (ticketContext == null) {
+			throw new IOException("Resumption tickets are disabled");
+		}
+		return ticketContext.nextRandom();
+	}
+
+	/**
+	 * Set the TLS context of the server, the client can switch the session to TLS only if the context is set
+	 * 
+	 * @param tlsContext the TLS context shared by all sessions, or null if TLS is disabled
+	 */
+	public void setTlsContext(TlsContext tlsContext) {
+		this.tlsContext = tlsContext;
+	}
+
+	/**
+	 * Set the pool of the Diffie-Hellman key pairs generated in advance, used by the following key exchanges
+	 * 
+	 * @param keyPairPool the pool shared by all sessions, or null to generate the key pair for every key exchange
+	 */
+	public void setKeyPairPool(KeyPairPool keyPairPool) {
+		keyExchange = new KeyExchange(keyPairPool);
+	}
+
+	/**
+	 * Check if the client can switch the session to TLS
+	 * 
+	 * @return true if the TLS is configured on the server, false otherwise
+	 */
+	public boolean isTlsAvailable() {
+		return tlsContext != null;
+	}
+
+	/**
+	 * Check if the frames of the session are already carried in TLS records
+	 * 
+	 * @return true if the TLS handshake has been completed, false otherwise
+	 */
+	public boolean isTlsActive() {
+		return transport instanceof TlsTransport;
+	}
+
+	/**
+	 * Start compressing the frames in both directions, the frames written before this call are not compressed
+	 * 
+	 * @return false if the compression has already been enabled, true otherwise
+	 */
+	public boolean enableCompression() {
+		if (compressor != null) {
+			return false;
+		}
+		compressor = new FrameCompressor(transport.getMaxFrameSize());
+		return true;
+	}
+
+	/**
+	 * Start sending and receiving every message as the stream of chunks, the messages written before this call are sent in one frame
+	 */
+	public void enableStreaming() {
+		streaming = true;
+	}
+
+	/**
+	 * Check if the messages are sent and received as the streams of chunks
+	 * 
+	 * @return true if the streaming has been enabled, false otherwise
+	 */
+	public boolean isStreaming() {
+		return streaming;
+	}
+
+	/**
+	 * Set the number of characters of the streamed message which are compressed, encrypted and sent at once
+	 * 
+	 * @param streamChunkSize the number of characters, must be positive
+	 */
+	public void setStreamChunkSize(int streamChunkSize) {
+		this.streamChunkSize = streamChunkSize;
+	}
+
+	/**
+	 * Set the pool of workers which encrypt the messages of one response in parallel
+	 * 
+	 * @param sendWorkers the pool shared by all sessions, or null to encrypt the messages on the thread of the session
+	 * @param sendWindow the maximum number of messages of one response encrypted and not yet written
+	 */
+	public void setSendWorkers(ExecutorService sendWorkers, int sendWindow) {
+		this.sendWorkers = sendWorkers;
+		this.sendWindow = sendWindow;
+	}
+
+	/**
+	 * Check if the messages of the response can be encrypted in parallel. The compressed, streamed and TLS sessions
+	 * have the state shared by the consecutive messages, so they are always sent by the thread of the session
+	 * 
+	 * @return true if the pool of workers is set and the session uses the cipher of the key exchange, false otherwise
+	 */
+	public boolean isParallelSendAvailable() {
+		if (sendWorkers == null || compressor != null || streaming) {
+			return false;
+		}
+		return mode != Encryption.PLAIN && mode != Encryption.TLS;
+	}
+
+	/**
+	 * Create the sender which encrypts the messages of one response in parallel and writes them in order
+	 * 
+	 * @return the parallel sender
+	 * @throws IOException if the parallel send is not available
+	 */
+	public ParallelSender createParallelSender() throws IOException {
+		if (!isParallelSendAvailable()) {
+			throw new IOException("Parallel send is not available");
+		}
+		return new ParallelSender(this, sendWorkers, sendWindow);
+	}
+
+	/**
+	 * Set the tag of the command being executed, every message written to the client starts with this tag
+	 * 
+	 * @param tag the tag sent by the client with the command, or null for untagged responses
+	 */
+	public void setTag(String tag) {
+		this.tag = tag;
+	}
+
 	/**
 	 * Send messages to the client
 	 * 
@@ -93,21 +348,33 @@ public class Session {
 	 * @throws IOException if the stream has been closed or another I/O error
 	 */
 	public void write(String input) throws IOException {
+		if (tag != null) {
+			input = tag + " " + input;
+		}
+		if (streaming) {
+			writeStream(input);
+			return;
+		}
+		ByteBuffer message;
+		if (compressor != null) {
+			message = ByteBuffer.wrap(compressor.compress(input.getBytes()));
+		} else {
+			message = encode(input);
+		}
 		switch (mode) {
 		case AES_CBC:	
-			sendAESCBC(input);
-			break;
 		case AES_ECB:
-			sendAESECB(input);
-			break;
 		case DES_CBC:
-			sendDESedeCBC(input);
-			break;
 		case DES_ECB:	
-			sendDESedeECB(input);
+			sendEncrypted(message);
 			break;
+		case AES_GCM:
+		case CHACHA20:
+			sendSealed(message);
+			break;
+		case TLS:
 		case PLAIN:	
-			sendBytes(input.getBytes());
+			sendBuffer(message);
 			break;		
 		}
 	}
@@ -119,17 +386,21 @@ public class Session {
 	 * @throws IOException if the stream has been closed or another I/O error
 	 */
 	public String read() throws IOException {
+		if (streaming) {
+			return readStream();
+		}
 		switch (mode) {
 		case AES_CBC:
-			return readAESCBC();
 		case AES_ECB:
-			return readAESECB();
 		case DES_CBC:
-			return readDESedeCBC();
 		case DES_ECB:
-			return readDESedeECB();
+			return readEncrypted();
+		case AES_GCM:
+		case CHACHA20:
+			return readSealed();
+		case TLS:
 		case PLAIN:	
-			return new String(readBytes());
+			return readPlain();
 		}
 		return null;
 	}
@@ -141,8 +412,86 @@ public class Session {
 	 * @throws IOException if the stream has been closed or another I/O error
 	 */
 	public void sendBytes(byte[] keyBytes) throws IOException {
-		output.writeInt(keyBytes.length);
-		output.write(keyBytes);
+		transport.writeFrame(keyBytes);
+	}
+
+	/**
+	 * Reserve the nonces of the messages encrypted by the parallel sender, in the order the messages are written
+	 * 
+	 * @param count the number of messages
+	 * @return the counter of the first message, 0 if the encryption mode has no counter
+	 */
+	long reserveCounters(int count) {
+		if (mode == Encryption.AES_GCM || mode == Encryption.CHACHA20) {
+			return aeadContext.reserveCounters(count);
+		}
+		return 0;
+	}
+
+	/**
+	 * Encrypt the messages into the new frames on the worker of the parallel sender, by the copy of the cipher context
+	 * which is not used by any other thread at the same time
+	 * 
+	 * @param messages the messages to be encrypted
+	 * @param counter the counter of the first message reserved by {@link #reserveCounters(int)}
+	 * @return the frames of the messages in the order of sending
+	 * @throws IOException if the cipher failed
+	 */
+	byte[][] seal(String[] messages, long counter) throws IOException {
+		String prefix = tag != null ? tag + " " : "";
+		try {
+			if (mode == Encryption.AES_GCM || mode == Encryption.CHACHA20) {
+				AeadCipherContext context = aeadCopies.poll();
+				if (context == null) {
+					context = aeadContext.copy();
+				}
+				byte[][] frames = new byte[messages.length][];
+				for (int i = 0; i < messages.length; i++) {
+					frames[i] = context.encrypt((prefix + messages[i]).getBytes(), counter + i);
+				}
+				aeadCopies.offer(context);
+				return frames;
+			}
+			CipherContext context = cipherCopies.poll();
+			if (context == null) {
+				context = cipherContext.copy();
+			}
+			int framesPerMessage = context.usesInitVector() ? 2 : 1;
+			byte[][] frames = new byte[messages.length * framesPerMessage][];
+			for (int i = 0; i < messages.length; i++) {
+				byte[] initVector = context.usesInitVector() ? context.nextInitVector() : null;
+				if (initVector != null) {
+					frames[i * framesPerMessage] = initVector;
+				}
+				frames[(i + 1) * framesPerMessage - 1] = context.encrypt((prefix + messages[i]).getBytes(), initVector);
+			}
+			cipherCopies.offer(context);
+			return frames;
+		} catch (NoSuchAlgorithmException | NoSuchPaddingException | InvalidKeyException | InvalidAlgorithmParameterException | IllegalBlockSizeException | BadPaddingException e) {
+			logger.log(Level.SEVERE, mode + " failed to encrypt data!", e);
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * Write the frames encrypted by the parallel sender
+	 * 
+	 * @param frames the frames in the order of sending
+	 * @throws IOException if the stream has been closed or another I/O error
+	 */
+	void sendFrames(byte[][] frames) throws IOException {
+		for (byte[] frame : frames) {
+			transport.writeFrame(frame);
+		}
+	}
+	
+	/**
+	 * Send all messages written since the last flush to the client, called once the response to the command is complete
+	 * 
+	 * @throws IOException if the stream has been closed or another I/O error
+	 */
+	public void flush() throws IOException {
+		transport.flush();
 	}
 	
 	/**
@@ -151,9 +500,22 @@ public class Session {
 	 * @throws IOException if the stream has been closed or another I/O error
 	 */
 	public byte[] readBytes() throws IOException {
-		byte[] keyBytes = new byte[input.readInt()];
-		input.readFully(keyBytes);
-		return keyBytes;
+		Frame frame = transport.readFrame();
+		try {
+			return frame.toByteArray();
+		} finally {
+			frame.release();
+		}
+	}
+
+	/**
+	 * Check if the client has already sent another frame which can be read without blocking
+	 * 
+	 * @return true if there is a frame waiting to be read, false otherwise
+	 * @throws IOException if the stream has been closed or another I/O error
+	 */
+	public boolean hasPendingInput() throws IOException {
+		return transport.hasPendingFrame();
 	}
 	
 	/**
@@ -161,168 +523,436 @@ public class Session {
 	 */
 	public void close() {
 		try {
-			input.close();
-			output.close();
-			socket.close();
+			transport.close();
 		} catch (IOException e) {
 			logger.log(Level.SEVERE, "Closing of Data streams and Socket Failed!", e);
+		} finally {
+			if (compressor != null) {
+				compressor.end();
+			}
 		}
 	}
 
 	/**
-	 * Send message to the client encrypted by Triple DES Algorithm with Electronic CodeBook mode
+	 * Create the cipher objects of the selected encryption mode, they are reused for every frame of the session
 	 * 
-	 * @param message the string object to be sent to the client
-	 * @throws IOException if the stream has been closed or another I/O error
+	 * @param key the key agreed with the client
+	 * @return the cipher context
+	 * @throws IOException if the cipher of the selected mode is not available
+	 * @throws InvalidKeyException if the agreed key is inappropriate for the cipher
+	 * @throws NoSuchAlgorithmException if the cipher or the key factory of the selected mode is not available
+	 * @throws InvalidKeySpecException if the agreed key cannot be converted to the Triple DES key
 	 */
-	private void sendDESedeECB(String message) throws IOException {
+	private CipherContext createCipherContext(byte[] key) throws IOException, InvalidKeyException, NoSuchAlgorithmException, InvalidKeySpecException {
 		try {
-			byte[] data = DESedeAlgorithm.encryptECB(message, key);
-			sendBytes(data);
-		} catch (InvalidKeyException | NoSuchAlgorithmException | InvalidKeySpecException | NoSuchPaddingException
-				| IllegalBlockSizeException | BadPaddingException e) {
-			logger.log(Level.SEVERE, "DES Algorithm failed to encrypt data!", e);
+			switch (mode) {
+			case AES_CBC:
+				return AESAlgorithm.createCBCContext(key);
+			case AES_ECB:
+				return AESAlgorithm.createECBContext(key);
+			case DES_CBC:
+				return DESedeAlgorithm.createCBCContext(key);
+			default:
+				return DESedeAlgorithm.createECBContext(key);
+			}
+		} catch (NoSuchPaddingException e) {
+			logger.log(Level.SEVERE, "Cipher of " + mode + " is not available!", e);
 			throw new IOException(e);
 		}
 	}
 
 	/**
-	 * Send message to the client encrypted by AES Algorithm with Electronic CodeBook mode
+	 * Create the cipher context of the selected encryption mode and the resumption secret of the key
 	 * 
-	 * @param message the string object to be sent to the client
-	 * @throws IOException if the stream has been closed or another I/O error
+	 * @param key the key agreed with the client or derived from the ticket
+	 * @throws IOException if the cipher of the selected mode is not available
+	 * @throws InvalidKeyException if the key is inappropriate for the cipher
+	 * @throws NoSuchAlgorithmException if the cipher, the key factory or HMAC-SHA256 is not available
+	 * @throws InvalidKeySpecException if the key cannot be converted to the Triple DES key
 	 */
-	private void sendAESECB(String message) throws IOException {
+	private void initializeCipher(byte[] key) throws IOException, InvalidKeyException, NoSuchAlgorithmException, InvalidKeySpecException {
+		cipherCopies.clear();
+		aeadCopies.clear();
+		if (mode == Encryption.AES_GCM || mode == Encryption.CHACHA20) {
+			aeadContext = createAeadContext(key);
+		} else {
+			cipherContext = createCipherContext(key);
+		}
+		if (ticketContext != null) {
+			resumptionSecret = TicketContext.deriveResumptionSecret(key);
+		}
+	}
+
+	/**
+	 * Create the authenticated cipher of the selected encryption mode, it is reused for every frame of the session
+	 * 
+	 * @param key the key agreed with the client
+	 * @return the authenticated cipher context
+	 * @throws IOException if the cipher of the selected mode is not available
+	 * @throws NoSuchAlgorithmException if the cipher of the selected mode is not supported by the JVM
+	 */
+	private AeadCipherContext createAeadContext(byte[] key) throws IOException, NoSuchAlgorithmException {
 		try {
-			byte[] data = AESAlgorithm.encryptECB(message, key);
-			sendBytes(data);
-		} catch (InvalidKeyException | NoSuchAlgorithmException | NoSuchPaddingException | IllegalBlockSizeException
-				| BadPaddingException e) {
-			logger.log(Level.SEVERE, "AES Algorithm failed to encrypt data!", e);
+			if (mode == Encryption.AES_GCM) {
+				return AESAlgorithm.createGCMContext(key, true);
+			}
+			return ChaCha20Algorithm.createContext(key, true);
+		} catch (NoSuchPaddingException e) {
+			logger.log(Level.SEVERE, "Cipher of " + mode + " is not available!", e);
 			throw new IOException(e);
 		}
 	}
 
 	/**
-	 * Send message to the client encrypted by Triple DES Algorithm with Cipher Block Chaining mode
+	 * Send the pending messages in plain and perform the TLS handshake, every following frame is carried in TLS records
 	 * 
-	 * @param message the string object to be sent to the client
-	 * @throws IOException if the stream has been closed or another I/O error
+	 * @throws IOException if TLS is not configured or the handshake failed
 	 */
-	private void sendDESedeCBC(String message) throws IOException {
-		byte[] initVector = getInitialVector(INITIAL_VECTOR_TRIPLE_DES);
-		byte[] data;
+	private void startTls() throws IOException {
+		if (tlsContext == null) {
+			throw new IOException("TLS is not configured");
+		}
+		if (isTlsActive()) {
+			throw new IOException("TLS is already active");
+		}
+		transport.flush();
+		TlsTransport tlsTransport = new TlsTransport(transport, tlsContext.createEngine());
+		long startTime = System.currentTimeMillis();
 		try {
-			data = DESedeAlgorithm.encryptCBC(message, key, initVector);
-		} catch (InvalidKeyException | NoSuchAlgorithmException | InvalidKeySpecException | NoSuchPaddingException
-				| InvalidAlgorithmParameterException | IllegalBlockSizeException | BadPaddingException e) {
-			logger.log(Level.SEVERE, "DES Algorithm failed to encrypt data!", e);
-			throw new IOException(e);
+			tlsTransport.handshake();
+		} catch (IOException e) {
+			tlsContext.handshakeFailed();
+			throw e;
+		}
+		tlsContext.handshakeCompleted(tlsTransport.getEngine(), startTime);
+		transport = tlsTransport;
+	}
+
+	/**
+	 * Encode the message into the buffer of the session with the default charset of the JVM
+	 * 
+	 * @param input the string object of the message
+	 * @return the buffer with the encoded message between its position and limit
+	 */
+	private ByteBuffer encode(String input) {
+		ByteBuffer buffer = messageBuffer;
+		if (buffer == null || buffer.capacity() < input.length()) {
+			buffer = ByteBuffer.allocate(Math.max(input.length(), INITIAL_BUFFER_SIZE));
 		}
-		sendBytes(initVector);
-		sendBytes(data);
+		buffer.clear();
+		CharBuffer chars = CharBuffer.wrap(input);
+		encoder.reset();
+		while (true) {
+			CoderResult result = encoder.encode(chars, buffer, true);
+			if (result.isUnderflow()) {
+				result = encoder.flush(buffer);
+			}
+			if (result.isUnderflow()) {
+				break;
+			}
+			ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+			buffer.flip();
+			larger.put(buffer);
+			buffer = larger;
+		}
+		if (buffer.capacity() <= MAX_RETAINED_BUFFER_SIZE) {
+			messageBuffer = buffer;
+		}
+		buffer.flip();
+		return buffer;
 	}
 
 	/**
-	 * Send message to the client encrypted by AES Algorithm with Cipher Block Chaining mode
+	 * Returns the buffer of the session which receives the decrypted message
 	 * 
-	 * @param message the string object to be sent to the client
+	 * @param size the minimum number of bytes of the buffer
+	 * @return the empty buffer
+	 */
+	private ByteBuffer getInputBuffer(int size) {
+		if (inputBuffer != null && inputBuffer.capacity() >= size) {
+			inputBuffer.clear();
+			return inputBuffer;
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(Math.max(size, INITIAL_BUFFER_SIZE));
+		if (buffer.capacity() <= MAX_RETAINED_BUFFER_SIZE) {
+			inputBuffer = buffer;
+		}
+		return buffer;
+	}
+
+	/**
+	 * Copy message to the outbound buffer of the transport as one frame
+	 * 
+	 * @param message the buffer with the message to be sent to the client
 	 * @throws IOException if the stream has been closed or another I/O error
 	 */
-	private void sendAESCBC(String message) throws IOException {
+	private void sendBuffer(ByteBuffer message) throws IOException {
+		ByteBuffer frame = transport.reserveFrame(message.remaining());
+		frame.put(message);
+		transport.commitFrame(frame);
+	}
+
+	/**
+	 * Send message to the client encrypted by the cipher of the session directly into the outbound buffer of the transport,
+	 * in the Cipher Block Chaining mode the initialization vector is sent first. The frame the cipher fails to complete
+	 * is discarded, so no partial frame is sent to the client when the session is closed
+	 * 
+	 * @param message the buffer with the message to be sent to the client
+	 * @throws IOException if the stream has been closed or another I/O error
+	 */
+	private void sendEncrypted(ByteBuffer message) throws IOException {
 		try {
-			byte[] initVector = getInitialVector(INITIAL_VECTOR_AES);
-			byte[] data = AESAlgorithm.encryptCBC(message, key, initVector);
-			sendBytes(initVector);
-			sendBytes(data);
-		} catch (InvalidKeyException | IllegalBlockSizeException | BadPaddingException | NoSuchAlgorithmException
-				| NoSuchPaddingException | InvalidAlgorithmParameterException e) {
-			logger.log(Level.SEVERE, "AES Algorithm failed to encrypt data!", e);
+			if (cipherContext.usesInitVector()) {
+				ByteBuffer initVector = transport.reserveFrame(cipherContext.getInitVectorSize());
+				boolean committed = false;
+				try {
+					cipherContext.writeInitVector(initVector);
+					transport.commitFrame(initVector);
+					committed = true;
+				} finally {
+					if (!committed) {
+						transport.abortFrame(initVector);
+					}
+				}
+			}
+			ByteBuffer frame = transport.reserveFrame(cipherContext.getOutputSize(message.remaining()));
+			boolean committed = false;
+			try {
+				cipherContext.encrypt(message, frame);
+				transport.commitFrame(frame);
+				committed = true;
+			} finally {
+				if (!committed) {
+					transport.abortFrame(frame);
+				}
+			}
+		} catch (InvalidKeyException | InvalidAlgorithmParameterException | IllegalBlockSizeException | BadPaddingException e) {
+			logger.log(Level.SEVERE, cipherContext.getTransformation() + " failed to encrypt data!", e);
 			throw new IOException(e);
 		}
 	}
-	
+
 	/**
-	 * Read message from the client encrypted by Triple DES Algorithm with Electronic CodeBook mode
+	 * Read message from the client encrypted by the cipher of the session, in the Cipher Block Chaining mode
+	 * the initialization vector is read first
 	 * 
 	 * @return decrypted message sent by the client
 	 * @throws IOException if the stream has been closed or another I/O error
 	 */
-	private String readDESedeECB() throws IOException {
+	private String readEncrypted() throws IOException {
+		Frame initVector = cipherContext.usesInitVector() ? transport.readFrame() : null;
 		try {
-			byte[] data = readBytes();
-			String text = DESedeAlgorithm.decryptECB(data, key);
-			return text;
-		} catch (InvalidKeyException | NoSuchAlgorithmException | InvalidKeySpecException | NoSuchPaddingException
-				| IllegalBlockSizeException | BadPaddingException e) {
-			logger.log(Level.SEVERE, "DES Algorithm failed to decrypt data!", e);
-			throw new IOException(e);
+			Frame data = transport.readFrame();
+			try {
+				if (initVector != null && initVector.getLength() != cipherContext.getInitVectorSize()) {
+					throw new InvalidAlgorithmParameterException("Initialization vector has " + initVector.getLength() + " bytes");
+				}
+				ByteBuffer text = getInputBuffer(data.getLength());
+				cipherContext.decrypt(ByteBuffer.wrap(data.getData(), 0, data.getLength()), text, initVector != null ? initVector.getData() : null);
+				return decode(text.array(), text.position());
+			} catch (InvalidKeyException | InvalidAlgorithmParameterException | IllegalBlockSizeException | BadPaddingException e) {
+				logger.log(Level.SEVERE, cipherContext.getTransformation() + " failed to decrypt data!", e);
+				throw new IOException(e);
+			} finally {
+				data.release();
+			}
+		} finally {
+			if (initVector != null) {
+				initVector.release();
+			}
 		}
 	}
 
 	/**
-	 * Read message from the client encrypted by Triple DES Algorithm with Cipher Block Chaining mode
+	 * Send message to the client encrypted by the authenticated cipher of the session directly into the outbound buffer
+	 * of the transport, the nonce and the cipher text are sent in one frame. The frame the cipher fails to complete is discarded
 	 * 
-	 * @return decrypted message sent by the client
+	 * @param message the buffer with the message to be sent to the client
 	 * @throws IOException if the stream has been closed or another I/O error
 	 */
-	private String readDESedeCBC() throws IOException {
+	private void sendSealed(ByteBuffer message) throws IOException {
 		try {
-			byte[] iv = readBytes();
-			byte[] data = readBytes();
-			return DESedeAlgorithm.decryptCBC(data, key, iv);
-		} catch (InvalidKeyException | NoSuchAlgorithmException | InvalidKeySpecException | NoSuchPaddingException
-				| InvalidAlgorithmParameterException | IllegalBlockSizeException | BadPaddingException e) {
-			logger.log(Level.SEVERE, "DES Algorithm failed to decrypt data!", e);
+			ByteBuffer frame = transport.reserveFrame(aeadContext.getOutputSize(message.remaining()));
+			boolean committed = false;
+			try {
+				aeadContext.encrypt(message, frame);
+				transport.commitFrame(frame);
+				committed = true;
+			} finally {
+				if (!committed) {
+					transport.abortFrame(frame);
+				}
+			}
+		} catch (InvalidKeyException | InvalidAlgorithmParameterException | IllegalBlockSizeException | BadPaddingException e) {
+			logger.log(Level.SEVERE, aeadContext.getTransformation() + " failed to encrypt data!", e);
 			throw new IOException(e);
 		}
 	}
 
 	/**
-	 * Read message from the client encrypted by AES Algorithm with Electronic CodeBook mode
+	 * Read message from the client encrypted by the authenticated cipher of the session, the frame which is not authentic closes the session
 	 * 
 	 * @return decrypted message sent by the client
+	 * @throws IOException if the frame is not authentic, the stream has been closed or another I/O error
+	 */
+	private String readSealed() throws IOException {
+		Frame data = transport.readFrame();
+		try {
+			ByteBuffer text = getInputBuffer(data.getLength());
+			aeadContext.decrypt(ByteBuffer.wrap(data.getData(), 0, data.getLength()), text);
+			return decode(text.array(), text.position());
+		} catch (InvalidKeyException | InvalidAlgorithmParameterException | IllegalBlockSizeException | BadPaddingException e) {
+			logger.log(Level.SEVERE, aeadContext.getTransformation() + " failed to decrypt data!", e);
+			throw new IOException(e);
+		} finally {
+			data.release();
+		}
+	}
+
+	/**
+	 * Returns the cipher of the session which encrypts the streamed messages
+	 * 
+	 * @return the cipher context, or null if the messages are not encrypted by the session
+	 */
+	private StreamingCipher getStreamingCipher() {
+		switch (mode) {
+		case AES_GCM:
+		case CHACHA20:
+			return aeadContext;
+		case TLS:
+		case PLAIN:
+			return null;
+		default:
+			return cipherContext;
+		}
+	}
+
+	/**
+	 * Send message to the client as the stream of chunks, every chunk is compressed, encrypted and sent before the next one is read
+	 * from the message, so the encrypted copy of the whole message is never held in memory. The message starts with
+	 * the header of the cipher and ends with the empty frame.
+	 * 
+	 * @param input the string object of the message
 	 * @throws IOException if the stream has been closed or another I/O error
 	 */
-	private String readAESECB() throws IOException {
+	private void writeStream(String input) throws IOException {
+		StreamingCipher cipher = getStreamingCipher();
 		try {
-			byte[] data = readBytes();
-			return AESAlgorithm.decryptECB(data, key);
-		} catch (InvalidKeyException | NoSuchAlgorithmException | NoSuchPaddingException | IllegalBlockSizeException
-				| BadPaddingException e) {
-			logger.log(Level.SEVERE, "AES Algorithm failed to decrypt data!", e);
+			if (cipher != null) {
+				byte[] header = cipher.beginEncryption();
+				if (header != null) {
+					sendBytes(header);
+				}
+			}
+			int start = 0;
+			while (start < input.length()) {
+				int end = Math.min(start + streamChunkSize, input.length());
+				if (end < input.length() && end - 1 > start && Character.isHighSurrogate(input.charAt(end - 1))) {
+					end--;
+				}
+				byte[] chunk = input.substring(start, end).getBytes();
+				if (compressor != null) {
+					chunk = compressor.compress(chunk);
+				}
+				if (cipher != null) {
+					chunk = cipher.encryptChunk(chunk, 0, chunk.length);
+				}
+				sendChunk(chunk);
+				start = end;
+			}
+			if (cipher != null) {
+				sendChunk(cipher.endEncryption());
+			}
+		} catch (InvalidKeyException | InvalidAlgorithmParameterException | IllegalBlockSizeException | BadPaddingException e) {
+			logger.log(Level.SEVERE, cipher.getTransformation() + " failed to encrypt data!", e);
 			throw new IOException(e);
 		}
+		sendBytes(END_OF_STREAM);
 	}
 
 	/**
-	 * Read message from the client encrypted by AES Algorithm with Cipher Block Chaining mode
+	 * Send one chunk of the streamed message, the empty chunk is skipped because the empty frame ends the message
 	 * 
-	 * @return decrypted message sent by the client
+	 * @param chunk the buffer with the chunk
 	 * @throws IOException if the stream has been closed or another I/O error
 	 */
-	private String readAESCBC() throws IOException {
+	private void sendChunk(byte[] chunk) throws IOException {
+		if (chunk.length > 0) {
+			sendBytes(chunk);
+		}
+	}
+
+	/**
+	 * Read message streamed by the client, the chunks are decrypted as they arrive until the empty frame is received
+	 * 
+	 * @return decrypted message sent by the client
+	 * @throws IOException if the message is longer than the maximum frame size, is not valid, the stream has been closed or another I/O error
+	 */
+	private String readStream() throws IOException {
+		StreamingCipher cipher = getStreamingCipher();
+		ByteArrayOutputStream message = new ByteArrayOutputStream();
 		try {
-			byte[] iv = readBytes();
-			byte[] data = readBytes();
-			return AESAlgorithm.decryptCBC(data, key, iv);
-		} catch (InvalidKeyException | NoSuchAlgorithmException | NoSuchPaddingException
-				| InvalidAlgorithmParameterException | IllegalBlockSizeException | BadPaddingException e) {
-			logger.log(Level.SEVERE, "AES Algorithm failed to decrypt data!", e);
+			if (cipher != null) {
+				cipher.beginDecryption(cipher.hasHeader() ? readBytes() : null);
+			}
+			int received = 0;
+			while (true) {
+				Frame chunk = transport.readFrame();
+				try {
+					if (chunk.getLength() == 0) {
+						break;
+					}
+					received += chunk.getLength();
+					if (received > transport.getMaxFrameSize()) {
+						throw new IOException("Streamed message exceeds " + transport.getMaxFrameSize() + " bytes");
+					}
+					if (cipher != null) {
+						message.write(cipher.decryptChunk(chunk.getData(), 0, chunk.getLength()));
+					} else {
+						message.write(chunk.getData(), 0, chunk.getLength());
+					}
+				} finally {
+					chunk.release();
+				}
+			}
+			if (cipher != null) {
+				message.write(cipher.endDecryption());
+			}
+		} catch (InvalidKeyException | InvalidAlgorithmParameterException | IllegalBlockSizeException | BadPaddingException e) {
+			logger.log(Level.SEVERE, cipher.getTransformation() + " failed to decrypt data!", e);
 			throw new IOException(e);
 		}
+		byte[] bytes = message.toByteArray();
+		return decode(bytes, bytes.length);
 	}
-	
+
+	/**
+	 * Read message from the client which is not encrypted
+	 * 
+	 * @return message sent by the client
+	 * @throws IOException if the stream has been closed or another I/O error
+	 */
+	private String readPlain() throws IOException {
+		Frame data = transport.readFrame();
+		try {
+			return decode(data.getData(), data.getLength());
+		} finally {
+			data.release();
+		}
+	}
+
 	/**
-	 * Return randomly generated initialization vector (IV) by using Secure Random value
+	 * Convert the received message to the string object, the message is decompressed first if the compression is enabled
 	 * 
-	 * @param ivSizeBytes the size of the buffer with the initialization vector
-	 * @return the buffer with the initialization vector
+	 * @param message the buffer with the message
+	 * @param length the number of bytes of the message
+	 * @return the string object of the message
+	 * @throws IOException if the compressed message is not valid
 	 */
-	private static byte[] getInitialVector(int ivSizeBytes) {
-		byte[] iv = new byte[ivSizeBytes];
-		SecureRandom random = new SecureRandom();
-		random.nextBytes(iv);
-		return iv;
+	private String decode(byte[] message, int length) throws IOException {
+		if (compressor == null) {
+			return new String(message, 0, length);
+		}
+		return new String(compressor.decompress(message, 0, length));
 	}
 }
@@ -0,0 +1,151 @@
+package server;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class runs the client sessions. On the platform threads the number of concurrent sessions is limited,
+ * when all sessions are busy the new client waits in the bounded queue, and once the queue is full
+ * the client is refused immediately instead of waiting forever. On the virtual threads every session
+ * gets its own new thread, the virtual threads are cheap and must not be pooled. The number of their sessions
+ * is limited as well, but there is no queue and the client above the limit is refused immediately.
+ *
+ * @author Martin Holecek
+ *
+ */
+public class SessionExecutor implements MetricsSource {
+
+	private static final long KEEP_ALIVE_SECONDS = 60;
+
+	private ThreadPoolExecutor executor;
+	private ThreadFactory threadFactory;
+	private int maxSessions;
+	private AtomicInteger activeSessions;
+	private AtomicLong accepted;
+	private AtomicLong queued;
+	private AtomicLong rejected;
+
+	/**
+	 * Initialize session executor
+	 *
+	 * @param maxSessions the maximum number of sessions running at once
+	 * @param queueSize the maximum number of clients waiting for the running session to finish, zero disables waiting
+	 * @param threadFactory the factory which creates threads running the sessions
+	 */
+	public SessionExecutor(int maxSessions, int queueSize, ThreadFactory threadFactory) {
+		this.maxSessions = maxSessions;
+		BlockingQueue<Runnable> queue;
+		if (queueSize > 0) {
+			queue = new ArrayBlockingQueue<>(queueSize);
+		} else {
+			queue = new SynchronousQueue<>();
+		}
+		executor = new ThreadPoolExecutor(maxSessions, maxSessions, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, queue, threadFactory);
+		executor.allowCoreThreadTimeOut(true);
+		activeSessions = new AtomicInteger();
+		accepted = new AtomicLong();
+		queued = new AtomicLong();
+		rejected = new AtomicLong();
+	}
+
+	/**
+	 * Initialize session executor which starts the new thread for every session, used by the virtual threads
+	 *
+	 * @param maxSessions the maximum number of sessions running at once, the clients above the limit are refused
+	 * @param threadFactory the factory which creates the thread of each session
+	 */
+	public SessionExecutor(int maxSessions, ThreadFactory threadFactory) {
+		this.maxSessions = maxSessions;
+		this.threadFactory = threadFactory;
+		activeSessions = new AtomicInteger();
+		accepted = new AtomicLong();
+		queued = new AtomicLong();
+		rejected = new AtomicLong();
+	}
+
+	/**
+	 * Run the session of the client, or refuse it if the server is overloaded
+	 *
+	 * @param serverHandler the object which handles the session of the client
+	 * @return true if the session has been started or queued, false if it has been refused
+	 */
+	public boolean execute(ServerHandler serverHandler) {
+		if (executor == null) {
+			return start(serverHandler);
+		}
+		boolean waiting = activeSessions.get() >= maxSessions;
+		Runnable session = () -> {
+			activeSessions.incrementAndGet();
+			try {
+				serverHandler.run();
+			} finally {
+				activeSessions.decrementAndGet();
+			}
+		};
+		try {
+			executor.execute(session);
+		} catch (RejectedExecutionException e) {
+			rejected.incrementAndGet();
+			return false;
+		}
+		accepted.incrementAndGet();
+		if (waiting) {
+			queued.incrementAndGet();
+		}
+		return true;
+	}
+
+	/**
+	 * Start the new thread of the session unless the maximum number of sessions is running, the session is counted
+	 * before its thread starts, so the clients accepted at once cannot exceed the limit
+	 *
+	 * @param serverHandler the object which handles the session of the client
+	 * @return true if the session has been started, false if it has been refused
+	 */
+	private boolean start(ServerHandler serverHandler) {
+		if (activeSessions.incrementAndGet() > maxSessions) {
+			activeSessions.decrementAndGet();
+			rejected.incrementAndGet();
+			return false;
+		}
+		try {
+			threadFactory.newThread(() -> {
+				try {
+					serverHandler.run();
+				} finally {
+					activeSessions.decrementAndGet();
+				}
+			}).start();
+		} catch (RuntimeException e) {
+			activeSessions.decrementAndGet();
+			rejected.incrementAndGet();
+			return false;
+		}
+		accepted.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * Returns the number of sessions which are running now
+	 *
+	 * @return the number of running sessions
+	 */
+	public int getActiveSessions() {
+		return activeSessions.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public String reportMetrics() {
+		return "active=" + activeSessions.get() + " waiting=" + (executor == null ? 0 : executor.getQueue().size()) + " accepted=" + accepted.get()
+				+ " queued=" + queued.get() + " rejected=" + rejected.get();
+	}
+}
@@ -0,0 +1,184 @@
+package server;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+
+/**
+ * This class is blocking frame transport which reads and writes frames on the socket streams.
+ * Frames written during one command are collected in the session buffer and sent together on flush.
+ * The session buffer is heap buffer, because the socket stream accepts only arrays.
+ *
+ * @author Martin Holecek
+ *
+ */
+public class SocketTransport implements FrameTransport {
+
+	private static final int HEADER_SIZE = 4;
+
+	private Socket socket;
+	private DataInputStream input;
+	private OutputStream output;
+	private ByteBuffer staging;
+	private int frameStart;
+	private BufferPool bufferPool;
+
+	/**
+	 * Initialize blocking transport on the connected socket
+	 *
+	 * @param socket an endpoint for communication between two machines
+	 * @param config the configuration of the socket options and buffers
+	 * @throws IOException if the stream has been closed or another I/O error
+	 */
+	public SocketTransport(Socket socket, ServerConfig config) throws IOException {
+		this(socket, config, new BufferPool(config.getMaxFrameSize()));
+	}
+
+	/**
+	 * Initialize blocking transport on the connected socket which reads frames into the shared buffers
+	 *
+	 * @param socket an endpoint for communication between two machines
+	 * @param config the configuration of the socket options and buffers
+	 * @param bufferPool the pool of receive buffers shared by the sessions
+	 * @throws IOException if the stream has been closed or another I/O error
+	 */
+	public SocketTransport(Socket socket, ServerConfig config, BufferPool bufferPool) throws IOException {
+		this.socket = socket;
+		this.bufferPool = bufferPool;
+		configureSocket(socket, config);
+		socket.setSoTimeout(config.getSessionTimeout());
+		input = new DataInputStream(socket.getInputStream());
+		output = socket.getOutputStream();
+		staging = ByteBuffer.allocate(config.getOutputBufferSize());
+	}
+
+	/**
+	 * Apply the socket options of the configuration to the client socket
+	 *
+	 * @param socket the socket of the client
+	 * @param config the configuration of the socket options
+	 * @throws IOException if the socket options cannot be set
+	 */
+	public static void configureSocket(Socket socket, ServerConfig config) throws IOException {
+		socket.setTcpNoDelay(config.isTcpNoDelay());
+		if (config.getSendBufferSize() > 0) {
+			socket.setSendBufferSize(config.getSendBufferSize());
+		}
+		if (config.getReceiveBufferSize() > 0) {
+			socket.setReceiveBufferSize(config.getReceiveBufferSize());
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void writeFrame(byte[] frame) throws IOException {
+		if (staging.remaining() < HEADER_SIZE + frame.length) {
+			flush();
+			if (staging.remaining() < HEADER_SIZE + frame.length) {
+				// Frame larger than the session buffer is sent on its own
+				staging.putInt(frame.length);
+				flush();
+				output.write(frame);
+				return;
+			}
+		}
+		staging.putInt(frame.length);
+		staging.put(frame);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public ByteBuffer reserveFrame(int maxLength) throws IOException {
+		if (staging.remaining() < HEADER_SIZE + maxLength) {
+			flush();
+			if (staging.remaining() < HEADER_SIZE + maxLength) {
+				// Frame larger than the session buffer gets its own buffer
+				ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + maxLength);
+				buffer.position(HEADER_SIZE);
+				return buffer;
+			}
+		}
+		frameStart = staging.position();
+		staging.position(frameStart + HEADER_SIZE);
+		return staging;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void commitFrame(ByteBuffer buffer) throws IOException {
+		if (buffer != staging) {
+			buffer.putInt(0, buffer.position() - HEADER_SIZE);
+			output.write(buffer.array(), 0, buffer.position());
+			return;
+		}
+		staging.putInt(frameStart, staging.position() - frameStart - HEADER_SIZE);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void abortFrame(ByteBuffer buffer) {
+		if (buffer == staging) {
+			staging.position(frameStart);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void flush() throws IOException {
+		if (staging.position() > 0) {
+			output.write(staging.array(), 0, staging.position());
+			staging.clear();
+		}
+		output.flush();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Frame readFrame() throws IOException {
+		flush();
+		int length = input.readInt();
+		Frame frame = bufferPool.acquire(length);
+		try {
+			input.readFully(frame.getData(), 0, length);
+		} catch (IOException e) {
+			frame.release();
+			throw e;
+		}
+		return frame;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getMaxFrameSize() {
+		return bufferPool.getMaxFrameSize();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean hasPendingFrame() throws IOException {
+		return input.available() > 0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void close() throws IOException {
+		try {
+			flush();
+			output.close();
+		} finally {
+			input.close();
+			socket.close();
+		}
+	}
+}
@@ -0,0 +1,256 @@
+package server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import server.Session.Encryption;
+
+/**
+ * This class issues and opens the resumption tickets shared by all sessions of the server. The ticket is sealed by AES/GCM
+ * with the key generated when the server starts, so only this server can read it and the tickets end with the server.
+ * It holds the encryption mode, the resumption secret of the session, the mailbox and its token and the time it expires.
+ * The resumption secret is derived from the agreed key, the resumed session derives its new key from the secret and
+ * the random values of both sides, so no key and no nonce of the previous session is ever used again.
+ *
+ * @author Martin Holecek
+ *
+ */
+public class TicketContext implements MetricsSource {
+
+	/**
+	 * The number of bytes of the random value sent by the client and the server during RESUME Command
+	 */
+	public static final int RANDOM_SIZE = 32;
+
+	private static final String KEY_ALGORITHM = "AES";
+	private static final String TICKET_TRANSFORMATION = "AES/GCM/NoPadding";
+	private static final String MAC_ALGORITHM = "HmacSHA256";
+	private static final byte[] RESUMPTION_LABEL = "MRP resumption".getBytes(StandardCharsets.US_ASCII);
+	private static final int KEY_BITS = 256;
+	private static final int IV_SIZE = 12;
+	private static final int TAG_BITS = 128;
+
+	private SecretKey ticketKey;
+	private long lifetime;
+	private SecureRandom random;
+	private AtomicLong issued;
+	private AtomicLong accepted;
+	private AtomicLong rejected;
+
+	/**
+	 * Initialize ticket context with the new key and the ticket lifetime of the configuration
+	 *
+	 * @param config the configuration of the server
+	 * @throws NoSuchAlgorithmException if AES is not available
+	 */
+	public TicketContext(ServerConfig config) throws NoSuchAlgorithmException {
+		random = new SecureRandom();
+		KeyGenerator generator = KeyGenerator.getInstance(KEY_ALGORITHM);
+		generator.init(KEY_BITS, random);
+		ticketKey = generator.generateKey();
+		lifetime = config.getTicketTtl() * 1000L;
+		issued = new AtomicLong();
+		accepted = new AtomicLong();
+		rejected = new AtomicLong();
+	}
+
+	/**
+	 * Returns the new ticket of the authenticated session
+	 *
+	 * @param mode the encryption mode of the session
+	 * @param secret the resumption secret of the session
+	 * @param mailbox the authenticated mailbox
+	 * @param token the token of the mailbox
+	 * @return the Base64 encoded ticket
+	 * @throws GeneralSecurityException if the ticket cannot be sealed
+	 */
+	public String issue(Encryption mode, byte[] secret, String mailbox, String token) throws GeneralSecurityException {
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		try (DataOutputStream output = new DataOutputStream(content)) {
+			output.writeLong(System.currentTimeMillis() + lifetime);
+			output.writeUTF(mode.name());
+			output.writeUTF(mailbox);
+			output.writeUTF(token);
+			output.writeShort(secret.length);
+			output.write(secret);
+		} catch (IOException e) {
+			throw new GeneralSecurityException("Ticket cannot be written", e);
+		}
+
+		byte[] initVector = new byte[IV_SIZE];
+		random.nextBytes(initVector);
+		Cipher cipher = Cipher.getInstance(TICKET_TRANSFORMATION);
+		cipher.init(Cipher.ENCRYPT_MODE, ticketKey, new GCMParameterSpec(TAG_BITS, initVector));
+		byte[] plaintext = content.toByteArray();
+		ByteBuffer ticket = ByteBuffer.allocate(IV_SIZE + cipher.getOutputSize(plaintext.length));
+		ticket.put(initVector);
+		ticket.put(cipher.doFinal(plaintext));
+		issued.incrementAndGet();
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(ticket.array());
+	}
+
+	/**
+	 * Returns the content of the ticket presented by the client
+	 *
+	 * @param text the Base64 encoded ticket
+	 * @return the ticket, or null if it has not been issued by this server or has expired
+	 */
+	public Ticket open(String text) {
+		try {
+			byte[] ticket = Base64.getUrlDecoder().decode(text);
+			if (ticket.length <= IV_SIZE) {
+				rejected.incrementAndGet();
+				return null;
+			}
+			Cipher cipher = Cipher.getInstance(TICKET_TRANSFORMATION);
+			cipher.init(Cipher.DECRYPT_MODE, ticketKey, new GCMParameterSpec(TAG_BITS, ticket, 0, IV_SIZE));
+			byte[] plaintext = cipher.doFinal(ticket, IV_SIZE, ticket.length - IV_SIZE);
+
+			DataInputStream input = new DataInputStream(new ByteArrayInputStream(plaintext));
+			long expiry = input.readLong();
+			Encryption mode = Encryption.valueOf(input.readUTF());
+			String mailbox = input.readUTF();
+			String token = input.readUTF();
+			byte[] secret = new byte[input.readUnsignedShort()];
+			input.readFully(secret);
+			if (System.currentTimeMillis() > expiry) {
+				rejected.incrementAndGet();
+				return null;
+			}
+			accepted.incrementAndGet();
+			return new Ticket(mode, secret, mailbox, token);
+		} catch (GeneralSecurityException | IOException | IllegalArgumentException e) {
+			rejected.incrementAndGet();
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the new random value of the server sent during RESUME Command
+	 *
+	 * @return the new buffer with the random value
+	 */
+	public byte[] nextRandom() {
+		byte[] value = new byte[RANDOM_SIZE];
+		random.nextBytes(value);
+		return value;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public String reportMetrics() {
+		return "issued=" + issued.get() + " accepted=" + accepted.get() + " rejected=" + rejected.get();
+	}
+
+	/**
+	 * Derive the resumption secret from the key agreed by the session, the client derives the same secret from its key
+	 *
+	 * @param key the key agreed by the session
+	 * @return the new buffer with the resumption secret, HMAC-SHA256 of the label "MRP resumption" under the key
+	 * @throws NoSuchAlgorithmException if HMAC-SHA256 is not available
+	 * @throws InvalidKeyException if the key is empty
+	 */
+	public static byte[] deriveResumptionSecret(byte[] key) throws NoSuchAlgorithmException, InvalidKeyException {
+		Mac mac = Mac.getInstance(MAC_ALGORITHM);
+		mac.init(new SecretKeySpec(key, MAC_ALGORITHM));
+		return mac.doFinal(RESUMPTION_LABEL);
+	}
+
+	/**
+	 * Derive the key of the resumed session, which is long enough for every encryption mode
+	 *
+	 * @param secret the resumption secret of the ticket
+	 * @param clientRandom the random value of the client
+	 * @param serverRandom the random value of the server
+	 * @return the new buffer with the key, HMAC-SHA256 of both random values under the resumption secret
+	 * @throws NoSuchAlgorithmException if HMAC-SHA256 is not available
+	 * @throws InvalidKeyException if the secret is empty
+	 */
+	public static byte[] deriveResumedKey(byte[] secret, byte[] clientRandom, byte[] serverRandom) throws NoSuchAlgorithmException, InvalidKeyException {
+		Mac mac = Mac.getInstance(MAC_ALGORITHM);
+		mac.init(new SecretKeySpec(secret, MAC_ALGORITHM));
+		mac.update(clientRandom);
+		return mac.doFinal(serverRandom);
+	}
+
+	/**
+	 * This class is the content of the opened ticket
+	 */
+	public static class Ticket {
+
+		private Encryption mode;
+		private byte[] secret;
+		private String mailbox;
+		private String token;
+
+		/**
+		 * Initialize the content of the ticket
+		 *
+		 * @param mode the encryption mode of the session
+		 * @param secret the resumption secret of the session
+		 * @param mailbox the authenticated mailbox
+		 * @param token the token of the mailbox
+		 */
+		Ticket(Encryption mode, byte[] secret, String mailbox, String token) {
+			this.mode = mode;
+			this.secret = secret;
+			this.mailbox = mailbox;
+			this.token = token;
+		}
+
+		/**
+		 * Returns the encryption mode of the session
+		 *
+		 * @return the encryption mode
+		 */
+		public Encryption getMode() {
+			return mode;
+		}
+
+		/**
+		 * Returns the resumption secret of the session
+		 *
+		 * @return the buffer with the secret
+		 */
+		public byte[] getSecret() {
+			return secret;
+		}
+
+		/**
+		 * Returns the authenticated mailbox
+		 *
+		 * @return the mailbox name
+		 */
+		public String getMailbox() {
+			return mailbox;
+		}
+
+		/**
+		 * Returns the token of the mailbox
+		 *
+		 * @return the token
+		 */
+		public String getToken() {
+			return token;
+		}
+	}
+}
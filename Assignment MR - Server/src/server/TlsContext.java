@@ -0,0 +1,139 @@
+package server;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLSessionContext;
+
+/**
+ * This class holds the TLS context shared by all sessions of the server. The sessions of the clients are cached,
+ * so a client reconnecting with the session ticket or identifier skips the full handshake.
+ * Only AEAD cipher suites are enabled, AES-GCM first and ChaCha20-Poly1305 when the JVM supports it.
+ *
+ * @author Martin Holecek
+ *
+ */
+public class TlsContext implements MetricsSource {
+
+	private static final String[] PREFERRED_CIPHER_SUITES = {
+			"TLS_AES_128_GCM_SHA256",
+			"TLS_AES_256_GCM_SHA384",
+			"TLS_CHACHA20_POLY1305_SHA256",
+			"TLS_ECDHE_ECDSA_WITH_AES_128_GCM_SHA256",
+			"TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256",
+			"TLS_ECDHE_ECDSA_WITH_AES_256_GCM_SHA384",
+			"TLS_ECDHE_RSA_WITH_AES_256_GCM_SHA384",
+			"TLS_ECDHE_ECDSA_WITH_CHACHA20_POLY1305_SHA256",
+			"TLS_ECDHE_RSA_WITH_CHACHA20_POLY1305_SHA256" };
+	private static final String PROTOCOL_SEPARATOR = ",";
+
+	private SSLContext sslContext;
+	private String[] protocols;
+	private String[] cipherSuites;
+	private AtomicLong handshakes;
+	private AtomicLong resumed;
+	private AtomicLong failed;
+
+	/**
+	 * Initialize TLS context with the key store and the session cache of the configuration
+	 *
+	 * @param config the configuration of the server
+	 * @throws IOException if the key store cannot be read
+	 * @throws GeneralSecurityException if the key store is not valid or no configured protocol is supported
+	 */
+	public TlsContext(ServerConfig config) throws IOException, GeneralSecurityException {
+		char[] password = config.getTlsPassword().toCharArray();
+		KeyStore keyStore = KeyStore.getInstance(config.getTlsKeyStoreType());
+		try (InputStream input = new FileInputStream(config.getTlsKeyStore())) {
+			keyStore.load(input, password);
+		}
+		KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+		keyManagerFactory.init(keyStore, password);
+
+		sslContext = SSLContext.getInstance("TLS");
+		sslContext.init(keyManagerFactory.getKeyManagers(), null, null);
+		SSLSessionContext sessionContext = sslContext.getServerSessionContext();
+		sessionContext.setSessionCacheSize(config.getTlsSessionCache());
+		sessionContext.setSessionTimeout(config.getTlsSessionTimeout());
+
+		SSLEngine engine = sslContext.createSSLEngine();
+		protocols = supported(config.getTlsProtocols().split(PROTOCOL_SEPARATOR), engine.getSupportedProtocols());
+		if (protocols.length == 0) {
+			throw new GeneralSecurityException("None of the TLS protocols " + config.getTlsProtocols() + " is supported");
+		}
+		cipherSuites = supported(PREFERRED_CIPHER_SUITES, engine.getSupportedCipherSuites());
+		handshakes = new AtomicLong();
+		resumed = new AtomicLong();
+		failed = new AtomicLong();
+	}
+
+	/**
+	 * Create the server side engine of the new TLS session
+	 *
+	 * @return the engine
+	 */
+	public SSLEngine createEngine() {
+		SSLEngine engine = sslContext.createSSLEngine();
+		engine.setUseClientMode(false);
+		engine.setEnabledProtocols(protocols);
+		if (cipherSuites.length > 0) {
+			engine.setEnabledCipherSuites(cipherSuites);
+		}
+		return engine;
+	}
+
+	/**
+	 * Count the completed handshake, the session created before the handshake started has been resumed
+	 *
+	 * @param engine the engine of the session
+	 * @param startTime the time in milliseconds when the handshake started
+	 */
+	public void handshakeCompleted(SSLEngine engine, long startTime) {
+		handshakes.incrementAndGet();
+		if (engine.getSession().getCreationTime() < startTime) {
+			resumed.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Count the handshake which has not been completed
+	 */
+	public void handshakeFailed() {
+		failed.incrementAndGet();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public String reportMetrics() {
+		return "handshakes=" + handshakes.get() + " resumed=" + resumed.get() + " failed=" + failed.get();
+	}
+
+	/**
+	 * Returns the names from the preferred list which are supported, in the order of the preferred list
+	 *
+	 * @param preferred the preferred names
+	 * @param supported the names supported by the engine
+	 * @return the supported names
+	 */
+	private static String[] supported(String[] preferred, String[] supported) {
+		List<String> supportedList = Arrays.asList(supported);
+		List<String> result = new ArrayList<>();
+		for (String name : preferred) {
+			if (supportedList.contains(name.trim())) {
+				result.add(name.trim());
+			}
+		}
+		return result.toArray(new String[result.size()]);
+	}
+}
@@ -0,0 +1,335 @@
+package server;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+
+/**
+ * This class is frame transport protected by TLS. The records produced by the {@link SSLEngine} are carried
+ * in the frames of the underlying transport, and the length prefixed MRP frames are sent as TLS application data,
+ * so the same code runs on top of the blocking and the non-blocking transports.
+ *
+ * @author Martin Holecek
+ *
+ */
+public class TlsTransport implements FrameTransport {
+
+	private static final int HEADER_SIZE = 4;
+	private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+	private FrameTransport network;
+	private SSLEngine engine;
+	private ByteBuffer networkInput;
+	private ByteBuffer networkOutput;
+	private ByteBuffer applicationInput;
+	private ByteBuffer applicationOutput;
+	private int frameStart;
+
+	/**
+	 * Initialize TLS transport on top of the transport of the client
+	 *
+	 * @param network the transport which carries the TLS records
+	 * @param engine the server side engine of the TLS session
+	 */
+	public TlsTransport(FrameTransport network, SSLEngine engine) {
+		this.network = network;
+		this.engine = engine;
+		int packetSize = engine.getSession().getPacketBufferSize();
+		int applicationSize = engine.getSession().getApplicationBufferSize();
+		networkInput = ByteBuffer.allocate(packetSize);
+		networkOutput = ByteBuffer.allocate(packetSize);
+		applicationInput = ByteBuffer.allocate(applicationSize);
+		applicationOutput = ByteBuffer.allocate(applicationSize);
+		networkInput.flip();
+		applicationInput.flip();
+	}
+
+	/**
+	 * Perform the TLS handshake with the client, blocks until the handshake is complete
+	 *
+	 * @throws IOException if the handshake failed or another I/O error
+	 */
+	public void handshake() throws IOException {
+		engine.beginHandshake();
+		processHandshake();
+		network.flush();
+	}
+
+	/**
+	 * Returns the engine of the TLS session
+	 *
+	 * @return the engine
+	 */
+	public SSLEngine getEngine() {
+		return engine;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void writeFrame(byte[] frame) throws IOException {
+		int size = HEADER_SIZE + frame.length;
+		if (applicationOutput.remaining() < size) {
+			wrapApplicationOutput();
+			if (applicationOutput.capacity() < size) {
+				applicationOutput = ByteBuffer.allocate(size);
+			}
+		}
+		applicationOutput.putInt(frame.length);
+		applicationOutput.put(frame);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public ByteBuffer reserveFrame(int maxLength) throws IOException {
+		int size = HEADER_SIZE + maxLength;
+		if (applicationOutput.remaining() < size) {
+			wrapApplicationOutput();
+			if (applicationOutput.capacity() < size) {
+				applicationOutput = ByteBuffer.allocate(size);
+			}
+		}
+		frameStart = applicationOutput.position();
+		applicationOutput.position(frameStart + HEADER_SIZE);
+		return applicationOutput;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void commitFrame(ByteBuffer buffer) throws IOException {
+		applicationOutput.putInt(frameStart, applicationOutput.position() - frameStart - HEADER_SIZE);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void abortFrame(ByteBuffer buffer) {
+		applicationOutput.position(frameStart);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void flush() throws IOException {
+		wrapApplicationOutput();
+		network.flush();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Frame readFrame() throws IOException {
+		flush();
+		while (!hasCompleteFrame()) {
+			unwrap();
+			processHandshake();
+		}
+		int length = applicationInput.getInt();
+		byte[] data = new byte[length];
+		applicationInput.get(data);
+		return new Frame(data, length, null);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean hasPendingFrame() throws IOException {
+		return hasCompleteFrame() || network.hasPendingFrame();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getMaxFrameSize() {
+		return network.getMaxFrameSize();
+	}
+
+	/**
+	 * Send the queued frames and the close notification to the client and close the underlying transport
+	 *
+	 * @throws IOException if the stream has been closed or another I/O error
+	 */
+	public void close() throws IOException {
+		try {
+			wrapApplicationOutput();
+			engine.closeOutbound();
+			wrap(EMPTY);
+		} finally {
+			network.close();
+		}
+	}
+
+	/**
+	 * Check if the decrypted data contain the whole frame
+	 *
+	 * @return true if the frame can be read without unwrapping more records, false otherwise
+	 * @throws IOException if the length of the frame exceeds the maximum frame size
+	 */
+	private boolean hasCompleteFrame() throws IOException {
+		if (applicationInput.remaining() < HEADER_SIZE) {
+			return false;
+		}
+		int length = applicationInput.getInt(applicationInput.position());
+		if (length < 0 || length > network.getMaxFrameSize()) {
+			throw new IOException("Frame of " + length + " bytes exceeds the maximum frame size of " + network.getMaxFrameSize() + " bytes");
+		}
+		return applicationInput.remaining() >= HEADER_SIZE + length;
+	}
+
+	/**
+	 * Run the handshake steps requested by the engine until the engine has nothing more to exchange
+	 *
+	 * @throws IOException if the handshake failed or another I/O error
+	 */
+	private void processHandshake() throws IOException {
+		while (true) {
+			switch (engine.getHandshakeStatus()) {
+			case NEED_WRAP:
+				wrap(EMPTY);
+				break;
+			case NEED_UNWRAP:
+				unwrap();
+				break;
+			case NEED_TASK:
+				runDelegatedTasks();
+				break;
+			default:
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Encrypt the frames written since the last flush
+	 *
+	 * @throws IOException if the stream has been closed or another I/O error
+	 */
+	private void wrapApplicationOutput() throws IOException {
+		if (applicationOutput.position() == 0) {
+			return;
+		}
+		applicationOutput.flip();
+		try {
+			wrap(applicationOutput);
+		} finally {
+			applicationOutput.clear();
+		}
+	}
+
+	/**
+	 * Encrypt the data into TLS records and send every record as the frame of the underlying transport
+	 *
+	 * @param source the data to be encrypted, empty for handshake and close messages
+	 * @throws IOException if the TLS session has been closed or another I/O error
+	 */
+	private void wrap(ByteBuffer source) throws IOException {
+		while (true) {
+			networkOutput.clear();
+			SSLEngineResult result = engine.wrap(source, networkOutput);
+			if (result.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW) {
+				networkOutput = ByteBuffer.allocate(networkOutput.capacity() * 2);
+				continue;
+			}
+			sendNetworkOutput();
+			if (result.getStatus() == SSLEngineResult.Status.CLOSED) {
+				if (source.hasRemaining()) {
+					throw new SSLException("TLS session has been closed");
+				}
+				return;
+			}
+			if (result.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NEED_TASK) {
+				runDelegatedTasks();
+			}
+			if (!source.hasRemaining()) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Decrypt the next TLS record sent by the client, frames of the underlying transport are read as needed
+	 *
+	 * @throws IOException if the client closed the TLS session or another I/O error
+	 */
+	private void unwrap() throws IOException {
+		if (!networkInput.hasRemaining()) {
+			receive();
+		}
+		while (true) {
+			applicationInput.compact();
+			SSLEngineResult result;
+			try {
+				result = engine.unwrap(networkInput, applicationInput);
+			} finally {
+				applicationInput.flip();
+			}
+			switch (result.getStatus()) {
+			case BUFFER_UNDERFLOW:
+				receive();
+				break;
+			case BUFFER_OVERFLOW:
+				ByteBuffer larger = ByteBuffer.allocate(applicationInput.capacity() + engine.getSession().getApplicationBufferSize());
+				larger.put(applicationInput);
+				larger.flip();
+				applicationInput = larger;
+				break;
+			case CLOSED:
+				throw new EOFException("Client closed the TLS session");
+			default:
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Read the next frame of the underlying transport and append it to the received TLS data
+	 *
+	 * @throws IOException if the stream has been closed or another I/O error
+	 */
+	private void receive() throws IOException {
+		Frame frame = network.readFrame();
+		try {
+			networkInput.compact();
+			if (networkInput.remaining() < frame.getLength()) {
+				networkInput.flip();
+				ByteBuffer larger = ByteBuffer.allocate(networkInput.remaining() + frame.getLength());
+				larger.put(networkInput);
+				networkInput = larger;
+			}
+			networkInput.put(frame.getData(), 0, frame.getLength());
+			networkInput.flip();
+		} finally {
+			frame.release();
+		}
+	}
+
+	/**
+	 * Send the encrypted records as the frame of the underlying transport
+	 *
+	 * @throws IOException if the stream has been closed or another I/O error
+	 */
+	private void sendNetworkOutput() throws IOException {
+		networkOutput.flip();
+		if (networkOutput.hasRemaining()) {
+			ByteBuffer record = network.reserveFrame(networkOutput.remaining());
+			record.put(networkOutput);
+			network.commitFrame(record);
+		}
+	}
+
+	/**
+	 * Run the long running tasks of the handshake on the current thread
+	 */
+	private void runDelegatedTasks() {
+		Runnable task;
+		while ((task = engine.getDelegatedTask()) != null) {
+			task.run();
+		}
+	}
+}
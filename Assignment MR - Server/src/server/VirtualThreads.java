@@ -0,0 +1,55 @@
+package server;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * This class creates virtual threads when the server runs on Java 21 or newer.
+ * The project is compiled for Java 8, so the virtual thread builder is looked up by reflection.
+ *
+ * @author Martin Holecek
+ *
+ */
+public final class VirtualThreads {
+
+	private static final String BUILDER_CLASS = "java.lang.Thread$Builder";
+
+	private VirtualThreads() {
+	}
+
+	/**
+	 * Check if the running JVM supports virtual threads
+	 *
+	 * @return true if virtual threads are available, false otherwise
+	 */
+	public static boolean isSupported() {
+		try {
+			Thread.class.getMethod("ofVirtual");
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Returns the factory which creates virtual threads named by the given prefix and sequence number
+	 *
+	 * @param prefix the prefix of the thread names
+	 * @return the thread factory
+	 * @throws UnsupportedOperationException if the running JVM does not support virtual threads
+	 */
+	public static ThreadFactory newFactory(String prefix) {
+		try {
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			Class<?> builderClass = Class.forName(BUILDER_CLASS);
+			Method name = builderClass.getMethod("name", String.class, long.class);
+			builder = name.invoke(builder, prefix, 0L);
+			return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+		} catch (NoSuchMethodException | ClassNotFoundException e) {
+			throw new UnsupportedOperationException("Virtual threads require Java 21 or newer", e);
+		} catch (IllegalAccessException | InvocationTargetException e) {
+			throw new UnsupportedOperationException("Virtual thread factory cannot be created", e);
+		}
+	}
+}